@@ -8,6 +8,7 @@ plugins {
     id("io.spring.dependency-management") version "1.1.7"
     id("cz.habarta.typescript-generator") version "3.2.1263"
     id("com.google.cloud.tools.jib") version "3.5.3"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "io.github.admiralxy"
@@ -34,6 +35,7 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-security")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
 
     // Spring AI
     implementation(platform("org.springframework.ai:spring-ai-bom:${property("springAiVersion")}"))
@@ -67,6 +69,13 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+}
+
 jib {
     container {
         mainClass = "io.github.admiralxy.agent.AgentApplication"
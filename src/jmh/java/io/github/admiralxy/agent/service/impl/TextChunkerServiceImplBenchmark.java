@@ -0,0 +1,46 @@
+package io.github.admiralxy.agent.service.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures chunking of documents built from the test corpus, prose from input_1.txt and Java code from
+ * input_4.txt, repeated up to the given size. Time per character should stay flat as documents grow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TextChunkerServiceImplBenchmark {
+
+    @Param({"input_1.txt", "input_4.txt"})
+    private String file;
+
+    @Param({"100000", "2000000"})
+    private int length;
+
+    private final TextChunkerServiceImpl chunker = new TextChunkerServiceImpl();
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        String source = Files.readString(Path.of("src/test/resources/input", file));
+        text = source.repeat(length / source.length() + 1).substring(0, length);
+    }
+
+    @Benchmark
+    public List<String> chunk() {
+        return chunker.chunk(text, 100, 1500, 50);
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.admiralxy.agent.service.impl;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.EncodingType;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl.TokenEstimate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares budget checks answered from the text size against exact counting, on the test corpus with
+ * budgets far below, close to and far above the token count of the text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenizerEstimateBenchmark {
+
+    @Param({"input_1.txt", "input_2.txt", "input_3.txt", "input_4.txt"})
+    private String file;
+
+    @Param({"0.1", "1.0", "10.0"})
+    private double budgetRatio;
+
+    private final TokenizerServiceImpl tokenizer = new TokenizerServiceImpl(
+            Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE), new TokenEstimate(4.0, 8.0, 0.25));
+    private String text;
+    private int budget;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = Files.readString(Path.of("src/test/resources/input", file));
+        budget = (int) (tokenizer.countTokens(text) * budgetRatio);
+    }
+
+    @Benchmark
+    public boolean exactCount() {
+        return tokenizer.countTokens(text) <= budget;
+    }
+
+    @Benchmark
+    public boolean fitsWithin() {
+        return tokenizer.fitsWithin(text, budget);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.admiralxy.agent.service.impl;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares slicing by token offsets against the former approach of copying token segments and decoding them
+ * back, on texts as large as a chunk and as a whole document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenizerServiceImplBenchmark {
+
+    private static final Encoding ENCODING = Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    @Param({"2000", "200000"})
+    private int length;
+
+    private final TokenizerServiceImpl tokenizer = new TokenizerServiceImpl();
+    private String text;
+    private int halfTokens;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append("Paragraph ").append(i).append(" describes ingestion, chunking and ünïcödé text 中文 😀.\n");
+        }
+        text = sb.substring(0, length);
+        halfTokens = tokenizer.countTokens(text) / 2;
+        // Token lengths are filled in on first use, the measurement covers the warmed-up state.
+        tokenizer.splitToTokenChunks(text, 1);
+    }
+
+    @Benchmark
+    public String truncateByOffsets() {
+        return tokenizer.truncateToTokens(text, halfTokens);
+    }
+
+    @Benchmark
+    public String truncateByDecoding() {
+        IntArrayList tokens = ENCODING.encode(text);
+        int[] truncatedArr = Arrays.copyOf(tokens.toArray(), halfTokens);
+        IntArrayList truncated = new IntArrayList(truncatedArr.length);
+        for (int t : truncatedArr) {
+            truncated.add(t);
+        }
+        return ENCODING.decode(truncated);
+    }
+
+    @Benchmark
+    public List<String> splitByOffsets() {
+        return tokenizer.splitToTokenChunks(text, 256);
+    }
+
+    @Benchmark
+    public List<String> splitByDecoding() {
+        IntArrayList tokens = ENCODING.encode(text);
+        int[] raw = tokens.toArray();
+        List<String> parts = new ArrayList<>();
+        for (int start = 0; start < raw.length; start += 256) {
+            int endExclusive = Math.min(start + 256, raw.length);
+            IntArrayList segment = new IntArrayList(endExclusive - start);
+            for (int i = start; i < endExclusive; i++) {
+                segment.add(raw[i]);
+            }
+            parts.add(ENCODING.decode(segment));
+        }
+        return parts;
+    }
+}
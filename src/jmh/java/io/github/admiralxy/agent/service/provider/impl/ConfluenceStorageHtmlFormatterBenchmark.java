@@ -0,0 +1,64 @@
+package io.github.admiralxy.agent.service.provider.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats exported pages of different sizes: a document of sections, and a single table as large as
+ * the biggest pages of our spaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConfluenceStorageHtmlFormatterBenchmark {
+
+    @Param({"SECTIONS", "TABLE"})
+    private String layout;
+
+    @Param({"1000", "20000"})
+    private int size;
+
+    private final ConfluenceStorageHtmlFormatter formatter = new ConfluenceStorageHtmlFormatter();
+    private String html;
+
+    @Setup
+    public void setUp() {
+        html = "TABLE".equals(layout) ? table(size) : sections(size);
+    }
+
+    @Benchmark
+    public String format() {
+        return formatter.format(html);
+    }
+
+    private static String sections(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("<h2>Section ").append(i).append("</h2>")
+                    .append("<p>Paragraph with <a href=\"https://wiki.example/").append(i).append("\">a link</a>")
+                    .append(" and <code>inline code</code>.</p>")
+                    .append("<ul><li>First item</li><li>Second item</li></ul>")
+                    .append("<table><tr><th>Key</th><th>Value</th></tr><tr><td>id</td><td>").append(i)
+                    .append("</td></tr></table>")
+                    .append("<pre>curl -X GET /items/").append(i).append("</pre>");
+        }
+        return sb.toString();
+    }
+
+    private static String table(int rows) {
+        StringBuilder sb = new StringBuilder("<table><tr><th>Service</th><th>Owner</th><th>Status</th><th>Notes</th></tr>");
+        for (int i = 0; i < rows; i++) {
+            sb.append("<tr><td>service-").append(i).append("</td><td>team ").append(i % 17)
+                    .append("</td><td>OK</td><td><p>Deployed&nbsp;to stage ").append(i % 5).append("</p></td></tr>");
+        }
+        return sb.append("</table>").toString();
+    }
+}
@@ -2,18 +2,50 @@ package io.github.admiralxy.agent.config.properties;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
+@Configuration
+@ConfigurationProperties(prefix = "app.confluence")
 @Getter
 @Setter
 public class ConfluenceProperties {
 
     /**
-     * Confluence basic auth username.
+     * Maximum number of pages fetched in parallel by a single crawl.
      */
-    private String username;
+    private int concurrency = 4;
 
     /**
-     * Confluence basic auth password.
+     * Maximum number of requests per second sent to one Confluence host, shared by all crawls.
+     * Zero or a negative value disables the limit.
      */
-    private String password;
+    private double requestsPerSecond = 10;
+
+    /**
+     * Maximum number of requests in flight to one Confluence host, shared by all crawls.
+     * Zero or a negative value disables the limit.
+     */
+    private int hostConcurrency = 8;
+
+    /**
+     * Number of pages requested per listing call.
+     */
+    private int pageSize = 100;
+
+    /**
+     * Number of retries of a request rejected with 429 or 503.
+     */
+    private int maxRetries = 3;
+
+    /**
+     * Maximum size of a single response. Responses are parsed as they arrive, so this bounds the memory of one page.
+     */
+    private DataSize maxResponseSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Cron expression of the scheduled sync of all registered sources, "-" disables it.
+     */
+    private String syncCron = "-";
 }
@@ -0,0 +1,19 @@
+package io.github.admiralxy.agent.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.security.credentials")
+@Getter
+@Setter
+public class CredentialsProperties {
+
+    /**
+     * Base64 encoded AES key of 16, 24 or 32 bytes, encrypts source credentials stored in the database.
+     * When blank, credentials are stored as plaintext and a warning is logged at startup.
+     */
+    private String encryptionKey;
+}
@@ -0,0 +1,72 @@
+package io.github.admiralxy.agent.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.git")
+@Getter
+@Setter
+public class GitProperties {
+
+    /**
+     * Directory holding bare mirrors of indexed repositories.
+     */
+    private String mirrorDirectory = System.getProperty("java.io.tmpdir") + "/rag-git-mirrors";
+
+    /**
+     * Maximum total size of the mirror directory, least recently used mirrors are evicted above it.
+     */
+    private DataSize mirrorMaxSize = DataSize.ofGigabytes(10);
+
+    /**
+     * How long branch lists fetched with ls-remote are reused.
+     */
+    private Duration branchesTtl = Duration.ofMinutes(5);
+
+    /**
+     * How files are read for indexing.
+     */
+    private ReadMode readMode = ReadMode.OBJECT_DATABASE;
+
+    /**
+     * Files larger than this are not indexed unless a source sets its own limit.
+     */
+    private DataSize maxFileSize = DataSize.ofKilobytes(512);
+
+    /**
+     * Name of the file at the repository root listing extra excludes in {@code .gitignore} syntax.
+     */
+    private String ignoreFile = ".ragignore";
+
+    /**
+     * Generated and vendored paths skipped for every source, in {@code .gitignore} syntax.
+     */
+    private List<String> defaultExcludes = new ArrayList<>(List.of(
+            ".git/", "node_modules/", "bower_components/", "vendor/", "third_party/", "target/", "build/", "dist/",
+            "out/", ".gradle/", ".idea/", ".vscode/", "__pycache__/", ".venv/", "venv/", "coverage/", ".next/",
+            "package-lock.json", "npm-shrinkwrap.json", "yarn.lock", "pnpm-lock.yaml", "bun.lockb", "Cargo.lock",
+            "Gemfile.lock", "poetry.lock", "Pipfile.lock", "composer.lock", "go.sum", "gradle.lockfile",
+            "*.min.js", "*.min.css", "*.map", "*.snap", "*.svg", "*.pb.go", "*_pb2.py", "*.generated.*"
+    ));
+
+    public enum ReadMode {
+
+        /**
+         * Read blobs straight from the object database of the mirror.
+         */
+        OBJECT_DATABASE,
+
+        /**
+         * Check the branch out into a temporary working tree and read files from disk.
+         */
+        CHECKOUT
+    }
+}
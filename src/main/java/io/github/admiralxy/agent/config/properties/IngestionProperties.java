@@ -0,0 +1,158 @@
+package io.github.admiralxy.agent.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.rag.ingestion")
+@Getter
+@Setter
+public class IngestionProperties {
+
+    /**
+     * Maximum number of tokens sent in a single embedding request.
+     */
+    private int batchMaxTokens = 6000;
+
+    /**
+     * Maximum number of documents sent in a single embedding request.
+     */
+    private int batchMaxItems = 16;
+
+    /**
+     * Maximum number of embedding requests in flight per ingestion.
+     */
+    private int embedConcurrency = 8;
+
+    /**
+     * Maximum number of vector store writes in flight per ingestion.
+     */
+    private int persistConcurrency = 2;
+
+    /**
+     * Maximum number of files chunked in parallel, defaults to the number of CPU cores.
+     */
+    private int chunkConcurrency = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Token budget of chunks cut from plain text, counted with the tokenizer of the embedding model and capped
+     * by its document limit, for example 512. Zero, the default, chunks by lines and characters instead.
+     * Chunk boundaries differ between the two, so switching re-embeds every text document on its next upload.
+     */
+    private int chunkMaxTokens;
+
+    /**
+     * Number of tokens of the previous chunk repeated at the start of the next one, when chunking by tokens.
+     */
+    private int chunkOverlapTokens = 64;
+
+    /**
+     * Number of batches requested ahead from the previous stage.
+     */
+    private int prefetch = 16;
+
+    /**
+     * Reuse cached vectors for chunks whose normalized embed payload was already embedded by the same model.
+     */
+    private boolean embeddingCacheEnabled = true;
+
+    /**
+     * Cached vectors not used for this long are removed from the embedding cache.
+     */
+    private Duration embeddingCacheRetention = Duration.ofDays(30);
+
+    /**
+     * How often unused vectors are removed from the embedding cache.
+     */
+    private Duration embeddingCacheCleanupInterval = Duration.ofHours(1);
+
+    /**
+     * Number of cached vectors removed per database round trip.
+     */
+    private int embeddingCacheCleanupBatchSize = 1000;
+
+    /**
+     * What happens to chunks which are near-duplicates of a chunk of another document of the space,
+     * or of a chunk kept earlier by the same ingestion.
+     */
+    private DedupMode dedupMode = DedupMode.LINK;
+
+    /**
+     * Largest number of differing bits out of 64 between SimHash fingerprints of near-duplicate chunks.
+     * Fingerprints are looked up by four bands, so at most 3.
+     */
+    private int dedupMaxDistance = 3;
+
+    /**
+     * How often running ingestion jobs refresh their heartbeat.
+     */
+    private Duration jobHeartbeatInterval = Duration.ofSeconds(15);
+
+    /**
+     * Running jobs without a heartbeat for this long are considered abandoned and are resumed by another instance.
+     */
+    private Duration jobStaleAfter = Duration.ofMinutes(2);
+
+    /**
+     * How long a sync of a git or Confluence source is reserved for its instance, renewed while the sync runs.
+     */
+    private Duration sourceSyncLease = Duration.ofMinutes(2);
+
+    /**
+     * How often the stored state is polled when following a job which runs on another instance.
+     */
+    private Duration jobPollInterval = Duration.ofSeconds(1);
+
+    /**
+     * Hand embedding of job batches to workers of all instances through a shared queue in the database.
+     */
+    private boolean distributed;
+
+    /**
+     * Maximum number of queued work units in flight per distributed ingestion.
+     */
+    private int workQueueDepth = 32;
+
+    /**
+     * Maximum number of work units processed at once by the worker of this instance.
+     */
+    private int workerConcurrency = 4;
+
+    /**
+     * How long a claimed work unit stays reserved, after that it is taken by another worker.
+     */
+    private Duration workLease = Duration.ofMinutes(5);
+
+    /**
+     * How often chunks stored without a token count are looked for, until none are left.
+     */
+    private Duration tokenBackfillInterval = Duration.ofMinutes(1);
+
+    /**
+     * Number of chunks whose token count is filled in per database round trip.
+     */
+    private int tokenBackfillBatchSize = 500;
+
+    public enum DedupMode {
+
+        /**
+         * Every chunk is embedded and stored.
+         */
+        OFF,
+
+        /**
+         * Near-duplicates are neither embedded nor stored. They are not restored once the chunk they duplicate is deleted.
+         */
+        SKIP,
+
+        /**
+         * Near-duplicates are stored with a reference to the chunk they duplicate and with its vector instead of
+         * being embedded, retrieval returns only one of them.
+         */
+        LINK
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.admiralxy.agent.config.properties;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenEstimateProperties {
+
+    /**
+     * Average number of UTF-8 bytes a token of the encoding covers in our content.
+     */
+    private double bytesPerToken;
+
+    /**
+     * Largest number of UTF-8 bytes per token seen on whole texts of our content.
+     */
+    private double maxBytesPerToken;
+}
@@ -0,0 +1,45 @@
+package io.github.admiralxy.agent.config.properties;
+
+import com.knuddels.jtokkit.api.EncodingType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.tokenizer")
+@Getter
+@Setter
+public class TokenizerProperties {
+
+    /**
+     * Encoding of models with an unknown tokenizer, such as arbitrary OpenAI-compatible endpoints.
+     */
+    private EncodingType defaultEncoding = EncodingType.CL100K_BASE;
+
+    /**
+     * Tokens an Anthropic model counts per cl100k_base token of the same text, Anthropic does not publish its tokenizer.
+     */
+    private double anthropicRatio = 1.15;
+
+    /**
+     * Answer budget checks from the text size when the outcome is clear, encoding only texts close to the limit.
+     */
+    private boolean estimatorEnabled = true;
+
+    /**
+     * Relative distance from the limit within which size estimates are not trusted and the text is encoded.
+     */
+    private double estimateMargin = 0.25;
+
+    /**
+     * Size estimates by encoding name, encodings without an entry are always counted exactly.
+     */
+    private Map<String, TokenEstimateProperties> estimates = new HashMap<>(Map.of(
+            "cl100k_base", new TokenEstimateProperties(4.0, 8.0),
+            "o200k_base", new TokenEstimateProperties(4.5, 10.0)
+    ));
+}
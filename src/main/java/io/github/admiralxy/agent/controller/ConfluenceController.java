@@ -0,0 +1,39 @@
+package io.github.admiralxy.agent.controller;
+
+import io.github.admiralxy.agent.controller.response.confluence.GetConfluenceSourcesRs;
+import io.github.admiralxy.agent.service.confluence.ConfluenceSourceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/confluence")
+public class ConfluenceController {
+
+    private final ConfluenceSourceService confluenceSourceService;
+
+    @GetMapping("/sources")
+    public GetConfluenceSourcesRs getSources(@RequestParam UUID space) {
+        return new GetConfluenceSourcesRs(confluenceSourceService.getSources(space));
+    }
+
+    @PostMapping("/sources/{id}/sync")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void sync(@PathVariable UUID id) {
+        confluenceSourceService.sync(id).subscribe(
+                ignored -> {},
+                e -> log.warn("Confluence source sync failed: {}", id, e)
+        );
+    }
+}
@@ -1,25 +1,51 @@
 package io.github.admiralxy.agent.controller;
 
 import io.github.admiralxy.agent.controller.request.git.GitRepositoryInfoRq;
+import io.github.admiralxy.agent.controller.response.git.GetGitSourcesRs;
 import io.github.admiralxy.agent.controller.response.git.GitRepositoryInfoRs;
 import io.github.admiralxy.agent.service.git.GitRepositoryInfo;
 import io.github.admiralxy.agent.service.git.GitRepositoryService;
+import io.github.admiralxy.agent.service.git.GitSourceService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.UUID;
+
+@Slf4j
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/git")
 public class GitController {
 
     private final GitRepositoryService gitRepositoryService;
+    private final GitSourceService gitSourceService;
 
     @PostMapping("/info")
     public GitRepositoryInfoRs getRepositoryInfo(@RequestBody GitRepositoryInfoRq rq) {
         GitRepositoryInfo info = gitRepositoryService.getRepositoryInfo(rq.url(), rq.login(), rq.password());
         return new GitRepositoryInfoRs(info.branches(), info.folders());
     }
+
+    @GetMapping("/sources")
+    public GetGitSourcesRs getSources(@RequestParam UUID space) {
+        return new GetGitSourcesRs(gitSourceService.getSources(space));
+    }
+
+    @PostMapping("/sources/{id}/sync")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void sync(@PathVariable UUID id) {
+        gitSourceService.sync(id).subscribe(
+                ignored -> {},
+                e -> log.warn("Git source sync failed: {}", id, e)
+        );
+    }
 }
@@ -2,14 +2,20 @@ package io.github.admiralxy.agent.controller;
 
 import io.github.admiralxy.agent.controller.response.documents.AddToSpaceRq;
 import io.github.admiralxy.agent.controller.response.documents.GetDocumentsRs;
+import io.github.admiralxy.agent.controller.response.documents.GetIngestionJobRs;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import io.github.admiralxy.agent.domain.IngestionJob;
 import io.github.admiralxy.agent.domain.RagDocument;
 import io.github.admiralxy.agent.service.AddDocumentCommand;
 import io.github.admiralxy.agent.service.RagService;
+import io.github.admiralxy.agent.service.job.IngestionJobService;
+import io.github.admiralxy.agent.service.provider.RagConfluenceOptions;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
 import io.github.admiralxy.agent.service.provider.RagGitOptions;
 import io.github.admiralxy.agent.service.provider.RagProviderAuth;
 import lombok.RequiredArgsConstructor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -17,52 +23,79 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.UUID;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/rag")
 public class RagController {
 
+    private static final String JOB_HEADER = "X-Ingestion-Job";
+    private static final long PROGRESS_TIMEOUT_MS = 240_000L;
+
     private final RagService ragService;
-    private final ThreadPoolTaskExecutor taskExecutor;
+    private final IngestionJobService ingestionJobService;
 
+    /**
+     * Submits an ingestion job and streams its progress. The job ID is returned in a header,
+     * so a client whose stream ended early can reattach to the same job.
+     */
     @PostMapping("/{space}/documents/stream")
-    public SseEmitter addStream(@PathVariable String space, @RequestBody AddToSpaceRq rq) {
-        SseEmitter emitter = new SseEmitter(240_000L);
-        CompletableFuture.runAsync(() -> {
-            try {
-                subscribeToProgress(
-                        emitter,
-                        ragService.add(toAddCommand(space, rq))
-                );
-            } catch (Exception e) {
-                emitter.completeWithError(e);
-            }
-        }, taskExecutor);
+    public ResponseEntity<SseEmitter> addStream(@PathVariable String space, @RequestBody AddToSpaceRq rq) {
+        IngestionJob job = ingestionJobService.submit(toAddCommand(space, rq));
+        return ResponseEntity.ok()
+                .header(JOB_HEADER, job.id().toString())
+                .body(streamJob(job.id()));
+    }
+
+    @PostMapping("/{space}/documents/jobs")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public GetIngestionJobRs addJob(@PathVariable String space, @RequestBody AddToSpaceRq rq) {
+        return new GetIngestionJobRs(ingestionJobService.submit(toAddCommand(space, rq)));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public GetIngestionJobRs getJob(@PathVariable UUID jobId) {
+        return new GetIngestionJobRs(ingestionJobService.get(jobId));
+    }
+
+    @GetMapping("/jobs/{jobId}/stream")
+    public SseEmitter streamJob(@PathVariable UUID jobId) {
+        SseEmitter emitter = new SseEmitter(PROGRESS_TIMEOUT_MS);
+        subscribeToProgress(emitter, ingestionJobService.progress(jobId));
         return emitter;
     }
 
     private AddDocumentCommand toAddCommand(String space, AddToSpaceRq rq) {
         RagGitOptions gitOptions = rq.git() == null
                 ? null
-                : new RagGitOptions(rq.git().branch(), rq.git().folder());
+                : new RagGitOptions(
+                        rq.git().branch(),
+                        rq.git().folder(),
+                        new GitFileFilter(rq.git().include(), rq.git().exclude(), rq.git().maxFileSize())
+                );
         RagProviderAuth auth = rq.auth() == null
                 ? null
                 : new RagProviderAuth(rq.auth().login(), rq.auth().password());
 
-        RagContentRequest contentRequest = new RagContentRequest(rq.text(), rq.batch(), gitOptions, auth);
+        RagConfluenceOptions confluenceOptions = rq.confluence() == null
+                ? null
+                : new RagConfluenceOptions(rq.confluence().spaceKey(), rq.confluence().descendants());
+
+        RagContentRequest contentRequest = new RagContentRequest(rq.text(), rq.batch(), gitOptions, auth, confluenceOptions);
         return new AddDocumentCommand(space, rq.providerType(), contentRequest);
     }
 
     void subscribeToProgress(SseEmitter emitter, Flux<Integer> progressFlux) {
-        progressFlux
+        Disposable subscription = progressFlux
             .doOnNext(percent -> {
                 try {
                     emitter.send(SseEmitter.event().data(percent));
@@ -75,6 +108,7 @@ public class RagController {
                 emitter::completeWithError,
                 emitter::complete
             );
+        emitter.onTimeout(subscription::dispose);
     }
 
     @DeleteMapping("/{space}/documents/{docId}")
@@ -0,0 +1,8 @@
+package io.github.admiralxy.agent.controller.response.confluence;
+
+import io.github.admiralxy.agent.domain.ConfluenceSource;
+
+import java.util.List;
+
+public record GetConfluenceSourcesRs(List<ConfluenceSource> sources) {
+}
@@ -5,6 +5,7 @@ public record AddToSpaceRq(
         boolean batch,
         ProviderType providerType,
         GitProviderRq git,
-        ProviderAuthRq auth
+        ProviderAuthRq auth,
+        ConfluenceProviderRq confluence
 ) {
 }
@@ -0,0 +1,4 @@
+package io.github.admiralxy.agent.controller.response.documents;
+
+public record ConfluenceProviderRq(String spaceKey, boolean descendants) {
+}
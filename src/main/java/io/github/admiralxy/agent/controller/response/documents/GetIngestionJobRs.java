@@ -0,0 +1,6 @@
+package io.github.admiralxy.agent.controller.response.documents;
+
+import io.github.admiralxy.agent.domain.IngestionJob;
+
+public record GetIngestionJobRs(IngestionJob job) {
+}
@@ -1,4 +1,12 @@
 package io.github.admiralxy.agent.controller.response.documents;
 
-public record GitProviderRq(String branch, String folder) {
+import java.util.List;
+
+public record GitProviderRq(
+        String branch,
+        String folder,
+        List<String> include,
+        List<String> exclude,
+        Long maxFileSize
+) {
 }
@@ -0,0 +1,8 @@
+package io.github.admiralxy.agent.controller.response.git;
+
+import io.github.admiralxy.agent.domain.GitSource;
+
+import java.util.List;
+
+public record GetGitSourcesRs(List<GitSource> sources) {
+}
@@ -0,0 +1,16 @@
+package io.github.admiralxy.agent.domain;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record ConfluenceSource(
+        UUID id,
+        UUID spaceId,
+        String docId,
+        String url,
+        String spaceKey,
+        boolean descendants,
+        int pages,
+        Instant syncedAt
+) {
+}
@@ -0,0 +1,23 @@
+package io.github.admiralxy.agent.domain;
+
+import java.util.List;
+
+/**
+ * Per-source selection of files to index, on top of the default excludes and the repository {@code .ragignore}.
+ * Patterns use {@code .gitignore} syntax.
+ *
+ * @param include patterns of files to index, all files when empty
+ * @param exclude patterns of files and directories to skip
+ * @param maxFileSize maximum blob size in bytes, the configured default when null
+ */
+public record GitFileFilter(List<String> include, List<String> exclude, Long maxFileSize) {
+
+    public GitFileFilter {
+        include = include == null ? List.of() : List.copyOf(include);
+        exclude = exclude == null ? List.of() : List.copyOf(exclude);
+    }
+
+    public static GitFileFilter none() {
+        return new GitFileFilter(List.of(), List.of(), null);
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.admiralxy.agent.domain;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record GitSource(
+        UUID id,
+        UUID spaceId,
+        String docId,
+        String url,
+        String branch,
+        String folder,
+        GitFileFilter filter,
+        String lastCommit,
+        Instant updatedAt
+) {
+}
@@ -0,0 +1,20 @@
+package io.github.admiralxy.agent.domain;
+
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.entity.IngestionJobStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record IngestionJob(
+        UUID id,
+        UUID spaceId,
+        ProviderType providerType,
+        IngestionJobStatus status,
+        int progress,
+        double dedupRatio,
+        String error,
+        Instant createdAt,
+        Instant updatedAt
+) {
+}
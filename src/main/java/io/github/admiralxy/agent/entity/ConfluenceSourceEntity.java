@@ -0,0 +1,79 @@
+package io.github.admiralxy.agent.entity;
+
+import io.github.admiralxy.agent.entity.converter.EncryptedStringConverter;
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.MapKeyColumn;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@Entity
+@Table(name = "t_confluence_sources")
+@Getter
+@Setter
+public class ConfluenceSourceEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "c_id", updatable = false, nullable = false, columnDefinition = "uuid")
+    private UUID id;
+
+    @Column(name = "c_space_id", nullable = false, columnDefinition = "uuid")
+    private UUID spaceId;
+
+    @Column(name = "c_doc_id", nullable = false)
+    private String docId;
+
+    @Column(name = "c_url", nullable = false)
+    private String url;
+
+    @Column(name = "c_space_key")
+    private String spaceKey;
+
+    @Column(name = "c_descendants", nullable = false)
+    private boolean descendants;
+
+    @Column(name = "c_batch", nullable = false)
+    private boolean batch;
+
+    @Column(name = "c_login")
+    @Convert(converter = EncryptedStringConverter.class)
+    private String login;
+
+    @Column(name = "c_password")
+    @Convert(converter = EncryptedStringConverter.class)
+    private String password;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "t_confluence_pages", joinColumns = @JoinColumn(name = "c_source_id"))
+    @MapKeyColumn(name = "c_page_id")
+    @Column(name = "c_version", nullable = false)
+    private Map<String, Integer> pageVersions = new HashMap<>();
+
+    @Column(name = "c_synced_at")
+    private Instant syncedAt;
+
+    @CreationTimestamp
+    @Column(name = "c_created_at", nullable = false)
+    private Instant createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "c_updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,77 @@
+package io.github.admiralxy.agent.entity;
+
+import io.github.admiralxy.agent.entity.converter.EncryptedStringConverter;
+import io.github.admiralxy.agent.entity.converter.ListStringConverter;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "t_git_sources")
+@Getter
+@Setter
+public class GitSourceEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "c_id", updatable = false, nullable = false, columnDefinition = "uuid")
+    private UUID id;
+
+    @Column(name = "c_space_id", nullable = false, columnDefinition = "uuid")
+    private UUID spaceId;
+
+    @Column(name = "c_doc_id", nullable = false)
+    private String docId;
+
+    @Column(name = "c_url", nullable = false)
+    private String url;
+
+    @Column(name = "c_branch", nullable = false)
+    private String branch;
+
+    @Column(name = "c_folder")
+    private String folder;
+
+    @Column(name = "c_include")
+    @Convert(converter = ListStringConverter.class)
+    private List<String> include = new ArrayList<>();
+
+    @Column(name = "c_exclude")
+    @Convert(converter = ListStringConverter.class)
+    private List<String> exclude = new ArrayList<>();
+
+    @Column(name = "c_max_file_size")
+    private Long maxFileSize;
+
+    @Column(name = "c_login")
+    @Convert(converter = EncryptedStringConverter.class)
+    private String login;
+
+    @Column(name = "c_password")
+    @Convert(converter = EncryptedStringConverter.class)
+    private String password;
+
+    @Column(name = "c_last_commit")
+    private String lastCommit;
+
+    @CreationTimestamp
+    @Column(name = "c_created_at", nullable = false)
+    private Instant createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "c_updated_at", nullable = false)
+    private Instant updatedAt;
+}
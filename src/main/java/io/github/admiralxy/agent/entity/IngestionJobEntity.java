@@ -0,0 +1,82 @@
+package io.github.admiralxy.agent.entity;
+
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.entity.converter.EncryptedStringConverter;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "t_ingestion_jobs")
+@Getter
+@Setter
+public class IngestionJobEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "c_id", updatable = false, nullable = false, columnDefinition = "uuid")
+    private UUID id;
+
+    @Column(name = "c_space_id", nullable = false, columnDefinition = "uuid")
+    private UUID spaceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "c_provider", nullable = false, length = 32)
+    private ProviderType providerType;
+
+    /**
+     * Content request as JSON, encrypted like source credentials and cleared once the job is finished.
+     */
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "c_request", columnDefinition = "text")
+    private String request;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "c_status", nullable = false, length = 32)
+    private IngestionJobStatus status;
+
+    @Column(name = "c_progress", nullable = false)
+    private int progress;
+
+    /**
+     * Chunks checked for near-duplicates by the latest attempt.
+     */
+    @Column(name = "c_chunks", nullable = false)
+    private int chunks;
+
+    /**
+     * Checked chunks found to be near-duplicates of stored ones.
+     */
+    @Column(name = "c_duplicates", nullable = false)
+    private int duplicates;
+
+    @Column(name = "c_error", columnDefinition = "text")
+    private String error;
+
+    @Column(name = "c_owner")
+    private String owner;
+
+    @Column(name = "c_heartbeat_at")
+    private Instant heartbeatAt;
+
+    @CreationTimestamp
+    @Column(name = "c_created_at", nullable = false)
+    private Instant createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "c_updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,97 @@
+package io.github.admiralxy.agent.entity.converter;
+
+import io.github.admiralxy.agent.config.properties.CredentialsProperties;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Encrypts secrets with AES-GCM before they are stored. Values stored before encryption was introduced
+ * are read as they are and encrypted on the next save. Without a configured key secrets are stored as plaintext.
+ * <p>
+ * Created by Hibernate through the Spring bean container, so the key comes from {@link CredentialsProperties}.
+ */
+@Slf4j
+@Converter
+public class EncryptedStringConverter implements AttributeConverter<String, String> {
+
+    private static final String PREFIX = "enc:v1:";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec key;
+
+    public EncryptedStringConverter(CredentialsProperties properties) {
+        this.key = key(properties.getEncryptionKey());
+        if (key == null) {
+            log.warn("Credentials encryption key is not configured, source credentials are stored as plaintext. "
+                    + "Set CREDENTIALS_ENCRYPTION_KEY to a Base64 encoded AES key to encrypt them");
+        }
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        if (attribute == null || key == null) {
+            return attribute;
+        }
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(attribute.getBytes(StandardCharsets.UTF_8));
+            return PREFIX + Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length)
+                    .put(iv)
+                    .put(encrypted)
+                    .array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt credentials", e);
+        }
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        if (dbData == null || !dbData.startsWith(PREFIX)) {
+            return dbData;
+        }
+        try {
+            byte[] stored = Base64.getDecoder().decode(dbData.substring(PREFIX.length()));
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, requireKey(), new GCMParameterSpec(TAG_BITS, stored, 0, IV_LENGTH));
+            byte[] decrypted = cipher.doFinal(stored, IV_LENGTH, stored.length - IV_LENGTH);
+            return new String(decrypted, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Failed to decrypt credentials", e);
+        }
+    }
+
+    private SecretKeySpec requireKey() {
+        if (key == null) {
+            throw new IllegalStateException("Credentials encryption key is not configured");
+        }
+        return key;
+    }
+
+    private static SecretKeySpec key(String encoded) {
+        if (StringUtils.isBlank(encoded)) {
+            return null;
+        }
+        byte[] bytes = Base64.getDecoder().decode(encoded.trim());
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+            throw new IllegalArgumentException("Credentials encryption key must be 16, 24 or 32 bytes long");
+        }
+        return new SecretKeySpec(bytes, "AES");
+    }
+}
@@ -1,8 +1,11 @@
 package io.github.admiralxy.agent.registry;
 
+import io.github.admiralxy.agent.service.TokenizerService;
+
 public record ChatModelRuntimeProperties(
         boolean streaming,
         int maxContextTokens,
-        String systemPrompt
+        String systemPrompt,
+        TokenizerService tokenizer
 ) {
 }
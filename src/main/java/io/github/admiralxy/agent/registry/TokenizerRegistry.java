@@ -0,0 +1,24 @@
+package io.github.admiralxy.agent.registry;
+
+import io.github.admiralxy.agent.entity.ChatModelSettingsEntity;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.service.TokenizerService;
+
+public interface TokenizerRegistry {
+
+    /**
+     * Returns the tokenizer matching a chat model, context budgets of the model are counted with it.
+     *
+     * @param settings chat model settings
+     * @return exact tokenizer of the model, or an estimator if the model tokenizer is not available
+     */
+    TokenizerService getChatTokenizer(ChatModelSettingsEntity settings);
+
+    /**
+     * Returns the tokenizer matching an embedding model, embedding inputs are sized with it.
+     *
+     * @param settings embeddings model settings
+     * @return exact tokenizer of the model, or the default encoding for unknown models
+     */
+    TokenizerService getEmbeddingsTokenizer(EmbeddingsModelSettingsEntity settings);
+}
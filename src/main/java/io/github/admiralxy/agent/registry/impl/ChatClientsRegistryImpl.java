@@ -4,6 +4,7 @@ import io.github.admiralxy.agent.entity.ChatModelSettingsEntity;
 import io.github.admiralxy.agent.entity.SummarizerModelSettingsEntity;
 import io.github.admiralxy.agent.registry.ChatClientsRegistry;
 import io.github.admiralxy.agent.registry.ChatModelRuntimeProperties;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
 import io.github.admiralxy.agent.repository.ChatModelSettingsRepository;
 import io.github.admiralxy.agent.repository.SummarizerModelSettingsRepository;
 import io.github.admiralxy.agent.service.model.ChatModelClientFactory;
@@ -25,6 +26,7 @@ public class ChatClientsRegistryImpl implements ChatClientsRegistry {
     private final SummarizerModelSettingsRepository summarizerRepository;
     private final ChatModelClientFactory chatModelClientFactory;
     private final ChatMemory chatMemory;
+    private final TokenizerRegistry tokenizerRegistry;
 
     @Override
     public boolean contains(String modelId) {
@@ -55,7 +57,8 @@ public class ChatClientsRegistryImpl implements ChatClientsRegistry {
         return new ChatModelRuntimeProperties(
                 entity.isStreaming(),
                 entity.getMaxContextTokens(),
-                entity.getSystemPrompt()
+                entity.getSystemPrompt(),
+                tokenizerRegistry.getChatTokenizer(entity)
         );
     }
 
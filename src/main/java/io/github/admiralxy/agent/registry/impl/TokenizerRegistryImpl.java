@@ -0,0 +1,92 @@
+package io.github.admiralxy.agent.registry.impl;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import io.github.admiralxy.agent.config.properties.TokenEstimateProperties;
+import io.github.admiralxy.agent.config.properties.TokenizerProperties;
+import io.github.admiralxy.agent.entity.ChatModelProvider;
+import io.github.admiralxy.agent.entity.ChatModelSettingsEntity;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
+import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.impl.ScaledTokenizerService;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl.TokenEstimate;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves tokenizers by model name. Encodings are loaded on first use and shared by all models using them.
+ */
+@Component
+@RequiredArgsConstructor
+public class TokenizerRegistryImpl implements TokenizerRegistry {
+
+    private static final List<String> O200K_MODEL_PREFIXES = List.of(
+            "gpt-4o", "chatgpt-4o", "gpt-4.1", "gpt-4.5", "gpt-5", "gpt-oss", "o1", "o3", "o4"
+    );
+    private static final List<String> CL100K_MODEL_PREFIXES = List.of(
+            "gpt-4", "gpt-3.5", "gpt-35", "text-embedding-3", "text-embedding-ada-002"
+    );
+
+    private final TokenizerProperties properties;
+    private final EncodingRegistry encodingRegistry = Encodings.newLazyEncodingRegistry();
+    private final Map<String, TokenizerService> encodingTokenizers = new ConcurrentHashMap<>();
+    private final Map<String, TokenizerService> modelTokenizers = new ConcurrentHashMap<>();
+
+    @Override
+    public TokenizerService getChatTokenizer(ChatModelSettingsEntity settings) {
+        if (settings.getProvider() == ChatModelProvider.ANTHROPIC) {
+            double ratio = properties.getAnthropicRatio();
+            return modelTokenizers.computeIfAbsent(settings.getProvider() + "|" + ratio,
+                    ignored -> new ScaledTokenizerService(encodingTokenizer(EncodingType.CL100K_BASE), ratio));
+        }
+        return openAiTokenizer(settings.getName());
+    }
+
+    @Override
+    public TokenizerService getEmbeddingsTokenizer(EmbeddingsModelSettingsEntity settings) {
+        return openAiTokenizer(settings.getName());
+    }
+
+    private TokenizerService openAiTokenizer(String modelName) {
+        // Gateways often prefix model names with a vendor, as in "openai/gpt-4o".
+        String model = StringUtils.substringAfterLast(StringUtils.defaultString(modelName), "/");
+        String name = (model.isEmpty() ? StringUtils.defaultString(modelName) : model).toLowerCase(Locale.ROOT);
+        return modelTokenizers.computeIfAbsent(name, this::resolveOpenAiTokenizer);
+    }
+
+    private TokenizerService resolveOpenAiTokenizer(String model) {
+        if (O200K_MODEL_PREFIXES.stream().anyMatch(model::startsWith)) {
+            return encodingTokenizer(EncodingType.O200K_BASE);
+        }
+        if (CL100K_MODEL_PREFIXES.stream().anyMatch(model::startsWith)) {
+            return encodingTokenizer(EncodingType.CL100K_BASE);
+        }
+        return encodingRegistry.getEncodingForModel(model)
+                .map(encoding -> encodingTokenizers.computeIfAbsent(encoding.getName(),
+                        ignored -> new TokenizerServiceImpl(encoding, estimate(encoding.getName()))))
+                .orElseGet(() -> encodingTokenizer(properties.getDefaultEncoding()));
+    }
+
+    private TokenizerService encodingTokenizer(EncodingType type) {
+        return encodingTokenizers.computeIfAbsent(type.getName(),
+                ignored -> new TokenizerServiceImpl(encodingRegistry.getEncoding(type), estimate(type.getName())));
+    }
+
+    private TokenEstimate estimate(String encodingName) {
+        TokenEstimateProperties estimate = properties.getEstimates().get(encodingName);
+        if (!properties.isEstimatorEnabled() || estimate == null) {
+            return null;
+        }
+        return new TokenEstimate(estimate.getBytesPerToken(), estimate.getMaxBytesPerToken(),
+                properties.getEstimateMargin());
+    }
+}
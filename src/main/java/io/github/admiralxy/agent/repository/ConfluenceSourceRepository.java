@@ -0,0 +1,19 @@
+package io.github.admiralxy.agent.repository;
+
+import io.github.admiralxy.agent.entity.ConfluenceSourceEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ConfluenceSourceRepository extends JpaRepository<ConfluenceSourceEntity, UUID> {
+
+    List<ConfluenceSourceEntity> findAllBySpaceIdOrderByCreatedAtAsc(UUID spaceId);
+
+    Optional<ConfluenceSourceEntity> findBySpaceIdAndDocId(UUID spaceId, String docId);
+
+    @Transactional
+    void deleteBySpaceIdAndDocId(UUID spaceId, String docId);
+}
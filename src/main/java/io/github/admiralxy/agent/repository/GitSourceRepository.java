@@ -0,0 +1,19 @@
+package io.github.admiralxy.agent.repository;
+
+import io.github.admiralxy.agent.entity.GitSourceEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface GitSourceRepository extends JpaRepository<GitSourceEntity, UUID> {
+
+    List<GitSourceEntity> findAllBySpaceIdOrderByCreatedAtAsc(UUID spaceId);
+
+    Optional<GitSourceEntity> findBySpaceIdAndDocId(UUID spaceId, String docId);
+
+    @Transactional
+    void deleteBySpaceIdAndDocId(UUID spaceId, String docId);
+}
@@ -0,0 +1,9 @@
+package io.github.admiralxy.agent.repository;
+
+import io.github.admiralxy.agent.entity.IngestionJobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface IngestionJobRepository extends JpaRepository<IngestionJobEntity, UUID> {
+}
@@ -0,0 +1,89 @@
+package io.github.admiralxy.agent.service;
+
+import java.util.List;
+
+/**
+ * Metadata keys stored with every chunk in the vector store.
+ */
+public final class RagMetadataKeys {
+
+    /**
+     * Space the chunk belongs to.
+     */
+    public static final String SPACE = "space";
+
+    /**
+     * Document the chunk was produced from.
+     */
+    public static final String DOC = "doc";
+
+    /**
+     * Chunk ID, equal to the vector store row ID.
+     */
+    public static final String CHUNK = "chunk";
+
+    /**
+     * Zero-based chunk number inside the document.
+     */
+    public static final String NUMBER = "number";
+
+    /**
+     * Total number of chunks in the document, zero for documents chunked as a stream.
+     */
+    public static final String TOTAL = "total";
+
+    /**
+     * Zero-based position of the chunk within the file or page it was cut from.
+     */
+    public static final String POSITION = "position";
+
+    /**
+     * Number of tokens of the chunk text, counted once at ingestion so retrieval does not tokenize it again.
+     */
+    public static final String TOKENS = "tokens";
+
+    /**
+     * Name of the tokenizer which counted {@link #TOKENS}, absent for counts taken with cl100k_base.
+     */
+    public static final String TOKENIZER = "tokenizer";
+
+    /**
+     * Chunk ID of the stored chunk this one is a near-duplicate of, set when near-duplicates are linked.
+     */
+    public static final String DUPLICATE_OF = "duplicateOf";
+
+    /**
+     * Text the provider put in front of the chunk, such as the file path, left out of near-duplicate fingerprints.
+     */
+    public static final String HEADER = "header";
+
+    /**
+     * Repository path of the file the chunk was produced from, set for git sources.
+     */
+    public static final String PATH = "path";
+
+    /**
+     * Commit the chunk was indexed at, set for git sources.
+     */
+    public static final String COMMIT = "commit";
+
+    /**
+     * Confluence page the chunk was produced from, set for crawled Confluence sources.
+     */
+    public static final String PAGE_ID = "pageId";
+
+    /**
+     * Version of the Confluence page the chunk was indexed at.
+     */
+    public static final String PAGE_VERSION = "pageVersion";
+
+    /**
+     * Keys left out of the payload sent to the embedding model. They change without the chunk content changing,
+     * so embedding them would only spoil vector reuse.
+     */
+    public static final List<String> NOT_EMBEDDED = List.of(CHUNK, NUMBER, TOTAL, POSITION, TOKENS, TOKENIZER,
+            DUPLICATE_OF, HEADER, COMMIT, PAGE_VERSION);
+
+    private RagMetadataKeys() {
+    }
+}
@@ -71,9 +71,10 @@ public interface RagService {
      * @param spaceIds space IDs
      * @param query query
      * @param percentage percentage of the document to include
-     * @param maxChars maximum number of characters in the context
+     * @param maxTokens maximum number of tokens in the context
      * @param topK number of top documents to consider
+     * @param tokenizer tokenizer of the chat model the context is built for
      * @return context string
      */
-    String buildContext(List<String> spaceIds, String query, double percentage, int maxChars, int topK);
+    String buildContext(List<String> spaceIds, String query, double percentage, int maxTokens, int topK, TokenizerService tokenizer);
 }
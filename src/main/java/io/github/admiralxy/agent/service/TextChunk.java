@@ -0,0 +1,17 @@
+package io.github.admiralxy.agent.service;
+
+import java.util.OptionalInt;
+
+/**
+ * Chunk of a streamed text.
+ *
+ * @param text chunk text
+ * @param progress percentage of the source text read when the chunk was produced
+ * @param tokens number of tokens of the chunk, present when the text was chunked by a token budget
+ */
+public record TextChunk(String text, int progress, OptionalInt tokens) {
+
+    public TextChunk(String text, int progress) {
+        this(text, progress, OptionalInt.empty());
+    }
+}
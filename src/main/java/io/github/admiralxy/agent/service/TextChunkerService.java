@@ -1,5 +1,7 @@
 package io.github.admiralxy.agent.service;
 
+import reactor.core.publisher.Flux;
+
 import java.util.List;
 
 public interface TextChunkerService {
@@ -16,4 +18,43 @@ public interface TextChunkerService {
      * @return list of text chunks
      */
     List<String> chunk(String text, int maxLines, int maxChars, int overlap);
+
+    /**
+     * Chunker with an explicit strategy, for callers which know the kind of text upfront (e.g. from a file extension).
+     *
+     * @param text       source text
+     * @param kind       kind of text, {@link TextKind#AUTO} behaves like {@link #chunk(String, int, int, int)}
+     * @param maxLines   maximum lines (for text with line breaks)
+     * @param maxChars   maximum characters
+     * @param overlap    overlap between chunks
+     * @return list of text chunks
+     */
+    List<String> chunk(String text, TextKind kind, int maxLines, int maxChars, int overlap);
+
+    /**
+     * Chunks text lazily, same as {@link #chunk(String, TextKind, int, int, int)}. The source is read as chunks are
+     * requested, so the first chunks can be processed while the rest of the text is still to be chunked.
+     *
+     * @param text       source text
+     * @param kind       kind of text
+     * @param maxLines   maximum lines (for text with line breaks)
+     * @param maxChars   maximum characters
+     * @param overlap    overlap between chunks
+     * @return stream of chunks with the share of the text read so far
+     */
+    Flux<TextChunk> stream(CharSequence text, TextKind kind, int maxLines, int maxChars, int overlap);
+
+    /**
+     * Chunks text lazily by a token budget instead of lines and characters. The text is tokenized once, each chunk
+     * ends at the strongest declaration, paragraph, line, sentence or word boundary within the budget and carries
+     * its token count. A remainder slightly above the budget is split evenly instead of leaving a small tail.
+     *
+     * @param text          source text
+     * @param kind          kind of text
+     * @param tokenizer     tokenizer the budget is counted with
+     * @param maxTokens     maximum tokens per chunk
+     * @param overlapTokens tokens of the previous chunk repeated at the start of the next one, at most half of it
+     * @return stream of chunks with their token counts and the share of the text read so far
+     */
+    Flux<TextChunk> stream(CharSequence text, TextKind kind, TokenizerService tokenizer, int maxTokens, int overlapTokens);
 }
@@ -0,0 +1,22 @@
+package io.github.admiralxy.agent.service;
+
+/**
+ * Kind of text, selects the chunking strategy.
+ */
+public enum TextKind {
+
+    /**
+     * Detect the kind from content.
+     */
+    AUTO,
+
+    /**
+     * Source code, split at declaration boundaries and then by lines.
+     */
+    CODE,
+
+    /**
+     * Natural language, split by paragraphs and words.
+     */
+    PROSE
+}
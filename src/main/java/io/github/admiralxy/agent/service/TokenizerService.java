@@ -1,23 +1,54 @@
 package io.github.admiralxy.agent.service;
 
 import java.util.List;
+import java.util.OptionalInt;
 
 public interface TokenizerService {
 
     /**
-     * Counts the number of tokens in the given text using the CL100K_BASE encoding.
+     * Returns the name of the tokenizer, token counts are comparable only between tokenizers of the same name.
+     *
+     * @return tokenizer name
+     */
+    String getName();
+
+    /**
+     * Counts the number of tokens in the given text.
      *
      * @param text input string
      * @return number of tokens
      */
     int countTokens(String text);
 
+    /**
+     * Estimates the number of tokens from the text size, without encoding it.
+     * Estimates serve soft budgets only, tokenizers without a calibrated estimate count exactly.
+     *
+     * @param text input string
+     * @return estimated number of tokens
+     */
+    default int estimateTokens(String text) {
+        return countTokens(text);
+    }
+
+    /**
+     * Checks whether the given text has at most the specified number of tokens.
+     * The text may only be encoded when its size leaves the outcome open.
+     *
+     * @param text input string
+     * @param maxTokens maximum allowed number of tokens
+     * @return {@code true} if the text fits the limit
+     */
+    default boolean fitsWithin(String text, int maxTokens) {
+        return countTokens(text) <= maxTokens;
+    }
+
     /**
      * Truncates the given text so that it contains at most the specified number of tokens.
      *
      * @param text input string
      * @param maxTokens maximum allowed number of tokens
-     * @return truncated text
+     * @return prefix of the text, a character split between tokens is left out whole
      */
     String truncateToTokens(String text, int maxTokens);
 
@@ -26,7 +57,27 @@ public interface TokenizerService {
      *
      * @param text input string
      * @param maxTokens maximum allowed number of tokens per chunk
-     * @return token-safe chunks
+     * @return token-safe chunks, consecutive slices of the text
      */
     List<String> splitToTokenChunks(String text, int maxTokens);
+
+    /**
+     * Tokenizes text once and maps every token to the character it starts at, so callers can cut the text
+     * and count tokens of any slice without encoding it again.
+     *
+     * @param text input string
+     * @return character offsets where each token starts, followed by the length of the text
+     */
+    int[] tokenOffsets(String text);
+
+    /**
+     * Converts a token count stored by another tokenizer into a count of this one, if they are related.
+     *
+     * @param tokenizer name of the tokenizer which counted the tokens
+     * @param count stored number of tokens
+     * @return number of tokens this tokenizer would count, empty if the text has to be counted again
+     */
+    default OptionalInt reuseCount(String tokenizer, int count) {
+        return getName().equals(tokenizer) ? OptionalInt.of(count) : OptionalInt.empty();
+    }
 }
@@ -0,0 +1,36 @@
+package io.github.admiralxy.agent.service.confluence;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ConfluenceClient {
+
+    /**
+     * Fetches a page with its storage body and version.
+     *
+     * @param site Confluence site and credentials
+     * @param pageId page ID
+     * @return page
+     */
+    Mono<ConfluencePage> getPage(ConfluenceSite site, String pageId);
+
+    /**
+     * Lists all pages of a space, paging through the content API.
+     * Listed pages carry ID, title and version only, their body is null.
+     *
+     * @param site Confluence site and credentials
+     * @param spaceKey space key
+     * @return pages of the space
+     */
+    Flux<ConfluencePage> listSpacePages(ConfluenceSite site, String spaceKey);
+
+    /**
+     * Lists all descendant pages of a page, paging through the content API.
+     * Listed pages carry ID, title and version only, their body is null.
+     *
+     * @param site Confluence site and credentials
+     * @param pageId root page ID
+     * @return descendants of the page, without the page itself
+     */
+    Flux<ConfluencePage> listDescendantPages(ConfluenceSite site, String pageId);
+}
@@ -0,0 +1,4 @@
+package io.github.admiralxy.agent.service.confluence;
+
+public record ConfluencePage(String id, String title, int version, String body) {
+}
@@ -0,0 +1,10 @@
+package io.github.admiralxy.agent.service.confluence;
+
+import java.net.URI;
+
+public record ConfluenceSite(String baseUrl, String login, String password) {
+
+    public String host() {
+        return URI.create(baseUrl).getAuthority();
+    }
+}
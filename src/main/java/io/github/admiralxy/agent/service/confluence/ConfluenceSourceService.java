@@ -0,0 +1,53 @@
+package io.github.admiralxy.agent.service.confluence;
+
+import io.github.admiralxy.agent.domain.ConfluenceSource;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ConfluenceSourceService {
+
+    /**
+     * Fully index Confluence pages into a document and register them with their versions for incremental sync.
+     *
+     * @param spaceId space ID
+     * @param docId document ID
+     * @param request Confluence provider request
+     * @return stream of percentages indicating progress
+     */
+    Flux<Integer> index(String spaceId, String docId, RagContentRequest request);
+
+    /**
+     * Re-index only pages whose version changed since the last sync of a registered source,
+     * and drop chunks of pages which no longer exist.
+     *
+     * @param sourceId Confluence source ID
+     * @return stream of percentages indicating progress
+     */
+    Flux<Integer> sync(UUID sourceId);
+
+    /**
+     * Sync all registered sources one after another.
+     *
+     * @return number of synced sources
+     */
+    int syncAll();
+
+    /**
+     * Get Confluence sources registered in a space.
+     *
+     * @param spaceId space ID
+     * @return registered Confluence sources
+     */
+    List<ConfluenceSource> getSources(UUID spaceId);
+
+    /**
+     * Remove the Confluence source registration of a document, if any.
+     *
+     * @param spaceId space ID
+     * @param docId document ID
+     */
+    void unregister(String spaceId, String docId);
+}
@@ -0,0 +1,125 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import io.github.admiralxy.agent.config.AiHttpClientBuilderFactory;
+import io.github.admiralxy.agent.config.properties.ConfluenceProperties;
+import io.github.admiralxy.agent.service.confluence.ConfluenceClient;
+import io.github.admiralxy.agent.service.confluence.ConfluencePage;
+import io.github.admiralxy.agent.service.confluence.ConfluenceSite;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+@Component
+public class ConfluenceClientImpl implements ConfluenceClient {
+
+    private static final String CONTENT_API_PATH = "/rest/api/content";
+    private static final String PAGE_QUERY = "expand=body.storage,version";
+    private static final String LIST_QUERY_TEMPLATE = "expand=version&limit=%d&start=%d";
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(1);
+
+    private final JsonFactory jsonFactory;
+    private final WebClient webClient;
+    private final ConfluenceProperties properties;
+    private final HostRateLimiter rateLimiter;
+    private final HostConcurrencyLimiter concurrencyLimiter;
+
+    public ConfluenceClientImpl(AiHttpClientBuilderFactory httpClientBuilderFactory, ConfluenceProperties properties) {
+        this.webClient = httpClientBuilderFactory.createWebClientBuilder().build();
+        this.properties = properties;
+        this.rateLimiter = new HostRateLimiter(properties.getRequestsPerSecond());
+        this.concurrencyLimiter = new HostConcurrencyLimiter(properties.getHostConcurrency());
+        int maxStringLength = (int) Math.min(properties.getMaxResponseSize().toBytes(), Integer.MAX_VALUE);
+        this.jsonFactory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder().maxStringLength(maxStringLength).build())
+                .build();
+    }
+
+    @Override
+    public Mono<ConfluencePage> getPage(ConfluenceSite site, String pageId) {
+        return get(site, CONTENT_API_PATH + "/" + encode(pageId), PAGE_QUERY, ConfluenceResponseReader::page);
+    }
+
+    @Override
+    public Flux<ConfluencePage> listSpacePages(ConfluenceSite site, String spaceKey) {
+        return list(site, CONTENT_API_PATH, "spaceKey=" + encode(spaceKey) + "&type=page&");
+    }
+
+    @Override
+    public Flux<ConfluencePage> listDescendantPages(ConfluenceSite site, String pageId) {
+        return list(site, CONTENT_API_PATH + "/" + encode(pageId) + "/descendant/page", StringUtils.EMPTY);
+    }
+
+    private Flux<ConfluencePage> list(ConfluenceSite site, String path, String queryPrefix) {
+        int limit = Math.max(1, properties.getPageSize());
+        return listBatch(site, path, queryPrefix, limit, 0)
+                .expand(batch -> batch.nextStart() < 0
+                        ? Mono.empty()
+                        : listBatch(site, path, queryPrefix, limit, batch.nextStart()))
+                .flatMapIterable(ListBatch::pages);
+    }
+
+    private Mono<ListBatch> listBatch(ConfluenceSite site, String path, String queryPrefix, int limit, int start) {
+        return get(site, path, queryPrefix + LIST_QUERY_TEMPLATE.formatted(limit, start), reader -> {
+            List<ConfluencePage> pages = reader.results();
+            boolean hasNext = !pages.isEmpty() && reader.hasNext();
+            return new ListBatch(pages, hasNext ? start + pages.size() : -1);
+        });
+    }
+
+    private <T> Mono<T> get(ConfluenceSite site, String path, String query,
+                            Function<ConfluenceResponseReader, T> extractor) {
+        if (StringUtils.isBlank(site.login()) || StringUtils.isBlank(site.password())) {
+            return Mono.error(new IllegalStateException("Confluence credentials are required"));
+        }
+        URI uri = URI.create(StringUtils.removeEnd(site.baseUrl(), "/") + path + "?" + query);
+        return Mono.defer(() -> concurrencyLimiter.limit(site.host(), rateLimiter.acquire(site.host())
+                        .then(webClient.get()
+                                .uri(uri)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .headers(headers -> headers.setBasicAuth(site.login(), site.password()))
+                                .retrieve()
+                                .bodyToFlux(DataBuffer.class)
+                                .collect(this::newReader, ConfluenceResponseReader::feed)
+                                .doOnDiscard(DataBuffer.class, DataBufferUtils::release))))
+                .retryWhen(Retry.backoff(properties.getMaxRetries(), RETRY_BACKOFF)
+                        .filter(this::isThrottled)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .onErrorMap(WebClientResponseException.class, e -> new IllegalStateException(
+                        "Confluence request failed with status: " + e.getStatusCode().value(), e))
+                .map(extractor);
+    }
+
+    private boolean isThrottled(Throwable error) {
+        return error instanceof WebClientResponseException e
+                && (e.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || e.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value());
+    }
+
+    private ConfluenceResponseReader newReader() {
+        return new ConfluenceResponseReader(jsonFactory, properties.getMaxResponseSize().toBytes());
+    }
+
+    private String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private record ListBatch(List<ConfluencePage> pages, int nextStart) {
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import io.github.admiralxy.agent.service.confluence.ConfluencePage;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental reader of Confluence content responses, both of a single page and of a listing.
+ * Bytes are pushed into a non-blocking parser as they arrive and only page fields are kept,
+ * so a response is never held as a whole string or tree.
+ */
+final class ConfluenceResponseReader {
+
+    private static final String RESULTS_PREFIX = "/results/";
+    private static final String NEXT_PATH = "/_links/next";
+    private static final String ID_PATH = "/id";
+    private static final String TITLE_PATH = "/title";
+    private static final String VERSION_PATH = "/version/number";
+    private static final String BODY_PATH = "/body/storage/value";
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final long maxSize;
+    private final PageFields root = new PageFields();
+    private final List<PageFields> results = new ArrayList<>();
+    private byte[] chunk = new byte[0];
+    private long size;
+    private boolean started;
+    private boolean finished;
+    private boolean hasNext;
+
+    ConfluenceResponseReader(JsonFactory jsonFactory, long maxSize) {
+        try {
+            this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create Confluence response parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Parses the next part of the response and releases it.
+     */
+    void feed(DataBuffer buffer) {
+        try {
+            int length = buffer.readableByteCount();
+            size += length;
+            if (size > maxSize) {
+                throw new IllegalStateException("Confluence response exceeds the maximum size of " + maxSize + " bytes");
+            }
+            if (chunk.length < length) {
+                chunk = new byte[length];
+            }
+            buffer.read(chunk, 0, length);
+            // The parser consumes the whole chunk before asking for more input, so the array is reused.
+            feeder.feedInput(chunk, 0, length);
+            readAvailable();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse Confluence response", e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * @return the page the response describes
+     */
+    ConfluencePage page() {
+        finish();
+        return root.toPage();
+    }
+
+    /**
+     * @return pages of a listing response in their order
+     */
+    List<ConfluencePage> results() {
+        finish();
+        return results.stream().map(PageFields::toPage).toList();
+    }
+
+    /**
+     * @return whether a listing response links to the next batch of results
+     */
+    boolean hasNext() {
+        finish();
+        return hasNext;
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            feeder.endOfInput();
+            readAvailable();
+            parser.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse Confluence response", e);
+        }
+        if (!started) {
+            throw new IllegalStateException("Confluence response is empty");
+        }
+    }
+
+    private void readAvailable() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            started = true;
+            if (token.isScalarValue()) {
+                readValue(token);
+            }
+        }
+    }
+
+    private void readValue(JsonToken token) throws IOException {
+        String path = parser.getParsingContext().pathAsPointer().toString();
+        if (path.startsWith(RESULTS_PREFIX)) {
+            int end = path.indexOf('/', RESULTS_PREFIX.length());
+            if (end < 0) {
+                return;
+            }
+            int index = Integer.parseInt(path, RESULTS_PREFIX.length(), end, 10);
+            while (results.size() <= index) {
+                results.add(new PageFields());
+            }
+            results.get(index).read(path.substring(end), parser);
+        } else if (NEXT_PATH.equals(path)) {
+            hasNext = token != JsonToken.VALUE_NULL;
+        } else {
+            root.read(path, parser);
+        }
+    }
+
+    private static final class PageFields {
+
+        private String id = StringUtils.EMPTY;
+        private String title = StringUtils.EMPTY;
+        private int version;
+        private String body;
+
+        void read(String path, JsonParser parser) throws IOException {
+            switch (path) {
+                case ID_PATH -> id = parser.getValueAsString(StringUtils.EMPTY);
+                case TITLE_PATH -> title = parser.getValueAsString(StringUtils.EMPTY);
+                case VERSION_PATH -> version = parser.getValueAsInt();
+                case BODY_PATH -> body = parser.getValueAsString(StringUtils.EMPTY);
+                default -> {
+                    // Other fields are skipped.
+                }
+            }
+        }
+
+        ConfluencePage toPage() {
+            return new ConfluencePage(id, title, version, body);
+        }
+    }
+}
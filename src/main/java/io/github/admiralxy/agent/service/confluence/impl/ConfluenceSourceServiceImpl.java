@@ -0,0 +1,172 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.domain.ConfluenceSource;
+import io.github.admiralxy.agent.entity.ConfluenceSourceEntity;
+import io.github.admiralxy.agent.repository.ConfluenceSourceRepository;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.confluence.ConfluencePage;
+import io.github.admiralxy.agent.service.confluence.ConfluenceSourceService;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims.SourceTable;
+import io.github.admiralxy.agent.service.ingestion.VectorDocumentWriter;
+import io.github.admiralxy.agent.service.provider.RagConfluenceOptions;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import io.github.admiralxy.agent.service.provider.RagProviderAuth;
+import io.github.admiralxy.agent.service.provider.impl.ConfluenceRagContentProvider;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConfluenceSourceServiceImpl implements ConfluenceSourceService {
+
+    private static final String SOURCE_NOT_FOUND = "Confluence source not found";
+    private static final String SYNC_IN_PROGRESS = "Confluence source sync is already in progress";
+
+    private final ConfluenceSourceRepository confluenceSourceRepository;
+    private final ConfluenceRagContentProvider confluenceRagContentProvider;
+    private final IngestionPipeline ingestionPipeline;
+    private final VectorDocumentWriter vectorDocumentWriter;
+    private final SourceSyncClaims sourceSyncClaims;
+
+    @Override
+    public Flux<Integer> index(String spaceId, String docId, RagContentRequest request) {
+        return confluenceRagContentProvider.listPages(request)
+                .flatMapMany(pages -> ingestionPipeline.replace(
+                                meta(spaceId, docId),
+                                confluenceRagContentProvider.toChunks(request, pages)
+                        )
+                        .concatWith(Mono.<Integer>fromRunnable(() -> register(spaceId, docId, request, pages))
+                                .subscribeOn(Schedulers.boundedElastic())));
+    }
+
+    @Override
+    public Flux<Integer> sync(UUID sourceId) {
+        ConfluenceSourceEntity source = confluenceSourceRepository.findById(sourceId)
+                .orElseThrow(() -> new IllegalArgumentException(SOURCE_NOT_FOUND));
+        return sourceSyncClaims.exclusive(SourceTable.CONFLUENCE, sourceId, () -> {
+            RagContentRequest request = toRequest(source);
+            return confluenceRagContentProvider.listPages(request)
+                    .flatMapMany(pages -> applyChanges(source, request, pages));
+        }, () -> new IllegalStateException(SYNC_IN_PROGRESS))
+                .contextWrite(IngestionMetrics.scope(ProviderType.CONFLUENCE, source.getSpaceId().toString()));
+    }
+
+    @Override
+    public int syncAll() {
+        int synced = 0;
+        for (ConfluenceSourceEntity source : confluenceSourceRepository.findAll()) {
+            try {
+                sync(source.getId()).blockLast();
+                synced++;
+            } catch (RuntimeException e) {
+                log.warn("Confluence source sync failed: {}", source.getId(), e);
+            }
+        }
+        return synced;
+    }
+
+    @Override
+    public List<ConfluenceSource> getSources(UUID spaceId) {
+        return confluenceSourceRepository.findAllBySpaceIdOrderByCreatedAtAsc(spaceId).stream()
+                .map(this::toConfluenceSource)
+                .toList();
+    }
+
+    @Override
+    public void unregister(String spaceId, String docId) {
+        confluenceSourceRepository.deleteBySpaceIdAndDocId(UUID.fromString(spaceId), docId);
+    }
+
+    private Flux<Integer> applyChanges(ConfluenceSourceEntity source, RagContentRequest request,
+                                       List<ConfluencePage> pages) {
+        String spaceId = source.getSpaceId().toString();
+        Map<String, Integer> indexed = source.getPageVersions();
+        List<ConfluencePage> changed = pages.stream()
+                .filter(page -> !Objects.equals(indexed.get(page.id()), page.version()))
+                .toList();
+        Set<String> current = pages.stream().map(ConfluencePage::id).collect(Collectors.toSet());
+        List<String> stale = new ArrayList<>(changed.stream().map(ConfluencePage::id).toList());
+        indexed.keySet().stream()
+                .filter(pageId -> !current.contains(pageId))
+                .forEach(stale::add);
+
+        return Mono.<Integer>fromRunnable(() -> vectorDocumentWriter.deletePages(spaceId, source.getDocId(), stale))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenMany(ingestionPipeline.ingest(
+                        meta(spaceId, source.getDocId()),
+                        confluenceRagContentProvider.toChunks(request, changed)
+                ))
+                .concatWith(Mono.<Integer>fromRunnable(() -> updatePages(source, pages))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private void register(String spaceId, String docId, RagContentRequest request, List<ConfluencePage> pages) {
+        ConfluenceSourceEntity source = confluenceSourceRepository.findBySpaceIdAndDocId(UUID.fromString(spaceId), docId)
+                .orElseGet(ConfluenceSourceEntity::new);
+        RagConfluenceOptions options = request.confluence();
+        source.setSpaceId(UUID.fromString(spaceId));
+        source.setDocId(docId);
+        source.setUrl(request.text());
+        source.setSpaceKey(options == null ? null : options.spaceKey());
+        source.setDescendants(options != null && options.descendants());
+        source.setBatch(request.batch());
+        source.setLogin(request.auth() == null ? null : request.auth().login());
+        source.setPassword(request.auth() == null ? null : request.auth().password());
+        updatePages(source, pages);
+    }
+
+    private void updatePages(ConfluenceSourceEntity source, List<ConfluencePage> pages) {
+        source.getPageVersions().clear();
+        pages.forEach(page -> source.getPageVersions().put(page.id(), page.version()));
+        source.setSyncedAt(Instant.now());
+        confluenceSourceRepository.save(source);
+    }
+
+    private Map<String, Object> meta(String spaceId, String docId) {
+        return Map.of(
+                RagMetadataKeys.SPACE, spaceId,
+                RagMetadataKeys.DOC, docId
+        );
+    }
+
+    private RagContentRequest toRequest(ConfluenceSourceEntity source) {
+        return new RagContentRequest(
+                source.getUrl(),
+                source.isBatch(),
+                null,
+                new RagProviderAuth(source.getLogin(), source.getPassword()),
+                new RagConfluenceOptions(source.getSpaceKey(), source.isDescendants())
+        );
+    }
+
+    private ConfluenceSource toConfluenceSource(ConfluenceSourceEntity source) {
+        return new ConfluenceSource(
+                source.getId(),
+                source.getSpaceId(),
+                source.getDocId(),
+                source.getUrl(),
+                source.getSpaceKey(),
+                source.isDescendants(),
+                source.getPageVersions().size(),
+                source.getSyncedAt()
+        );
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import io.github.admiralxy.agent.service.confluence.ConfluenceSourceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConfluenceSyncJob {
+
+    private final ConfluenceSourceService confluenceSourceService;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Starts syncing all sources in background, so a long sync does not hold a thread of the shared scheduler.
+     * A run is skipped while the previous one is still going.
+     */
+    @Scheduled(cron = "${app.confluence.sync-cron:-}")
+    public void syncAll() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Skip Confluence sync, the previous one is still running");
+            return;
+        }
+        Mono.fromCallable(confluenceSourceService::syncAll)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> running.set(false))
+                .subscribe(
+                        synced -> log.info("Synced {} Confluence sources", synced),
+                        e -> log.warn("Confluence sync failed", e)
+                );
+    }
+}
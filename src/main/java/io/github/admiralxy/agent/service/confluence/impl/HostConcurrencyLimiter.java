@@ -0,0 +1,117 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of requests in flight to the same host, whatever crawl sends them.
+ * Requests over the limit wait in line for a permit without blocking a thread.
+ */
+final class HostConcurrencyLimiter {
+
+    private final int maxInFlight;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    HostConcurrencyLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Subscribes to the request once the host has a free permit and frees the permit when the request
+     * terminates or is cancelled.
+     */
+    <T> Mono<T> limit(String host, Mono<T> request) {
+        if (maxInFlight <= 0) {
+            return request;
+        }
+        Host state = hosts.computeIfAbsent(host, ignored -> new Host(maxInFlight));
+        return Mono.usingWhen(
+                state.acquire(),
+                permit -> request,
+                permit -> Mono.fromRunnable(permit::release),
+                (permit, error) -> Mono.fromRunnable(permit::release),
+                permit -> Mono.fromRunnable(permit::release)
+        );
+    }
+
+    /**
+     * Number of requests to the host currently holding a permit.
+     */
+    int inFlight(String host) {
+        Host state = hosts.get(host);
+        return state == null ? 0 : maxInFlight - state.permits.availablePermits();
+    }
+
+    private static final class Host {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Semaphore permits;
+        private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+        private Host(int maxInFlight) {
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        private Mono<Permit> acquire() {
+            return Mono.create(sink -> {
+                Waiter waiter = new Waiter(sink, new Permit(this));
+                sink.onCancel(() -> {
+                    if (!waiter.state.compareAndSet(WAITING, CANCELLED)) {
+                        // Granted but not delivered yet, so nobody else frees the permit.
+                        waiter.permit.release();
+                    }
+                    waiters.remove(waiter);
+                });
+                waiters.add(waiter);
+                drain();
+            });
+        }
+
+        private void drain() {
+            // A waiter added after another thread found the line empty drains itself, so no permit is left unused.
+            while (!waiters.isEmpty() && permits.tryAcquire()) {
+                Waiter waiter = waiters.poll();
+                if (waiter == null || !waiter.state.compareAndSet(WAITING, GRANTED)) {
+                    permits.release();
+                    continue;
+                }
+                waiter.sink.success(waiter.permit);
+            }
+        }
+    }
+
+    private record Waiter(MonoSink<Permit> sink, Permit permit, AtomicInteger state) {
+
+        private Waiter(MonoSink<Permit> sink, Permit permit) {
+            this(sink, permit, new AtomicInteger(Host.WAITING));
+        }
+    }
+
+    private static final class Permit {
+
+        private final Host host;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Host host) {
+            this.host = host;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                host.permits.release();
+                host.drain();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Spaces requests to the same host evenly, handing out one time slot per request without blocking a thread.
+ */
+final class HostRateLimiter {
+
+    private final long intervalNanos;
+    private final LongSupplier clock;
+    private final Map<String, AtomicLong> nextSlots = new ConcurrentHashMap<>();
+
+    HostRateLimiter(double requestsPerSecond) {
+        this(requestsPerSecond, System::nanoTime);
+    }
+
+    HostRateLimiter(double requestsPerSecond, LongSupplier clock) {
+        this.intervalNanos = requestsPerSecond > 0 ? (long) (1_000_000_000L / requestsPerSecond) : 0;
+        this.clock = clock;
+    }
+
+    /**
+     * Completes once the caller may send its request to the host.
+     */
+    Mono<Void> acquire(String host) {
+        if (intervalNanos == 0) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            long delay = reserve(host);
+            return delay <= 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(delay)).then();
+        });
+    }
+
+    /**
+     * Reserves the next free slot of the host and returns how long to wait for it.
+     */
+    long reserve(String host) {
+        long now = clock.getAsLong();
+        AtomicLong nextSlot = nextSlots.computeIfAbsent(host, ignored -> new AtomicLong(now));
+        long slot = nextSlot.getAndUpdate(previous -> Math.max(previous, now) + intervalNanos);
+        return Math.max(0, slot - now);
+    }
+}
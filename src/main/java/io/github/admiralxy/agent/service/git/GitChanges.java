@@ -0,0 +1,13 @@
+package io.github.admiralxy.agent.service.git;
+
+import java.util.List;
+
+/**
+ * Changes between two commits.
+ *
+ * @param commitId commit the changes lead to
+ * @param paths paths that were added, modified or deleted
+ * @param files changed files to ingest, read lazily; the caller must close the cursor
+ */
+public record GitChanges(String commitId, List<String> paths, GitFileCursor files) {
+}
@@ -0,0 +1,4 @@
+package io.github.admiralxy.agent.service.git;
+
+public record GitFile(String path, String content) {
+}
@@ -0,0 +1,33 @@
+package io.github.admiralxy.agent.service.git;
+
+/**
+ * Lazily reads text files of a branch in path order.
+ * Holds repository resources until closed.
+ */
+public interface GitFileCursor extends AutoCloseable {
+
+    /**
+     * Commit the files are read at.
+     *
+     * @return commit ID
+     */
+    String commitId();
+
+    /**
+     * Number of candidate files, known before any content is read.
+     * Binary files are only detected while reading, so fewer files may be returned.
+     *
+     * @return number of candidate files
+     */
+    int total();
+
+    /**
+     * Reads the next text file.
+     *
+     * @return next file, or null when there are no more files
+     */
+    GitFile next();
+
+    @Override
+    void close();
+}
@@ -1,10 +1,40 @@
 package io.github.admiralxy.agent.service.git;
 
-import java.util.List;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+
+import java.util.Optional;
 
 public interface GitRepositoryService {
 
     GitRepositoryInfo getRepositoryInfo(String repositoryUrl, String login, String password);
 
-    List<String> getFileChunks(String repositoryUrl, String branch, String folder, String login, String password);
+    /**
+     * Opens a lazy cursor over text files of a branch, optionally limited to a top-level folder.
+     * Files rejected by the filter, the default excludes or the repository ignore file are skipped unread.
+     *
+     * @param repositoryUrl repository URL
+     * @param branch branch name
+     * @param folder optional top-level folder
+     * @param filter include and exclude patterns and size limit of the source
+     * @param login optional login
+     * @param password optional password
+     * @return cursor which must be closed once reading is done
+     */
+    GitFileCursor openFiles(String repositoryUrl, String branch, String folder, GitFileFilter filter, String login,
+                            String password);
+
+    /**
+     * Computes files changed on a branch since the given commit.
+     *
+     * @param repositoryUrl repository URL
+     * @param branch branch name
+     * @param folder optional top-level folder
+     * @param filter include and exclude patterns and size limit of the source
+     * @param login optional login
+     * @param password optional password
+     * @param sinceCommitId previously indexed commit
+     * @return changes since the commit, or empty when the commit is unknown and a full re-index is required
+     */
+    Optional<GitChanges> getChanges(String repositoryUrl, String branch, String folder, GitFileFilter filter,
+                                    String login, String password, String sinceCommitId);
 }
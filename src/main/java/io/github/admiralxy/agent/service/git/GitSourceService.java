@@ -0,0 +1,46 @@
+package io.github.admiralxy.agent.service.git;
+
+import io.github.admiralxy.agent.domain.GitSource;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface GitSourceService {
+
+    /**
+     * Fully index a git repository into a document and register it for incremental sync.
+     *
+     * @param spaceId space ID
+     * @param docId document ID
+     * @param request git provider request
+     * @return stream of percentages indicating progress
+     */
+    Flux<Integer> index(String spaceId, String docId, RagContentRequest request);
+
+    /**
+     * Re-index only the files changed since the last indexed commit of a registered source.
+     * Falls back to a full index when the last commit is no longer reachable.
+     *
+     * @param sourceId git source ID
+     * @return stream of percentages indicating progress
+     */
+    Flux<Integer> sync(UUID sourceId);
+
+    /**
+     * Get git sources registered in a space.
+     *
+     * @param spaceId space ID
+     * @return registered git sources
+     */
+    List<GitSource> getSources(UUID spaceId);
+
+    /**
+     * Remove the git source registration of a document, if any.
+     *
+     * @param spaceId space ID
+     * @param docId document ID
+     */
+    void unregister(String spaceId, String docId);
+}
@@ -0,0 +1,60 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.service.git.GitFile;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads files of a temporary checkout one by one and deletes the checkout on close.
+ */
+final class CheckoutFileCursor implements GitFileCursor {
+
+    private final Path checkoutRoot;
+    private final String commitId;
+    private final List<Path> files;
+    private final Iterator<Path> iterator;
+
+    CheckoutFileCursor(Path checkoutRoot, String commitId, List<Path> files) {
+        this.checkoutRoot = checkoutRoot;
+        this.commitId = commitId;
+        this.files = files;
+        this.iterator = files.iterator();
+    }
+
+    @Override
+    public String commitId() {
+        return commitId;
+    }
+
+    @Override
+    public int total() {
+        return files.size();
+    }
+
+    @Override
+    public GitFile next() {
+        while (iterator.hasNext()) {
+            Path path = iterator.next();
+            try {
+                String relativePath = checkoutRoot.relativize(path).toString().replace('\\', '/');
+                GitFile file = GitFiles.read(relativePath, Files.readAllBytes(path));
+                if (file != null) {
+                    return file;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read file: " + path, e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        Directories.deleteQuietly(checkoutRoot);
+    }
+}
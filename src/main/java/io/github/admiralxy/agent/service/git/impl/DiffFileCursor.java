@@ -0,0 +1,76 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.service.git.GitFile;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads files changed by a diff from the object database, one blob per {@link #next()} call.
+ * Only paths and object IDs of the changes are held, contents are read as files are requested.
+ */
+final class DiffFileCursor implements GitFileCursor {
+
+    private final GitMirrorCache.Lease lease;
+    private final String commitId;
+    private final GitPathRules rules;
+    private final List<ChangedFile> files;
+    private final Iterator<ChangedFile> iterator;
+
+    /**
+     * @param lease mirror lease, released when the cursor is closed
+     * @param commitId commit the files are read at
+     * @param rules rules files must pass
+     * @param files changed files in path order
+     */
+    DiffFileCursor(GitMirrorCache.Lease lease, String commitId, GitPathRules rules, List<ChangedFile> files) {
+        this.lease = lease;
+        this.commitId = commitId;
+        this.rules = rules;
+        this.files = files;
+        this.iterator = files.iterator();
+    }
+
+    @Override
+    public String commitId() {
+        return commitId;
+    }
+
+    @Override
+    public int total() {
+        return files.size();
+    }
+
+    @Override
+    public GitFile next() {
+        try {
+            while (iterator.hasNext()) {
+                ChangedFile changed = iterator.next();
+                ObjectLoader loader = lease.repository().open(changed.objectId(), Constants.OBJ_BLOB);
+                if (!rules.accepts(changed.path(), loader.getSize())) {
+                    continue;
+                }
+                GitFile file = GitFiles.read(changed.path(), loader);
+                if (file != null) {
+                    return file;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read file from git repository", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        lease.close();
+    }
+
+    record ChangedFile(String path, ObjectId objectId) {
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.service.git.GitFile;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectStream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+final class GitFiles {
+
+    private static final int BINARY_PROBE_BYTES = 1024;
+
+    private GitFiles() {
+    }
+
+    static GitFile read(String path, ObjectLoader loader) throws IOException {
+        try (ObjectStream stream = loader.openStream()) {
+            byte[] head = stream.readNBytes(BINARY_PROBE_BYTES);
+            if (isProbablyBinary(head)) {
+                return null;
+            }
+            byte[] tail = stream.readAllBytes();
+            byte[] bytes = Arrays.copyOf(head, head.length + tail.length);
+            System.arraycopy(tail, 0, bytes, head.length, tail.length);
+            return read(path, bytes);
+        }
+    }
+
+    static GitFile read(String path, byte[] bytes) {
+        if (isProbablyBinary(bytes)) {
+            return null;
+        }
+        return new GitFile(path, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static boolean isProbablyBinary(byte[] bytes) {
+        int limit = Math.min(bytes.length, BINARY_PROBE_BYTES);
+        for (int i = 0; i < limit; i++) {
+            if (bytes[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
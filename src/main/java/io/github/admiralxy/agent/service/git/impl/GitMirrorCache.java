@@ -0,0 +1,275 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.config.properties.GitProperties;
+import io.github.admiralxy.agent.service.ingestion.ContentHashes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Local bare mirrors of git repositories keyed by repository URL.
+ * A mirror is fetched on every access, concurrent callers with the same credentials share one fetch,
+ * and least recently used mirrors are evicted once the cache outgrows its size limit.
+ * <p>
+ * Fetches of a mirror are serialized, but run while other callers read it: fetching only adds objects and moves refs,
+ * so an open lease keeps reading the commits it resolved. A long-running read therefore never holds up another caller,
+ * only eviction waits for all leases of a mirror to close.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GitMirrorCache {
+
+    private static final String ORIGIN = "origin";
+
+    private final GitProperties properties;
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * Brings the mirror of a repository up to date and runs the callback against it.
+     * The mirror cannot be evicted while the callback runs.
+     *
+     * @param repositoryUrl repository URL
+     * @param accessKey identifies the credentials used, fetches are only shared between equal keys
+     * @param transport applies credentials and transport settings to clone and fetch commands
+     * @param callback action reading the mirror
+     * @return callback result
+     */
+    public <T> T withMirror(String repositoryUrl, String accessKey, Consumer<TransportCommand<?, ?>> transport,
+                            MirrorCallback<T> callback) {
+        try (Lease lease = acquire(repositoryUrl, accessKey, transport)) {
+            return callback.apply(lease.repository());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read git mirror", e);
+        }
+    }
+
+    /**
+     * Brings the mirror of a repository up to date and keeps it readable until the lease is closed.
+     * Unlike {@link #withMirror}, the lease may be closed from another thread, so it can back a lazy stream.
+     *
+     * @param repositoryUrl repository URL
+     * @param accessKey identifies the credentials used, fetches are only shared between equal keys
+     * @param transport applies credentials and transport settings to clone and fetch commands
+     * @return lease holding the open mirror
+     */
+    public Lease acquire(String repositoryUrl, String accessKey, Consumer<TransportCommand<?, ?>> transport) {
+        String key = ContentHashes.sha256Hex(repositoryUrl);
+        Mirror mirror = mirrors.computeIfAbsent(key, ignored -> new Mirror());
+        Path directory = root().resolve(key);
+
+        long generation = mirror.generation;
+        long stamp = mirror.lock.readLock();
+        mirror.fetchLock.lock();
+        try {
+            boolean fetchedWhileWaiting = mirror.generation != generation && Objects.equals(mirror.accessKey, accessKey);
+            if (!fetchedWhileWaiting || !Files.isDirectory(directory)) {
+                refresh(repositoryUrl, directory, transport);
+                mirror.accessKey = accessKey;
+                mirror.size = Directories.size(directory);
+                mirror.generation++;
+            }
+            touch(directory);
+        } catch (RuntimeException e) {
+            mirror.lock.unlockRead(stamp);
+            throw e;
+        } finally {
+            mirror.fetchLock.unlock();
+        }
+
+        try {
+            return new Lease(key, mirror, stamp, Git.open(directory.toFile()));
+        } catch (IOException e) {
+            mirror.lock.unlockRead(stamp);
+            throw new IllegalStateException("Failed to open git mirror", e);
+        }
+    }
+
+    private void refresh(String repositoryUrl, Path directory, Consumer<TransportCommand<?, ?>> transport) {
+        if (Files.isDirectory(directory)) {
+            fetch(directory, transport);
+        } else {
+            cloneMirror(repositoryUrl, directory, transport);
+        }
+    }
+
+    private void cloneMirror(String repositoryUrl, Path directory, Consumer<TransportCommand<?, ?>> transport) {
+        try {
+            Files.createDirectories(directory.getParent());
+            CloneCommand command = Git.cloneRepository()
+                    .setURI(repositoryUrl)
+                    .setDirectory(directory.toFile())
+                    .setMirror(true);
+            transport.accept(command);
+            command.call().close();
+        } catch (GitAPIException | IOException e) {
+            Directories.deleteQuietly(directory);
+            throw new IllegalStateException("Failed to clone git repository", e);
+        }
+    }
+
+    private void fetch(Path directory, Consumer<TransportCommand<?, ?>> transport) {
+        try (Git git = Git.open(directory.toFile())) {
+            FetchCommand command = git.fetch()
+                    .setRemote(ORIGIN)
+                    .setRemoveDeletedRefs(true);
+            transport.accept(command);
+            command.call();
+        } catch (GitAPIException | IOException e) {
+            throw new IllegalStateException("Failed to fetch git repository", e);
+        }
+    }
+
+    private void evictIfNeeded(String currentKey) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long maxBytes = properties.getMirrorMaxSize().toBytes();
+            List<Path> directories = listMirrors();
+            long total = directories.stream()
+                    .mapToLong(directory -> sizeOf(directory.getFileName().toString(), directory))
+                    .sum();
+            for (Path directory : directories) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                String key = directory.getFileName().toString();
+                if (key.equals(currentKey)) {
+                    continue;
+                }
+                Mirror mirror = mirrors.computeIfAbsent(key, ignored -> new Mirror());
+                long stamp = mirror.lock.tryWriteLock();
+                if (stamp == 0) {
+                    continue;
+                }
+                try {
+                    long size = sizeOf(key, directory);
+                    Directories.deleteQuietly(directory);
+                    mirror.size = -1;
+                    total -= size;
+                    log.info("Evicted git mirror {} ({} bytes)", key, size);
+                } finally {
+                    mirror.lock.unlockWrite(stamp);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private List<Path> listMirrors() {
+        Path root = root();
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(root)) {
+            return stream
+                    .filter(Files::isDirectory)
+                    .sorted(Comparator.comparing(GitMirrorCache::lastAccess))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to list git mirrors in {}", root, e);
+            return List.of();
+        }
+    }
+
+    private long sizeOf(String key, Path directory) {
+        Mirror mirror = mirrors.computeIfAbsent(key, ignored -> new Mirror());
+        if (mirror.size < 0) {
+            mirror.size = Directories.size(directory);
+        }
+        return mirror.size;
+    }
+
+    private Path root() {
+        return Path.of(properties.getMirrorDirectory()).toAbsolutePath().normalize();
+    }
+
+    private static void touch(Path directory) {
+        try {
+            Files.setLastModifiedTime(directory, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Access time only affects eviction order.
+        }
+    }
+
+    private static FileTime lastAccess(Path directory) {
+        try {
+            return Files.getLastModifiedTime(directory);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    @FunctionalInterface
+    public interface MirrorCallback<T> {
+
+        T apply(Repository repository) throws IOException;
+    }
+
+    /**
+     * Open mirror, readable until closed.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final String key;
+        private final Mirror mirror;
+        private final long stamp;
+        private final Git git;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(String key, Mirror mirror, long stamp, Git git) {
+            this.key = key;
+            this.mirror = mirror;
+            this.stamp = stamp;
+            this.git = git;
+        }
+
+        public Repository repository() {
+            return git.getRepository();
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            git.close();
+            mirror.lock.unlockRead(stamp);
+            evictIfNeeded(key);
+        }
+    }
+
+    private static final class Mirror {
+
+        // Stamped rather than reentrant, so a lease taken on one thread can be released on another.
+        private final StampedLock lock = new StampedLock();
+        private final ReentrantLock fetchLock = new ReentrantLock();
+        private volatile long generation;
+        private volatile String accessKey;
+        private volatile long size = -1;
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.config.properties.GitProperties;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which files of a source are indexed: default excludes, the repository ignore file,
+ * per-source include and exclude patterns, and the size limit. All patterns use {@code .gitignore} syntax.
+ */
+final class GitPathRules {
+
+    private final IgnoreNode excludes;
+    private final List<FastIgnoreRule> includes;
+    private final long maxFileSize;
+
+    private GitPathRules(IgnoreNode excludes, List<FastIgnoreRule> includes, long maxFileSize) {
+        this.excludes = excludes;
+        this.includes = includes;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Builds rules for a commit, reading the ignore file from the root of its tree.
+     */
+    static GitPathRules load(Repository repository, ObjectId commit, GitFileFilter filter, GitProperties properties)
+            throws IOException {
+        RevTree tree;
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            tree = revWalk.parseCommit(commit).getTree();
+        }
+        try (TreeWalk ignoreWalk = TreeWalk.forPath(repository, properties.getIgnoreFile(), tree)) {
+            if (ignoreWalk == null || ignoreWalk.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
+                return create(filter, properties, null);
+            }
+            byte[] content = repository.open(ignoreWalk.getObjectId(0), Constants.OBJ_BLOB).getBytes();
+            return create(filter, properties, new ByteArrayInputStream(content));
+        }
+    }
+
+    /**
+     * Builds rules from an already opened ignore file.
+     *
+     * @param ignoreFile content of the repository ignore file, or null when there is none
+     */
+    static GitPathRules create(GitFileFilter filter, GitProperties properties, InputStream ignoreFile)
+            throws IOException {
+        // Later rules win, so repository and per-source patterns can re-include a default exclude with "!".
+        List<FastIgnoreRule> excludeRules = new ArrayList<>(toRules(properties.getDefaultExcludes()));
+        if (ignoreFile != null) {
+            IgnoreNode ignoreNode = new IgnoreNode();
+            ignoreNode.parse(ignoreFile);
+            excludeRules.addAll(ignoreNode.getRules());
+        }
+        excludeRules.addAll(toRules(filter.exclude()));
+
+        long maxFileSize = filter.maxFileSize() != null
+                ? filter.maxFileSize()
+                : properties.getMaxFileSize().toBytes();
+        return new GitPathRules(new IgnoreNode(excludeRules), toRules(filter.include()), maxFileSize);
+    }
+
+    /**
+     * Checks a file path relative to the repository root, including every parent directory.
+     */
+    boolean accepts(String path, long size) {
+        int separator = path.indexOf('/');
+        while (separator >= 0) {
+            if (isExcluded(path.substring(0, separator), true)) {
+                return false;
+            }
+            separator = path.indexOf('/', separator + 1);
+        }
+        return acceptsFile(path, size);
+    }
+
+    /**
+     * Tree filter which prunes excluded directories and drops rejected files before their blobs are opened.
+     */
+    TreeFilter treeFilter() {
+        return new RulesTreeFilter();
+    }
+
+    private boolean acceptsFile(String path, long size) {
+        if (size > maxFileSize || isExcluded(path, false)) {
+            return false;
+        }
+        return includes.isEmpty() || includes.stream().anyMatch(rule -> rule.isMatch(path, false));
+    }
+
+    private boolean isExcluded(String path, boolean directory) {
+        return Boolean.TRUE.equals(excludes.checkIgnored(path, directory));
+    }
+
+    private static List<FastIgnoreRule> toRules(List<String> patterns) {
+        return patterns.stream()
+                .filter(StringUtils::isNotBlank)
+                .map(pattern -> new FastIgnoreRule(pattern.strip()))
+                .filter(rule -> !rule.isEmpty())
+                .toList();
+    }
+
+    private final class RulesTreeFilter extends TreeFilter {
+
+        @Override
+        public boolean include(TreeWalk walker) throws IOException {
+            String path = walker.getPathString();
+            if (walker.isSubtree()) {
+                return !isExcluded(path, true);
+            }
+            if (walker.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
+                return true;
+            }
+            long size = walker.getObjectReader().getObjectSize(walker.getObjectId(0), Constants.OBJ_BLOB);
+            return acceptsFile(path, size);
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return false;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return this;
+        }
+    }
+}
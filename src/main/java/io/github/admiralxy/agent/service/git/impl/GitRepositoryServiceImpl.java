@@ -1,16 +1,28 @@
 package io.github.admiralxy.agent.service.git.impl;
 
 import io.github.admiralxy.agent.config.AiHttpClientBuilderFactory;
+import io.github.admiralxy.agent.config.properties.GitProperties;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import io.github.admiralxy.agent.service.git.GitChanges;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
 import io.github.admiralxy.agent.service.git.GitRepositoryInfo;
 import io.github.admiralxy.agent.service.git.GitRepositoryService;
+import io.github.admiralxy.agent.service.git.impl.DiffFileCursor.ChangedFile;
+import io.github.admiralxy.agent.service.ingestion.ContentHashes;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
-import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LsRemoteCommand;
 import org.eclipse.jgit.api.TransportCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.TransportHttp;
@@ -19,20 +31,30 @@ import org.eclipse.jgit.transport.http.HttpConnection;
 import org.eclipse.jgit.transport.http.HttpConnectionFactory;
 import org.eclipse.jgit.transport.http.JDKHttpConnectionFactory;
 import org.eclipse.jgit.transport.http.NoCheckX509TrustManager;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.springframework.stereotype.Service;
 
 import javax.net.ssl.TrustManager;
 import java.io.IOException;
 import java.net.Proxy;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 @Service
@@ -42,67 +64,184 @@ public class GitRepositoryServiceImpl implements GitRepositoryService {
     private static final String HEADS_PREFIX = "refs/heads/";
     private static final HttpConnectionFactory INSECURE_HTTP_CONNECTION_FACTORY = new InsecureHttpConnectionFactory();
     private final AiHttpClientBuilderFactory httpClientBuilderFactory;
+    private final GitMirrorCache gitMirrorCache;
+    private final GitProperties gitProperties;
+    private final Map<String, CachedBranches> branchesCache = new ConcurrentHashMap<>();
 
     @Override
     public GitRepositoryInfo getRepositoryInfo(String repositoryUrl, String login, String password) {
         validateRepositoryUrl(repositoryUrl);
         CredentialsProvider credentialsProvider = credentialsProvider(login, password);
 
-        List<String> branches = loadBranches(repositoryUrl, credentialsProvider);
-        Path tempDir = null;
+        List<String> branches = loadBranches(repositoryUrl, login, password, credentialsProvider);
+        List<String> folders = gitMirrorCache.withMirror(
+                repositoryUrl,
+                accessKey(login, password),
+                command -> configure(command, credentialsProvider),
+                this::listTopLevelFolders
+        );
+        return new GitRepositoryInfo(branches, folders);
+    }
+
+    @Override
+    public GitFileCursor openFiles(String repositoryUrl, String branch, String folder, GitFileFilter filter,
+                                   String login, String password) {
+        validateRepositoryUrl(repositoryUrl);
+        validateBranch(branch);
+        validateFolder(folder);
+
+        CredentialsProvider credentialsProvider = credentialsProvider(login, password);
+        GitMirrorCache.Lease lease = gitMirrorCache.acquire(
+                repositoryUrl,
+                accessKey(login, password),
+                command -> configure(command, credentialsProvider)
+        );
         try {
-            tempDir = Files.createTempDirectory("rag-git-info-");
-            cloneRepository(repositoryUrl, null, tempDir, credentialsProvider);
-            List<String> folders = listTopLevelFolders(tempDir);
-            return new GitRepositoryInfo(branches, folders);
+            ObjectId head = resolveBranch(lease.repository(), branch);
+            GitPathRules rules = GitPathRules.load(lease.repository(), head, filter, gitProperties);
+            if (gitProperties.getReadMode() == GitProperties.ReadMode.OBJECT_DATABASE) {
+                return ObjectDatabaseFileCursor.open(lease, head, folder, rules);
+            }
+            try (lease) {
+                return openCheckout(lease.repository(), branch, folder, head, rules);
+            }
         } catch (IOException e) {
-            throw new IllegalStateException("Failed to inspect git repository", e);
-        } finally {
-            deleteDirectoryQuietly(tempDir);
+            lease.close();
+            throw new IllegalStateException("Failed to load files from git repository", e);
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
         }
     }
 
     @Override
-    public List<String> getFileChunks(String repositoryUrl, String branch, String folder, String login, String password) {
+    public Optional<GitChanges> getChanges(String repositoryUrl, String branch, String folder, GitFileFilter filter,
+                                           String login, String password, String sinceCommitId) {
         validateRepositoryUrl(repositoryUrl);
-        if (StringUtils.isBlank(branch)) {
-            throw new IllegalArgumentException("Branch is required for git provider");
-        }
+        validateBranch(branch);
         validateFolder(folder);
+        if (StringUtils.isBlank(sinceCommitId)) {
+            return Optional.empty();
+        }
 
         CredentialsProvider credentialsProvider = credentialsProvider(login, password);
-        Path tempDir = null;
+        GitMirrorCache.Lease lease = gitMirrorCache.acquire(
+                repositoryUrl,
+                accessKey(login, password),
+                command -> configure(command, credentialsProvider)
+        );
         try {
-            tempDir = Files.createTempDirectory("rag-git-doc-");
-            cloneRepository(repositoryUrl, branch, tempDir, credentialsProvider);
+            Optional<GitChanges> changes = diff(lease, branch, folder, filter, sinceCommitId);
+            if (changes.isEmpty()) {
+                lease.close();
+            }
+            return changes;
+        } catch (IOException e) {
+            lease.close();
+            throw new IllegalStateException("Failed to load changes from git repository", e);
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
 
+    /**
+     * Lists changed paths eagerly and leaves reading the changed files to the returned cursor,
+     * which takes over the lease.
+     */
+    private Optional<GitChanges> diff(GitMirrorCache.Lease lease, String branch, String folder, GitFileFilter filter,
+                                      String sinceCommitId) throws IOException {
+        Repository repository = lease.repository();
+        ObjectId head = resolveBranch(repository, branch);
+        ObjectId since = ObjectId.isId(sinceCommitId) ? ObjectId.fromString(sinceCommitId) : null;
+        if (since == null || !repository.getObjectDatabase().has(since)) {
+            // History was rewritten or the commit was never fetched, so nothing to diff against.
+            return Optional.empty();
+        }
+        GitPathRules rules = GitPathRules.load(repository, head, filter, gitProperties);
+        if (since.equals(head)) {
+            return Optional.of(changes(lease, head, List.of(), rules, List.of()));
+        }
+
+        try (RevWalk revWalk = new RevWalk(repository);
+             DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            formatter.setRepository(repository);
+            formatter.setDetectRenames(false);
+            if (StringUtils.isNotBlank(folder)) {
+                formatter.setPathFilter(PathFilter.create(folder));
+            }
+            RevTree sinceTree = revWalk.parseCommit(since).getTree();
+            RevTree headTree = revWalk.parseCommit(head).getTree();
+            if (!Objects.equals(ignoreFileId(repository, sinceTree), ignoreFileId(repository, headTree))) {
+                return Optional.empty();
+            }
+            List<DiffEntry> entries = formatter.scan(sinceTree, headTree);
+
+            Set<String> paths = new TreeSet<>();
+            List<ChangedFile> files = new ArrayList<>();
+            for (DiffEntry entry : entries) {
+                if (entry.getChangeType() != DiffEntry.ChangeType.ADD) {
+                    paths.add(entry.getOldPath());
+                }
+                if (entry.getChangeType() != DiffEntry.ChangeType.DELETE) {
+                    paths.add(entry.getNewPath());
+                    if (entry.getNewMode().getObjectType() == Constants.OBJ_BLOB) {
+                        files.add(new ChangedFile(entry.getNewPath(), entry.getNewId().toObjectId()));
+                    }
+                }
+            }
+            files.sort(Comparator.comparing(ChangedFile::path));
+            return Optional.of(changes(lease, head, List.copyOf(paths), rules, files));
+        }
+    }
+
+    private static GitChanges changes(GitMirrorCache.Lease lease, ObjectId head, List<String> paths, GitPathRules rules,
+                                      List<ChangedFile> files) {
+        return new GitChanges(head.name(), paths, new DiffFileCursor(lease, head.name(), rules, files));
+    }
+
+    private GitFileCursor openCheckout(Repository repository, String branch, String folder, ObjectId head,
+                                       GitPathRules rules) throws IOException {
+        Path tempDir = Files.createTempDirectory("rag-git-doc-");
+        try {
+            checkout(repository, branch, tempDir);
             Path repositoryRoot = tempDir;
             Path sourceRoot = resolveSourceRoot(repositoryRoot, folder);
             try (Stream<Path> stream = Files.walk(sourceRoot)) {
-                return stream
+                List<Path> files = stream
                         .filter(Files::isRegularFile)
                         .filter(path -> !isInsideGitDirectory(path, repositoryRoot))
+                        .filter(path -> rules.accepts(relativePath(repositoryRoot, path), fileSize(path)))
                         .sorted(Comparator.comparing(path -> repositoryRoot.relativize(path).toString()))
-                        .map(path -> toChunk(path, repositoryRoot))
-                        .filter(StringUtils::isNotBlank)
                         .toList();
+                return new CheckoutFileCursor(repositoryRoot, head.name(), files);
             }
-        } catch (IOException e) {
-            throw new IllegalStateException("Failed to load files from git repository", e);
-        } finally {
-            deleteDirectoryQuietly(tempDir);
+        } catch (IOException | RuntimeException e) {
+            Directories.deleteQuietly(tempDir);
+            throw e;
+        }
+    }
+
+    private List<String> loadBranches(String repositoryUrl, String login, String password,
+                                      CredentialsProvider credentialsProvider) {
+        String key = ContentHashes.sha256Hex(repositoryUrl, accessKey(login, password));
+        Instant now = Instant.now();
+        CachedBranches cached = branchesCache.get(key);
+        if (cached != null && cached.expiresAt().isAfter(now)) {
+            return cached.branches();
         }
+        branchesCache.values().removeIf(entry -> !entry.expiresAt().isAfter(now));
+        List<String> branches = lsRemoteBranches(repositoryUrl, credentialsProvider);
+        branchesCache.put(key, new CachedBranches(branches, Instant.now().plus(gitProperties.getBranchesTtl())));
+        return branches;
     }
 
-    private List<String> loadBranches(String repositoryUrl, CredentialsProvider credentialsProvider) {
+    private List<String> lsRemoteBranches(String repositoryUrl, CredentialsProvider credentialsProvider) {
         try {
             LsRemoteCommand command = Git.lsRemoteRepository()
                     .setHeads(true)
                     .setRemote(repositoryUrl);
-            applyTransportConfig(command);
-            if (credentialsProvider != null) {
-                command.setCredentialsProvider(credentialsProvider);
-            }
+            configure(command, credentialsProvider);
             return command.call().stream()
                     .map(Ref::getName)
                     .filter(name -> name.startsWith(HEADS_PREFIX))
@@ -114,36 +253,46 @@ public class GitRepositoryServiceImpl implements GitRepositoryService {
         }
     }
 
-    private void cloneRepository(String repositoryUrl, String branch, Path tempDir,
-                                 CredentialsProvider credentialsProvider) {
+    private void checkout(Repository mirror, String branch, Path directory) {
         try {
-            CloneCommand command = Git.cloneRepository()
-                    .setURI(repositoryUrl)
-                    .setDirectory(tempDir.toFile())
+            // Local clone from the mirror, no network round trip.
+            Git.cloneRepository()
+                    .setURI(mirror.getDirectory().toURI().toString())
+                    .setDirectory(directory.toFile())
                     .setCloneAllBranches(false)
-                    .setDepth(1);
-            applyTransportConfig(command);
-            if (StringUtils.isNotBlank(branch)) {
-                command.setBranch(branch);
-            }
-            if (credentialsProvider != null) {
-                command.setCredentialsProvider(credentialsProvider);
-            }
-            command.call().close();
+                    .setBranch(branch)
+                    .call()
+                    .close();
         } catch (GitAPIException e) {
-            throw new IllegalStateException("Failed to clone git repository", e);
+            throw new IllegalStateException("Failed to check out git repository", e);
         }
     }
 
-    private List<String> listTopLevelFolders(Path root) throws IOException {
-        try (Stream<Path> stream = Files.list(root)) {
-            return stream
-                    .filter(Files::isDirectory)
-                    .filter(path -> !".git".equals(path.getFileName().toString()))
-                    .map(path -> path.getFileName().toString())
-                    .sorted()
-                    .toList();
+    private ObjectId resolveBranch(Repository repository, String branch) throws IOException {
+        ObjectId head = repository.resolve(HEADS_PREFIX + branch);
+        if (head == null) {
+            throw new IllegalArgumentException("Branch not found: " + branch);
+        }
+        return head;
+    }
+
+    private List<String> listTopLevelFolders(Repository repository) throws IOException {
+        ObjectId head = repository.resolve(Constants.HEAD + "^{tree}");
+        if (head == null) {
+            return List.of();
+        }
+        List<String> folders = new ArrayList<>();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(head);
+            treeWalk.setRecursive(false);
+            while (treeWalk.next()) {
+                if (treeWalk.isSubtree()) {
+                    folders.add(treeWalk.getNameString());
+                }
+            }
         }
+        folders.sort(Comparator.naturalOrder());
+        return folders;
     }
 
     private void validateRepositoryUrl(String repositoryUrl) {
@@ -152,6 +301,12 @@ public class GitRepositoryServiceImpl implements GitRepositoryService {
         }
     }
 
+    private void validateBranch(String branch) {
+        if (StringUtils.isBlank(branch)) {
+            throw new IllegalArgumentException("Branch is required for git provider");
+        }
+    }
+
     private void validateFolder(String folder) {
         if (StringUtils.isBlank(folder)) {
             return;
@@ -172,51 +327,27 @@ public class GitRepositoryServiceImpl implements GitRepositoryService {
         return folderPath;
     }
 
-    private String toChunk(Path filePath, Path repositoryRoot) {
+    private String relativePath(Path root, Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    private long fileSize(Path path) {
         try {
-            byte[] bytes = Files.readAllBytes(filePath);
-            if (isProbablyBinary(bytes)) {
-                return StringUtils.EMPTY;
-            }
-            String relativePath = repositoryRoot.relativize(filePath).toString().replace('\\', '/');
-            String content = new String(bytes, StandardCharsets.UTF_8);
-            return "File: " + relativePath + "\n\n" + content;
+            return Files.size(path);
         } catch (IOException e) {
-            throw new IllegalStateException("Failed to read file: " + filePath, e);
+            throw new IllegalStateException("Failed to read file size: " + path, e);
         }
     }
 
-    private boolean isInsideGitDirectory(Path filePath, Path root) {
-        Path relative = root.relativize(filePath);
-        return relative.getNameCount() > 0 && ".git".equals(relative.getName(0).toString());
-    }
-
-    private boolean isProbablyBinary(byte[] bytes) {
-        int limit = Math.min(bytes.length, 1024);
-        for (int i = 0; i < limit; i++) {
-            if (bytes[i] == 0) {
-                return true;
-            }
+    private ObjectId ignoreFileId(Repository repository, RevTree tree) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(repository, gitProperties.getIgnoreFile(), tree)) {
+            return treeWalk == null ? null : treeWalk.getObjectId(0);
         }
-        return false;
     }
 
-    private void deleteDirectoryQuietly(Path directory) {
-        if (directory == null || !Files.exists(directory)) {
-            return;
-        }
-        try (Stream<Path> walk = Files.walk(directory)) {
-            walk.sorted(Comparator.reverseOrder())
-                    .forEach(path -> {
-                        try {
-                            Files.deleteIfExists(path);
-                        } catch (IOException ignored) {
-                            // Cleanup failure should not break business flow.
-                        }
-                    });
-        } catch (IOException ignored) {
-            // Cleanup failure should not break business flow.
-        }
+    private boolean isInsideGitDirectory(Path filePath, Path root) {
+        Path relative = root.relativize(filePath);
+        return relative.getNameCount() > 0 && ".git".equals(relative.getName(0).toString());
     }
 
     private CredentialsProvider credentialsProvider(String login, String password) {
@@ -226,11 +357,17 @@ public class GitRepositoryServiceImpl implements GitRepositoryService {
         return new UsernamePasswordCredentialsProvider(login, StringUtils.defaultString(password));
     }
 
-    private void applyTransportConfig(TransportCommand<?, ?> command) {
-        if (!httpClientBuilderFactory.isInsecureSslEnabled()) {
-            return;
+    private String accessKey(String login, String password) {
+        return ContentHashes.sha256Hex(StringUtils.defaultString(login), StringUtils.defaultString(password));
+    }
+
+    private void configure(TransportCommand<?, ?> command, CredentialsProvider credentialsProvider) {
+        if (credentialsProvider != null) {
+            command.setCredentialsProvider(credentialsProvider);
+        }
+        if (httpClientBuilderFactory.isInsecureSslEnabled()) {
+            command.setTransportConfigCallback(this::configureTransport);
         }
-        command.setTransportConfigCallback(this::configureTransport);
     }
 
     private void configureTransport(Transport transport) {
@@ -239,6 +376,9 @@ public class GitRepositoryServiceImpl implements GitRepositoryService {
         }
     }
 
+    private record CachedBranches(List<String> branches, Instant expiresAt) {
+    }
+
     private static final class InsecureHttpConnectionFactory implements HttpConnectionFactory {
 
         private static final TrustManager[] TRUST_ALL_MANAGERS = new TrustManager[]{new NoCheckX509TrustManager()};
@@ -0,0 +1,167 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import io.github.admiralxy.agent.domain.GitSource;
+import io.github.admiralxy.agent.entity.GitSourceEntity;
+import io.github.admiralxy.agent.repository.GitSourceRepository;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.git.GitChanges;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
+import io.github.admiralxy.agent.service.git.GitRepositoryService;
+import io.github.admiralxy.agent.service.git.GitSourceService;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.ingestion.IngestionStage;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims.SourceTable;
+import io.github.admiralxy.agent.service.ingestion.VectorDocumentWriter;
+import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import io.github.admiralxy.agent.service.provider.RagGitOptions;
+import io.github.admiralxy.agent.service.provider.RagProviderAuth;
+import io.github.admiralxy.agent.service.provider.impl.GitRagContentProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@RequiredArgsConstructor
+public class GitSourceServiceImpl implements GitSourceService {
+
+    private static final String SOURCE_NOT_FOUND = "Git source not found";
+    private static final String SYNC_IN_PROGRESS = "Git source sync is already in progress";
+
+    private final GitSourceRepository gitSourceRepository;
+    private final GitRepositoryService gitRepositoryService;
+    private final GitRagContentProvider gitRagContentProvider;
+    private final IngestionPipeline ingestionPipeline;
+    private final VectorDocumentWriter vectorDocumentWriter;
+    private final IngestionMetrics ingestionMetrics;
+    private final SourceSyncClaims sourceSyncClaims;
+
+    @Override
+    public Flux<Integer> index(String spaceId, String docId, RagContentRequest request) {
+        return Flux.defer(() -> {
+            AtomicReference<String> commitId = new AtomicReference<>();
+            Flux<RagChunk> chunks = gitRagContentProvider.resolveChunks(request)
+                    .doOnNext(chunk -> commitId.set((String) chunk.metadata().get(RagMetadataKeys.COMMIT)));
+            return ingestionPipeline.replace(meta(spaceId, docId), chunks)
+                    .concatWith(Mono.<Integer>fromRunnable(() -> register(spaceId, docId, request, commitId.get()))
+                            .subscribeOn(Schedulers.boundedElastic()));
+        });
+    }
+
+    @Override
+    public Flux<Integer> sync(UUID sourceId) {
+        GitSourceEntity source = gitSourceRepository.findById(sourceId)
+                .orElseThrow(() -> new IllegalArgumentException(SOURCE_NOT_FOUND));
+        return sourceSyncClaims.exclusive(SourceTable.GIT, sourceId, () -> syncChanges(source),
+                        () -> new IllegalStateException(SYNC_IN_PROGRESS))
+                .contextWrite(IngestionMetrics.scope(ProviderType.GIT, source.getSpaceId().toString()));
+    }
+
+    @Override
+    public List<GitSource> getSources(UUID spaceId) {
+        return gitSourceRepository.findAllBySpaceIdOrderByCreatedAtAsc(spaceId).stream()
+                .map(this::toGitSource)
+                .toList();
+    }
+
+    @Override
+    public void unregister(String spaceId, String docId) {
+        gitSourceRepository.deleteBySpaceIdAndDocId(UUID.fromString(spaceId), docId);
+    }
+
+    private Flux<Integer> syncChanges(GitSourceEntity source) {
+        return ingestionMetrics.time(IngestionStage.FETCH, Mono.fromCallable(() -> gitRepositoryService.getChanges(
+                        source.getUrl(),
+                        source.getBranch(),
+                        source.getFolder(),
+                        filter(source),
+                        source.getLogin(),
+                        source.getPassword(),
+                        source.getLastCommit()
+                )))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(changes -> changes
+                        .map(value -> Flux.using(value::files, files -> applyChanges(source, value), GitFileCursor::close))
+                        .orElseGet(() -> index(source.getSpaceId().toString(), source.getDocId(), toRequest(source))));
+    }
+
+    private Flux<Integer> applyChanges(GitSourceEntity source, GitChanges changes) {
+        String spaceId = source.getSpaceId().toString();
+        return Mono.<Integer>fromRunnable(() -> vectorDocumentWriter.deletePaths(spaceId, source.getDocId(), changes.paths()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenMany(ingestionPipeline.ingest(
+                        meta(spaceId, source.getDocId()),
+                        gitRagContentProvider.toChunks(changes.files())
+                ))
+                .concatWith(Mono.<Integer>fromRunnable(() -> updateLastCommit(source, changes.commitId()))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private void register(String spaceId, String docId, RagContentRequest request, String commitId) {
+        GitSourceEntity source = gitSourceRepository.findBySpaceIdAndDocId(UUID.fromString(spaceId), docId)
+                .orElseGet(GitSourceEntity::new);
+        source.setSpaceId(UUID.fromString(spaceId));
+        source.setDocId(docId);
+        source.setUrl(request.text());
+        source.setBranch(request.git() == null ? null : request.git().branch());
+        source.setFolder(request.git() == null ? null : request.git().folder());
+        GitFileFilter filter = request.git() == null ? GitFileFilter.none() : request.git().filter();
+        source.setInclude(filter.include());
+        source.setExclude(filter.exclude());
+        source.setMaxFileSize(filter.maxFileSize());
+        source.setLogin(request.auth() == null ? null : request.auth().login());
+        source.setPassword(request.auth() == null ? null : request.auth().password());
+        source.setLastCommit(commitId);
+        gitSourceRepository.save(source);
+    }
+
+    private void updateLastCommit(GitSourceEntity source, String commitId) {
+        source.setLastCommit(commitId);
+        gitSourceRepository.save(source);
+    }
+
+    private Map<String, Object> meta(String spaceId, String docId) {
+        return Map.of(
+                RagMetadataKeys.SPACE, spaceId,
+                RagMetadataKeys.DOC, docId
+        );
+    }
+
+    private RagContentRequest toRequest(GitSourceEntity source) {
+        return new RagContentRequest(
+                source.getUrl(),
+                true,
+                new RagGitOptions(source.getBranch(), source.getFolder(), filter(source)),
+                new RagProviderAuth(source.getLogin(), source.getPassword())
+        );
+    }
+
+    private GitFileFilter filter(GitSourceEntity source) {
+        return new GitFileFilter(source.getInclude(), source.getExclude(), source.getMaxFileSize());
+    }
+
+    private GitSource toGitSource(GitSourceEntity source) {
+        return new GitSource(
+                source.getId(),
+                source.getSpaceId(),
+                source.getDocId(),
+                source.getUrl(),
+                source.getBranch(),
+                source.getFolder(),
+                filter(source),
+                source.getLastCommit(),
+                source.getUpdatedAt()
+        );
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.service.git.GitFile;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+
+import java.io.IOException;
+
+/**
+ * Reads blobs of a commit straight from the object database, one file per {@link #next()} call.
+ * Tree walk order is the byte order of paths, so files come out sorted without buffering them.
+ */
+final class ObjectDatabaseFileCursor implements GitFileCursor {
+
+    private final GitMirrorCache.Lease lease;
+    private final String commitId;
+    private final int total;
+    private final TreeWalk treeWalk;
+
+    private ObjectDatabaseFileCursor(GitMirrorCache.Lease lease, String commitId, int total, TreeWalk treeWalk) {
+        this.lease = lease;
+        this.commitId = commitId;
+        this.total = total;
+        this.treeWalk = treeWalk;
+    }
+
+    static ObjectDatabaseFileCursor open(GitMirrorCache.Lease lease, ObjectId commit, String folder, GitPathRules rules)
+            throws IOException {
+        Repository repository = lease.repository();
+        RevTree tree;
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            tree = revWalk.parseCommit(commit).getTree();
+        }
+        if (StringUtils.isNotBlank(folder)) {
+            try (TreeWalk folderWalk = TreeWalk.forPath(repository, folder, tree)) {
+                if (folderWalk == null || !folderWalk.isSubtree()) {
+                    throw new IllegalArgumentException("Top-level folder not found: " + folder);
+                }
+            }
+        }
+
+        int total;
+        try (TreeWalk countWalk = newTreeWalk(repository, tree, folder, rules)) {
+            total = 0;
+            while (countWalk.next()) {
+                if (isBlob(countWalk)) {
+                    total++;
+                }
+            }
+        }
+        return new ObjectDatabaseFileCursor(lease, commit.name(), total, newTreeWalk(repository, tree, folder, rules));
+    }
+
+    @Override
+    public String commitId() {
+        return commitId;
+    }
+
+    @Override
+    public int total() {
+        return total;
+    }
+
+    @Override
+    public GitFile next() {
+        try {
+            while (treeWalk.next()) {
+                if (!isBlob(treeWalk)) {
+                    continue;
+                }
+                GitFile file = GitFiles.read(
+                        treeWalk.getPathString(),
+                        treeWalk.getObjectReader().open(treeWalk.getObjectId(0), Constants.OBJ_BLOB)
+                );
+                if (file != null) {
+                    return file;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read file from git repository", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        treeWalk.close();
+        lease.close();
+    }
+
+    private static TreeWalk newTreeWalk(Repository repository, RevTree tree, String folder, GitPathRules rules)
+            throws IOException {
+        TreeWalk treeWalk = new TreeWalk(repository);
+        treeWalk.addTree(tree);
+        treeWalk.setRecursive(true);
+        treeWalk.setFilter(StringUtils.isNotBlank(folder)
+                ? AndTreeFilter.create(PathFilter.create(folder), rules.treeFilter())
+                : rules.treeFilter());
+        return treeWalk;
+    }
+
+    private static boolean isBlob(TreeWalk treeWalk) {
+        // Skips submodule links, whose objects live in another repository.
+        return treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB;
+    }
+}
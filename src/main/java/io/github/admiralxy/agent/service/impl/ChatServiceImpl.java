@@ -110,7 +110,8 @@ public class ChatServiceImpl implements ChatService {
                             conv.getRagSpaces(), text,
                             ragProperties.getPercentage(),
                             properties.maxContextTokens() / 2,
-                            ragProperties.getTopK()
+                            ragProperties.getTopK(),
+                            properties.tokenizer()
                     );
 
                     ChatClient.ChatClientRequestSpec chatSpec = chatClient.prompt()
@@ -2,12 +2,18 @@ package io.github.admiralxy.agent.service.impl;
 
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
 import io.github.admiralxy.agent.service.AddDocumentCommand;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
 import io.github.admiralxy.agent.service.RagService;
 import io.github.admiralxy.agent.service.TokenizerService;
-import io.github.admiralxy.agent.service.model.ModelSettingsService;
-import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.github.admiralxy.agent.service.confluence.ConfluenceSourceService;
+import io.github.admiralxy.agent.service.git.GitSourceService;
+import io.github.admiralxy.agent.service.ingestion.ContentHashes;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.provider.RagConfluenceOptions;
 import io.github.admiralxy.agent.service.provider.RagContentProvider;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import io.github.admiralxy.agent.service.provider.RagGitOptions;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.document.Document;
@@ -16,7 +22,6 @@ import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,9 +31,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Queue;
+import java.util.OptionalInt;
 import java.util.Set;
-import java.util.UUID;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
@@ -41,90 +46,61 @@ public class RagServiceImpl implements RagService {
     private static final String ID_SPACE_FILTER_EXPRESSION_TEMPLATE = "doc == '%s' && space == '%s'";
     private static final String ID_CHUNK_SPACE_FILTER_EXPRESSION_TEMPLATE = "doc == '%s' && chunk == '%s' && space == '%s'";
 
-    private static final String ID_METADATA_KEY = "doc";
-    private static final String CHUNK_ID_METADATA_KEY = "chunk";
-    private static final String SPACE_METADATA_KEY = "space";
-    private static final String CHUNK_NUMBER_METADATA_KEY = "number";
-    private static final String TOTAL_CHUNKS_METADATA_KEY = "total";
-    private static final String TOKEN_LIMIT_ERROR_FRAGMENT = "maximum number of allowed input tokens";
     private static final int MAX_CONTEXT_OVERFETCH = 200;
     private static final int REBALANCE_CANDIDATE_WINDOW_MULTIPLIER = 2;
+    private static final int LINKED_DUPLICATES_OVERFETCH_MULTIPLIER = 2;
     private static final String UNKNOWN_SOURCE_VALUE = "unknown";
     private static final String SOURCE_HEADER_TEMPLATE = "[Source: space=%s, doc=%s, chunk=%s]";
+    private static final String LEGACY_TOKENIZER = "cl100k_base";
 
     private final VectorStore store;
-    private final TokenizerService tokenizerService;
-    private final ModelSettingsService modelSettingsService;
+    private final IngestionPipeline ingestionPipeline;
+    private final GitSourceService gitSourceService;
+    private final ConfluenceSourceService confluenceSourceService;
     private final List<RagContentProvider> contentProviders;
 
     @Override
     public Flux<Integer> add(AddDocumentCommand command) {
-        String spaceId = command.spaceId();
-        String docId = UUID.randomUUID().toString();
-        Map<String, Object> meta = Map.of(
-                SPACE_METADATA_KEY, spaceId,
-                ID_METADATA_KEY, docId
-        );
-        RagContentRequest request = command.contentRequest();
-
-        return resolveProvider(command.providerType())
-                .resolveChunks(request)
-                .map(chunk -> persistAndMapProgress(meta, chunk))
-                .switchIfEmpty(Flux.just(100));
+        ProviderType providerType = command.providerType() == null ? ProviderType.TEXT : command.providerType();
+        return ingest(command).contextWrite(IngestionMetrics.scope(providerType, command.spaceId()));
     }
 
-    private int persistAndMapProgress(Map<String, Object> meta, RagChunk chunk) {
-        List<String> tokenSafeParts = tokenizerService.splitToTokenChunks(
-                chunk.text(),
-                modelSettingsService.getEmbeddingsModel().getMaxDocumentTokens()
+    private Flux<Integer> ingest(AddDocumentCommand command) {
+        String spaceId = command.spaceId();
+        RagContentRequest request = command.contentRequest();
+        String docId = documentId(spaceId, command.providerType(), request);
+        Map<String, Object> meta = Map.of(
+                RagMetadataKeys.SPACE, spaceId,
+                RagMetadataKeys.DOC, docId
         );
-        tokenSafeParts.forEach(part -> saveWithTokenLimitFallback(meta, chunk, part));
-
-        if (chunk.total() <= 0) {
-            return 100;
+        if (command.providerType() == ProviderType.GIT) {
+            return gitSourceService.index(spaceId, docId, request);
         }
-        return (int) (((chunk.number() + 1) / (double) chunk.total()) * 100);
-    }
-
-    private void saveWithTokenLimitFallback(Map<String, Object> meta, RagChunk chunk, String text) {
-        Queue<String> queue = new ArrayDeque<>();
-        queue.add(text);
-
-        while (!queue.isEmpty()) {
-            String part = queue.poll();
-            try {
-                store.add(List.of(newDocument(meta, chunk, part)));
-            } catch (RuntimeException ex) {
-                if (!isTokenLimitError(ex)) {
-                    throw ex;
-                }
-
-                int tokens = tokenizerService.countTokens(part);
-                if (tokens <= 1) {
-                    throw ex;
-                }
-
-                List<String> split = tokenizerService.splitToTokenChunks(part, Math.max(1, tokens / 2));
-                if (split.size() <= 1) {
-                    throw ex;
-                }
-                queue.addAll(split);
-            }
+        if (command.providerType() == ProviderType.CONFLUENCE) {
+            return confluenceSourceService.index(spaceId, docId, request);
         }
-    }
+        RagContentProvider provider = resolveProvider(command.providerType());
 
-    private Document newDocument(Map<String, Object> meta, RagChunk chunk, String text) {
-        String chunkId = UUID.randomUUID().toString();
-        Map<String, Object> metaChunk = new HashMap<>(meta);
-        metaChunk.put(CHUNK_NUMBER_METADATA_KEY, chunk.number());
-        metaChunk.put(TOTAL_CHUNKS_METADATA_KEY, chunk.total());
-        metaChunk.put(CHUNK_ID_METADATA_KEY, chunkId);
-        return new Document(chunkId, text, metaChunk);
+        return ingestionPipeline.replace(meta, provider.resolveChunks(request));
     }
 
-    private boolean isTokenLimitError(RuntimeException ex) {
-        String message = ex.getMessage();
-        return message != null && message.toLowerCase().contains(TOKEN_LIMIT_ERROR_FRAGMENT);
+    private String documentId(String spaceId, ProviderType providerType, RagContentRequest request) {
+        RagGitOptions git = request.git();
+        List<String> parts = new ArrayList<>(List.of(
+                spaceId,
+                String.valueOf(providerType == null ? ProviderType.TEXT : providerType),
+                ContentHashes.sha256Hex(request.text()),
+                String.valueOf(request.batch()),
+                git == null ? StringUtils.EMPTY : StringUtils.defaultString(git.branch()),
+                git == null ? StringUtils.EMPTY : StringUtils.defaultString(git.folder())
+        ));
+        RagConfluenceOptions confluence = request.confluence();
+        if (confluence != null && confluence.crawl()) {
+            // Only crawls extend the key, so IDs of existing single-page documents stay stable.
+            parts.add(StringUtils.defaultString(confluence.spaceKey()));
+            parts.add(String.valueOf(confluence.descendants()));
+        }
+        return ContentHashes.uuid(parts.toArray(String[]::new)).toString();
     }
 
     private RagContentProvider resolveProvider(ProviderType providerType) {
@@ -181,6 +157,8 @@ public class RagServiceImpl implements RagService {
 
     @Override
     public void deleteFromSpace(String spaceId, String docId) {
+        gitSourceService.unregister(spaceId, docId);
+        confluenceSourceService.unregister(spaceId, docId);
         var docs = store.similaritySearch(
                 SearchRequest.builder()
                         .query(StringUtils.SPACE)
@@ -214,15 +192,19 @@ public class RagServiceImpl implements RagService {
     }
 
     @Override
-    public String buildContext(List<String> spaceIds, String query, double percentage, int maxTokens, int topK) {
+    public String buildContext(List<String> spaceIds, String query, double percentage, int maxTokens, int topK,
+                               TokenizerService tokenizer) {
         List<Document> docs = findContextDocuments(spaceIds, query, topK);
 
         if (docs.isEmpty()) {
             return StringUtils.EMPTY;
         }
 
-        int totalTokens = docs.stream()
-                .mapToInt(d -> tokenizerService.countTokens(d.getText()))
+        OptionalInt[] storedTokens = docs.stream()
+                .map(doc -> storedTokens(doc, tokenizer))
+                .toArray(OptionalInt[]::new);
+        int totalTokens = IntStream.range(0, docs.size())
+                .map(i -> storedTokens[i].orElseGet(() -> tokenizer.estimateTokens(docs.get(i).getText())))
                 .sum();
 
         int hardLimit = Math.min(maxTokens, totalTokens);
@@ -245,9 +227,10 @@ public class RagServiceImpl implements RagService {
 
             int perDocumentBudget = Math.max(1, remaining / docsLeft);
             String content = doc.getText();
-            int len = tokenizerService.countTokens(content);
-            String contentPart = len > perDocumentBudget
-                    ? tokenizerService.truncateToTokens(content, perDocumentBudget)
+            int len = storedTokens[i].orElseGet(() -> tokenizer.countTokens(content));
+            boolean truncated = len > perDocumentBudget;
+            String contentPart = truncated
+                    ? tokenizer.truncateToTokens(content, perDocumentBudget)
                     : content;
 
             if (StringUtils.isBlank(contentPart)) {
@@ -258,12 +241,20 @@ public class RagServiceImpl implements RagService {
                     .append(StringUtils.LF)
                     .append(contentPart)
                     .append(CONTENT_CONTENT_SEPARATOR);
-            used += tokenizerService.countTokens(contentPart);
+            used += truncated ? tokenizer.countTokens(contentPart) : len;
         }
 
         return sb.toString();
     }
 
+    private OptionalInt storedTokens(Document doc, TokenizerService tokenizer) {
+        if (doc.getMetadata().get(RagMetadataKeys.TOKENS) instanceof Number tokens) {
+            String countedBy = Objects.toString(doc.getMetadata().get(RagMetadataKeys.TOKENIZER), LEGACY_TOKENIZER);
+            return tokenizer.reuseCount(countedBy, tokens.intValue());
+        }
+        return OptionalInt.empty();
+    }
+
     private List<Document> findContextDocuments(List<String> spaceIds, String query, int topK) {
         if (topK <= 0) {
             return Collections.emptyList();
@@ -274,15 +265,15 @@ public class RagServiceImpl implements RagService {
             return Collections.emptyList();
         }
 
-        long requestedOverfetch = (long) topK * normalizedSpaceIds.size();
+        long requestedOverfetch = (long) topK * normalizedSpaceIds.size() * LINKED_DUPLICATES_OVERFETCH_MULTIPLIER;
         int overfetch = (int) Math.clamp(requestedOverfetch, topK, (long) MAX_CONTEXT_OVERFETCH);
-        List<Document> docs = store.similaritySearch(
+        List<Document> docs = collapseLinkedDuplicates(store.similaritySearch(
                 SearchRequest.builder()
                         .query(query)
                         .topK(overfetch)
                         .filterExpression(buildMultiSpaceFilterExpression(normalizedSpaceIds))
                         .build()
-        );
+        ));
 
         if (docs.size() <= topK || normalizedSpaceIds.size() == 1) {
             return docs.stream().limit(topK).toList();
@@ -294,6 +285,21 @@ public class RagServiceImpl implements RagService {
         return selected;
     }
 
+    /**
+     * Keeps the best ranked row of every chunk and its linked near-duplicates.
+     */
+    private List<Document> collapseLinkedDuplicates(List<Document> docs) {
+        Set<String> originals = new HashSet<>();
+        List<Document> distinct = new ArrayList<>(docs.size());
+        for (Document doc : docs) {
+            Object original = doc.getMetadata().get(RagMetadataKeys.DUPLICATE_OF);
+            if (originals.add(original == null ? doc.getId() : original.toString())) {
+                distinct.add(doc);
+            }
+        }
+        return distinct;
+    }
+
     private void rebalanceTailForMissingSpaces(List<Document> selected, List<Document> rankedDocs, List<String> spaceIds, int topK) {
         Set<String> presentSpaces = new HashSet<>();
         selected.stream()
@@ -395,14 +401,14 @@ public class RagServiceImpl implements RagService {
     }
 
     private String extractSpaceId(Document doc) {
-        Object raw = doc.getMetadata().get(SPACE_METADATA_KEY);
+        Object raw = doc.getMetadata().get(RagMetadataKeys.SPACE);
         return raw == null ? null : String.valueOf(raw);
     }
 
     private String buildSourceHeader(Document doc) {
-        String space = valueOrUnknown(doc.getMetadata().get(SPACE_METADATA_KEY));
-        String sourceDocId = valueOrUnknown(doc.getMetadata().get(ID_METADATA_KEY));
-        String chunk = valueOrUnknown(doc.getMetadata().get(CHUNK_ID_METADATA_KEY));
+        String space = valueOrUnknown(doc.getMetadata().get(RagMetadataKeys.SPACE));
+        String sourceDocId = valueOrUnknown(doc.getMetadata().get(RagMetadataKeys.DOC));
+        String chunk = valueOrUnknown(doc.getMetadata().get(RagMetadataKeys.CHUNK));
         return SOURCE_HEADER_TEMPLATE.formatted(space, sourceDocId, chunk);
     }
 
@@ -0,0 +1,86 @@
+package io.github.admiralxy.agent.service.impl;
+
+import io.github.admiralxy.agent.service.TokenizerService;
+
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Estimates tokens of a model whose tokenizer is not available, by scaling counts of a related
+ * tokenizer with a ratio measured on representative text. Budgets are scaled down the same way,
+ * so truncated text never exceeds the estimated limit.
+ */
+public class ScaledTokenizerService implements TokenizerService {
+
+    private final TokenizerService base;
+    private final double ratio;
+
+    public ScaledTokenizerService(TokenizerService base, double ratio) {
+        if (ratio <= 0) {
+            throw new IllegalArgumentException("ratio must be greater than 0");
+        }
+        this.base = base;
+        this.ratio = ratio;
+    }
+
+    @Override
+    public String getName() {
+        return base.getName() + "*" + ratio;
+    }
+
+    @Override
+    public int countTokens(String text) {
+        return scale(base.countTokens(text));
+    }
+
+    @Override
+    public int estimateTokens(String text) {
+        return scale(base.estimateTokens(text));
+    }
+
+    @Override
+    public boolean fitsWithin(String text, int maxTokens) {
+        return base.fitsWithin(text, baseBudget(maxTokens));
+    }
+
+    @Override
+    public String truncateToTokens(String text, int maxTokens) {
+        return base.truncateToTokens(text, baseBudget(maxTokens));
+    }
+
+    @Override
+    public List<String> splitToTokenChunks(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("maxTokens must be greater than 0");
+        }
+        return base.splitToTokenChunks(text, Math.max(1, baseBudget(maxTokens)));
+    }
+
+    @Override
+    public int[] tokenOffsets(String text) {
+        int[] baseOffsets = base.tokenOffsets(text);
+        int baseCount = baseOffsets.length - 1;
+        int[] offsets = new int[scale(baseCount) + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = baseOffsets[Math.min(baseCount, (int) (i / ratio))];
+        }
+        offsets[offsets.length - 1] = text.length();
+        return offsets;
+    }
+
+    @Override
+    public OptionalInt reuseCount(String tokenizer, int count) {
+        if (base.getName().equals(tokenizer)) {
+            return OptionalInt.of(scale(count));
+        }
+        return TokenizerService.super.reuseCount(tokenizer, count);
+    }
+
+    private int scale(int baseTokens) {
+        return (int) Math.ceil(baseTokens * ratio);
+    }
+
+    private int baseBudget(int maxTokens) {
+        return (int) Math.floor(maxTokens / ratio);
+    }
+}
@@ -1,201 +1,498 @@
 package io.github.admiralxy.agent.service.impl;
 
+import io.github.admiralxy.agent.service.TextChunk;
 import io.github.admiralxy.agent.service.TextChunkerService;
+import io.github.admiralxy.agent.service.TextKind;
+import io.github.admiralxy.agent.service.TokenizerService;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Chunks text lazily: the source is read one paragraph, code block or chunk of words at a time,
+ * so only chunks produced from the current unit are held ahead of the consumer.
+ * <p>
+ * Paragraphs, blocks, lines and words are handled as index ranges of the source and overlaps as ranges of the
+ * previous chunk, so a text is scanned a bounded number of times and only the chunk strings themselves are built.
+ * Words are separated by regex {@code \s} characters and lines by regex {@code \R} line breaks.
+ */
 @Service
 public class TextChunkerServiceImpl implements TextChunkerService {
 
+    /**
+     * Whitespace before keywords is matched possessively: keywords start with a letter, so giving whitespace back
+     * never leads to a match, and indented lines are rejected without backtracking through their indentation.
+     */
     private static final Pattern JAVA_BOUNDARY = Pattern.compile(
-            "(?m)^(?=\\s*(?:public|protected|private)?\\s*(?:class|interface|enum)\\b)|"
-                    + "(?m)^(?=\\s*(?:public|protected|private|static|final|synchronized|abstract)\\s+[^;{=]+\\{)"
+            "(?m)^(?=\\s*+(?:public|protected|private)?\\s*+(?:class|interface|enum)\\b)|"
+                    + "(?m)^(?=\\s*+(?:public|protected|private|static|final|synchronized|abstract)\\s+[^;{=]+\\{)"
     );
 
+    /**
+     * Top-level declarations of common languages, used on top of Java boundaries when text is known to be code.
+     */
+    private static final Pattern CODE_BOUNDARY = Pattern.compile(
+            JAVA_BOUNDARY.pattern() + "|"
+                    + "(?m)^(?=(?:export\\s+|async\\s+|pub\\s+)*(?:def|class|func|fn|function|impl|struct|trait|interface|type)\\b)"
+    );
+
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\R{2,}");
+
+    /**
+     * Boundaries a token-budgeted chunk may end at after declarations, strongest first.
+     */
+    private static final List<String> CODE_BREAKS = List.of("\n\n", "\n", " ");
+    private static final List<String> PROSE_BREAKS = List.of("\n\n", "\n", ". ", " ");
+
     @Override
     public List<String> chunk(String text, int maxLines, int maxChars, int overlap) {
+        return chunk(text, TextKind.AUTO, maxLines, maxChars, overlap);
+    }
+
+    @Override
+    public List<String> chunk(String text, TextKind kind, int maxLines, int maxChars, int overlap) {
+        List<String> chunks = new ArrayList<>();
+        chunks(text, kind, maxLines, maxChars, overlap).forEachRemaining(chunk -> chunks.add(chunk.text()));
+        return chunks;
+    }
+
+    @Override
+    public Flux<TextChunk> stream(CharSequence text, TextKind kind, int maxLines, int maxChars, int overlap) {
+        return Flux.fromIterable(() -> chunks(text, kind, maxLines, maxChars, overlap));
+    }
+
+    @Override
+    public Flux<TextChunk> stream(CharSequence text, TextKind kind, TokenizerService tokenizer, int maxTokens, int overlapTokens) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("maxTokens must be greater than 0");
+        }
+        return Flux.fromIterable(() -> tokenChunks(text, kind, tokenizer, maxTokens, overlapTokens));
+    }
+
+    private static Iterator<TextChunk> tokenChunks(CharSequence text, TextKind kind, TokenizerService tokenizer,
+                                                   int maxTokens, int overlapTokens) {
         if (StringUtils.isBlank(text)) {
-            return List.of();
+            return Collections.emptyIterator();
         }
-        String normalized = normalizeNewlines(text);
-        if (looksLikeCode(normalized)) {
-            return chunkByCodeBlocks(normalized, maxLines, maxChars, overlap);
+        String normalized = normalizeNewlines(text).toString();
+        int[] offsets = tokenizer.tokenOffsets(normalized);
+        return switch (kind) {
+            case CODE -> new TokenChunks(normalized, offsets, CODE_BOUNDARY, CODE_BREAKS, maxTokens, overlapTokens);
+            case PROSE -> new TokenChunks(normalized, offsets, null, PROSE_BREAKS, maxTokens, overlapTokens);
+            case AUTO -> looksLikeCode(normalized)
+                    ? new TokenChunks(normalized, offsets, JAVA_BOUNDARY, CODE_BREAKS, maxTokens, overlapTokens)
+                    : new TokenChunks(normalized, offsets, null, PROSE_BREAKS, maxTokens, overlapTokens);
+        };
+    }
+
+    private static Iterator<TextChunk> chunks(CharSequence text, TextKind kind, int maxLines, int maxChars, int overlap) {
+        if (StringUtils.isBlank(text)) {
+            return Collections.emptyIterator();
         }
-        if (normalized.contains("\n")) {
-            return chunkByParagraphs(normalized, maxChars, overlap);
+        CharSequence normalized = normalizeNewlines(text);
+        return switch (kind) {
+            case CODE -> new CodeBlockChunks(normalized, CODE_BOUNDARY, maxLines, maxChars, overlap);
+            case PROSE -> chunkProse(normalized, maxChars, overlap);
+            case AUTO -> looksLikeCode(normalized)
+                    ? new CodeBlockChunks(normalized, JAVA_BOUNDARY, maxLines, maxChars, overlap)
+                    : chunkProse(normalized, maxChars, overlap);
+        };
+    }
+
+    private static Iterator<TextChunk> chunkProse(CharSequence text, int maxChars, int overlap) {
+        if (StringUtils.contains(text, '\n')) {
+            return new ParagraphChunks(text, maxChars, overlap);
         }
-        return chunkByChars(normalized, maxChars, overlap);
+        return new WordChunks(text, maxChars, overlap);
     }
 
-    private static String normalizeNewlines(String s) {
-        return s.replace("\r\n", "\n").replace("\r", "\n");
+    private static CharSequence normalizeNewlines(CharSequence s) {
+        if (!StringUtils.contains(s, '\r')) {
+            return s;
+        }
+        return s.toString().replace("\r\n", "\n").replace("\r", "\n");
     }
 
-    private static boolean looksLikeCode(String text) {
-        long semicolons = text.chars().filter(c -> c == ';').count();
-        long braces = text.chars().filter(c -> c == '{' || c == '}').count();
-        return semicolons + braces > 3;
+    private static boolean looksLikeCode(CharSequence text) {
+        int marks = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == ';' || c == '{' || c == '}') && ++marks > 3) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static List<String> chunkByParagraphs(String text, int maxChars, int overlapWords) {
-        String[] paragraphs = text.split("\\R{2,}");
-        List<String> chunks = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        for (String paragraph : paragraphs) {
-            String part = paragraph.strip();
-            if (part.isEmpty()) {
-                continue;
+    /**
+     * Source text read paragraph by paragraph, paragraphs are packed into chunks up to the character limit.
+     */
+    private static final class ParagraphChunks extends ChunkIterator {
+
+        private final Matcher breaks;
+        private final int maxChars;
+        private final int overlapWords;
+        private final StringBuilder current = new StringBuilder();
+        private int paragraphStart;
+
+        ParagraphChunks(CharSequence text, int maxChars, int overlapWords) {
+            super(text);
+            this.breaks = PARAGRAPH_BREAK.matcher(text);
+            this.maxChars = maxChars;
+            this.overlapWords = overlapWords;
+        }
+
+        @Override
+        protected boolean advance() {
+            if (paragraphStart > text.length()) {
+                if (!current.isEmpty()) {
+                    addChunkWithWordOverlap(this, current.toString(), overlapWords, maxChars);
+                    current.setLength(0);
+                }
+                return false;
+            }
+            int paragraphEnd = breaks.find() ? breaks.start() : text.length();
+            int from = stripStart(text, paragraphStart, paragraphEnd);
+            int to = stripEnd(text, from, paragraphEnd);
+            paragraphStart = paragraphEnd < text.length() ? breaks.end() : text.length() + 1;
+            read(Math.min(paragraphStart, text.length()));
+            int length = to - from;
+            if (length == 0) {
+                return true;
             }
             if (!current.isEmpty()) {
-                if (current.length() + 2 + part.length() > maxChars) {
-                    addChunkWithWordOverlap(chunks, current.toString(), overlapWords, maxChars);
+                if (current.length() + 2 + length > maxChars) {
+                    addChunkWithWordOverlap(this, current.toString(), overlapWords, maxChars);
                     current.setLength(0);
                 } else {
                     current.append("\n\n");
                 }
             }
-            if (part.length() > maxChars) {
+            if (length > maxChars) {
                 if (!current.isEmpty()) {
-                    addChunkWithWordOverlap(chunks, current.toString(), overlapWords, maxChars);
+                    addChunkWithWordOverlap(this, current.toString(), overlapWords, maxChars);
                     current.setLength(0);
                 }
-                for (String wchunk : splitByWords(part, maxChars)) {
-                    addChunkWithWordOverlap(chunks, wchunk, overlapWords, maxChars);
+                for (String wchunk : splitByWords(text, from, to, maxChars)) {
+                    addChunkWithWordOverlap(this, wchunk, overlapWords, maxChars);
                 }
             } else {
-                current.append(part);
+                current.append(text, from, to);
             }
+            return true;
         }
-        if (!current.isEmpty()) {
-            addChunkWithWordOverlap(chunks, current.toString(), overlapWords, maxChars);
-        }
-        return chunks;
     }
 
-    private static List<String> chunkByCodeBlocks(String text, int maxLines, int maxChars, int overlapLines) {
-        String[] blocks = JAVA_BOUNDARY.split(text);
-        List<String> result = new ArrayList<>();
-        StringBuilder acc = new StringBuilder();
-        int accLines = 0;
-        for (String block : blocks) {
-            String b = block.strip();
-            if (b.isEmpty()) {
-                continue;
-            }
-            if (b.length() > maxChars || countLines(b) > maxLines) {
+    /**
+     * Source text read block by block between declaration boundaries, blocks are packed into chunks
+     * up to the line and character limits.
+     */
+    private static final class CodeBlockChunks extends ChunkIterator {
+
+        private final Matcher boundaries;
+        private final int maxLines;
+        private final int maxChars;
+        private final int overlapLines;
+        private final StringBuilder acc = new StringBuilder();
+        private int accLines;
+        private int blockStart;
+
+        CodeBlockChunks(CharSequence text, Pattern boundary, int maxLines, int maxChars, int overlapLines) {
+            super(text);
+            this.boundaries = boundary.matcher(text);
+            this.maxLines = maxLines;
+            this.maxChars = maxChars;
+            this.overlapLines = overlapLines;
+        }
+
+        @Override
+        protected boolean advance() {
+            if (blockStart > text.length()) {
+                if (!acc.isEmpty()) {
+                    addChunkWithLineOverlap(this, acc.toString(), overlapLines, maxChars, maxLines);
+                    acc.setLength(0);
+                }
+                return false;
+            }
+            int blockEnd = boundaries.find() ? boundaries.start() : text.length();
+            int from = stripStart(text, blockStart, blockEnd);
+            int to = stripEnd(text, from, blockEnd);
+            blockStart = blockEnd < text.length() ? blockEnd : text.length() + 1;
+            read(blockEnd);
+            int length = to - from;
+            if (length == 0) {
+                return true;
+            }
+            int lines = countLines(text, from, to);
+            if (length > maxChars || lines > maxLines) {
                 if (!acc.isEmpty()) {
-                    addChunkWithLineOverlap(result, acc.toString(), overlapLines, maxChars, maxLines);
+                    addChunkWithLineOverlap(this, acc.toString(), overlapLines, maxChars, maxLines);
                     acc.setLength(0);
                     accLines = 0;
                 }
-                for (String part : splitByLinesWithLimit(b, maxLines, maxChars)) {
-                    addChunkWithLineOverlap(result, part, overlapLines, maxChars, maxLines);
+                for (String part : splitByLinesWithLimit(text, from, to, maxLines, maxChars)) {
+                    addChunkWithLineOverlap(this, part, overlapLines, maxChars, maxLines);
                 }
-                continue;
+                return true;
             }
             boolean needSep = !acc.isEmpty();
-            int newLen = acc.length() + (needSep ? 1 : 0) + b.length();
-            int newLines = accLines + (needSep ? 1 : 0) + countLines(b);
+            int newLen = acc.length() + (needSep ? 1 : 0) + length;
+            int newLines = accLines + (needSep ? 1 : 0) + lines;
             if (newLen > maxChars || newLines > maxLines) {
-                addChunkWithLineOverlap(result, acc.toString(), overlapLines, maxChars, maxLines);
+                addChunkWithLineOverlap(this, acc.toString(), overlapLines, maxChars, maxLines);
                 acc.setLength(0);
                 accLines = 0;
             } else if (needSep) {
                 acc.append('\n');
                 accLines += 1;
             }
-            if (b.length() > maxChars || countLines(b) > maxLines) {
-                for (String part : splitByLinesWithLimit(b, maxLines, maxChars)) {
-                    addChunkWithLineOverlap(result, part, overlapLines, maxChars, maxLines);
-                }
-            } else {
-                acc.append(b);
-                accLines += countLines(b);
-            }
+            acc.append(text, from, to);
+            accLines += lines;
+            return true;
         }
-        if (!acc.isEmpty()) {
-            addChunkWithLineOverlap(result, acc.toString(), overlapLines, maxChars, maxLines);
-        }
-        return result;
     }
 
-    private static int countLines(String s) {
-        if (s.isEmpty()) {
-            return 0;
-        }
-        int n = 1;
-        for (int i = 0; i < s.length(); i++) {
-            if (s.charAt(i) == '\n') {
-                n++;
-            }
+    /**
+     * Single-line source text read word by word, words are packed into chunks up to the character limit.
+     */
+    private static final class WordChunks extends ChunkIterator {
+
+        private final int end;
+        private final int maxChars;
+        private final int overlapWords;
+        private int wordStart;
+        private int wordEnd;
+
+        WordChunks(CharSequence text, int maxChars, int overlapWords) {
+            super(text);
+            int from = trimStart(text, 0, text.length());
+            this.end = trimEnd(text, from, text.length());
+            this.maxChars = maxChars;
+            this.overlapWords = overlapWords;
+            this.wordEnd = from;
+            nextWord();
         }
-        return n;
-    }
 
-    private static List<String> chunkByChars(String text, int maxChars, int overlapWords) {
-        List<String> chunks = new ArrayList<>();
-        String[] words = text.trim().split("\\s+");
-        int start = 0;
-        while (start < words.length) {
+        @Override
+        protected boolean advance() {
+            if (wordStart < 0) {
+                return false;
+            }
             StringBuilder chunk = new StringBuilder();
-            int i = start;
-            while (i < words.length) {
-                String word = words[i];
-                int add = chunk.isEmpty() ? word.length() : word.length() + 1;
+            boolean taken = false;
+            while (wordStart >= 0) {
+                int length = wordEnd - wordStart;
+                int add = chunk.isEmpty() ? length : length + 1;
                 if (chunk.length() + add > maxChars) {
                     break;
                 }
                 if (!chunk.isEmpty()) {
                     chunk.append(' ');
                 }
-                chunk.append(word);
-                i++;
+                chunk.append(text, wordStart, wordEnd);
+                nextWord();
+                taken = true;
             }
+            read(wordStart < 0 ? text.length() : wordStart);
             if (!chunk.isEmpty()) {
-                addChunkWithWordOverlap(chunks, chunk.toString(), overlapWords, maxChars);
+                addChunkWithWordOverlap(this, chunk.toString(), overlapWords, maxChars);
+            }
+            if (!taken) {
+                // A word longer than a chunk is skipped.
+                nextWord();
+            }
+            return true;
+        }
+
+        private void nextWord() {
+            int start = wordEnd;
+            while (start < end && isSpace(text.charAt(start))) {
+                start++;
+            }
+            if (start == end) {
+                wordStart = -1;
+                return;
+            }
+            wordStart = start;
+            wordEnd = wordEnd(text, start, end);
+        }
+    }
+
+    /**
+     * Source text cut by a token budget. Chunk ends are looked for in the later half of the token window,
+     * so chunks never shrink to fragments, and token counts of chunks are taken from the token offsets of the text.
+     */
+    private static final class TokenChunks extends ChunkIterator {
+
+        private final String source;
+        private final int[] offsets;
+        private final int tokenCount;
+        private final Pattern declarations;
+        private final List<String> breaks;
+        private final int maxTokens;
+        private final int overlapTokens;
+        private int start;
+
+        /**
+         * @param offsets      character offsets where each token starts, followed by the length of the text
+         * @param declarations boundaries of code blocks, null for prose
+         */
+        TokenChunks(String text, int[] offsets, Pattern declarations, List<String> breaks, int maxTokens, int overlapTokens) {
+            super(text);
+            this.source = text;
+            this.offsets = offsets;
+            this.tokenCount = offsets.length - 1;
+            this.declarations = declarations;
+            this.breaks = breaks;
+            this.maxTokens = maxTokens;
+            this.overlapTokens = overlapTokens;
+            this.start = stripStart(text, 0, text.length());
+        }
+
+        @Override
+        protected boolean advance() {
+            if (start >= source.length()) {
+                return false;
+            }
+            int first = tokenAt(start);
+            int remaining = tokenCount - first;
+            int window = maxTokens;
+            if (remaining <= maxTokens) {
+                window = remaining;
+            } else if (remaining < maxTokens + maxTokens / 4) {
+                window = (remaining + 1) / 2;
+            }
+            int last = first + window;
+            int end = last >= tokenCount ? source.length() : boundary(offsets[first + (window + 1) / 2], offsets[last]);
+            int to = stripEnd(source, start, end);
+            read(end);
+            add(source.substring(start, to), OptionalInt.of(tokensBefore(first, to) - first));
+
+            int next = end;
+            if (overlapTokens > 0 && end < source.length()) {
+                int endToken = tokensBefore(first, end);
+                int overlapStart = Math.max(endToken - overlapTokens, first + (endToken - first + 1) / 2);
+                next = wordStart(Math.min(offsets[overlapStart], end), end);
+            }
+            start = stripStart(source, next, source.length());
+            return true;
+        }
+
+        /**
+         * @return end of the strongest boundary within the range, the end of the range if it has none
+         */
+        private int boundary(int from, int to) {
+            if (declarations != null) {
+                Matcher matcher = declarations.matcher(source)
+                        .region(from, to)
+                        .useTransparentBounds(true)
+                        .useAnchoringBounds(false);
+                int at = -1;
+                while (matcher.find()) {
+                    at = matcher.start();
+                }
+                if (at > from) {
+                    return at;
+                }
+            }
+            for (String boundary : breaks) {
+                for (int at = to - boundary.strip().length(); at >= from; at--) {
+                    if (source.startsWith(boundary, at)) {
+                        return at + boundary.length();
+                    }
+                }
+            }
+            return to;
+        }
+
+        /**
+         * @return index of the token the character belongs to
+         */
+        private int tokenAt(int position) {
+            // Tokens covering no whole character share an offset, the last of them starts the character.
+            return tokensBefore(0, position + 1) - 1;
+        }
+
+        /**
+         * @return number of tokens which start before the position, counted from the start of the text
+         */
+        private int tokensBefore(int from, int position) {
+            int low = from;
+            int high = tokenCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (offsets[middle] < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
             }
-            if (i == start) {
+            return low;
+        }
+
+        /**
+         * @return start of the first word which begins at or after the position, the limit if there is none
+         */
+        private int wordStart(int position, int limit) {
+            int i = position;
+            if (i > 0 && !isSpace(source.charAt(i - 1))) {
+                i = wordEnd(source, i, limit);
+            }
+            while (i < limit && isSpace(source.charAt(i))) {
                 i++;
             }
-            start = Math.max(i - overlapWords, i);
+            return i;
         }
-        return chunks;
     }
 
-    private static List<String> splitByLinesWithLimit(String text, int maxLines, int maxChars) {
-        String[] lines = text.split("\\R", -1);
+    private static List<String> splitByLinesWithLimit(CharSequence text, int from, int to, int maxLines, int maxChars) {
         List<String> chunks = new ArrayList<>();
         StringBuilder current = new StringBuilder();
         int linesCount = 0;
-        for (String line : lines) {
-            String l = line;
-            int addChars = (current.isEmpty() ? l.length() : l.length() + 1);
-            int addLines = 1;
-            if (current.length() + addChars > maxChars || linesCount + addLines > maxLines) {
+        int lineStart = from;
+        while (true) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && !isLineBreak(text.charAt(lineEnd))) {
+                lineEnd++;
+            }
+            int length = lineEnd - lineStart;
+            int addChars = (current.isEmpty() ? length : length + 1);
+            if (current.length() + addChars > maxChars || linesCount + 1 > maxLines) {
                 if (!current.isEmpty()) {
                     chunks.add(current.toString().trim());
                     current.setLength(0);
                     linesCount = 0;
                 }
             }
-            if (l.length() > maxChars) {
+            if (length > maxChars) {
                 if (!current.isEmpty()) {
                     chunks.add(current.toString().trim());
                     current.setLength(0);
                     linesCount = 0;
                 }
-                chunks.addAll(splitByWords(l, maxChars));
-                continue;
+                chunks.addAll(splitByWords(text, lineStart, lineEnd, maxChars));
+            } else {
+                if (!current.isEmpty()) {
+                    current.append('\n');
+                }
+                current.append(text, lineStart, lineEnd);
+                linesCount++;
             }
-            if (!current.isEmpty()) {
-                current.append('\n');
+            if (lineEnd == to) {
+                break;
             }
-            current.append(l);
-            linesCount++;
+            lineStart = skipLineBreak(text, lineEnd, to);
         }
         if (!current.isEmpty()) {
             chunks.add(current.toString().trim());
@@ -203,13 +500,14 @@ public class TextChunkerServiceImpl implements TextChunkerService {
         return chunks;
     }
 
-    private static void addChunkWithLineOverlap(List<String> chunks, String chunk, int overlapLines, int maxChars, int maxLines) {
+    private static void addChunkWithLineOverlap(ChunkIterator chunks, String chunk, int overlapLines, int maxChars, int maxLines) {
         if (StringUtils.isBlank(chunk)) {
             return;
         }
         String c = chunk.trim();
-        if (c.length() > maxChars || countLines(c) > maxLines) {
-            for (String part : splitByLinesWithLimit(c, maxLines, maxChars)) {
+        int lines = countLines(c, 0, c.length());
+        if (c.length() > maxChars || lines > maxLines) {
+            for (String part : splitByLinesWithLimit(c, 0, c.length(), maxLines, maxChars)) {
                 // Avoid infinite recursion when split result cannot reduce the chunk.
                 if (c.equals(part)) {
                     chunks.add(trimToLimits(c, maxChars, maxLines));
@@ -219,30 +517,57 @@ public class TextChunkerServiceImpl implements TextChunkerService {
             }
             return;
         }
-        if (!chunks.isEmpty() && overlapLines > 0) {
-            String prev = chunks.getLast();
-            String[] prevLines = prev.split("\\R");
-            int count = Math.min(overlapLines, prevLines.length);
-            StringBuilder prefix = new StringBuilder();
-            for (int i = prevLines.length - count; i < prevLines.length; i++) {
-                if (!prefix.isEmpty()) {
-                    prefix.append('\n');
-                }
-                prefix.append(prevLines[i]);
+        String prev = chunks.last();
+        if (prev == null || overlapLines <= 0) {
+            chunks.add(c);
+            return;
+        }
+        int end = prev.length();
+        while (end > 0 && isLineBreak(prev.charAt(end - 1))) {
+            end--;
+        }
+        int prefixStart = end;
+        int prefixLength = -1;
+        int prefixLines = 0;
+        int lineEnd = end;
+        while (end > 0 && prefixLines < overlapLines) {
+            int lineStart = lineEnd;
+            while (lineStart > 0 && !isLineBreak(prev.charAt(lineStart - 1))) {
+                lineStart--;
             }
-            String merged = prefix.isEmpty() ? c : (prefix + "\n" + c);
-            while ((merged.length() > maxChars || countLines(merged) > maxLines) && !prefix.isEmpty()) {
-                int idx = prefix.indexOf("\n");
-                if (idx < 0) {
-                    prefix.setLength(0);
-                } else {
-                    prefix.delete(0, idx + 1);
-                }
-                merged = prefix.isEmpty() ? c : (prefix + "\n" + c);
+            int length = prefixLength + 1 + lineEnd - lineStart;
+            if (length + 1 + c.length() > maxChars || prefixLines + 1 + Math.max(1, lines) > maxLines) {
+                break;
+            }
+            prefixStart = lineStart;
+            prefixLength = length;
+            prefixLines++;
+            if (lineStart == 0) {
+                break;
             }
-            c = merged;
+            lineEnd = lineStart - 1;
+            if (lineEnd > 0 && prev.charAt(lineEnd) == '\n' && prev.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+        }
+        if (prefixLength <= 0) {
+            chunks.add(c);
+            return;
         }
-        chunks.add(c.trim());
+        StringBuilder merged = new StringBuilder(prefixLength + 1 + c.length());
+        int i = prefixStart;
+        while (true) {
+            int next = i;
+            while (next < end && !isLineBreak(prev.charAt(next))) {
+                next++;
+            }
+            merged.append(prev, i, next).append('\n');
+            if (next == end) {
+                break;
+            }
+            i = skipLineBreak(prev, next, end);
+        }
+        chunks.add(merged.append(c).toString().trim());
     }
 
     private static String trimToLimits(String chunk, int maxChars, int maxLines) {
@@ -250,84 +575,248 @@ public class TextChunkerServiceImpl implements TextChunkerService {
         if (text.length() > maxChars) {
             text = text.substring(0, maxChars);
         }
-        while (countLines(text) > maxLines) {
-            int idx = text.lastIndexOf('\n');
-            if (idx < 0) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' && ++lines >= maxLines) {
+                text = text.substring(0, i);
                 break;
             }
-            text = text.substring(0, idx);
         }
         return text.trim();
     }
 
-    private static void addChunkWithWordOverlap(List<String> chunks, String chunk, int overlapWords, int maxChars) {
+    private static void addChunkWithWordOverlap(ChunkIterator chunks, String chunk, int overlapWords, int maxChars) {
         if (StringUtils.isBlank(chunk)) {
             return;
         }
         String c = chunk.trim();
         if (c.length() > maxChars) {
-            for (String part : splitByWords(c, maxChars)) {
+            for (String part : splitByWords(c, 0, c.length(), maxChars)) {
                 addChunkWithWordOverlap(chunks, part, overlapWords, maxChars);
             }
             return;
         }
-        if (!chunks.isEmpty() && overlapWords > 0) {
-            String prev = chunks.get(chunks.size() - 1);
-            String[] words = prev.trim().split("\\s+");
-            int count = Math.min(overlapWords, words.length);
-            StringBuilder prefix = new StringBuilder();
-            for (int i = words.length - count; i < words.length; i++) {
-                if (!prefix.isEmpty()) {
-                    prefix.append(' ');
-                }
-                prefix.append(words[i]);
+        String prev = chunks.last();
+        if (prev == null || overlapWords <= 0) {
+            chunks.add(c);
+            return;
+        }
+        int start = trimStart(prev, 0, prev.length());
+        int end = trimEnd(prev, start, prev.length());
+        int prefixStart = end;
+        int prefixLength = -1;
+        int prefixWords = 0;
+        int wordEnd = end;
+        while (wordEnd > start && prefixWords < overlapWords) {
+            int wordStart = wordEnd;
+            while (wordStart > start && !isSpace(prev.charAt(wordStart - 1))) {
+                wordStart--;
             }
-            String merged = prefix.isEmpty() ? c : (prefix + " " + c);
-            while (merged.length() > maxChars) {
-                int spaceIdx = prefix.indexOf(" ");
-                if (spaceIdx < 0) {
-                    prefix.setLength(0);
-                } else {
-                    prefix.delete(0, spaceIdx + 1);
-                }
-                merged = prefix.isEmpty() ? c : (prefix + " " + c);
+            int length = prefixLength + 1 + wordEnd - wordStart;
+            if (length + 1 + c.length() > maxChars) {
+                break;
+            }
+            prefixStart = wordStart;
+            prefixLength = length;
+            prefixWords++;
+            wordEnd = wordStart;
+            while (wordEnd > start && isSpace(prev.charAt(wordEnd - 1))) {
+                wordEnd--;
+            }
+        }
+        if (prefixWords == 0) {
+            chunks.add(c);
+            return;
+        }
+        StringBuilder merged = new StringBuilder(prefixLength + 1 + c.length());
+        for (int i = prefixStart; i < end; ) {
+            int next = wordEnd(prev, i, end);
+            merged.append(prev, i, next).append(' ');
+            i = next;
+            while (i < end && isSpace(prev.charAt(i))) {
+                i++;
             }
-            c = merged;
         }
-        chunks.add(c.trim());
+        chunks.add(merged.append(c).toString().trim());
     }
 
-    private static List<String> splitByWords(String text, int maxChars) {
+    private static List<String> splitByWords(CharSequence text, int from, int to, int maxChars) {
         List<String> result = new ArrayList<>();
-        String[] words = text.trim().split("\\s+");
         StringBuilder current = new StringBuilder();
-        for (String word : words) {
-            if (word.length() > maxChars) {
+        int end = trimEnd(text, from, to);
+        int wordStart = trimStart(text, from, end);
+        while (wordStart < end) {
+            int wordEnd = wordEnd(text, wordStart, end);
+            int length = wordEnd - wordStart;
+            if (length > maxChars) {
                 if (!current.isEmpty()) {
                     result.add(current.toString().trim());
                     current.setLength(0);
                 }
-                int start = 0;
-                while (start < word.length()) {
-                    int end = Math.min(start + maxChars, word.length());
-                    result.add(word.substring(start, end));
-                    start = end;
+                int start = wordStart;
+                while (start < wordEnd) {
+                    int partEnd = Math.min(start + maxChars, wordEnd);
+                    result.add(text.subSequence(start, partEnd).toString());
+                    start = partEnd;
                 }
-                continue;
-            }
-            int add = current.isEmpty() ? word.length() : word.length() + 1;
-            if (current.length() + add > maxChars) {
-                result.add(current.toString().trim());
-                current.setLength(0);
+            } else {
+                int add = current.isEmpty() ? length : length + 1;
+                if (current.length() + add > maxChars) {
+                    result.add(current.toString().trim());
+                    current.setLength(0);
+                }
+                if (!current.isEmpty()) {
+                    current.append(' ');
+                }
+                current.append(text, wordStart, wordEnd);
             }
-            if (!current.isEmpty()) {
-                current.append(' ');
+            wordStart = wordEnd;
+            while (wordStart < end && isSpace(text.charAt(wordStart))) {
+                wordStart++;
             }
-            current.append(word);
         }
         if (!current.isEmpty()) {
             result.add(current.toString().trim());
         }
         return result;
     }
+
+    private static int countLines(CharSequence s, int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        int n = 1;
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '\n') {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Whitespace as matched by regex {@code \s}, which separates words.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Line break as matched by regex {@code \R}, a CR LF pair counts as one.
+     */
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\u000B' || c == '\f' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static int skipLineBreak(CharSequence s, int at, int to) {
+        return s.charAt(at) == '\r' && at + 1 < to && s.charAt(at + 1) == '\n' ? at + 2 : at + 1;
+    }
+
+    private static int wordEnd(CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && !isSpace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Start of the range without leading characters which {@link String#trim()} drops.
+     */
+    private static int trimStart(CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && s.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(CharSequence s, int from, int to) {
+        int i = to;
+        while (i > from && s.charAt(i - 1) <= ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Start of the range without leading whitespace which {@link String#strip()} drops.
+     */
+    private static int stripStart(CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int stripEnd(CharSequence s, int from, int to) {
+        int i = to;
+        while (i > from && Character.isWhitespace(s.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Chunks of a source text, produced on demand one chunk ahead of the consumer. Each step reads one unit
+     * of the source and queues the chunks it completes, the last produced chunk is kept for the overlap of the next one.
+     */
+    private abstract static class ChunkIterator implements Iterator<TextChunk> {
+
+        protected final CharSequence text;
+        private final Deque<TextChunk> ready = new ArrayDeque<>();
+        private String last;
+        private int position;
+        private boolean exhausted;
+
+        ChunkIterator(CharSequence text) {
+            this.text = text;
+        }
+
+        /**
+         * Reads the next unit of the source.
+         *
+         * @return false once the source is exhausted and the remaining chunks are queued
+         */
+        protected abstract boolean advance();
+
+        @Override
+        public boolean hasNext() {
+            while (ready.isEmpty() && !exhausted) {
+                exhausted = !advance();
+            }
+            return !ready.isEmpty();
+        }
+
+        @Override
+        public TextChunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TextChunk chunk = ready.poll();
+            return hasNext() ? chunk : new TextChunk(chunk.text(), 100, chunk.tokens());
+        }
+
+        /**
+         * @param position source position up to which the text is read
+         */
+        protected void read(int position) {
+            this.position = position;
+        }
+
+        String last() {
+            return last;
+        }
+
+        void add(String chunk) {
+            add(chunk, OptionalInt.empty());
+        }
+
+        void add(String chunk, OptionalInt tokens) {
+            last = chunk;
+            int progress = position >= text.length() ? 100 : (int) ((long) position * 100 / text.length());
+            ready.add(new TextChunk(chunk, progress, tokens));
+        }
+    }
 }
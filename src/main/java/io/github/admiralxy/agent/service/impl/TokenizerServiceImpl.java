@@ -5,39 +5,88 @@ import com.knuddels.jtokkit.api.Encoding;
 import com.knuddels.jtokkit.api.EncodingType;
 import com.knuddels.jtokkit.api.IntArrayList;
 import io.github.admiralxy.agent.service.TokenizerService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
-@Service
-@RequiredArgsConstructor
+/**
+ * Exact tokenizer of a jtokkit encoding. Instances are shared per encoding through the tokenizer registry.
+ * <p>
+ * Given a {@link TokenEstimate}, size checks are decided from the UTF-8 length of the text where the outcome
+ * is clear, so only texts close to a limit go through byte pair encoding.
+ */
 public class TokenizerServiceImpl implements TokenizerService {
 
-    private static final Encoding encoding = Encodings.newDefaultEncodingRegistry()
-            .getEncoding(EncodingType.CL100K_BASE);
+    /**
+     * Covers token IDs of every bundled encoding, o200k_base being the largest.
+     */
+    private static final int VOCABULARY_CAPACITY = 1 << 18;
 
+    private final Encoding encoding;
+    private final TokenEstimate estimate;
+
+    /**
+     * UTF-8 length of each vocabulary token, filled in on first use. Zero marks an unknown length,
+     * every token covers at least one byte. Racing writers store the same value.
+     */
+    private final int[] tokenBytes = new int[VOCABULARY_CAPACITY];
+
+    public TokenizerServiceImpl() {
+        this(Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE));
+    }
+
+    public TokenizerServiceImpl(Encoding encoding) {
+        this(encoding, null);
+    }
+
+    /**
+     * @param encoding encoding to count with
+     * @param estimate size estimate of the encoding, null to always count exactly
+     */
+    public TokenizerServiceImpl(Encoding encoding, TokenEstimate estimate) {
+        this.encoding = encoding;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public String getName() {
+        return encoding.getName();
+    }
+
+    @Override
     public int countTokens(String text) {
-        return encoding.encode(text).size();
+        return encoding.countTokens(text);
+    }
+
+    @Override
+    public int estimateTokens(String text) {
+        if (estimate == null) {
+            return countTokens(text);
+        }
+        return (int) Math.ceil(utf8Length(text) / estimate.bytesPerToken());
     }
 
+    @Override
+    public boolean fitsWithin(String text, int maxTokens) {
+        if (fitsByLength(text, maxTokens)) {
+            return true;
+        }
+        if (estimate != null && utf8Length(text) / estimate.maxBytesPerToken() > maxTokens * (1 + estimate.margin())) {
+            return false;
+        }
+        return countTokens(text) <= maxTokens;
+    }
+
+    @Override
     public String truncateToTokens(String text, int maxTokens) {
+        if (fitsByLength(text, maxTokens)) {
+            return text;
+        }
         IntArrayList tokens = encoding.encode(text);
         if (tokens.size() <= maxTokens) {
             return text;
         }
-
-        int[] raw = tokens.toArray();
-        int[] truncatedArr = Arrays.copyOf(raw, maxTokens);
-
-        IntArrayList truncated = new IntArrayList(truncatedArr.length);
-        for (int t : truncatedArr) {
-            truncated.add(t);
-        }
-
-        return encoding.decode(truncated);
+        return text.substring(0, tokenOffsets(text, tokens, maxTokens)[maxTokens]);
     }
 
     @Override
@@ -52,16 +101,104 @@ public class TokenizerServiceImpl implements TokenizerService {
             return List.of(text);
         }
 
-        int[] raw = tokens.toArray();
+        int[] offsets = tokenOffsets(text, tokens, tokenCount);
         List<String> parts = new ArrayList<>((tokenCount + maxTokens - 1) / maxTokens);
         for (int start = 0; start < tokenCount; start += maxTokens) {
-            int endExclusive = Math.min(start + maxTokens, tokenCount);
-            IntArrayList segment = new IntArrayList(endExclusive - start);
-            for (int i = start; i < endExclusive; i++) {
-                segment.add(raw[i]);
+            int from = offsets[start];
+            int to = start + maxTokens < tokenCount ? offsets[start + maxTokens] : text.length();
+            if (to > from) {
+                parts.add(text.substring(from, to));
             }
-            parts.add(encoding.decode(segment));
         }
         return parts;
     }
+
+    @Override
+    public int[] tokenOffsets(String text) {
+        IntArrayList tokens = encoding.encode(text);
+        int[] offsets = tokenOffsets(text, tokens, tokens.size());
+        offsets[tokens.size()] = text.length();
+        return offsets;
+    }
+
+    /**
+     * Maps token positions to character offsets of the text, so slices are taken from the text itself
+     * instead of decoding tokens back. A token ending inside a multibyte character is cut before that character.
+     *
+     * @param text encoded text
+     * @param tokens tokens of the text
+     * @param count number of leading tokens to map
+     * @return character offsets where each of the first tokens starts, followed by the end of the last one
+     */
+    private int[] tokenOffsets(String text, IntArrayList tokens, int count) {
+        int[] offsets = new int[count + 1];
+        long tokenEnd = 0;
+        long charEnd = 0;
+        int charIndex = 0;
+        for (int i = 0; i < count; i++) {
+            tokenEnd += tokenBytes(tokens.get(i));
+            while (charIndex < text.length()) {
+                int codePoint = text.codePointAt(charIndex);
+                int charBytes = utf8Length(codePoint);
+                if (charEnd + charBytes > tokenEnd) {
+                    break;
+                }
+                charEnd += charBytes;
+                charIndex += Character.charCount(codePoint);
+            }
+            offsets[i + 1] = charIndex;
+        }
+        return offsets;
+    }
+
+    private int tokenBytes(int token) {
+        if (token < tokenBytes.length && tokenBytes[token] != 0) {
+            return tokenBytes[token];
+        }
+        IntArrayList single = new IntArrayList(1);
+        single.add(token);
+        int length = encoding.decodeBytes(single).length;
+        if (token < tokenBytes.length) {
+            tokenBytes[token] = length;
+        }
+        return length;
+    }
+
+    /**
+     * Every token covers at least one byte, so text of no more bytes than the limit fits without encoding.
+     */
+    private static boolean fitsByLength(String text, int maxTokens) {
+        return (long) text.length() * 3 <= maxTokens || utf8Length(text) <= maxTokens;
+    }
+
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            length += utf8Length(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return length;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80 || codePoint <= Character.MAX_VALUE && Character.isSurrogate((char) codePoint)) {
+            // Unpaired surrogates are encoded as a single replacement byte.
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint <= Character.MAX_VALUE ? 3 : 4;
+    }
+
+    /**
+     * Calibrated size of tokens of an encoding.
+     *
+     * @param bytesPerToken average UTF-8 bytes per token, used for estimates
+     * @param maxBytesPerToken largest UTF-8 bytes per token of whole texts, bounds the token count from below
+     * @param margin relative distance from a limit within which texts are encoded
+     */
+    public record TokenEstimate(double bytesPerToken, double maxBytesPerToken, double margin) {
+    }
 }
@@ -0,0 +1,48 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import org.springframework.ai.document.ContentFormatter;
+import org.springframework.ai.document.DefaultContentFormatter;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Formats chunks like the default formatter, but leaves {@link RagMetadataKeys#NOT_EMBEDDED} keys out of the
+ * payload sent to the embedding model. The payload of a chunk then only changes with its content and source,
+ * so it identifies the vector in the embedding cache.
+ */
+public final class ChunkContentFormatter implements ContentFormatter {
+
+    private static final ChunkContentFormatter INSTANCE = new ChunkContentFormatter();
+    private static final ContentFormatter DEFAULT = DefaultContentFormatter.defaultConfig();
+
+    private ChunkContentFormatter() {
+    }
+
+    /**
+     * Creates a chunk document formatted by this formatter.
+     *
+     * @param id row ID
+     * @param text chunk text
+     * @param metadata chunk metadata
+     * @return chunk document
+     */
+    public static Document newDocument(String id, String text, Map<String, Object> metadata) {
+        Document document = new Document(id, text, metadata);
+        document.setContentFormatter(INSTANCE);
+        return document;
+    }
+
+    @Override
+    public String format(Document document, MetadataMode mode) {
+        if (mode != MetadataMode.EMBED) {
+            return DEFAULT.format(document, mode);
+        }
+        Map<String, Object> embedded = new HashMap<>(document.getMetadata());
+        RagMetadataKeys.NOT_EMBEDDED.forEach(embedded::remove);
+        return DEFAULT.format(new Document(document.getId(), document.getText(), embedded), mode);
+    }
+}
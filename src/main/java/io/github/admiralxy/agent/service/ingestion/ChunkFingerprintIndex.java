@@ -0,0 +1,99 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Per-space index of SimHash fingerprints of stored chunks, used to find near-duplicates of new chunks
+ * before they are embedded. Rows are keyed by the vector store row and removed together with it.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChunkFingerprintIndex {
+
+    private static final String SQL_SELECT_CANDIDATES =
+            "SELECT c_document_id, c_fingerprint FROM t_chunk_fingerprints WHERE c_space_id = ? AND c_doc_id <> ? "
+                    + "AND (c_band_0 = ANY(?) OR c_band_1 = ANY(?) OR c_band_2 = ANY(?) OR c_band_3 = ANY(?))";
+    private static final String SQL_INSERT_FINGERPRINT =
+            "INSERT INTO t_chunk_fingerprints "
+                    + "(c_document_id, c_space_id, c_doc_id, c_fingerprint, c_band_0, c_band_1, c_band_2, c_band_3) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (c_document_id) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Finds stored chunks of other documents of the space which are near-duplicates of the given fingerprints.
+     * Chunks of the document itself are left out, they are replaced by the ingestion which looks them up.
+     *
+     * @param spaceId space ID
+     * @param docId ID of the document being ingested
+     * @param fingerprints fingerprints of new chunks
+     * @param maxDistance largest number of differing bits, below {@link ChunkFingerprints#BANDS}
+     * @return row ID of the closest stored chunk by fingerprint, for fingerprints which have one
+     */
+    public Map<Long, UUID> findSimilar(String spaceId, String docId, long[] fingerprints, int maxDistance) {
+        if (fingerprints.length == 0) {
+            return Map.of();
+        }
+        Map<Long, UUID> found = new HashMap<>();
+        Map<Long, Integer> distances = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SQL_SELECT_CANDIDATES);
+            ps.setString(1, spaceId);
+            ps.setString(2, docId);
+            for (int band = 0; band < ChunkFingerprints.BANDS; band++) {
+                Object[] values = new Object[fingerprints.length];
+                for (int i = 0; i < fingerprints.length; i++) {
+                    values[i] = ChunkFingerprints.band(fingerprints[i], band);
+                }
+                ps.setArray(3 + band, connection.createArrayOf("int4", values));
+            }
+            return ps;
+        }, rs -> {
+            UUID id = rs.getObject(1, UUID.class);
+            long candidate = rs.getLong(2);
+            for (long fingerprint : fingerprints) {
+                int distance = ChunkFingerprints.distance(fingerprint, candidate);
+                if (distance <= maxDistance && distance < distances.getOrDefault(fingerprint, Integer.MAX_VALUE)) {
+                    found.put(fingerprint, id);
+                    distances.put(fingerprint, distance);
+                }
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Indexes stored documents. Linked near-duplicates are left out, so later duplicates link to the original.
+     *
+     * @param documents documents written to the vector store
+     */
+    public void add(List<Document> documents) {
+        List<Document> originals = documents.stream()
+                .filter(document -> !document.getMetadata().containsKey(RagMetadataKeys.DUPLICATE_OF))
+                .toList();
+        if (originals.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERT_FINGERPRINT, originals, originals.size(), (ps, document) -> {
+            long fingerprint = ChunkFingerprints.simHash(document.getText(), document.getMetadata());
+            ps.setObject(1, UUID.fromString(document.getId()));
+            ps.setString(2, Objects.toString(document.getMetadata().get(RagMetadataKeys.SPACE), null));
+            ps.setString(3, Objects.toString(document.getMetadata().get(RagMetadataKeys.DOC), null));
+            ps.setLong(4, fingerprint);
+            for (int band = 0; band < ChunkFingerprints.BANDS; band++) {
+                ps.setInt(5 + band, ChunkFingerprints.band(fingerprint, band));
+            }
+        });
+    }
+}
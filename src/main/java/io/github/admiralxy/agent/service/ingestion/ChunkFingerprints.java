@@ -0,0 +1,121 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+
+/**
+ * SimHash fingerprints of chunk text. Texts which share most of their word shingles get fingerprints
+ * which differ in a few bits only, whatever their case, punctuation and whitespace.
+ */
+public final class ChunkFingerprints {
+
+    /**
+     * Number of bands fingerprints are looked up by. Fingerprints which differ in fewer bits than there are bands
+     * share at least one whole band.
+     */
+    public static final int BANDS = 4;
+
+    private static final int BAND_BITS = Long.SIZE / BANDS;
+    private static final int BAND_MASK = (1 << BAND_BITS) - 1;
+    private static final int SHINGLE_WORDS = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private ChunkFingerprints() {
+    }
+
+    /**
+     * Computes the fingerprint of a chunk without the header its provider put in front of it,
+     * so chunks with equal bodies match whatever file or page they come from.
+     *
+     * @param text chunk text
+     * @param metadata chunk metadata, holding the header under {@link RagMetadataKeys#HEADER}
+     * @return 64-bit fingerprint, zero for text without words
+     */
+    public static long simHash(String text, Map<String, Object> metadata) {
+        if (metadata.get(RagMetadataKeys.HEADER) instanceof String header) {
+            return simHash(StringUtils.removeStart(text, header));
+        }
+        return simHash(text);
+    }
+
+    /**
+     * Computes the fingerprint of a text from shingles of three consecutive words, a text of fewer words
+     * is a single shingle.
+     *
+     * @param text chunk text
+     * @return 64-bit fingerprint, zero for text without words
+     */
+    public static long simHash(String text) {
+        int[] weights = new int[Long.SIZE];
+        long first = 0;
+        long second = 0;
+        int words = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            long word = FNV_OFFSET;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                word = (word ^ Character.toLowerCase(text.charAt(i))) * FNV_PRIME;
+                i++;
+            }
+            if (++words >= SHINGLE_WORDS) {
+                addFeature(weights, shingle(first, second, word));
+            }
+            first = second;
+            second = word;
+        }
+        if (words > 0 && words < SHINGLE_WORDS) {
+            addFeature(weights, shingle(0, first, second));
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return number of bits two fingerprints differ in
+     */
+    public static int distance(long fingerprint, long other) {
+        return Long.bitCount(fingerprint ^ other);
+    }
+
+    /**
+     * @param fingerprint fingerprint
+     * @param band band index, from 0 to {@link #BANDS} exclusive
+     * @return bits of the band as a non-negative number
+     */
+    public static int band(long fingerprint, int band) {
+        return (int) (fingerprint >>> (band * BAND_BITS)) & BAND_MASK;
+    }
+
+    private static long shingle(long first, long second, long third) {
+        return mix(mix(mix(first) + second) + third);
+    }
+
+    private static void addFeature(int[] weights, long feature) {
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            weights[bit] += (feature >>> bit & 1) == 0 ? -1 : 1;
+        }
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads word hashes evenly over all bits.
+     */
+    private static long mix(long value) {
+        long z = value + GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Content hashing helpers used to derive stable identifiers for ingested content.
+ */
+public final class ContentHashes {
+
+    private static final String SHA_256 = "SHA-256";
+    private static final String KEY_SEPARATOR = "\n";
+
+    private ContentHashes() {
+    }
+
+    /**
+     * Normalizes text so that insignificant whitespace differences produce the same hash.
+     *
+     * @param text source text
+     * @return normalized text
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return StringUtils.EMPTY;
+        }
+        return text.lines()
+                .map(line -> StringUtils.stripEnd(line, null))
+                .collect(Collectors.joining("\n"))
+                .strip();
+    }
+
+    /**
+     * Computes a hex encoded SHA-256 over the given parts joined by a separator.
+     *
+     * @param parts values to hash
+     * @return hex digest
+     */
+    public static String sha256Hex(String... parts) {
+        return HexFormat.of().formatHex(sha256(parts));
+    }
+
+    /**
+     * Derives a name-based UUID from the given parts.
+     *
+     * @param parts values to hash
+     * @return stable UUID
+     */
+    public static UUID uuid(String... parts) {
+        return UUID.nameUUIDFromBytes(String.join(KEY_SEPARATOR, parts).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] sha256(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(SHA_256);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    digest.update(KEY_SEPARATOR.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update(StringUtils.defaultString(parts[i]).getBytes(StandardCharsets.UTF_8));
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
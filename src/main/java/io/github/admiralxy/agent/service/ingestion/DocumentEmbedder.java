@@ -0,0 +1,92 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.service.model.EmbeddingModelRuntime;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embeds documents the same way the vector store would, so the vectors can be persisted separately.
+ * Vectors are looked up in the {@link EmbeddingCache} first and only cache misses reach the model.
+ * Entries are keyed by the payload the model embeds, metadata included, so a hit always matches the model input.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentEmbedder {
+
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy;
+    private final EmbeddingModelRuntime embeddingModelRuntime;
+    private final EmbeddingCache embeddingCache;
+    private final IngestionProperties properties;
+
+    /**
+     * Embeds the given documents.
+     *
+     * @param documents documents to embed
+     * @return documents paired with their vectors, in input order
+     */
+    public List<EmbeddedDocument> embed(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        if (!properties.isEmbeddingCacheEnabled()) {
+            return pair(documents, embedWithModel(documents));
+        }
+
+        String signature = embeddingModelRuntime.getSignature();
+        List<String> keys = documents.stream()
+                .map(document -> embeddingCache.key(signature, document.getFormattedContent(MetadataMode.EMBED)))
+                .toList();
+        Map<String, float[]> vectors = new HashMap<>(embeddingCache.getAll(keys.stream().distinct().toList()));
+
+        Map<String, Document> misses = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            if (!vectors.containsKey(keys.get(i))) {
+                misses.putIfAbsent(keys.get(i), documents.get(i));
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<String> missKeys = new ArrayList<>(misses.keySet());
+            List<float[]> embedded = embedWithModel(new ArrayList<>(misses.values()));
+            Map<String, float[]> fresh = new HashMap<>();
+            for (int i = 0; i < missKeys.size(); i++) {
+                fresh.put(missKeys.get(i), embedded.get(i));
+            }
+            if (signature.equals(embeddingModelRuntime.getSignature())) {
+                embeddingCache.putAll(fresh);
+            }
+            vectors.putAll(fresh);
+        }
+
+        return pair(documents, keys.stream().map(vectors::get).toList());
+    }
+
+    private List<float[]> embedWithModel(List<Document> documents) {
+        List<float[]> embeddings = embeddingModel.embed(documents, EmbeddingOptions.builder().build(), batchingStrategy);
+        if (embeddings.size() != documents.size()) {
+            throw new IllegalStateException("Embedding model returned %d vectors for %d documents"
+                    .formatted(embeddings.size(), documents.size()));
+        }
+        return embeddings;
+    }
+
+    private List<EmbeddedDocument> pair(List<Document> documents, List<float[]> embeddings) {
+        List<EmbeddedDocument> result = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            result.add(new EmbeddedDocument(documents.get(i), embeddings.get(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,6 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import org.springframework.ai.document.Document;
+
+public record EmbeddedDocument(Document document, float[] embedding) {
+}
@@ -0,0 +1,144 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent content-addressed cache of embedding vectors.
+ * Keys combine the embedding model signature with the normalized payload sent to the model,
+ * so a settings change never serves vectors produced by another model.
+ * Vectors unused for longer than the configured retention are removed periodically.
+ */
+@Slf4j
+@Component
+public class EmbeddingCache {
+
+    private static final String SQL_SELECT_EMBEDDINGS =
+            "SELECT c_key, c_embedding FROM t_embedding_cache WHERE c_key = ANY(?)";
+    private static final String SQL_INSERT_EMBEDDING =
+            "INSERT INTO t_embedding_cache (c_key, c_embedding, c_created_at, c_last_used_at) VALUES (?, ?, NOW(), NOW()) "
+                    + "ON CONFLICT (c_key) DO NOTHING";
+    private static final String SQL_TOUCH_EMBEDDINGS =
+            "UPDATE t_embedding_cache SET c_last_used_at = NOW() "
+                    + "WHERE c_key = ANY(?) AND c_last_used_at < NOW() - INTERVAL '1 day'";
+    private static final String SQL_DELETE_UNUSED =
+            "DELETE FROM t_embedding_cache WHERE c_key IN (SELECT c_key FROM t_embedding_cache "
+                    + "WHERE c_last_used_at < NOW() - make_interval(secs => ?) LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IngestionProperties properties;
+    private final Counter hits;
+    private final Counter misses;
+
+    public EmbeddingCache(JdbcTemplate jdbcTemplate, IngestionProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.hits = Counter.builder("rag.embedding.cache.hits")
+                .description("Chunks whose embedding was served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("rag.embedding.cache.misses")
+                .description("Chunks which had to be sent to the embedding model")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds a cache key for the given payload.
+     *
+     * @param modelSignature embedding model signature
+     * @param payload text sent to the embedding model, formatted metadata included
+     * @return cache key
+     */
+    public String key(String modelSignature, String payload) {
+        return ContentHashes.sha256Hex(modelSignature, ContentHashes.normalize(payload));
+    }
+
+    /**
+     * Looks up cached vectors and records hits and misses.
+     *
+     * @param keys cache keys
+     * @return found vectors by key
+     */
+    public Map<String, float[]> getAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, float[]> found = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SQL_SELECT_EMBEDDINGS);
+            ps.setArray(1, connection.createArrayOf("varchar", keys.toArray()));
+            return ps;
+        }, rs -> {
+            found.put(rs.getString(1), fromBytes(rs.getBytes(2)));
+        });
+        hits.increment(found.size());
+        misses.increment(keys.size() - found.size());
+        if (!found.isEmpty()) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(SQL_TOUCH_EMBEDDINGS);
+                ps.setArray(1, connection.createArrayOf("varchar", found.keySet().toArray()));
+                return ps;
+            });
+        }
+        return found;
+    }
+
+    /**
+     * Removes vectors not used within the retention, batch by batch.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.embedding-cache-cleanup-interval:1h}")
+    public void evictUnused() {
+        long retentionSeconds = properties.getEmbeddingCacheRetention().toSeconds();
+        int batchSize = Math.max(1, properties.getEmbeddingCacheCleanupBatchSize());
+        int removed = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(SQL_DELETE_UNUSED, retentionSeconds, batchSize);
+            removed += deleted;
+        } while (deleted == batchSize);
+        if (removed > 0) {
+            log.info("Removed {} unused vectors from the embedding cache", removed);
+        }
+    }
+
+    /**
+     * Stores vectors, keeping existing entries untouched.
+     *
+     * @param entries vectors by key
+     */
+    public void putAll(Map<String, float[]> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, float[]>> rows = new ArrayList<>(entries.entrySet());
+        jdbcTemplate.batchUpdate(SQL_INSERT_EMBEDDING, rows, rows.size(), (ps, entry) -> {
+            ps.setString(1, entry.getKey());
+            ps.setBytes(2, toBytes(entry.getValue()));
+        });
+    }
+
+    private static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] fromBytes(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.service.TokenizerService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sizes documents by the exact text the embedding model receives: the metadata rendered in
+ * {@link MetadataMode#EMBED} followed by the content. Content which does not fit the model limit
+ * is cut before it is sent, preferably at paragraph, line, sentence or word boundaries.
+ * Payloads are counted with the tokenizer of the embedding model, sizes of payloads which fit may be estimated.
+ */
+@Component
+public class EmbeddingPayloadSizer {
+
+    /**
+     * Upper bound of characters a single token may cover, limits how much text is encoded per cut.
+     */
+    private static final int MAX_CHARS_PER_TOKEN = 32;
+    private static final List<String> BOUNDARIES = List.of("\n\n", "\n", ". ", " ");
+
+    /**
+     * Counts tokens of the text the embedding model receives for a document.
+     *
+     * @param tokenizer tokenizer of the embedding model
+     * @param document document to embed
+     * @return number of tokens
+     */
+    public int countTokens(TokenizerService tokenizer, Document document) {
+        return tokenizer.countTokens(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    /**
+     * Splits content into documents whose embed payload fits the model limit.
+     *
+     * @param tokenizer tokenizer of the embedding model
+     * @param text content
+     * @param newDocument creates the document of a part
+     * @param maxTokens maximum number of tokens of a single embedding input
+     * @return documents in content order, paired with their payload size, estimated for a document which fits whole
+     */
+    public List<SizedDocument> fit(TokenizerService tokenizer, String text, PartFactory newDocument, int maxTokens) {
+        return fit(tokenizer, text, tokenizer.countTokens(text), newDocument, maxTokens);
+    }
+
+    /**
+     * Splits content whose token count is already known, e.g. from chunking by tokens, into documents whose
+     * embed payload fits the model limit.
+     *
+     * @param tokenizer tokenizer of the embedding model
+     * @param text content
+     * @param textTokens number of tokens of the content
+     * @param newDocument creates the document of a part
+     * @param maxTokens maximum number of tokens of a single embedding input
+     * @return documents in content order, paired with their payload size, estimated for a document which fits whole
+     */
+    public List<SizedDocument> fit(TokenizerService tokenizer, String text, int textTokens, PartFactory newDocument,
+                                   int maxTokens) {
+        Document whole = newDocument.create(0, text, textTokens);
+        String payload = whole.getFormattedContent(MetadataMode.EMBED);
+        if (tokenizer.fitsWithin(payload, maxTokens)) {
+            return List.of(new SizedDocument(whole, tokenizer.estimateTokens(payload)));
+        }
+        int wholeTokens = tokenizer.countTokens(payload);
+        if (wholeTokens <= maxTokens) {
+            return List.of(new SizedDocument(whole, wholeTokens));
+        }
+
+        int budget = maxTokens - (wholeTokens - textTokens);
+        List<SizedDocument> parts = new ArrayList<>();
+        String rest = text;
+        while (!rest.isEmpty()) {
+            if (budget <= 0) {
+                throw new IllegalStateException("Metadata of a chunk leaves no room for content within %d tokens"
+                        .formatted(maxTokens));
+            }
+            String part = cut(tokenizer, rest, budget);
+            if (StringUtils.isBlank(part)) {
+                rest = rest.substring(part.length());
+                continue;
+            }
+            Document document = newDocument.create(parts.size(), part, tokenizer.countTokens(part));
+            int tokens = countTokens(tokenizer, document);
+            if (tokens > maxTokens) {
+                // Tokens may merge across the metadata separator, the same part is cut again with less room.
+                budget -= tokens - maxTokens;
+                continue;
+            }
+            parts.add(new SizedDocument(document, tokens));
+            rest = rest.substring(part.length());
+        }
+        return parts;
+    }
+
+    private String cut(TokenizerService tokenizer, String text, int budget) {
+        int window = (int) Math.min(text.length(), (long) budget * MAX_CHARS_PER_TOKEN);
+        String candidate = text.substring(0, window);
+        String prefix = tokenizer.truncateToTokens(candidate, budget);
+        if (prefix.equals(text)) {
+            return text;
+        }
+        int end = prefix.length();
+        for (String boundary : BOUNDARIES) {
+            int at = text.lastIndexOf(boundary, end - boundary.length());
+            if (at > 0 && at >= end / 2) {
+                return text.substring(0, at + boundary.length());
+            }
+        }
+        return text.substring(0, Math.max(end, Character.charCount(text.codePointAt(0))));
+    }
+
+    /**
+     * Creates the document of a single part of content.
+     */
+    @FunctionalInterface
+    public interface PartFactory {
+
+        /**
+         * @param part zero-based part index
+         * @param text content of the part
+         * @param textTokens number of tokens of the content alone
+         * @return document to embed
+         */
+        Document create(int part, String text, int textTokens);
+    }
+
+    /**
+     * Document paired with the number of tokens of its embed payload.
+     *
+     * @param document document to embed
+     * @param tokens number of tokens the model receives
+     */
+    public record SizedDocument(Document document, int tokens) {
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Groups ingestion items into batches bounded by a token budget and an item count.
+ * An item which alone exceeds the budget is emitted as a single-item batch.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionBatcher {
+
+    private final IngestionProperties properties;
+
+    /**
+     * Groups items into batches preserving their order.
+     *
+     * @param items source items
+     * @param tokens number of tokens an item contributes to the batch
+     * @param size number of documents an item contributes to the batch
+     * @param <T> item type
+     * @return stream of batches
+     */
+    public <T> Flux<List<T>> batch(Flux<T> items, ToIntFunction<T> tokens, ToIntFunction<T> size) {
+        int maxTokens = Math.max(1, properties.getBatchMaxTokens());
+        int maxItems = Math.max(1, properties.getBatchMaxItems());
+        return Flux.defer(() -> {
+            BatchBudget budget = new BatchBudget(maxTokens, maxItems);
+            return items.bufferUntil(
+                    item -> budget.startsNewBatch(tokens.applyAsInt(item), size.applyAsInt(item)),
+                    true
+            );
+        });
+    }
+
+    private static final class BatchBudget {
+
+        private final int maxTokens;
+        private final int maxItems;
+        private long tokens;
+        private long items;
+
+        private BatchBudget(int maxTokens, int maxItems) {
+            this.maxTokens = maxTokens;
+            this.maxItems = maxItems;
+        }
+
+        private boolean startsNewBatch(int itemTokens, int itemSize) {
+            boolean cut = items > 0 && (tokens + itemTokens > maxTokens || items + itemSize > maxItems);
+            if (cut) {
+                tokens = 0;
+                items = 0;
+            }
+            tokens += itemTokens;
+            items += itemSize;
+            return cut;
+        }
+    }
+}
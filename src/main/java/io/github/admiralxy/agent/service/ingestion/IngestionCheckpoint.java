@@ -0,0 +1,52 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Per-chunk progress of a durable ingestion. Chunks stored by an earlier attempt are skipped
+ * instead of being embedded again, while still counting as written for stale row cleanup.
+ * <p>
+ * The pipeline picks the checkpoint up from the subscriber context under this interface as the key,
+ * so callers resume any ingestion without threading it through providers and source services.
+ */
+public interface IngestionCheckpoint {
+
+    IngestionCheckpoint NONE = new IngestionCheckpoint() {
+
+        @Override
+        public boolean isStored(UUID chunkId) {
+            return false;
+        }
+
+        @Override
+        public void record(Collection<UUID> chunkIds) {
+            // Nothing is tracked.
+        }
+    };
+
+    /**
+     * Checks whether a chunk was already stored by this ingestion.
+     *
+     * @param chunkId chunk ID
+     * @return true if the chunk needs no embedding
+     */
+    boolean isStored(UUID chunkId);
+
+    /**
+     * Records chunks once they are stored in the vector store.
+     *
+     * @param chunkIds stored chunk IDs
+     */
+    void record(Collection<UUID> chunkIds);
+
+    /**
+     * Records the outcome of a near-duplicate check, so the share of duplicates is reported with the progress.
+     *
+     * @param chunks number of checked chunks
+     * @param duplicates number of them found to be near-duplicates
+     */
+    default void recordDuplicates(int chunks, int duplicates) {
+        // Nothing is tracked.
+    }
+}
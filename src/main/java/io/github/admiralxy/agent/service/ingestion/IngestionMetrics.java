@@ -0,0 +1,168 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Stage timers and throughput counters of ingestion, tagged by provider type and space.
+ * <p>
+ * Tags travel in the subscriber context, so whoever starts an ingestion writes its {@link #scope scope}
+ * once and providers, source services and the pipeline tag their meters without knowing the caller.
+ */
+@Component
+public class IngestionMetrics {
+
+    private static final String SCOPE_KEY = IngestionMetrics.class.getName() + ".scope";
+    private static final String TAG_PROVIDER = "provider";
+    private static final String TAG_SPACE = "space";
+    private static final String TAG_STAGE = "stage";
+    private static final String UNKNOWN = "unknown";
+    private static final Tags UNKNOWN_SCOPE = Tags.of(TAG_PROVIDER, UNKNOWN, TAG_SPACE, UNKNOWN);
+
+    private final MeterRegistry meterRegistry;
+
+    public IngestionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Builds the context which tags every meter of an ingestion.
+     *
+     * @param providerType content provider type
+     * @param spaceId space ID
+     * @return context to write into the ingestion
+     */
+    public static Context scope(ProviderType providerType, String spaceId) {
+        return Context.of(SCOPE_KEY, tags(providerType, spaceId));
+    }
+
+    /**
+     * @param context subscriber context of an ingestion
+     * @return tags of the ingestion, unknown if none were written
+     */
+    public static Tags tags(ContextView context) {
+        return context.getOrDefault(SCOPE_KEY, UNKNOWN_SCOPE);
+    }
+
+    /**
+     * @param providerType content provider type, unknown if null
+     * @param spaceId space ID, unknown if blank
+     * @return tags of an ingestion
+     */
+    public static Tags tags(ProviderType providerType, String spaceId) {
+        return Tags.of(
+                TAG_PROVIDER, providerType == null ? UNKNOWN : providerType.name().toLowerCase(Locale.ROOT),
+                TAG_SPACE, StringUtils.defaultIfBlank(spaceId, UNKNOWN)
+        );
+    }
+
+    /**
+     * Times a stage from subscription until the source terminates or is cancelled.
+     */
+    public <T> Mono<T> time(IngestionStage stage, Mono<T> source) {
+        return Mono.deferContextual(context -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return source.doFinally(signal -> sample.stop(timer(stage, tags(context))));
+        });
+    }
+
+    /**
+     * Times a streamed stage from subscription until the stream terminates or is cancelled,
+     * including the time it waits for downstream stages to request more.
+     */
+    public <T> Flux<T> time(IngestionStage stage, Flux<T> source) {
+        return Flux.deferContextual(context -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return source.doFinally(signal -> sample.stop(timer(stage, tags(context))));
+        });
+    }
+
+    /**
+     * Times a synchronous stage.
+     */
+    public <T> T time(IngestionStage stage, Tags tags, Supplier<T> work) {
+        return timer(stage, tags).record(work);
+    }
+
+    /**
+     * Times a synchronous stage without a result.
+     */
+    public void time(IngestionStage stage, Tags tags, Runnable work) {
+        timer(stage, tags).record(work);
+    }
+
+    /**
+     * Counts a chunk entering the pipeline together with its size in UTF-8 bytes.
+     */
+    public void countChunk(Tags tags, String text) {
+        counter("rag.ingest.chunks", "Chunks which entered the ingestion pipeline", tags).increment();
+        counter("rag.ingest.bytes", "UTF-8 bytes of chunk text which entered the ingestion pipeline", tags)
+                .increment(utf8Length(text));
+    }
+
+    /**
+     * Counts a chunk which had to be cut to fit the embedding model limit.
+     */
+    public void countSplit(Tags tags) {
+        counter("rag.ingest.splits", "Chunks cut into several parts to fit the embedding model limit", tags).increment();
+    }
+
+    /**
+     * Counts a chunk found to be a near-duplicate of a stored one, whether it was skipped or linked.
+     */
+    public void countDuplicate(Tags tags) {
+        counter("rag.ingest.duplicates", "Near-duplicate chunks skipped or linked to a stored chunk", tags).increment();
+    }
+
+    /**
+     * Counts tokens sent to the embedding model or served from the embedding cache.
+     */
+    public void countEmbeddedTokens(Tags tags, int tokens) {
+        counter("rag.ingest.tokens", "Tokens of embedded payloads", tags).increment(tokens);
+    }
+
+    private Timer timer(IngestionStage stage, Tags tags) {
+        return Timer.builder("rag.ingest.stage")
+                .description("Time spent in a stage of ingestion")
+                .tags(tags)
+                .tag(TAG_STAGE, stage.tag())
+                .register(meterRegistry);
+    }
+
+    private Counter counter(String name, String description, Tags tags) {
+        return Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
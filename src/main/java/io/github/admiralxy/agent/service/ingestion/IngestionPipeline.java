@@ -0,0 +1,368 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.config.properties.IngestionProperties.DedupMode;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.ingestion.EmbeddingPayloadSizer.SizedDocument;
+import io.github.admiralxy.agent.service.model.ModelSettingsService;
+import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.micrometer.core.instrument.Tags;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Staged ingestion pipeline: dedup, token-split, batch, embed and persist.
+ * Embed and persist stages run with bounded concurrency while preserving chunk order,
+ * so the emitted progress stays monotonic. Given an {@link IngestionWorkQueue}, both stages are handed
+ * to workers of all instances instead.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionPipeline {
+
+    private final EmbeddingPayloadSizer embeddingPayloadSizer;
+    private final TokenizerRegistry tokenizerRegistry;
+    private final ModelSettingsService modelSettingsService;
+    private final IngestionBatcher ingestionBatcher;
+    private final DocumentEmbedder documentEmbedder;
+    private final VectorDocumentWriter vectorDocumentWriter;
+    private final ChunkFingerprintIndex chunkFingerprintIndex;
+    private final IngestionMetrics ingestionMetrics;
+    private final IngestionProperties properties;
+
+    /**
+     * Ingests chunks into the vector store.
+     * Chunk IDs are derived from the document ID and chunk content, so re-ingesting
+     * the same content overwrites existing rows instead of duplicating them.
+     *
+     * @param meta document-level metadata copied to every chunk
+     * @param chunks resolved chunks
+     * @return stream of percentages indicating progress
+     */
+    public Flux<Integer> ingest(Map<String, Object> meta, Flux<RagChunk> chunks) {
+        return ingest(meta, chunks, ignored -> {
+        });
+    }
+
+    /**
+     * Ingests chunks and, once all of them are stored, deletes rows of the same document
+     * which were not produced by this run.
+     *
+     * @param meta document-level metadata copied to every chunk, must contain space and doc
+     * @param chunks resolved chunks
+     * @return stream of percentages indicating progress
+     */
+    public Flux<Integer> replace(Map<String, Object> meta, Flux<RagChunk> chunks) {
+        String spaceId = String.valueOf(meta.get(RagMetadataKeys.SPACE));
+        String docId = String.valueOf(meta.get(RagMetadataKeys.DOC));
+        return Flux.defer(() -> {
+            Set<UUID> written = ConcurrentHashMap.newKeySet();
+            return ingest(meta, chunks, written::addAll)
+                    .concatWith(Mono.<Integer>fromRunnable(() -> vectorDocumentWriter.deleteStale(spaceId, docId, written))
+                            .subscribeOn(Schedulers.boundedElastic()));
+        });
+    }
+
+    private Flux<Integer> ingest(Map<String, Object> meta, Flux<RagChunk> chunks,
+                                 Consumer<List<UUID>> onPersisted) {
+        return Flux.deferContextual(context -> {
+            IngestionCheckpoint checkpoint = context.getOrDefault(IngestionCheckpoint.class, IngestionCheckpoint.NONE);
+            Tags tags = IngestionMetrics.tags(context);
+            Flux<List<PreparedChunk>> batches = Flux.defer(() -> {
+                        EmbeddingsModelSettingsEntity model = modelSettingsService.getEmbeddingsModel();
+                        TokenizerService tokenizer = tokenizerRegistry.getEmbeddingsTokenizer(model);
+                        Map<String, Object> countedMeta = new HashMap<>(meta);
+                        countedMeta.put(RagMetadataKeys.TOKENIZER, tokenizer.getName());
+                        int maxDocumentTokens = model.getMaxDocumentTokens();
+                        Flux<PreparedChunk> prepared = deduplicate(meta, chunks, chunk -> prepareChunk(countedMeta, chunk,
+                                tokenizer, maxDocumentTokens, checkpoint, tags), checkpoint, tags);
+                        return ingestionBatcher.batch(prepared, PreparedChunk::tokens, PreparedChunk::size);
+                    })
+                    .subscribeOn(Schedulers.boundedElastic());
+            Flux<PersistedBatch> persisted = context.hasKey(IngestionWorkQueue.class)
+                    ? distribute(batches, context.get(IngestionWorkQueue.class), tags)
+                    : embedAndPersist(batches, tags);
+            return linkAndComplete(persisted, onPersisted, checkpoint, tags)
+                    .concatMapIterable(batchProgress -> batchProgress)
+                    .transform(this::completeProgress);
+        });
+    }
+
+    /**
+     * Embeds and stores documents of a work unit queued by an ingestion on any instance.
+     *
+     * @param documents documents of the work unit
+     * @return IDs of stored rows
+     */
+    public List<UUID> store(List<Document> documents) {
+        Object spaceId = documents.isEmpty() ? null : documents.getFirst().getMetadata().get(RagMetadataKeys.SPACE);
+        Tags tags = IngestionMetrics.tags(null, Objects.toString(spaceId, null));
+        List<EmbeddedDocument> embedded = ingestionMetrics.time(IngestionStage.EMBED, tags, () -> documentEmbedder.embed(documents));
+        ingestionMetrics.time(IngestionStage.PERSIST, tags, () -> write(embedded));
+        return ids(embedded);
+    }
+
+    private Flux<PersistedBatch> embedAndPersist(Flux<List<PreparedChunk>> batches, Tags tags) {
+        int embedConcurrency = Math.max(1, properties.getEmbedConcurrency());
+        int persistConcurrency = Math.max(1, properties.getPersistConcurrency());
+        int prefetch = Math.max(1, properties.getPrefetch());
+        return batches
+                .flatMapSequential(batch -> Mono.fromCallable(() -> embedBatch(batch, tags))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        embedConcurrency, prefetch)
+                .flatMapSequential(batch -> Mono.fromCallable(() -> persistBatch(batch, tags))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        persistConcurrency, prefetch);
+    }
+
+    private Flux<PersistedBatch> distribute(Flux<List<PreparedChunk>> batches, IngestionWorkQueue workQueue, Tags tags) {
+        int depth = Math.max(1, properties.getWorkQueueDepth());
+        return batches.flatMapSequential(batch -> {
+            List<Document> documents = documentsToEmbed(batch);
+            Mono<List<UUID>> written = documents.isEmpty() ? Mono.just(List.of()) : workQueue.submit(documents);
+            return written.map(ids -> {
+                ingestionMetrics.countEmbeddedTokens(tags, tokens(batch));
+                return new PersistedBatch(batch, ids);
+            });
+        }, depth, Math.max(1, properties.getPrefetch()));
+    }
+
+    /**
+     * Writes linked near-duplicates of each batch and completes it. Batches arrive in order, each once it and all
+     * batches before it are stored, so the chunks duplicates link to are in place.
+     */
+    private Flux<List<Integer>> linkAndComplete(Flux<PersistedBatch> batches, Consumer<List<UUID>> onPersisted,
+                                                IngestionCheckpoint checkpoint, Tags tags) {
+        return batches.concatMap(batch -> {
+            List<Document> links = batch.chunks().stream()
+                    .filter(PreparedChunk::linked)
+                    .flatMap(prepared -> prepared.documents().stream())
+                    .toList();
+            if (links.isEmpty()) {
+                return Mono.just(completeBatch(batch.chunks(), batch.written(), onPersisted, checkpoint));
+            }
+            return Mono.fromCallable(() -> {
+                List<UUID> linked = ingestionMetrics.time(IngestionStage.PERSIST, tags, () -> vectorDocumentWriter.writeLinks(links));
+                List<UUID> written = new ArrayList<>(batch.written());
+                written.addAll(linked);
+                return completeBatch(batch.chunks(), written, onPersisted, checkpoint);
+            }).subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    private Flux<Integer> completeProgress(Flux<Integer> progress) {
+        return Flux.defer(() -> {
+            AtomicInteger last = new AtomicInteger();
+            return progress
+                    .doOnNext(last::set)
+                    .concatWith(Mono.fromSupplier(() -> 100).filter(done -> last.get() < done));
+        });
+    }
+
+    /**
+     * Prepares chunks which are not near-duplicates of a chunk of another document of the space, nor of a chunk
+     * kept earlier by this ingestion. Duplicates are dropped or linked to the chunk they duplicate.
+     */
+    private Flux<PreparedChunk> deduplicate(Map<String, Object> meta, Flux<RagChunk> chunks,
+                                            Function<RagChunk, PreparedChunk> prepare, IngestionCheckpoint checkpoint,
+                                            Tags tags) {
+        DedupMode mode = properties.getDedupMode();
+        if (mode == DedupMode.OFF) {
+            return chunks.map(prepare);
+        }
+        String spaceId = String.valueOf(meta.get(RagMetadataKeys.SPACE));
+        String docId = String.valueOf(meta.get(RagMetadataKeys.DOC));
+        int maxDistance = Math.clamp(properties.getDedupMaxDistance(), 0, ChunkFingerprints.BANDS - 1);
+        return Flux.defer(() -> {
+            SeenFingerprints seen = new SeenFingerprints();
+            return chunks.buffer(Math.max(1, properties.getBatchMaxItems())).concatMapIterable(buffer -> {
+                long[] fingerprints = buffer.stream()
+                        .mapToLong(chunk -> ChunkFingerprints.simHash(chunk.text(), chunk.metadata()))
+                        .toArray();
+                Map<Long, UUID> stored = ingestionMetrics.time(IngestionStage.DEDUP, tags,
+                        () -> chunkFingerprintIndex.findSimilar(spaceId, docId, fingerprints, maxDistance));
+                List<PreparedChunk> prepared = new ArrayList<>(buffer.size());
+                int duplicates = 0;
+                for (int i = 0; i < buffer.size(); i++) {
+                    RagChunk chunk = buffer.get(i);
+                    UUID original = stored.containsKey(fingerprints[i])
+                            ? stored.get(fingerprints[i])
+                            : seen.find(fingerprints[i], maxDistance);
+                    if (original == null) {
+                        PreparedChunk kept = prepare.apply(chunk);
+                        seen.add(fingerprints[i], kept.id());
+                        prepared.add(kept);
+                        continue;
+                    }
+                    duplicates++;
+                    ingestionMetrics.countDuplicate(tags);
+                    if (mode == DedupMode.LINK) {
+                        Map<String, Object> linked = new HashMap<>(chunk.metadata());
+                        linked.put(RagMetadataKeys.DUPLICATE_OF, original.toString());
+                        prepared.add(prepare.apply(new RagChunk(chunk.text(), chunk.number(), chunk.total(), linked,
+                                chunk.progress())).toLink());
+                    } else {
+                        ingestionMetrics.countChunk(tags, chunk.text());
+                    }
+                }
+                checkpoint.recordDuplicates(buffer.size(), duplicates);
+                return prepared;
+            });
+        });
+    }
+
+    private PreparedChunk prepareChunk(Map<String, Object> meta, RagChunk chunk, TokenizerService tokenizer,
+                                       int maxDocumentTokens, IngestionCheckpoint checkpoint, Tags tags) {
+        ingestionMetrics.countChunk(tags, chunk.text());
+        List<SizedDocument> parts = ingestionMetrics.time(IngestionStage.TOKENIZE, tags, () -> embeddingPayloadSizer.fit(
+                tokenizer, chunk.text(), chunkTokens(chunk, tokenizer),
+                (part, text, textTokens) -> newDocument(meta, chunk, part, text, textTokens), maxDocumentTokens));
+        if (parts.size() > 1) {
+            ingestionMetrics.countSplit(tags);
+        }
+        List<Document> documents = new ArrayList<>(parts.size());
+        List<UUID> stored = new ArrayList<>();
+        int tokens = 0;
+        UUID firstId = UUID.fromString(parts.getFirst().document().getId());
+        for (SizedDocument part : parts) {
+            UUID id = UUID.fromString(part.document().getId());
+            if (checkpoint.isStored(id)) {
+                stored.add(id);
+                continue;
+            }
+            documents.add(part.document());
+            tokens += part.tokens();
+        }
+        return new PreparedChunk(chunk, firstId, documents, stored, tokens, false);
+    }
+
+    /**
+     * Reuses the token count a provider attached to the chunk, providers which chunk by tokens count them anyway.
+     */
+    private int chunkTokens(RagChunk chunk, TokenizerService tokenizer) {
+        if (chunk.metadata().get(RagMetadataKeys.TOKENS) instanceof Integer tokens
+                && chunk.metadata().get(RagMetadataKeys.TOKENIZER) instanceof String name) {
+            OptionalInt reused = tokenizer.reuseCount(name, tokens);
+            if (reused.isPresent()) {
+                return reused.getAsInt();
+            }
+        }
+        return tokenizer.countTokens(chunk.text());
+    }
+
+    private EmbeddedBatch embedBatch(List<PreparedChunk> batch, Tags tags) {
+        List<Document> documents = documentsToEmbed(batch);
+        List<EmbeddedDocument> embedded = ingestionMetrics.time(IngestionStage.EMBED, tags, () -> documentEmbedder.embed(documents));
+        ingestionMetrics.countEmbeddedTokens(tags, tokens(batch));
+        return new EmbeddedBatch(batch, embedded);
+    }
+
+    private List<Document> documentsToEmbed(List<PreparedChunk> batch) {
+        return batch.stream()
+                .filter(prepared -> !prepared.linked())
+                .flatMap(prepared -> prepared.documents().stream())
+                .toList();
+    }
+
+    private int tokens(List<PreparedChunk> batch) {
+        return batch.stream().mapToInt(PreparedChunk::tokens).sum();
+    }
+
+    private PersistedBatch persistBatch(EmbeddedBatch batch, Tags tags) {
+        ingestionMetrics.time(IngestionStage.PERSIST, tags, () -> write(batch.documents()));
+        return new PersistedBatch(batch.chunks(), ids(batch.documents()));
+    }
+
+    private void write(List<EmbeddedDocument> documents) {
+        vectorDocumentWriter.write(documents);
+        if (properties.getDedupMode() != DedupMode.OFF) {
+            chunkFingerprintIndex.add(documents.stream().map(EmbeddedDocument::document).toList());
+        }
+    }
+
+    private List<Integer> completeBatch(List<PreparedChunk> batch, List<UUID> written, Consumer<List<UUID>> onPersisted,
+                                        IngestionCheckpoint checkpoint) {
+        checkpoint.record(written);
+        onPersisted.accept(written);
+        batch.forEach(prepared -> onPersisted.accept(prepared.stored()));
+        return batch.stream()
+                .map(prepared -> prepared.chunk().progress())
+                .toList();
+    }
+
+    private List<UUID> ids(List<EmbeddedDocument> documents) {
+        return documents.stream()
+                .map(embedded -> UUID.fromString(embedded.document().getId()))
+                .toList();
+    }
+
+    private Document newDocument(Map<String, Object> meta, RagChunk chunk, int part, String text, int textTokens) {
+        String chunkId = chunkId(String.valueOf(meta.get(RagMetadataKeys.DOC)), position(chunk) + "." + part, text);
+        Map<String, Object> metaChunk = new HashMap<>(chunk.metadata());
+        metaChunk.putAll(meta);
+        metaChunk.put(RagMetadataKeys.NUMBER, chunk.number());
+        metaChunk.put(RagMetadataKeys.TOTAL, chunk.total());
+        metaChunk.put(RagMetadataKeys.CHUNK, chunkId);
+        metaChunk.put(RagMetadataKeys.TOKENS, textTokens);
+        return ChunkContentFormatter.newDocument(chunkId, text, metaChunk);
+    }
+
+    /**
+     * Chunks of files and pages are positioned within their source, all chunks of a source share its number.
+     */
+    private String position(RagChunk chunk) {
+        Object source = ObjectUtils.firstNonNull(chunk.metadata().get(RagMetadataKeys.PATH),
+                chunk.metadata().get(RagMetadataKeys.PAGE_ID));
+        if (source == null || !(chunk.metadata().get(RagMetadataKeys.POSITION) instanceof Integer position)) {
+            return String.valueOf(chunk.number());
+        }
+        return source + "#" + position;
+    }
+
+    private String chunkId(String parentId, String position, String text) {
+        return ContentHashes.uuid(parentId, position, ContentHashes.sha256Hex(text)).toString();
+    }
+
+    /**
+     * @param id ID of the first part of the chunk
+     * @param linked whether the documents are near-duplicates stored with the vector of the chunk they duplicate
+     */
+    private record PreparedChunk(RagChunk chunk, UUID id, List<Document> documents, List<UUID> stored, int tokens,
+                                 boolean linked) {
+
+        PreparedChunk toLink() {
+            return new PreparedChunk(chunk, id, documents, stored, 0, true);
+        }
+
+        int size() {
+            return documents.size() + stored.size();
+        }
+    }
+
+    private record EmbeddedBatch(List<PreparedChunk> chunks, List<EmbeddedDocument> documents) {
+    }
+
+    private record PersistedBatch(List<PreparedChunk> chunks, List<UUID> written) {
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import java.util.Locale;
+
+/**
+ * Timed stages of an ingestion, in the order content passes through them.
+ */
+public enum IngestionStage {
+
+    /**
+     * Source download: git clone or fetch, Confluence requests.
+     */
+    FETCH,
+
+    /**
+     * Conversion of source markup to plain text.
+     */
+    FORMAT,
+
+    /**
+     * Splitting of text into chunks.
+     */
+    CHUNK,
+
+    /**
+     * Near-duplicate lookups of chunks in the fingerprint index.
+     */
+    DEDUP,
+
+    /**
+     * Sizing of chunks by the embed payload and cutting of oversized ones.
+     */
+    TOKENIZE,
+
+    /**
+     * Embedding model requests, including cache lookups.
+     */
+    EMBED,
+
+    /**
+     * Vector store writes.
+     */
+    PERSIST;
+
+    /**
+     * @return value of the stage tag
+     */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
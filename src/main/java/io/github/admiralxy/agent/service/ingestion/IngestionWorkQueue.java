@@ -0,0 +1,24 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import org.springframework.ai.document.Document;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Shared queue of embedding work, drained by workers of every instance.
+ * <p>
+ * Like {@link IngestionCheckpoint}, the pipeline picks the queue up from the subscriber context under
+ * this interface as the key. Without one, batches are embedded and stored by the ingesting instance itself.
+ */
+public interface IngestionWorkQueue {
+
+    /**
+     * Queues a batch of documents as a single work unit.
+     *
+     * @param documents documents to embed and store
+     * @return IDs of stored rows once a worker is done, oversized documents may be stored as several rows
+     */
+    Mono<List<UUID>> submit(List<Document> documents);
+}
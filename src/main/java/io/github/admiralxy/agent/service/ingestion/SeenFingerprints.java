@@ -0,0 +1,52 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Fingerprints of chunks kept earlier in the same ingestion, which are not in the persistent index yet.
+ * Looked up by bands like {@link ChunkFingerprintIndex}. Not thread-safe, an ingestion checks its chunks in order.
+ */
+final class SeenFingerprints {
+
+    private final Map<Integer, List<Seen>> byBand = new HashMap<>();
+
+    /**
+     * @param fingerprint fingerprint of a kept chunk
+     * @param id ID of the row the chunk is stored in
+     */
+    void add(long fingerprint, UUID id) {
+        Seen seen = new Seen(fingerprint, id);
+        for (int band = 0; band < ChunkFingerprints.BANDS; band++) {
+            byBand.computeIfAbsent(key(fingerprint, band), ignored -> new ArrayList<>()).add(seen);
+        }
+    }
+
+    /**
+     * @return ID of the closest kept chunk within the distance, null if there is none
+     */
+    UUID find(long fingerprint, int maxDistance) {
+        Seen closest = null;
+        int closestDistance = maxDistance + 1;
+        for (int band = 0; band < ChunkFingerprints.BANDS; band++) {
+            for (Seen seen : byBand.getOrDefault(key(fingerprint, band), List.of())) {
+                int distance = ChunkFingerprints.distance(fingerprint, seen.fingerprint());
+                if (distance < closestDistance) {
+                    closest = seen;
+                    closestDistance = distance;
+                }
+            }
+        }
+        return closest == null ? null : closest.id();
+    }
+
+    private static int key(long fingerprint, int band) {
+        return band << Short.SIZE | ChunkFingerprints.band(fingerprint, band);
+    }
+
+    private record Seen(long fingerprint, UUID id) {
+    }
+}
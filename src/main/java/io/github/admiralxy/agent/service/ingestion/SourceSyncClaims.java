@@ -0,0 +1,82 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Leases on registered sources, so a source is synced by one instance at a time. A lease is renewed while its sync
+ * runs and released when it ends. The lease of an instance which stopped mid-sync expires and may be taken again.
+ */
+@Component
+@RequiredArgsConstructor
+public class SourceSyncClaims {
+
+    private static final String SQL_CLAIM =
+            "UPDATE %s SET c_sync_owner = ?, c_sync_lease_until = NOW() + make_interval(secs => ?) "
+                    + "WHERE c_id = ? AND (c_sync_owner IS NULL OR c_sync_lease_until < NOW())";
+    private static final String SQL_RENEW =
+            "UPDATE %s SET c_sync_lease_until = NOW() + make_interval(secs => ?) WHERE c_id = ? AND c_sync_owner = ?";
+    private static final String SQL_RELEASE =
+            "UPDATE %s SET c_sync_owner = NULL, c_sync_lease_until = NULL WHERE c_id = ? AND c_sync_owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IngestionProperties properties;
+
+    /**
+     * Runs a sync of a source unless another one holds its lease.
+     *
+     * @param source table of the source
+     * @param sourceId source ID
+     * @param sync sync to run once the lease is taken
+     * @param busy error signalled when the source is already being synced
+     * @return progress of the sync
+     */
+    public Flux<Integer> exclusive(SourceTable source, UUID sourceId, Supplier<Flux<Integer>> sync,
+                                   Supplier<RuntimeException> busy) {
+        String owner = UUID.randomUUID().toString();
+        Duration lease = properties.getSourceSyncLease();
+        return Mono.fromCallable(() -> jdbcTemplate.update(SQL_CLAIM.formatted(source.table()), owner, lease.toSeconds(),
+                        sourceId) > 0)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(claimed -> {
+                    if (!claimed) {
+                        return Flux.error(busy.get());
+                    }
+                    Duration renewEvery = lease.dividedBy(3);
+                    Disposable heartbeat = Flux.interval(renewEvery, renewEvery, Schedulers.boundedElastic())
+                            .subscribe(tick -> jdbcTemplate.update(SQL_RENEW.formatted(source.table()), lease.toSeconds(),
+                                    sourceId, owner));
+                    return Flux.defer(sync)
+                            .doFinally(ignored -> {
+                                heartbeat.dispose();
+                                jdbcTemplate.update(SQL_RELEASE.formatted(source.table()), sourceId, owner);
+                            });
+                });
+    }
+
+    public enum SourceTable {
+
+        GIT("t_git_sources"),
+        CONFLUENCE("t_confluence_sources");
+
+        private final String table;
+
+        SourceTable(String table) {
+            this.table = table;
+        }
+
+        String table() {
+            return table;
+        }
+    }
+}
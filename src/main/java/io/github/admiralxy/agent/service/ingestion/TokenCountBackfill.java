@@ -0,0 +1,57 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
+import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.model.ModelSettingsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fills in token counts of chunks stored before counts were kept in chunk metadata.
+ * Once no such chunks are left, the backfill stays idle for the lifetime of the instance.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenCountBackfill {
+
+    private final VectorDocumentWriter vectorDocumentWriter;
+    private final TokenizerRegistry tokenizerRegistry;
+    private final ModelSettingsService modelSettingsService;
+    private final IngestionProperties properties;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * Counts tokens of all chunks without a stored count, batch by batch, the first run happens on startup.
+     * A failed run is repeated on the next schedule.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.token-backfill-interval:1m}")
+    public void backfill() {
+        if (finished.get()) {
+            return;
+        }
+        int batchSize = Math.max(1, properties.getTokenBackfillBatchSize());
+        TokenizerService tokenizer = tokenizerRegistry.getEmbeddingsTokenizer(modelSettingsService.getEmbeddingsModel());
+        int filled = 0;
+        Map<UUID, String> chunks;
+        do {
+            chunks = vectorDocumentWriter.findWithoutTokenCounts(batchSize);
+            Map<UUID, Integer> tokenCounts = new HashMap<>();
+            chunks.forEach((id, text) -> tokenCounts.put(id, tokenizer.countTokens(text)));
+            vectorDocumentWriter.writeTokenCounts(tokenCounts, tokenizer.getName());
+            filled += chunks.size();
+        } while (chunks.size() == batchSize);
+        if (filled > 0) {
+            log.info("Stored token counts of {} chunks", filled);
+        }
+        finished.set(true);
+    }
+}
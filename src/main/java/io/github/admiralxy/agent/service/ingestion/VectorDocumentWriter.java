@@ -0,0 +1,226 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.pgvector.autoconfigure.PgVectorStoreProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes already embedded documents into the pgvector table used by the vector store,
+ * as configured by {@code spring.ai.vectorstore.pgvector.schema-name} and {@code table-name}.
+ */
+@Component
+public class VectorDocumentWriter {
+
+    private static final String SQL_UPSERT_DOCUMENT =
+            "INSERT INTO %s (id, content, metadata, embedding) VALUES (?, ?, ?::jsonb, ?) "
+                    + "ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, "
+                    + "metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding";
+    private static final String SQL_UPSERT_LINKED_DOCUMENT =
+            "INSERT INTO %1$s (id, content, metadata, embedding) SELECT ?, ?, ?::jsonb, embedding FROM %1$s WHERE id = ? "
+                    + "ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, "
+                    + "metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding";
+    private static final String SQL_DELETE_STALE_DOCUMENTS =
+            "DELETE FROM %s WHERE metadata->>'space' = ? AND metadata->>'doc' = ? AND NOT (id = ANY(?))";
+
+    private static final String SQL_DELETE_PATH_DOCUMENTS =
+            "DELETE FROM %s WHERE metadata->>'space' = ? AND metadata->>'doc' = ? AND metadata->>'path' = ANY(?)";
+    private static final String SQL_DELETE_PAGE_DOCUMENTS =
+            "DELETE FROM %s WHERE metadata->>'space' = ? AND metadata->>'doc' = ? AND metadata->>'pageId' = ANY(?)";
+
+    private static final String SQL_SELECT_DOCUMENTS_WITHOUT_TOKENS =
+            "SELECT id, content FROM %s WHERE metadata IS NOT NULL AND metadata->>'tokens' IS NULL LIMIT ?";
+    private static final String SQL_UPDATE_DOCUMENT_TOKENS =
+            "UPDATE %s SET metadata = metadata || jsonb_build_object('tokens', ?::int, 'tokenizer', ?::text) WHERE id = ?";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JdbcTemplate jdbcTemplate;
+    private final String upsertDocument;
+    private final String upsertLinkedDocument;
+    private final String deleteStaleDocuments;
+    private final String deletePathDocuments;
+    private final String deletePageDocuments;
+    private final String selectDocumentsWithoutTokens;
+    private final String updateDocumentTokens;
+
+    /**
+     * @param jdbcTemplate JDBC template
+     * @param vectorStoreProperties properties of the vector store, naming the table rows are written to
+     */
+    public VectorDocumentWriter(JdbcTemplate jdbcTemplate, PgVectorStoreProperties vectorStoreProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        String table = tableName(vectorStoreProperties);
+        this.upsertDocument = SQL_UPSERT_DOCUMENT.formatted(table);
+        this.upsertLinkedDocument = SQL_UPSERT_LINKED_DOCUMENT.formatted(table);
+        this.deleteStaleDocuments = SQL_DELETE_STALE_DOCUMENTS.formatted(table);
+        this.deletePathDocuments = SQL_DELETE_PATH_DOCUMENTS.formatted(table);
+        this.deletePageDocuments = SQL_DELETE_PAGE_DOCUMENTS.formatted(table);
+        this.selectDocumentsWithoutTokens = SQL_SELECT_DOCUMENTS_WITHOUT_TOKENS.formatted(table);
+        this.updateDocumentTokens = SQL_UPDATE_DOCUMENT_TOKENS.formatted(table);
+    }
+
+    /**
+     * Inserts documents in a single JDBC batch, replacing rows with the same ID.
+     *
+     * @param documents embedded documents
+     */
+    public void write(List<EmbeddedDocument> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(upsertDocument, documents, documents.size(), (ps, embedded) -> {
+            Document document = embedded.document();
+            ps.setObject(1, UUID.fromString(document.getId()));
+            ps.setString(2, document.getText());
+            ps.setString(3, toJson(document));
+            ps.setObject(4, new PGvector(embedded.embedding()));
+        });
+    }
+
+    /**
+     * Inserts near-duplicates without embedding them, each row takes the vector of the row named
+     * by {@link RagMetadataKeys#DUPLICATE_OF}. Duplicates of rows deleted in the meantime are not written.
+     *
+     * @param documents linked near-duplicates
+     * @return IDs of written rows
+     */
+    public List<UUID> writeLinks(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(upsertLinkedDocument, documents, documents.size(), (ps, document) -> {
+            ps.setObject(1, UUID.fromString(document.getId()));
+            ps.setString(2, document.getText());
+            ps.setString(3, toJson(document));
+            ps.setObject(4, UUID.fromString(String.valueOf(document.getMetadata().get(RagMetadataKeys.DUPLICATE_OF))));
+        });
+        List<UUID> written = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            if (counts[0][i] != 0) {
+                written.add(UUID.fromString(documents.get(i).getId()));
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Deletes rows of a document which were not written by the latest ingestion.
+     *
+     * @param spaceId space ID
+     * @param docId document ID
+     * @param keepIds IDs of rows to keep
+     * @return number of deleted rows
+     */
+    public int deleteStale(String spaceId, String docId, Collection<UUID> keepIds) {
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(deleteStaleDocuments);
+            ps.setString(1, spaceId);
+            ps.setString(2, docId);
+            ps.setArray(3, connection.createArrayOf("uuid", keepIds.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Deletes rows of a document produced from the given source paths.
+     *
+     * @param spaceId space ID
+     * @param docId document ID
+     * @param paths source paths
+     * @return number of deleted rows
+     */
+    public int deletePaths(String spaceId, String docId, Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(deletePathDocuments);
+            ps.setString(1, spaceId);
+            ps.setString(2, docId);
+            ps.setArray(3, connection.createArrayOf("varchar", paths.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Deletes rows of a document produced from the given Confluence pages.
+     *
+     * @param spaceId space ID
+     * @param docId document ID
+     * @param pageIds Confluence page IDs
+     * @return number of deleted rows
+     */
+    public int deletePages(String spaceId, String docId, Collection<String> pageIds) {
+        if (pageIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(deletePageDocuments);
+            ps.setString(1, spaceId);
+            ps.setString(2, docId);
+            ps.setArray(3, connection.createArrayOf("varchar", pageIds.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Loads rows stored before token counts were kept in chunk metadata.
+     *
+     * @param limit maximum number of rows
+     * @return chunk text by row ID
+     */
+    public Map<UUID, String> findWithoutTokenCounts(int limit) {
+        Map<UUID, String> found = new LinkedHashMap<>();
+        jdbcTemplate.query(selectDocumentsWithoutTokens,
+                rs -> {
+                    found.put(rs.getObject(1, UUID.class), StringUtils.defaultString(rs.getString(2)));
+                },
+                limit);
+        return found;
+    }
+
+    /**
+     * Stores token counts of chunk texts into the metadata of existing rows.
+     *
+     * @param tokenCounts number of tokens by row ID
+     * @param tokenizer name of the tokenizer which counted the tokens
+     */
+    public void writeTokenCounts(Map<UUID, Integer> tokenCounts, String tokenizer) {
+        if (tokenCounts.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<UUID, Integer>> entries = List.copyOf(tokenCounts.entrySet());
+        jdbcTemplate.batchUpdate(updateDocumentTokens, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setString(2, tokenizer);
+            ps.setObject(3, entry.getKey());
+        });
+    }
+
+    private String toJson(Document document) {
+        try {
+            return objectMapper.writeValueAsString(document.getMetadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize document metadata", e);
+        }
+    }
+
+    private static String tableName(PgVectorStoreProperties properties) {
+        // Qualified the same way as by the vector store, so both read and write the same table.
+        String table = properties.getTableName();
+        return StringUtils.isBlank(properties.getSchemaName()) ? table : properties.getSchemaName() + "." + table;
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.admiralxy.agent.service.job;
+
+import io.github.admiralxy.agent.domain.IngestionJob;
+import io.github.admiralxy.agent.service.AddDocumentCommand;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+public interface IngestionJobService {
+
+    /**
+     * Persist an ingestion job and start it in background, detached from the caller.
+     *
+     * @param command add command with provider-specific options
+     * @return submitted job
+     */
+    IngestionJob submit(AddDocumentCommand command);
+
+    /**
+     * Get the stored state of a job.
+     *
+     * @param jobId job ID
+     * @return job
+     */
+    IngestionJob get(UUID jobId);
+
+    /**
+     * Follow progress of a job, whether it runs on this instance, on another one or has already finished.
+     * Subscribers may come and go, the job is not affected.
+     *
+     * @param jobId job ID
+     * @return stream of percentages indicating progress, failing if the job fails
+     */
+    Flux<Integer> progress(UUID jobId);
+
+    /**
+     * Start queued jobs and take over running jobs whose instance stopped sending heartbeats.
+     *
+     * @return number of jobs started by this instance
+     */
+    int resumeAbandoned();
+
+    /**
+     * Refresh heartbeats of jobs running on this instance.
+     */
+    void heartbeat();
+}
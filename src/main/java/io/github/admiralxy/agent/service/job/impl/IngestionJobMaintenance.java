@@ -0,0 +1,27 @@
+package io.github.admiralxy.agent.service.job.impl;
+
+import io.github.admiralxy.agent.service.job.IngestionJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestionJobMaintenance {
+
+    private final IngestionJobService ingestionJobService;
+
+    /**
+     * Keeps jobs of this instance alive and picks up queued or abandoned ones, the first run happens on startup.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.job-heartbeat-interval:15s}")
+    public void maintain() {
+        ingestionJobService.heartbeat();
+        int resumed = ingestionJobService.resumeAbandoned();
+        if (resumed > 0) {
+            log.info("Resumed {} ingestion jobs", resumed);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package io.github.admiralxy.agent.service.job.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.domain.IngestionJob;
+import io.github.admiralxy.agent.entity.IngestionJobEntity;
+import io.github.admiralxy.agent.entity.IngestionJobStatus;
+import io.github.admiralxy.agent.repository.IngestionJobRepository;
+import io.github.admiralxy.agent.service.AddDocumentCommand;
+import io.github.admiralxy.agent.service.RagService;
+import io.github.admiralxy.agent.service.ingestion.IngestionCheckpoint;
+import io.github.admiralxy.agent.service.ingestion.IngestionWorkQueue;
+import io.github.admiralxy.agent.service.job.IngestionJobService;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionJobServiceImpl implements IngestionJobService {
+
+    private static final String JOB_NOT_FOUND = "Ingestion job not found";
+    private static final String JOB_TAKEN_OVER = "Ingestion job was taken over by another instance";
+
+    private final IngestionJobRepository ingestionJobRepository;
+    private final IngestionJobStore ingestionJobStore;
+    private final IngestionWorkStore ingestionWorkStore;
+    private final RagService ragService;
+    private final IngestionProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String owner = UUID.randomUUID().toString();
+    private final Map<UUID, Sinks.Many<Integer>> running = new ConcurrentHashMap<>();
+
+    @Override
+    public IngestionJob submit(AddDocumentCommand command) {
+        IngestionJobEntity job = new IngestionJobEntity();
+        job.setSpaceId(UUID.fromString(command.spaceId()));
+        job.setProviderType(command.providerType() == null ? ProviderType.TEXT : command.providerType());
+        job.setRequest(toJson(command.contentRequest()));
+        job.setStatus(IngestionJobStatus.QUEUED);
+        IngestionJobEntity saved = ingestionJobRepository.save(job);
+        start(saved.getId());
+        return toIngestionJob(saved);
+    }
+
+    @Override
+    public IngestionJob get(UUID jobId) {
+        return ingestionJobRepository.findById(jobId)
+                .map(this::toIngestionJob)
+                .orElseThrow(() -> new IllegalArgumentException(JOB_NOT_FOUND));
+    }
+
+    @Override
+    public Flux<Integer> progress(UUID jobId) {
+        Sinks.Many<Integer> sink = running.get(jobId);
+        if (sink != null) {
+            return sink.asFlux();
+        }
+        get(jobId);
+        return Flux.interval(Duration.ZERO, properties.getJobPollInterval())
+                .concatMap(tick -> Mono.fromCallable(() -> get(jobId)).subscribeOn(Schedulers.boundedElastic()))
+                .takeUntil(job -> job.status().isFinished())
+                .<Integer>handle((job, progress) -> {
+                    if (job.status() == IngestionJobStatus.FAILED) {
+                        progress.error(new IllegalStateException(job.error()));
+                        return;
+                    }
+                    progress.next(job.progress());
+                })
+                .distinctUntilChanged();
+    }
+
+    @Override
+    public int resumeAbandoned() {
+        int started = 0;
+        for (UUID jobId : ingestionJobStore.findResumable(properties.getJobStaleAfter())) {
+            if (!running.containsKey(jobId) && start(jobId)) {
+                started++;
+            }
+        }
+        return started;
+    }
+
+    @Override
+    public void heartbeat() {
+        ingestionJobStore.heartbeat(Set.copyOf(running.keySet()), owner);
+    }
+
+    private boolean start(UUID jobId) {
+        if (!ingestionJobStore.claim(jobId, owner, properties.getJobStaleAfter())) {
+            return false;
+        }
+        IngestionJobEntity job = ingestionJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException(JOB_NOT_FOUND));
+        Sinks.Many<Integer> sink = Sinks.many().replay().latest();
+        running.put(jobId, sink);
+        IngestionCheckpoint checkpoint = new JobCheckpoint(jobId, ingestionJobStore.findChunks(jobId), ingestionJobStore);
+        ingestionWorkStore.deleteJobUnits(jobId);
+        Context context = Context.of(IngestionCheckpoint.class, checkpoint);
+        if (properties.isDistributed()) {
+            context = context.put(IngestionWorkQueue.class,
+                    new JobWorkQueue(jobId, ingestionWorkStore, properties.getJobPollInterval()));
+        }
+
+        Flux.defer(() -> ragService.add(toCommand(job)))
+                .distinctUntilChanged()
+                .doOnNext(progress -> {
+                    if (!ingestionJobStore.updateProgress(jobId, owner, progress)) {
+                        throw new IllegalStateException(JOB_TAKEN_OVER);
+                    }
+                    sink.tryEmitNext(progress);
+                })
+                .contextWrite(context)
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(
+                        ignored -> {},
+                        error -> finish(jobId, sink, error),
+                        () -> finish(jobId, sink, null)
+                );
+        return true;
+    }
+
+    private void finish(UUID jobId, Sinks.Many<Integer> sink, Throwable error) {
+        running.remove(jobId);
+        try {
+            ingestionWorkStore.deleteJobUnits(jobId);
+            ingestionJobStore.finish(jobId, owner, error == null ? null : errorMessage(error));
+        } catch (RuntimeException e) {
+            log.warn("Failed to store ingestion job result: {}", jobId, e);
+        }
+        if (error == null) {
+            sink.tryEmitComplete();
+        } else {
+            log.warn("Ingestion job failed: {}", jobId, error);
+            sink.tryEmitError(error);
+        }
+    }
+
+    private String errorMessage(Throwable error) {
+        return StringUtils.defaultIfBlank(error.getMessage(), error.getClass().getSimpleName());
+    }
+
+    private AddDocumentCommand toCommand(IngestionJobEntity job) {
+        try {
+            RagContentRequest request = objectMapper.readValue(job.getRequest(), RagContentRequest.class);
+            return new AddDocumentCommand(job.getSpaceId().toString(), job.getProviderType(), request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read ingestion job request", e);
+        }
+    }
+
+    private String toJson(RagContentRequest request) {
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize ingestion job request", e);
+        }
+    }
+
+    private IngestionJob toIngestionJob(IngestionJobEntity job) {
+        return new IngestionJob(
+                job.getId(),
+                job.getSpaceId(),
+                job.getProviderType(),
+                job.getStatus(),
+                job.getProgress(),
+                job.getChunks() == 0 ? 0 : (double) job.getDuplicates() / job.getChunks(),
+                job.getError(),
+                job.getCreatedAt(),
+                job.getUpdatedAt()
+        );
+    }
+
+    private record JobCheckpoint(UUID jobId, Set<UUID> stored, IngestionJobStore store) implements IngestionCheckpoint {
+
+        @Override
+        public boolean isStored(UUID chunkId) {
+            return stored.contains(chunkId);
+        }
+
+        @Override
+        public void record(Collection<UUID> chunkIds) {
+            store.recordChunks(jobId, chunkIds);
+        }
+
+        @Override
+        public void recordDuplicates(int chunks, int duplicates) {
+            store.addDuplicates(jobId, chunks, duplicates);
+        }
+    }
+
+    private record JobWorkQueue(UUID jobId, IngestionWorkStore store, Duration pollInterval) implements IngestionWorkQueue {
+
+        @Override
+        public Mono<List<UUID>> submit(List<Document> documents) {
+            return Mono.fromCallable(() -> store.enqueue(jobId, documents))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(unitId -> Mono.defer(() -> Mono.justOrEmpty(store.takeResult(unitId)))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .repeatWhenEmpty(attempts -> attempts.concatMap(attempt -> Mono.delay(pollInterval))))
+                    .<List<UUID>>handle((result, sink) -> {
+                        if (result.error() != null) {
+                            sink.error(new IllegalStateException(result.error()));
+                            return;
+                        }
+                        sink.next(result.chunkIds());
+                    });
+        }
+    }
+}
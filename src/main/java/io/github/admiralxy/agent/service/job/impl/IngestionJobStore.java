@@ -0,0 +1,135 @@
+package io.github.admiralxy.agent.service.job.impl;
+
+import io.github.admiralxy.agent.entity.IngestionJobStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Conditional state transitions of ingestion jobs. Every write of a running job is guarded by its owner,
+ * so an instance which lost a job to another one can never overwrite its state.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionJobStore {
+
+    private static final String SQL_CLAIM_JOB =
+            "UPDATE t_ingestion_jobs SET c_status = 'RUNNING', c_owner = ?, c_heartbeat_at = NOW(), c_updated_at = NOW(), "
+                    + "c_chunks = 0, c_duplicates = 0 WHERE c_id = ? AND (c_status = 'QUEUED' "
+                    + "OR (c_status = 'RUNNING' AND c_heartbeat_at < NOW() - make_interval(secs => ?)))";
+    private static final String SQL_SELECT_RESUMABLE_JOBS =
+            "SELECT c_id FROM t_ingestion_jobs "
+                    + "WHERE c_status = 'QUEUED' OR (c_status = 'RUNNING' AND c_heartbeat_at < NOW() - make_interval(secs => ?)) "
+                    + "ORDER BY c_created_at";
+    private static final String SQL_UPDATE_PROGRESS =
+            "UPDATE t_ingestion_jobs SET c_progress = ?, c_heartbeat_at = NOW(), c_updated_at = NOW() "
+                    + "WHERE c_id = ? AND c_owner = ? AND c_status = 'RUNNING'";
+    private static final String SQL_UPDATE_HEARTBEAT =
+            "UPDATE t_ingestion_jobs SET c_heartbeat_at = NOW() WHERE c_id = ANY(?) AND c_owner = ? AND c_status = 'RUNNING'";
+    private static final String SQL_FINISH_JOB =
+            "UPDATE t_ingestion_jobs SET c_status = ?, c_progress = CASE WHEN ? THEN 100 ELSE c_progress END, "
+                    + "c_error = ?, c_request = NULL, c_updated_at = NOW() "
+                    + "WHERE c_id = ? AND c_owner = ? AND c_status = 'RUNNING'";
+    private static final String SQL_ADD_DUPLICATES =
+            "UPDATE t_ingestion_jobs SET c_chunks = c_chunks + ?, c_duplicates = c_duplicates + ? WHERE c_id = ?";
+    private static final String SQL_INSERT_CHUNK =
+            "INSERT INTO t_ingestion_job_chunks (c_job_id, c_chunk_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String SQL_SELECT_CHUNKS =
+            "SELECT c_chunk_id FROM t_ingestion_job_chunks WHERE c_job_id = ?";
+    private static final String SQL_DELETE_CHUNKS =
+            "DELETE FROM t_ingestion_job_chunks WHERE c_job_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes a queued job, or a running one whose owner stopped sending heartbeats.
+     *
+     * @param jobId job ID
+     * @param owner claiming instance
+     * @param staleAfter a running job without a heartbeat for this long is abandoned
+     * @return true if the job now belongs to the owner
+     */
+    public boolean claim(UUID jobId, String owner, Duration staleAfter) {
+        return jdbcTemplate.update(SQL_CLAIM_JOB, owner, jobId, staleAfter.toSeconds()) == 1;
+    }
+
+    /**
+     * @param staleAfter a running job without a heartbeat for this long is abandoned
+     * @return IDs of queued and abandoned jobs, oldest first
+     */
+    public List<UUID> findResumable(Duration staleAfter) {
+        return jdbcTemplate.queryForList(SQL_SELECT_RESUMABLE_JOBS, UUID.class, staleAfter.toSeconds());
+    }
+
+    /**
+     * Stores progress of a running job, which also counts as a heartbeat.
+     *
+     * @return false if the job no longer belongs to the owner
+     */
+    public boolean updateProgress(UUID jobId, String owner, int progress) {
+        return jdbcTemplate.update(SQL_UPDATE_PROGRESS, progress, jobId, owner) == 1;
+    }
+
+    /**
+     * Refreshes heartbeats of running jobs of the owner.
+     */
+    public void heartbeat(Collection<UUID> jobIds, String owner) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SQL_UPDATE_HEARTBEAT);
+            ps.setArray(1, connection.createArrayOf("uuid", jobIds.toArray()));
+            ps.setString(2, owner);
+            return ps;
+        });
+    }
+
+    /**
+     * Moves a running job to its final status and drops its checkpoints, they are only needed to resume.
+     *
+     * @param error failure message, null for a completed job
+     */
+    public void finish(UUID jobId, String owner, String error) {
+        IngestionJobStatus status = error == null ? IngestionJobStatus.COMPLETED : IngestionJobStatus.FAILED;
+        if (jdbcTemplate.update(SQL_FINISH_JOB, status.name(), error == null, error, jobId, owner) == 1) {
+            jdbcTemplate.update(SQL_DELETE_CHUNKS, jobId);
+        }
+    }
+
+    /**
+     * Adds chunks checked for near-duplicates by a job. Counts start over with every attempt,
+     * since each attempt checks all chunks again.
+     */
+    public void addDuplicates(UUID jobId, int chunks, int duplicates) {
+        jdbcTemplate.update(SQL_ADD_DUPLICATES, chunks, duplicates, jobId);
+    }
+
+    /**
+     * Records chunks stored by a job.
+     */
+    public void recordChunks(UUID jobId, Collection<UUID> chunkIds) {
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERT_CHUNK, chunkIds, chunkIds.size(), (ps, chunkId) -> {
+            ps.setObject(1, jobId);
+            ps.setObject(2, chunkId);
+        });
+    }
+
+    /**
+     * @return IDs of chunks stored by earlier attempts of a job
+     */
+    public Set<UUID> findChunks(UUID jobId) {
+        return new HashSet<>(jdbcTemplate.queryForList(SQL_SELECT_CHUNKS, UUID.class, jobId));
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.admiralxy.agent.service.job.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.admiralxy.agent.service.ingestion.ChunkContentFormatter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Work units of distributed ingestions: batches of documents waiting to be embedded and stored by any instance.
+ * Workers claim units with {@code FOR UPDATE SKIP LOCKED}, so concurrent claims never block on or take the same unit.
+ * A claimed unit is leased and the lease is renewed while the unit is processed, once the lease runs out without
+ * a result the unit goes to the next worker.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionWorkStore {
+
+    private static final String SQL_INSERT_UNIT =
+            "INSERT INTO t_ingestion_work_units (c_id, c_job_id, c_status, c_payload, c_created_at) VALUES (?, ?, 'PENDING', ?, NOW())";
+    private static final String SQL_CLAIM_UNITS =
+            "UPDATE t_ingestion_work_units SET c_status = 'RUNNING', c_owner = ?, c_lease_until = NOW() + make_interval(secs => ?) "
+                    + "WHERE c_id IN (SELECT c_id FROM t_ingestion_work_units "
+                    + "WHERE c_status = 'PENDING' OR (c_status = 'RUNNING' AND c_lease_until < NOW()) "
+                    + "ORDER BY c_created_at LIMIT ? FOR UPDATE SKIP LOCKED) "
+                    + "RETURNING c_id, c_payload";
+    private static final String SQL_RENEW_UNIT =
+            "UPDATE t_ingestion_work_units SET c_lease_until = NOW() + make_interval(secs => ?) "
+                    + "WHERE c_id = ? AND c_owner = ? AND c_status = 'RUNNING'";
+    private static final String SQL_COMPLETE_UNIT =
+            "UPDATE t_ingestion_work_units SET c_status = 'DONE', c_chunk_ids = ?, c_payload = NULL "
+                    + "WHERE c_id = ? AND c_owner = ? AND c_status = 'RUNNING'";
+    private static final String SQL_FAIL_UNIT =
+            "UPDATE t_ingestion_work_units SET c_status = 'FAILED', c_error = ?, c_payload = NULL "
+                    + "WHERE c_id = ? AND c_owner = ? AND c_status = 'RUNNING'";
+    private static final String SQL_SELECT_FINISHED_UNIT =
+            "SELECT c_status, c_chunk_ids, c_error FROM t_ingestion_work_units "
+                    + "WHERE c_id = ? AND c_status IN ('DONE', 'FAILED')";
+    private static final String SQL_DELETE_UNIT =
+            "DELETE FROM t_ingestion_work_units WHERE c_id = ?";
+    private static final String SQL_DELETE_JOB_UNITS =
+            "DELETE FROM t_ingestion_work_units WHERE c_job_id = ?";
+
+    private static final String STATUS_FAILED = "FAILED";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Queues documents of a job as a single unit.
+     *
+     * @return unit ID
+     */
+    public UUID enqueue(UUID jobId, List<Document> documents) {
+        UUID unitId = UUID.randomUUID();
+        List<UnitDocument> payload = documents.stream()
+                .map(document -> new UnitDocument(document.getId(), document.getText(), document.getMetadata()))
+                .toList();
+        jdbcTemplate.update(SQL_INSERT_UNIT, unitId, jobId, toJson(payload));
+        return unitId;
+    }
+
+    /**
+     * Leases pending units and units whose lease ran out, oldest first.
+     *
+     * @param owner claiming worker
+     * @param limit maximum number of units
+     * @param lease how long the units stay reserved for the owner
+     */
+    public List<WorkUnit> claim(String owner, int limit, Duration lease) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SQL_CLAIM_UNITS, (rs, rowNum) -> new WorkUnit(
+                rs.getObject("c_id", UUID.class),
+                fromJson(rs.getString("c_payload"))
+        ), owner, lease.toSeconds(), limit);
+    }
+
+    /**
+     * Extends the lease of a unit still processed by the owner, ignored if the lease went to another worker meanwhile.
+     *
+     * @param lease how long the unit stays reserved for the owner from now on
+     */
+    public void renew(UUID unitId, String owner, Duration lease) {
+        jdbcTemplate.update(SQL_RENEW_UNIT, lease.toSeconds(), unitId, owner);
+    }
+
+    /**
+     * Stores the result of a leased unit, ignored if the lease went to another worker meanwhile.
+     *
+     * @param chunkIds IDs of stored rows
+     */
+    public void complete(UUID unitId, String owner, Collection<UUID> chunkIds) {
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SQL_COMPLETE_UNIT);
+            ps.setArray(1, connection.createArrayOf("uuid", chunkIds.toArray()));
+            ps.setObject(2, unitId);
+            ps.setString(3, owner);
+            return ps;
+        });
+    }
+
+    /**
+     * Fails a leased unit, which fails the job waiting for it.
+     */
+    public void fail(UUID unitId, String owner, String error) {
+        jdbcTemplate.update(SQL_FAIL_UNIT, error, unitId, owner);
+    }
+
+    /**
+     * Takes the result of a finished unit and removes the unit.
+     *
+     * @return result, empty while the unit is still waiting or being processed
+     */
+    public Optional<WorkUnitResult> takeResult(UUID unitId) {
+        List<WorkUnitResult> results = jdbcTemplate.query(SQL_SELECT_FINISHED_UNIT, (rs, rowNum) -> toResult(rs), unitId);
+        if (results.isEmpty()) {
+            return Optional.empty();
+        }
+        jdbcTemplate.update(SQL_DELETE_UNIT, unitId);
+        return Optional.of(results.getFirst());
+    }
+
+    /**
+     * Drops all units of a job, whether waiting, processed or finished.
+     */
+    public void deleteJobUnits(UUID jobId) {
+        jdbcTemplate.update(SQL_DELETE_JOB_UNITS, jobId);
+    }
+
+    private WorkUnitResult toResult(ResultSet rs) throws SQLException {
+        if (STATUS_FAILED.equals(rs.getString("c_status"))) {
+            return new WorkUnitResult(List.of(), rs.getString("c_error"));
+        }
+        Array chunkIds = rs.getArray("c_chunk_ids");
+        List<UUID> ids = chunkIds == null ? List.of() : Arrays.asList((UUID[]) chunkIds.getArray());
+        return new WorkUnitResult(ids, null);
+    }
+
+    private String toJson(List<UnitDocument> documents) {
+        try {
+            return objectMapper.writeValueAsString(documents);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize ingestion work unit", e);
+        }
+    }
+
+    private List<Document> fromJson(String payload) {
+        try {
+            return objectMapper.readValue(payload, new TypeReference<List<UnitDocument>>() {
+                    }).stream()
+                    .map(document -> ChunkContentFormatter.newDocument(document.id(), document.text(), document.metadata()))
+                    .toList();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read ingestion work unit", e);
+        }
+    }
+
+    /**
+     * Leased unit.
+     *
+     * @param id unit ID
+     * @param documents documents to embed and store
+     */
+    public record WorkUnit(UUID id, List<Document> documents) {
+    }
+
+    /**
+     * Result of a finished unit.
+     *
+     * @param chunkIds IDs of stored rows
+     * @param error failure message, null for a completed unit
+     */
+    public record WorkUnitResult(List<UUID> chunkIds, String error) {
+    }
+
+    private record UnitDocument(String id, String text, Map<String, Object> metadata) {
+    }
+}
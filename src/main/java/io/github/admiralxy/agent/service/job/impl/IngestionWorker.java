@@ -0,0 +1,70 @@
+package io.github.admiralxy.agent.service.job.impl;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.job.impl.IngestionWorkStore.WorkUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embeds work units of distributed ingestions, whichever instance queued them. The lease of a unit is renewed while
+ * it is processed, so a slow unit is not taken over by another worker.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestionWorker {
+
+    private final IngestionWorkStore ingestionWorkStore;
+    private final IngestionPipeline ingestionPipeline;
+    private final IngestionProperties properties;
+    private final String owner = UUID.randomUUID().toString();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Claims as many units as there are free worker slots, units are processed in background.
+     */
+    @Scheduled(fixedDelayString = "${app.rag.ingestion.job-poll-interval:1s}")
+    public void poll() {
+        if (!properties.isDistributed()) {
+            return;
+        }
+        int free = Math.max(1, properties.getWorkerConcurrency()) - inFlight.get();
+        List<WorkUnit> units = ingestionWorkStore.claim(owner, free, properties.getWorkLease());
+        for (WorkUnit unit : units) {
+            inFlight.incrementAndGet();
+            Mono.fromRunnable(() -> process(unit))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doFinally(signal -> inFlight.decrementAndGet())
+                    .subscribe();
+        }
+    }
+
+    private void process(WorkUnit unit) {
+        Duration lease = properties.getWorkLease();
+        Duration renewEvery = lease.dividedBy(3);
+        Disposable heartbeat = Flux.interval(renewEvery, renewEvery, Schedulers.boundedElastic())
+                .subscribe(tick -> ingestionWorkStore.renew(unit.id(), owner, lease));
+        try {
+            List<UUID> chunkIds = ingestionPipeline.store(unit.documents());
+            heartbeat.dispose();
+            ingestionWorkStore.complete(unit.id(), owner, chunkIds);
+        } catch (RuntimeException e) {
+            heartbeat.dispose();
+            log.warn("Ingestion work unit failed: {}", unit.id(), e);
+            ingestionWorkStore.fail(unit.id(), owner, StringUtils.defaultIfBlank(e.getMessage(), e.getClass().getSimpleName()));
+        }
+    }
+}
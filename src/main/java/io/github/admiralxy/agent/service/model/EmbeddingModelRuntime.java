@@ -21,11 +21,11 @@ public class EmbeddingModelRuntime {
     private final AiHttpClientBuilderFactory httpClientBuilderFactory;
 
     private volatile String signature;
+    private volatile String vectorSignature;
     private volatile EmbeddingModel embeddingModel;
 
     public EmbeddingModel getOrCreateModel() {
-        EmbeddingsModelSettingsEntity settings = repository.findById(SINGLETON_ID)
-                .orElseThrow(() -> new IllegalStateException("Embeddings settings are missing"));
+        EmbeddingsModelSettingsEntity settings = loadSettings();
 
         String currentSignature = buildSignature(settings);
         EmbeddingModel cachedModel = embeddingModel;
@@ -52,13 +52,40 @@ public class EmbeddingModelRuntime {
 
             embeddingModel = new OpenAiEmbeddingModel(api, MetadataMode.EMBED, options);
             signature = currentSignature;
+            vectorSignature = buildVectorSignature(settings);
             return embeddingModel;
         }
     }
 
+    /**
+     * Returns the signature of the embedding model the latest vectors were produced by.
+     * Vectors produced under different signatures are not comparable. The API key is not part of it,
+     * since rotating the key does not change the vectors.
+     *
+     * @return model signature
+     */
+    public String getSignature() {
+        String current = vectorSignature;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (vectorSignature == null) {
+                getOrCreateModel();
+            }
+            return vectorSignature;
+        }
+    }
+
     public synchronized void invalidate() {
         embeddingModel = null;
         signature = null;
+        vectorSignature = null;
+    }
+
+    private EmbeddingsModelSettingsEntity loadSettings() {
+        return repository.findById(SINGLETON_ID)
+                .orElseThrow(() -> new IllegalStateException("Embeddings settings are missing"));
     }
 
     private String buildSignature(EmbeddingsModelSettingsEntity settings) {
@@ -68,4 +95,11 @@ public class EmbeddingModelRuntime {
                 + "|" + settings.getName()
                 + "|" + settings.getDimensions();
     }
+
+    private String buildVectorSignature(EmbeddingsModelSettingsEntity settings) {
+        return settings.getProvider()
+                + "|" + settings.getBaseUrl()
+                + "|" + settings.getName()
+                + "|" + settings.getDimensions();
+    }
 }
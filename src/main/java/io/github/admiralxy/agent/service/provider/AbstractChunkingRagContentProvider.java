@@ -1,28 +1,26 @@
 package io.github.admiralxy.agent.service.provider;
 
-import io.github.admiralxy.agent.service.TextChunkerService;
+import io.github.admiralxy.agent.service.TextKind;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionStage;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 public abstract class AbstractChunkingRagContentProvider implements RagContentProvider {
 
-    private final TextChunkerService textChunkerService;
+    private final ProviderTextChunker providerTextChunker;
+    private final IngestionMetrics ingestionMetrics;
 
     @Override
     public Flux<RagChunk> resolveChunks(RagContentRequest request) {
-        return resolveContent(request)
-                .flatMapMany(content -> {
-                    List<String> chunks = request.batch()
-                            ? textChunkerService.chunk(content, 100, 1500, 50)
-                            : List.of(content);
-                    int total = chunks.size();
-                    return Flux.range(0, total)
-                            .map(i -> new RagChunk(chunks.get(i), i, total));
-                });
+        return ingestionMetrics.time(IngestionStage.FETCH, resolveContent(request))
+                .flatMapMany(content -> request.batch()
+                        ? providerTextChunker.stream(content, TextKind.AUTO, Map.of())
+                        : Flux.just(new RagChunk(content, 0, 1)));
     }
 
     protected abstract Mono<String> resolveContent(RagContentRequest request);
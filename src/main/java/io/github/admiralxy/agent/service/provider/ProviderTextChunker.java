@@ -0,0 +1,75 @@
+package io.github.admiralxy.agent.service.provider;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.TextChunk;
+import io.github.admiralxy.agent.service.TextChunkerService;
+import io.github.admiralxy.agent.service.TextKind;
+import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionStage;
+import io.github.admiralxy.agent.service.model.ModelSettingsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Chunks text of providers lazily, by the token budget of the embedding model when
+ * {@code app.rag.ingestion.chunk-max-tokens} is set and by lines and characters otherwise.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProviderTextChunker {
+
+    private final TextChunkerService textChunkerService;
+    private final IngestionMetrics ingestionMetrics;
+    private final TokenizerRegistry tokenizerRegistry;
+    private final ModelSettingsService modelSettingsService;
+    private final IngestionProperties ingestionProperties;
+
+    /**
+     * Chunks text as it is read. Chunks are numbered by their position in the text, their total is zero
+     * since it is not known until the text is read.
+     *
+     * @param text text to chunk
+     * @param kind kind of the text
+     * @param metadata metadata of every chunk, token counts are added when chunks are cut by tokens
+     * @return stream of chunks in text order
+     */
+    public Flux<RagChunk> stream(String text, TextKind kind, Map<String, Object> metadata) {
+        int maxTokens = ingestionProperties.getChunkMaxTokens();
+        if (maxTokens <= 0) {
+            return index(textChunkerService.stream(text, kind, 100, 1500, 50), metadata);
+        }
+        return Flux.defer(() -> {
+            EmbeddingsModelSettingsEntity model = modelSettingsService.getEmbeddingsModel();
+            TokenizerService tokenizer = tokenizerRegistry.getEmbeddingsTokenizer(model);
+            int budget = Math.min(maxTokens, model.getMaxDocumentTokens());
+            Flux<TextChunk> chunks = textChunkerService.stream(text, kind, tokenizer, budget,
+                    ingestionProperties.getChunkOverlapTokens());
+            Map<String, Object> counted = new HashMap<>(metadata);
+            counted.put(RagMetadataKeys.TOKENIZER, tokenizer.getName());
+            return index(chunks, counted);
+        });
+    }
+
+    private Flux<RagChunk> index(Flux<TextChunk> chunks, Map<String, Object> metadata) {
+        return ingestionMetrics.time(IngestionStage.CHUNK, chunks)
+                .index((number, chunk) -> new RagChunk(chunk.text(), number.intValue(), 0, metadata(chunk, metadata),
+                        chunk.progress()));
+    }
+
+    private Map<String, Object> metadata(TextChunk chunk, Map<String, Object> metadata) {
+        if (chunk.tokens().isEmpty()) {
+            return metadata;
+        }
+        Map<String, Object> counted = new HashMap<>(metadata);
+        counted.put(RagMetadataKeys.TOKENS, chunk.tokens().getAsInt());
+        return counted;
+    }
+}
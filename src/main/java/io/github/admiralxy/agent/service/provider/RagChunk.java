@@ -1,4 +1,25 @@
 package io.github.admiralxy.agent.service.provider;
 
-public record RagChunk(String text, int number, int total) {
+import java.util.Map;
+
+/**
+ * @param progress percentage of the source indexed once the chunk is stored, derived from the number
+ *                 and total unless the total is unknown upfront
+ */
+public record RagChunk(String text, int number, int total, Map<String, Object> metadata, int progress) {
+
+    public RagChunk(String text, int number, int total) {
+        this(text, number, total, Map.of());
+    }
+
+    public RagChunk(String text, int number, int total, Map<String, Object> metadata) {
+        this(text, number, total, metadata, progress(number, total));
+    }
+
+    private static int progress(int number, int total) {
+        if (total <= 0) {
+            return 100;
+        }
+        return (int) (((number + 1) / (double) total) * 100);
+    }
 }
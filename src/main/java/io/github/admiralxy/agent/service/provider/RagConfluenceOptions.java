@@ -0,0 +1,13 @@
+package io.github.admiralxy.agent.service.provider;
+
+import org.apache.commons.lang3.StringUtils;
+
+public record RagConfluenceOptions(String spaceKey, boolean descendants) {
+
+    /**
+     * Whether more than the single page of the request URL is indexed.
+     */
+    public boolean crawl() {
+        return StringUtils.isNotBlank(spaceKey) || descendants;
+    }
+}
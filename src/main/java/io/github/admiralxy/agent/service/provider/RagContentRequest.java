@@ -4,6 +4,11 @@ public record RagContentRequest(
         String text,
         boolean batch,
         RagGitOptions git,
-        RagProviderAuth auth
+        RagProviderAuth auth,
+        RagConfluenceOptions confluence
 ) {
+
+    public RagContentRequest(String text, boolean batch, RagGitOptions git, RagProviderAuth auth) {
+        this(text, batch, git, auth, null);
+    }
 }
@@ -1,4 +1,14 @@
 package io.github.admiralxy.agent.service.provider;
 
-public record RagGitOptions(String branch, String folder) {
+import io.github.admiralxy.agent.domain.GitFileFilter;
+
+public record RagGitOptions(String branch, String folder, GitFileFilter filter) {
+
+    public RagGitOptions {
+        filter = filter == null ? GitFileFilter.none() : filter;
+    }
+
+    public RagGitOptions(String branch, String folder) {
+        this(branch, folder, GitFileFilter.none());
+    }
 }
@@ -1,43 +1,50 @@
 package io.github.admiralxy.agent.service.provider.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.github.admiralxy.agent.config.AiHttpClientBuilderFactory;
+import io.github.admiralxy.agent.config.properties.ConfluenceProperties;
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
-import io.github.admiralxy.agent.service.TextChunkerService;
-import io.github.admiralxy.agent.service.provider.AbstractChunkingRagContentProvider;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.TextKind;
+import io.github.admiralxy.agent.service.confluence.ConfluenceClient;
+import io.github.admiralxy.agent.service.confluence.ConfluencePage;
+import io.github.admiralxy.agent.service.confluence.ConfluenceSite;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionStage;
+import io.github.admiralxy.agent.service.provider.ProviderTextChunker;
+import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.github.admiralxy.agent.service.provider.RagConfluenceOptions;
+import io.github.admiralxy.agent.service.provider.RagContentProvider;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
-public class ConfluenceRagContentProvider extends AbstractChunkingRagContentProvider {
-
-    private static final String REQUEST_HEADER_ACCEPT = "Accept";
-    private static final String REQUEST_HEADER_ACCEPT_VALUE = "application/json";
-    private static final String TITLE_FIELD = "title";
-    private static final String BODY_FIELD = "body";
-    private static final String STORAGE_FIELD = "storage";
-    private static final String VALUE_FIELD = "value";
+public class ConfluenceRagContentProvider implements RagContentProvider {
+
     private static final String VIEW_PAGE_PATH = "/pages/viewpage.action";
-    private static final String CONTENT_API_PATH_TEMPLATE = "/rest/api/content/%s";
-    private static final String CONTENT_API_QUERY = "expand=body.storage";
+    private static final List<String> SITE_PATH_MARKERS = List.of("/pages/", "/display/", "/spaces/", "/rest/");
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final WebClient webClient;
+    private final ProviderTextChunker providerTextChunker;
+    private final ConfluenceClient confluenceClient;
+    private final ConfluenceProperties properties;
+    private final IngestionMetrics ingestionMetrics;
     private final ConfluenceStorageHtmlFormatter htmlFormatter = new ConfluenceStorageHtmlFormatter();
 
-    public ConfluenceRagContentProvider(TextChunkerService textChunkerService,
-                                        AiHttpClientBuilderFactory httpClientBuilderFactory) {
-        super(textChunkerService);
-        this.webClient = httpClientBuilderFactory.createWebClientBuilder().build();
+    public ConfluenceRagContentProvider(ProviderTextChunker providerTextChunker,
+                                        ConfluenceClient confluenceClient,
+                                        ConfluenceProperties properties,
+                                        IngestionMetrics ingestionMetrics) {
+        this.providerTextChunker = providerTextChunker;
+        this.confluenceClient = confluenceClient;
+        this.properties = properties;
+        this.ingestionMetrics = ingestionMetrics;
     }
 
     @Override
@@ -46,56 +53,131 @@ public class ConfluenceRagContentProvider extends AbstractChunkingRagContentProv
     }
 
     @Override
-    protected Mono<String> resolveContent(RagContentRequest request) {
-        String url = toConfluenceApiUrl(request.text());
-        String username = request.auth() == null ? null : request.auth().login();
-        String password = request.auth() == null ? null : request.auth().password();
-        if (StringUtils.isBlank(username) || StringUtils.isBlank(password)) {
-            return Mono.error(new IllegalStateException("Confluence credentials are required"));
+    public Flux<RagChunk> resolveChunks(RagContentRequest request) {
+        return listPages(request).flatMapMany(pages -> toChunks(request, pages));
+    }
+
+    /**
+     * Lists pages selected by the request: the page of the URL, optionally with its descendants, or a whole space.
+     * Space and descendant listings carry metadata only, so the page count is known before any body is fetched.
+     *
+     * @param request Confluence provider request
+     * @return selected pages with their current versions
+     */
+    public Mono<List<ConfluencePage>> listPages(RagContentRequest request) {
+        return ingestionMetrics.time(IngestionStage.FETCH, Mono.defer(() -> {
+            URI uri = parseUrl(request.text());
+            ConfluenceSite site = toSite(uri, request);
+            RagConfluenceOptions options = request.confluence();
+            Flux<ConfluencePage> pages;
+            if (options != null && StringUtils.isNotBlank(options.spaceKey())) {
+                pages = confluenceClient.listSpacePages(site, options.spaceKey());
+            } else {
+                String rootId = requirePageId(uri);
+                Mono<ConfluencePage> root = confluenceClient.getPage(site, rootId);
+                pages = options != null && options.descendants()
+                        ? Flux.concat(root, confluenceClient.listDescendantPages(site, rootId))
+                        : root.flux();
+            }
+            return pages.distinct(ConfluencePage::id).collectList();
+        }));
+    }
+
+    /**
+     * Fetches bodies of pages concurrently and chunks them, keeping the order of pages.
+     * Chunks are tagged with page ID and version, so chunks of a single page can be replaced on sync.
+     *
+     * @param request Confluence provider request
+     * @param pages pages to index
+     * @return stream of chunks in page order
+     */
+    public Flux<RagChunk> toChunks(RagContentRequest request, List<ConfluencePage> pages) {
+        return Flux.defer(() -> {
+            ConfluenceSite site = toSite(parseUrl(request.text()), request);
+            int total = pages.size();
+            return Flux.range(0, total)
+                    .flatMapSequential(i -> fetchBody(site, pages.get(i))
+                                    .flatMapMany(page -> toChunks(page, i, total, request.batch())),
+                            Math.max(1, properties.getConcurrency()));
+        });
+    }
+
+    private Mono<ConfluencePage> fetchBody(ConfluenceSite site, ConfluencePage page) {
+        return page.body() != null
+                ? Mono.just(page)
+                : ingestionMetrics.time(IngestionStage.FETCH, confluenceClient.getPage(site, page.id()));
+    }
+
+    private Flux<RagChunk> toChunks(ConfluencePage page, int number, int total, boolean batch) {
+        return Flux.deferContextual(context -> {
+            String text = ingestionMetrics.time(IngestionStage.FORMAT, IngestionMetrics.tags(context), () -> toText(page));
+            if (StringUtils.isBlank(text)) {
+                return Flux.empty();
+            }
+            Map<String, Object> metadata = Map.of(
+                    RagMetadataKeys.PAGE_ID, page.id(),
+                    RagMetadataKeys.PAGE_VERSION, page.version()
+            );
+            Flux<RagChunk> parts = batch
+                    ? providerTextChunker.stream(text, TextKind.AUTO, metadata)
+                    : Flux.just(new RagChunk(text, 0, 1, metadata));
+            return parts.map(part -> {
+                Map<String, Object> positioned = new HashMap<>(part.metadata());
+                positioned.put(RagMetadataKeys.POSITION, part.number());
+                return new RagChunk(part.text(), number, total, positioned);
+            });
+        });
+    }
+
+    private String toText(ConfluencePage page) {
+        String title = page.title();
+        String structuredValue = htmlFormatter.format(StringUtils.defaultString(page.body()));
+
+        if (StringUtils.isBlank(title)) {
+            return structuredValue;
         }
+        if (StringUtils.isBlank(structuredValue)) {
+            return title;
+        }
+        return title + "\n\n" + structuredValue;
+    }
 
-        return webClient.get()
-                .uri(url)
-                .accept(MediaType.APPLICATION_JSON)
-                .header(REQUEST_HEADER_ACCEPT, REQUEST_HEADER_ACCEPT_VALUE)
-                .headers(headers -> headers.setBasicAuth(username, password))
-                .retrieve()
-                .onStatus(status -> status.value() >= 400,
-                        response -> response.bodyToMono(String.class)
-                                .defaultIfEmpty(StringUtils.EMPTY)
-                                .map(ignored -> new IllegalStateException(
-                                        "Confluence request failed with status: " + response.statusCode().value())))
-                .bodyToMono(String.class)
-                .flatMap(this::parseContent);
+    private ConfluenceSite toSite(URI uri, RagContentRequest request) {
+        String username = request.auth() == null ? null : request.auth().login();
+        String password = request.auth() == null ? null : request.auth().password();
+        return new ConfluenceSite(baseUrl(uri), username, password);
     }
 
-    private String toConfluenceApiUrl(String rawUrl) {
-        URI uri;
+    private URI parseUrl(String rawUrl) {
         try {
-            uri = new URI(rawUrl);
+            return new URI(rawUrl);
         } catch (URISyntaxException e) {
             throw new IllegalStateException("Invalid Confluence URL", e);
         }
+    }
 
+    private String requirePageId(URI uri) {
         String pageId = extractQueryParam(uri.getRawQuery(), "pageId");
         if (StringUtils.isBlank(pageId)) {
             throw new IllegalStateException("Confluence pageId is required in URL query");
         }
-
         if (!VIEW_PAGE_PATH.equals(uri.getPath())) {
             throw new IllegalStateException("Confluence URL path must be /pages/viewpage.action");
         }
+        return pageId;
+    }
 
+    private String baseUrl(URI uri) {
+        // Everything before the first known Confluence path is the context path of the site.
+        String path = StringUtils.defaultString(uri.getRawPath());
+        int end = SITE_PATH_MARKERS.stream()
+                .mapToInt(path::indexOf)
+                .filter(index -> index >= 0)
+                .min()
+                .orElse(path.length());
         try {
-            return new URI(
-                    uri.getScheme(),
-                    uri.getUserInfo(),
-                    uri.getHost(),
-                    uri.getPort(),
-                    CONTENT_API_PATH_TEMPLATE.formatted(pageId),
-                    CONTENT_API_QUERY,
-                    null
-            ).toString();
+            return new URI(uri.getScheme(), uri.getRawAuthority(), null, null, null).toString()
+                    + StringUtils.removeEnd(path.substring(0, end), "/");
         } catch (URISyntaxException e) {
             throw new IllegalStateException("Failed to build Confluence REST API URL", e);
         }
@@ -113,28 +195,4 @@ public class ConfluenceRagContentProvider extends AbstractChunkingRagContentProv
         }
         return null;
     }
-
-    private Mono<String> parseContent(String body) {
-        JsonNode root;
-        try {
-            root = objectMapper.readTree(body);
-        } catch (JsonProcessingException e) {
-            return Mono.error(new IllegalStateException("Failed to parse Confluence response", e));
-        }
-
-        String title = root.path(TITLE_FIELD).asText(StringUtils.EMPTY);
-        String value = root.path(BODY_FIELD)
-                .path(STORAGE_FIELD)
-                .path(VALUE_FIELD)
-                .asText(StringUtils.EMPTY);
-        String structuredValue = htmlFormatter.format(value);
-
-        if (StringUtils.isBlank(title)) {
-            return Mono.just(structuredValue);
-        }
-        if (StringUtils.isBlank(structuredValue)) {
-            return Mono.just(title);
-        }
-        return Mono.just(title + "\n\n" + structuredValue);
-    }
 }
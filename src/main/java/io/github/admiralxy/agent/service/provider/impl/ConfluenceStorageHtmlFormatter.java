@@ -5,156 +5,247 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
-import java.util.regex.Pattern;
 
+/**
+ * Converts Confluence storage format to plain text with light Markdown structure.
+ * The document is rendered in a single pass and normalized while it is written,
+ * so the cost stays linear in the page size.
+ */
 public class ConfluenceStorageHtmlFormatter {
 
-    private static final Pattern EXTRA_BLANK_LINES = Pattern.compile("\\n{3,}");
-
     public String format(String html) {
         if (StringUtils.isBlank(html)) {
             return StringUtils.EMPTY;
         }
 
         Element body = Jsoup.parseBodyFragment(html).body();
-        StringBuilder sb = new StringBuilder();
-        renderChildren(body, sb);
-        return normalize(sb.toString());
+        NormalizedText out = new NormalizedText(html.length());
+        NodeTraversor.filter(new RenderFilter(out), body);
+        return out.finish();
     }
 
-    private void renderChildren(Node parent, StringBuilder sb) {
-        for (Node child : parent.childNodes()) {
-            renderNode(child, sb);
-        }
-    }
+    private static final class RenderFilter implements NodeFilter {
 
-    private void renderNode(Node node, StringBuilder sb) {
-        if (node instanceof TextNode textNode) {
-            appendNormalizedText(sb, textNode.text());
-            return;
-        }
-        if (!(node instanceof Element element)) {
-            return;
+        private final NormalizedText out;
+        private final Deque<int[]> listCounters = new ArrayDeque<>();
+
+        private RenderFilter(NormalizedText out) {
+            this.out = out;
         }
 
-        String tag = element.tagName();
-        switch (tag) {
-            case "h1", "h2", "h3", "h4", "h5", "h6" -> {
-                ensureBlankLine(sb);
-                sb.append("## ");
-                appendNormalizedText(sb, element.text());
-                sb.append("\n\n");
-            }
-            case "p", "div", "section", "article", "blockquote" -> {
-                renderChildren(element, sb);
-                sb.append("\n\n");
-            }
-            case "br" -> sb.append("\n");
-            case "ul" -> {
-                for (Element li : element.children()) {
-                    if (!"li".equals(li.tagName())) {
-                        continue;
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (isList(node.parent()) && !isTag(node, "li")) {
+                // Lists render their items only.
+                return FilterResult.SKIP_ENTIRELY;
+            }
+            if (node instanceof TextNode textNode) {
+                out.appendText(textNode.text());
+                return FilterResult.CONTINUE;
+            }
+            if (!(node instanceof Element element)) {
+                return FilterResult.SKIP_ENTIRELY;
+            }
+
+            switch (element.tagName()) {
+                case "h1", "h2", "h3", "h4", "h5", "h6" -> {
+                    out.ensureBlankLine();
+                    out.append("## ");
+                    out.appendText(element.text());
+                    out.append("\n\n");
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                case "br" -> {
+                    out.append("\n");
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                case "ol" -> listCounters.push(new int[]{1});
+                case "li" -> {
+                    if (isTag(element.parent(), "ul")) {
+                        out.append("- ");
+                    } else if (isTag(element.parent(), "ol")) {
+                        out.append(String.valueOf(listCounters.peek()[0]++)).append(". ");
                     }
-                    sb.append("- ");
-                    renderChildren(li, sb);
-                    sb.append("\n");
                 }
-                sb.append("\n");
+                case "pre" -> {
+                    out.ensureBlankLine();
+                    out.append("```\n")
+                            .append(StringUtils.defaultString(element.wholeText()).trim())
+                            .append("\n```\n\n");
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                case "code" -> {
+                    out.append("`");
+                    out.appendText(element.text());
+                    out.append("`");
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                case "table" -> {
+                    renderTable(element);
+                    out.append("\n");
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                case "a" -> {
+                    renderLink(element);
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                default -> {
+                    // Other elements render their children only.
+                }
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            if (!(node instanceof Element element)) {
+                return FilterResult.CONTINUE;
             }
-            case "ol" -> {
-                int index = 1;
-                for (Element li : element.children()) {
-                    if (!"li".equals(li.tagName())) {
-                        continue;
+            switch (element.tagName()) {
+                case "p", "div", "section", "article", "blockquote" -> out.append("\n\n");
+                case "ul" -> out.append("\n");
+                case "ol" -> {
+                    listCounters.pop();
+                    out.append("\n");
+                }
+                case "li" -> {
+                    if (isList(element.parent())) {
+                        out.append("\n");
                     }
-                    sb.append(index++).append(". ");
-                    renderChildren(li, sb);
-                    sb.append("\n");
                 }
-                sb.append("\n");
-            }
-            case "pre" -> {
-                ensureBlankLine(sb);
-                sb.append("```\n")
-                        .append(StringUtils.defaultString(element.wholeText()).trim())
-                        .append("\n```\n\n");
+                default -> {
+                    // Inline elements have no closing markup.
+                }
             }
-            case "code" -> {
-                sb.append('`');
-                appendNormalizedText(sb, element.text());
-                sb.append('`');
+            return FilterResult.CONTINUE;
+        }
+
+        private void renderTable(Element table) {
+            boolean first = true;
+            for (Element row : table.select("tr")) {
+                List<String> cells = row.select("th,td").eachText();
+                if (cells.isEmpty()) {
+                    continue;
+                }
+                if (first) {
+                    out.ensureBlankLine();
+                    first = false;
+                }
+                out.append("| ");
+                for (int i = 0; i < cells.size(); i++) {
+                    if (i > 0) {
+                        out.append(" | ");
+                    }
+                    out.append(cells.get(i));
+                }
+                out.append(" |\n");
             }
-            case "table" -> {
-                renderTable(element, sb);
-                sb.append("\n");
+            if (!first) {
+                out.append("\n");
             }
-            case "a" -> renderLink(element, sb);
-            default -> renderChildren(element, sb);
         }
-    }
 
-    private void renderTable(Element table, StringBuilder sb) {
-        List<List<String>> rows = new ArrayList<>();
-        for (Element row : table.select("tr")) {
-            List<String> cells = row.select("th,td").eachText();
-            if (!cells.isEmpty()) {
-                rows.add(cells);
+        private void renderLink(Element element) {
+            String text = element.text();
+            String href = element.attr("href");
+            if (StringUtils.isBlank(text)) {
+                out.appendText(href);
+                return;
+            }
+
+            out.appendText(text);
+            if (StringUtils.isNotBlank(href)) {
+                out.append(" (").append(href).append(")");
             }
         }
-        if (rows.isEmpty()) {
-            return;
+
+        private static boolean isList(Node node) {
+            return isTag(node, "ul") || isTag(node, "ol");
         }
 
-        ensureBlankLine(sb);
-        for (List<String> row : rows) {
-            sb.append("| ").append(String.join(" | ", row)).append(" |\n");
+        private static boolean isTag(Node node, String tag) {
+            return node instanceof Element element && tag.equals(element.tagName());
         }
-        sb.append("\n");
     }
 
-    private void renderLink(Element element, StringBuilder sb) {
-        String text = element.text();
-        String href = element.attr("href");
-        if (StringUtils.isBlank(text)) {
-            appendNormalizedText(sb, href);
-            return;
+    /**
+     * Output which is normalized as it is written: carriage returns are dropped, trailing whitespace of lines
+     * is removed, runs of blank lines collapse into one and the result is trimmed. Whitespace and line breaks
+     * are held back until visible text follows them, so nothing written is ever rescanned.
+     */
+    private static final class NormalizedText {
+
+        private final StringBuilder sb;
+        private final StringBuilder pendingBlank = new StringBuilder();
+        private int pendingNewlines;
+
+        private NormalizedText(int capacity) {
+            this.sb = new StringBuilder(capacity);
         }
 
-        appendNormalizedText(sb, text);
-        if (StringUtils.isNotBlank(href)) {
-            sb.append(" (").append(href).append(')');
+        NormalizedText append(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                append(value.charAt(i));
+            }
+            return this;
         }
-    }
 
-    private void appendNormalizedText(StringBuilder sb, String text) {
-        if (StringUtils.isBlank(text)) {
-            return;
+        void appendText(String text) {
+            if (StringUtils.isBlank(text)) {
+                return;
+            }
+            append(text.replace('\u00A0', ' '));
         }
-        sb.append(text.replace('\u00A0', ' '));
-    }
 
-    private void ensureBlankLine(StringBuilder sb) {
-        if (sb.isEmpty()) {
-            return;
+        void ensureBlankLine() {
+            pendingBlank.setLength(0);
+            if (!sb.isEmpty()) {
+                pendingNewlines = Math.max(pendingNewlines, 2);
+            }
         }
-        if (!sb.toString().endsWith("\n\n")) {
-            if (!sb.toString().endsWith("\n")) {
-                sb.append("\n");
+
+        String finish() {
+            int end = sb.length();
+            while (end > 0 && sb.charAt(end - 1) <= ' ') {
+                end--;
             }
-            sb.append("\n");
+            sb.setLength(end);
+            return sb.toString();
         }
-    }
 
-    private String normalize(String value) {
-        String[] lines = value.replace("\r", StringUtils.EMPTY).split("\n", -1);
-        StringBuilder normalized = new StringBuilder();
-        for (String line : lines) {
-            normalized.append(StringUtils.stripEnd(line, null)).append("\n");
+        private void append(char c) {
+            if (c == '\r') {
+                return;
+            }
+            if (c == '\n') {
+                pendingBlank.setLength(0);
+                if (!sb.isEmpty()) {
+                    pendingNewlines++;
+                }
+                return;
+            }
+            if (sb.isEmpty() && pendingBlank.isEmpty() && c <= ' ') {
+                return;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingBlank.append(c);
+                return;
+            }
+            if (pendingNewlines > 0) {
+                sb.append(pendingNewlines > 1 ? "\n\n" : "\n");
+                pendingNewlines = 0;
+            }
+            if (!pendingBlank.isEmpty()) {
+                sb.append(pendingBlank);
+                pendingBlank.setLength(0);
+            }
+            sb.append(c);
         }
-        String compacted = EXTRA_BLANK_LINES.matcher(normalized.toString()).replaceAll("\n\n");
-        return compacted.trim();
     }
 }
@@ -1,20 +1,52 @@
 package io.github.admiralxy.agent.service.provider.impl;
 
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.TextChunkerService;
+import io.github.admiralxy.agent.service.TextKind;
+import io.github.admiralxy.agent.service.git.GitFile;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
 import io.github.admiralxy.agent.service.git.GitRepositoryService;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionStage;
 import io.github.admiralxy.agent.service.provider.RagChunk;
 import io.github.admiralxy.agent.service.provider.RagContentProvider;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
 @Component
 @RequiredArgsConstructor
 public class GitRagContentProvider implements RagContentProvider {
 
+    private static final int MAX_LINES = 100;
+    private static final int MAX_CHARS = 1500;
+    private static final int OVERLAP = 50;
+
+    private static final Set<String> CODE_EXTENSIONS = Set.of(
+            "java", "kt", "kts", "scala", "groovy", "gradle", "c", "h", "cc", "cpp", "hpp", "cs", "go", "rs",
+            "swift", "dart", "js", "jsx", "mjs", "cjs", "ts", "tsx", "vue", "py", "rb", "php", "lua", "sh", "sql"
+    );
+    private static final Set<String> PROSE_EXTENSIONS = Set.of(
+            "md", "markdown", "txt", "rst", "adoc", "asciidoc"
+    );
+
     private final GitRepositoryService gitRepositoryService;
+    private final TextChunkerService textChunkerService;
+    private final IngestionProperties ingestionProperties;
+    private final IngestionMetrics ingestionMetrics;
 
     @Override
     public boolean supports(ProviderType providerType) {
@@ -25,19 +57,78 @@ public class GitRagContentProvider implements RagContentProvider {
     public Flux<RagChunk> resolveChunks(RagContentRequest request) {
         String branch = request.git() == null ? null : request.git().branch();
         String folder = request.git() == null ? null : request.git().folder();
+        GitFileFilter filter = request.git() == null ? GitFileFilter.none() : request.git().filter();
         String login = request.auth() == null ? null : request.auth().login();
         String password = request.auth() == null ? null : request.auth().password();
 
-        return Flux.defer(() -> {
-            var chunks = gitRepositoryService.getFileChunks(
-                    request.text(),
-                    branch,
-                    folder,
-                    login,
-                    password
-            );
-            int total = chunks.size();
-            return Flux.range(0, total).map(i -> new RagChunk(chunks.get(i), i, total));
-        }).subscribeOn(Schedulers.boundedElastic());
+        Flux<NumberedFile> files = Flux.deferContextual(context -> Flux.using(
+                () -> ingestionMetrics.time(IngestionStage.FETCH, IngestionMetrics.tags(context),
+                        () -> gitRepositoryService.openFiles(request.text(), branch, folder, filter, login, password)),
+                this::readFiles,
+                GitFileCursor::close
+        )).subscribeOn(Schedulers.boundedElastic());
+        return chunkFiles(files);
+    }
+
+    /**
+     * Chunks files and tags every chunk with its file path and commit,
+     * so chunks of a single file can be replaced on incremental sync.
+     *
+     * @param files cursor over the files to index, left open for the caller to close
+     * @return stream of chunks in file order
+     */
+    public Flux<RagChunk> toChunks(GitFileCursor files) {
+        return chunkFiles(Flux.defer(() -> readFiles(files)).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Flux<NumberedFile> readFiles(GitFileCursor cursor) {
+        int total = cursor.total();
+        return Flux.<NumberedFile, Integer>generate(() -> 0, (number, sink) -> {
+            GitFile file = cursor.next();
+            if (file == null) {
+                sink.complete();
+                return number;
+            }
+            sink.next(new NumberedFile(file, number, total, cursor.commitId()));
+            return number + 1;
+        });
+    }
+
+    private Flux<RagChunk> chunkFiles(Flux<NumberedFile> files) {
+        int concurrency = Math.max(1, ingestionProperties.getChunkConcurrency());
+        return files
+                .flatMapSequential(file -> ingestionMetrics.time(IngestionStage.CHUNK, Mono.fromCallable(() -> chunkFile(file)))
+                                .subscribeOn(Schedulers.parallel()),
+                        concurrency)
+                .concatMapIterable(chunks -> chunks);
+    }
+
+    private List<RagChunk> chunkFile(NumberedFile numbered) {
+        GitFile file = numbered.file();
+        String header = "File: " + file.path() + "\n\n";
+        List<String> parts = textChunkerService.chunk(file.content(), kindOf(file.path()), MAX_LINES, MAX_CHARS, OVERLAP);
+        return IntStream.range(0, parts.size())
+                .mapToObj(position -> new RagChunk(header + parts.get(position), numbered.number(), numbered.total(), Map.of(
+                        RagMetadataKeys.PATH, file.path(),
+                        RagMetadataKeys.POSITION, position,
+                        RagMetadataKeys.COMMIT, numbered.commitId(),
+                        RagMetadataKeys.HEADER, header
+                )))
+                .toList();
+    }
+
+    private TextKind kindOf(String path) {
+        String extension = StringUtils.substringAfterLast(path.substring(path.lastIndexOf('/') + 1), ".")
+                .toLowerCase(Locale.ROOT);
+        if (CODE_EXTENSIONS.contains(extension)) {
+            return TextKind.CODE;
+        }
+        if (PROSE_EXTENSIONS.contains(extension)) {
+            return TextKind.PROSE;
+        }
+        return TextKind.AUTO;
+    }
+
+    private record NumberedFile(GitFile file, int number, int total, String commitId) {
     }
 }
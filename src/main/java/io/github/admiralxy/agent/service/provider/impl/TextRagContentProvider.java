@@ -1,8 +1,9 @@
 package io.github.admiralxy.agent.service.provider.impl;
 
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
-import io.github.admiralxy.agent.service.TextChunkerService;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
 import io.github.admiralxy.agent.service.provider.AbstractChunkingRagContentProvider;
+import io.github.admiralxy.agent.service.provider.ProviderTextChunker;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
@@ -10,8 +11,8 @@ import reactor.core.publisher.Mono;
 @Component
 public class TextRagContentProvider extends AbstractChunkingRagContentProvider {
 
-    public TextRagContentProvider(TextChunkerService textChunkerService) {
-        super(textChunkerService);
+    public TextRagContentProvider(ProviderTextChunker providerTextChunker, IngestionMetrics ingestionMetrics) {
+        super(providerTextChunker, ingestionMetrics);
     }
 
     @Override
@@ -4,17 +4,21 @@ import io.github.admiralxy.agent.controller.request.git.GitRepositoryInfoRq;
 import io.github.admiralxy.agent.controller.response.git.GitRepositoryInfoRs;
 import io.github.admiralxy.agent.service.git.GitRepositoryInfo;
 import io.github.admiralxy.agent.service.git.GitRepositoryService;
+import io.github.admiralxy.agent.service.git.GitSourceService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class GitControllerTest {
 
     private final GitRepositoryService gitRepositoryService = Mockito.mock(GitRepositoryService.class);
-    private final GitController gitController = new GitController(gitRepositoryService);
+    private final GitSourceService gitSourceService = Mockito.mock(GitSourceService.class);
+    private final GitController gitController = new GitController(gitRepositoryService, gitSourceService);
 
     @Test
     void getRepositoryInfoReturnsBranchesAndFolders() {
@@ -27,4 +31,14 @@ class GitControllerTest {
         assertEquals(List.of("main", "develop"), rs.branches());
         assertEquals(List.of("src", "docs"), rs.folders());
     }
+
+    @Test
+    void syncStartsSourceSync() {
+        UUID sourceId = UUID.randomUUID();
+        Mockito.when(gitSourceService.sync(sourceId)).thenReturn(Flux.just(100));
+
+        gitController.sync(sourceId);
+
+        Mockito.verify(gitSourceService).sync(sourceId);
+    }
 }
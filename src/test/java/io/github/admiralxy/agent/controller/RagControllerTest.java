@@ -1,11 +1,11 @@
 package io.github.admiralxy.agent.controller;
 
 import io.github.admiralxy.agent.service.RagService;
+import io.github.admiralxy.agent.service.job.IngestionJobService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import reactor.core.publisher.Flux;
 
@@ -23,7 +23,7 @@ class RagControllerTest {
     private RagService ragService;
 
     @Mock
-    private ThreadPoolTaskExecutor taskExecutor;
+    private IngestionJobService ingestionJobService;
 
     @Mock
     private SseEmitter emitter;
@@ -31,7 +31,7 @@ class RagControllerTest {
     @Test
     void subscribeToProgressCompletesWhenFluxSucceeds() throws IOException {
         // GIVEN
-        RagController ragController = new RagController(ragService, taskExecutor);
+        RagController ragController = new RagController(ragService, ingestionJobService);
 
         // WHEN
         ragController.subscribeToProgress(emitter, Flux.just(10, 100));
@@ -44,7 +44,7 @@ class RagControllerTest {
     @Test
     void subscribeToProgressCompletesWithErrorWhenFluxFails() {
         // GIVEN
-        RagController ragController = new RagController(ragService, taskExecutor);
+        RagController ragController = new RagController(ragService, ingestionJobService);
 
         // WHEN
         ragController.subscribeToProgress(emitter, Flux.error(new IllegalStateException("boom")));
@@ -56,7 +56,7 @@ class RagControllerTest {
     @Test
     void subscribeToProgressCompletesWithErrorWhenSendFails() throws IOException {
         // GIVEN
-        RagController ragController = new RagController(ragService, taskExecutor);
+        RagController ragController = new RagController(ragService, ingestionJobService);
         doThrow(new IOException("io failed")).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
 
         // WHEN
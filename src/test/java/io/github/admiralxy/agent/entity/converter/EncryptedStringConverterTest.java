@@ -0,0 +1,56 @@
+package io.github.admiralxy.agent.entity.converter;
+
+import io.github.admiralxy.agent.config.properties.CredentialsProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EncryptedStringConverterTest {
+
+    private final EncryptedStringConverter converter = new EncryptedStringConverter(properties(new byte[32]));
+
+    @Test
+    void convertToDatabaseColumnEncryptsAndRoundTrips() {
+        String stored = converter.convertToDatabaseColumn("secret");
+        assertFalse(stored.contains("secret"));
+        assertNotEquals(stored, converter.convertToDatabaseColumn("secret"));
+        assertEquals("secret", converter.convertToEntityAttribute(stored));
+    }
+
+    @Test
+    void convertKeepsNullAndReadsPlaintextStoredBeforeEncryption() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+        assertEquals("legacy", converter.convertToEntityAttribute("legacy"));
+    }
+
+    @Test
+    void convertStoresPlaintextWithoutKey() {
+        EncryptedStringConverter plaintext = new EncryptedStringConverter(new CredentialsProperties());
+        assertEquals("secret", plaintext.convertToDatabaseColumn("secret"));
+        assertEquals("secret", plaintext.convertToEntityAttribute("secret"));
+    }
+
+    @Test
+    void convertRejectsSecretsEncryptedWithAnotherKeyOrWithoutKey() {
+        String stored = converter.convertToDatabaseColumn("secret");
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+        assertThrows(IllegalStateException.class, () -> new EncryptedStringConverter(new CredentialsProperties())
+                .convertToEntityAttribute(stored));
+        assertThrows(IllegalStateException.class, () -> new EncryptedStringConverter(properties(otherKey))
+                .convertToEntityAttribute(stored));
+    }
+
+    private static CredentialsProperties properties(byte[] key) {
+        CredentialsProperties properties = new CredentialsProperties();
+        properties.setEncryptionKey(Base64.getEncoder().encodeToString(key));
+        return properties;
+    }
+}
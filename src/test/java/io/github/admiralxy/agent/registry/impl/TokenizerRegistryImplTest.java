@@ -0,0 +1,81 @@
+package io.github.admiralxy.agent.registry.impl;
+
+import io.github.admiralxy.agent.config.properties.TokenizerProperties;
+import io.github.admiralxy.agent.entity.ChatModelProvider;
+import io.github.admiralxy.agent.entity.ChatModelSettingsEntity;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.service.TokenizerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenizerRegistryImplTest {
+
+    private final TokenizerRegistryImpl registry = new TokenizerRegistryImpl(new TokenizerProperties());
+
+    @Test
+    void getChatTokenizerResolvesEncodingByOpenAiModelName() {
+        // WHEN / THEN
+        assertEquals("o200k_base", registry.getChatTokenizer(chatModel(ChatModelProvider.OPENAI, "gpt-4o-mini")).getName());
+        assertEquals("o200k_base", registry.getChatTokenizer(chatModel(ChatModelProvider.OPENAI, "openai/GPT-4.1")).getName());
+        assertEquals("cl100k_base", registry.getChatTokenizer(chatModel(ChatModelProvider.OPENAI, "gpt-4-turbo")).getName());
+        assertEquals("cl100k_base", registry.getChatTokenizer(chatModel(ChatModelProvider.OPENAI, "llama-3-70b")).getName());
+    }
+
+    @Test
+    void getEmbeddingsTokenizerResolvesEncodingByModelName() {
+        // GIVEN
+        EmbeddingsModelSettingsEntity settings = new EmbeddingsModelSettingsEntity();
+        settings.setName("text-embedding-3-small");
+
+        // WHEN
+        TokenizerService tokenizer = registry.getEmbeddingsTokenizer(settings);
+
+        // THEN
+        assertEquals("cl100k_base", tokenizer.getName());
+        assertSame(tokenizer, registry.getChatTokenizer(chatModel(ChatModelProvider.OPENAI, "gpt-3.5-turbo")));
+    }
+
+    @Test
+    void getChatTokenizerEstimatesAnthropicModelsFromCl100k() {
+        // GIVEN
+        String text = "Anthropic does not publish its tokenizer, so counts are estimated.";
+        TokenizerService base = registry.getEmbeddingsTokenizer(new EmbeddingsModelSettingsEntity());
+
+        // WHEN
+        TokenizerService tokenizer = registry.getChatTokenizer(chatModel(ChatModelProvider.ANTHROPIC, "claude-sonnet-4"));
+
+        // THEN
+        int baseTokens = base.countTokens(text);
+        assertEquals((int) Math.ceil(baseTokens * 1.15), tokenizer.countTokens(text));
+        assertTrue(tokenizer.countTokens(tokenizer.truncateToTokens(text, 5)) <= 5);
+        assertEquals(OptionalInt.of((int) Math.ceil(baseTokens * 1.15)), tokenizer.reuseCount("cl100k_base", baseTokens));
+        assertEquals(OptionalInt.empty(), tokenizer.reuseCount("o200k_base", baseTokens));
+    }
+
+    @Test
+    void getChatTokenizerCountsExactlyWhenEstimatorIsDisabled() {
+        // GIVEN
+        TokenizerProperties properties = new TokenizerProperties();
+        properties.setEstimatorEnabled(false);
+        String text = "Estimates are only used for soft budgets. ".repeat(10);
+
+        // WHEN
+        TokenizerService tokenizer = new TokenizerRegistryImpl(properties)
+                .getChatTokenizer(chatModel(ChatModelProvider.OPENAI, "gpt-4o"));
+
+        // THEN
+        assertEquals(tokenizer.countTokens(text), tokenizer.estimateTokens(text));
+    }
+
+    private static ChatModelSettingsEntity chatModel(ChatModelProvider provider, String name) {
+        ChatModelSettingsEntity settings = new ChatModelSettingsEntity();
+        settings.setProvider(provider);
+        settings.setName(name);
+        return settings;
+    }
+}
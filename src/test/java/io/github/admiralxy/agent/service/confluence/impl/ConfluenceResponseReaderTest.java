@@ -0,0 +1,97 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import io.github.admiralxy.agent.service.confluence.ConfluencePage;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfluenceResponseReaderTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    void pageIsReadFromResponseSplitIntoSmallParts() {
+        // GIVEN
+        ConfluenceResponseReader reader = new ConfluenceResponseReader(jsonFactory, 1024);
+        String json = """
+                {"id": "42", "type": "page", "title": "Стенды",
+                 "version": {"number": 7, "by": {"id": "user"}},
+                 "body": {"storage": {"value": "<p>Контент</p>", "representation": "storage"}}}
+                """;
+
+        // WHEN
+        feed(reader, json, 3);
+
+        // THEN
+        assertEquals(new ConfluencePage("42", "Стенды", 7, "<p>Контент</p>"), reader.page());
+    }
+
+    @Test
+    void listingIsReadWithNextLink() {
+        // GIVEN
+        ConfluenceResponseReader reader = new ConfluenceResponseReader(jsonFactory, 1024);
+        String json = """
+                {"results": [{"id": "1", "title": "One", "version": {"number": 3}, "_links": {"webui": "/x"}},
+                             {"id": "2", "title": "Two", "version": {"number": 1}}],
+                 "_links": {"next": "/rest/api/content?start=2"}}
+                """;
+
+        // WHEN
+        feed(reader, json, 16);
+
+        // THEN
+        assertEquals(List.of(
+                new ConfluencePage("1", "One", 3, null),
+                new ConfluencePage("2", "Two", 1, null)
+        ), reader.results());
+        assertTrue(reader.hasNext());
+    }
+
+    @Test
+    void listingWithoutNextLinkIsLast() {
+        // GIVEN
+        ConfluenceResponseReader reader = new ConfluenceResponseReader(jsonFactory, 1024);
+
+        // WHEN
+        feed(reader, "{\"results\": [], \"_links\": {\"next\": null}}", 1024);
+
+        // THEN
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void responseAboveMaxSizeIsRejected() {
+        // GIVEN
+        ConfluenceResponseReader reader = new ConfluenceResponseReader(jsonFactory, 16);
+
+        // WHEN / THEN
+        assertThrows(IllegalStateException.class, () -> feed(reader, "{\"title\": \"" + "x".repeat(32) + "\"}", 8));
+    }
+
+    @Test
+    void truncatedResponseIsRejected() {
+        // GIVEN
+        ConfluenceResponseReader reader = new ConfluenceResponseReader(jsonFactory, 1024);
+        feed(reader, "{\"id\": \"1\", \"title\": ", 1024);
+
+        // WHEN / THEN
+        assertThrows(IllegalStateException.class, reader::page);
+    }
+
+    private void feed(ConfluenceResponseReader reader, String json, int partSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int start = 0; start < bytes.length; start += partSize) {
+            byte[] part = Arrays.copyOfRange(bytes, start, Math.min(bytes.length, start + partSize));
+            reader.feed(DefaultDataBufferFactory.sharedInstance.wrap(part));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import io.github.admiralxy.agent.entity.ConfluenceSourceEntity;
+import io.github.admiralxy.agent.repository.ConfluenceSourceRepository;
+import io.github.admiralxy.agent.service.confluence.ConfluencePage;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims.SourceTable;
+import io.github.admiralxy.agent.service.ingestion.VectorDocumentWriter;
+import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.github.admiralxy.agent.service.provider.RagConfluenceOptions;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import io.github.admiralxy.agent.service.provider.RagProviderAuth;
+import io.github.admiralxy.agent.service.provider.impl.ConfluenceRagContentProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConfluenceSourceServiceImplTest {
+
+    private static final UUID SOURCE_ID = UUID.randomUUID();
+    private static final UUID SPACE_ID = UUID.randomUUID();
+    private static final String DOC_ID = "doc-1";
+    private static final String URL = "https://wiki.example/display/DOCS";
+
+    @Mock
+    private ConfluenceSourceRepository confluenceSourceRepository;
+
+    @Mock
+    private ConfluenceRagContentProvider confluenceRagContentProvider;
+
+    @Mock
+    private IngestionPipeline ingestionPipeline;
+
+    @Mock
+    private VectorDocumentWriter vectorDocumentWriter;
+
+    @Mock
+    private SourceSyncClaims sourceSyncClaims;
+
+    private ConfluenceSourceServiceImpl confluenceSourceService;
+    private ConfluenceSourceEntity source;
+
+    @BeforeEach
+    void setUp() {
+        confluenceSourceService = new ConfluenceSourceServiceImpl(
+                confluenceSourceRepository,
+                confluenceRagContentProvider,
+                ingestionPipeline,
+                vectorDocumentWriter,
+                sourceSyncClaims
+        );
+        lenient().when(sourceSyncClaims.exclusive(eq(SourceTable.CONFLUENCE), eq(SOURCE_ID), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Flux<Integer>>>getArgument(2).get());
+        source = new ConfluenceSourceEntity();
+        source.setId(SOURCE_ID);
+        source.setSpaceId(SPACE_ID);
+        source.setDocId(DOC_ID);
+        source.setUrl(URL);
+        source.setSpaceKey("DOCS");
+        source.getPageVersions().putAll(Map.of("1", 3, "2", 1, "3", 5));
+    }
+
+    @Test
+    void syncReindexesOnlyChangedPages() {
+        // GIVEN
+        ConfluencePage unchanged = new ConfluencePage("1", "One", 3, null);
+        ConfluencePage edited = new ConfluencePage("2", "Two", 2, null);
+        ConfluencePage created = new ConfluencePage("4", "Four", 1, null);
+        Flux<RagChunk> chunks = Flux.just(new RagChunk("Two\n\nEdited", 0, 2), new RagChunk("Four\n\nNew", 1, 2));
+        when(confluenceSourceRepository.findById(SOURCE_ID)).thenReturn(Optional.of(source));
+        when(confluenceRagContentProvider.listPages(any())).thenReturn(Mono.just(List.of(unchanged, edited, created)));
+        when(confluenceRagContentProvider.toChunks(any(), eq(List.of(edited, created)))).thenReturn(chunks);
+        when(ingestionPipeline.ingest(anyMap(), eq(chunks))).thenReturn(Flux.just(50, 100));
+
+        // WHEN
+        Flux<Integer> result = confluenceSourceService.sync(SOURCE_ID);
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(50, 100)
+                .verifyComplete();
+        verify(vectorDocumentWriter).deletePages(SPACE_ID.toString(), DOC_ID, List.of("2", "4", "3"));
+        verify(ingestionPipeline, never()).replace(anyMap(), any());
+        verify(confluenceSourceRepository).save(argThat(saved ->
+                Map.of("1", 3, "2", 2, "4", 1).equals(saved.getPageVersions()) && saved.getSyncedAt() != null));
+    }
+
+    @Test
+    void syncRejectsUnknownSource() {
+        // GIVEN
+        when(confluenceSourceRepository.findById(SOURCE_ID)).thenReturn(Optional.empty());
+
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> confluenceSourceService.sync(SOURCE_ID));
+    }
+
+    @Test
+    void indexRegistersSourceWithPageVersions() {
+        // GIVEN
+        RagContentRequest request = new RagContentRequest(
+                URL,
+                true,
+                null,
+                new RagProviderAuth("user", "pass"),
+                new RagConfluenceOptions("DOCS", false)
+        );
+        List<ConfluencePage> pages = List.of(new ConfluencePage("1", "One", 3, null));
+        Flux<RagChunk> chunks = Flux.just(new RagChunk("One\n\nFirst", 0, 1));
+        when(confluenceSourceRepository.findBySpaceIdAndDocId(SPACE_ID, DOC_ID)).thenReturn(Optional.empty());
+        when(confluenceRagContentProvider.listPages(request)).thenReturn(Mono.just(pages));
+        when(confluenceRagContentProvider.toChunks(request, pages)).thenReturn(chunks);
+        when(ingestionPipeline.replace(anyMap(), eq(chunks))).thenReturn(Flux.just(100));
+
+        // WHEN
+        Flux<Integer> result = confluenceSourceService.index(SPACE_ID.toString(), DOC_ID, request);
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(100)
+                .verifyComplete();
+        verify(confluenceSourceRepository).save(argThat(saved -> "DOCS".equals(saved.getSpaceKey())
+                && saved.isBatch()
+                && Map.of("1", 3).equals(saved.getPageVersions())));
+    }
+}
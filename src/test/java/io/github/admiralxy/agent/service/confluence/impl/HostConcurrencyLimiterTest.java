@@ -0,0 +1,81 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HostConcurrencyLimiterTest {
+
+    private final HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1);
+
+    @Test
+    void limitHoldsRequestsOverLimitUntilPermitIsFreed() {
+        // GIVEN
+        Sinks.One<String> first = Sinks.one();
+        AtomicInteger subscribed = new AtomicInteger();
+        Mono<String> second = Mono.fromSupplier(() -> {
+            subscribed.incrementAndGet();
+            return "second";
+        });
+        Disposable running = limiter.limit("wiki", first.asMono()).subscribe();
+
+        // WHEN
+        StepVerifier.create(limiter.limit("wiki", second))
+                .then(() -> {
+                    assertEquals(0, subscribed.get());
+                    first.tryEmitValue("first");
+                })
+                .expectNext("second")
+                .verifyComplete();
+
+        // THEN
+        assertEquals(1, subscribed.get());
+        assertEquals(0, limiter.inFlight("wiki"));
+        running.dispose();
+    }
+
+    @Test
+    void limitTracksHostsIndependently() {
+        // GIVEN
+        Disposable running = limiter.limit("wiki", Mono.never()).subscribe();
+
+        // WHEN / THEN
+        StepVerifier.create(limiter.limit("other", Mono.just("other")))
+                .expectNext("other")
+                .verifyComplete();
+        running.dispose();
+    }
+
+    @Test
+    void limitFreesPermitOfCancelledRequest() {
+        // GIVEN
+        Disposable running = limiter.limit("wiki", Mono.never()).subscribe();
+        Disposable waiting = limiter.limit("wiki", Mono.never()).subscribe();
+
+        // WHEN
+        waiting.dispose();
+        running.dispose();
+
+        // THEN
+        assertEquals(0, limiter.inFlight("wiki"));
+        StepVerifier.create(limiter.limit("wiki", Mono.just("next")))
+                .expectNext("next")
+                .verifyComplete();
+    }
+
+    @Test
+    void limitPassesRequestThroughWhenLimitIsDisabled() {
+        // GIVEN
+        HostConcurrencyLimiter unlimited = new HostConcurrencyLimiter(0);
+        Mono<String> request = Mono.just("wiki");
+
+        // WHEN / THEN
+        assertEquals(request, unlimited.limit("wiki", request));
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.admiralxy.agent.service.confluence.impl;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HostRateLimiterTest {
+
+    private static final long INTERVAL_NANOS = 100_000_000L;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final HostRateLimiter rateLimiter = new HostRateLimiter(10, clock::get);
+
+    @Test
+    void reserveSpacesRequestsToSameHost() {
+        // WHEN / THEN
+        assertEquals(0, rateLimiter.reserve("wiki"));
+        assertEquals(INTERVAL_NANOS, rateLimiter.reserve("wiki"));
+        assertEquals(2 * INTERVAL_NANOS, rateLimiter.reserve("wiki"));
+    }
+
+    @Test
+    void reserveTracksHostsIndependently() {
+        // GIVEN
+        rateLimiter.reserve("wiki");
+
+        // WHEN / THEN
+        assertEquals(0, rateLimiter.reserve("other"));
+    }
+
+    @Test
+    void reserveDoesNotWaitOnceSlotHasPassed() {
+        // GIVEN
+        rateLimiter.reserve("wiki");
+        clock.addAndGet(5 * INTERVAL_NANOS);
+
+        // WHEN / THEN
+        assertEquals(0, rateLimiter.reserve("wiki"));
+    }
+
+    @Test
+    void acquireCompletesImmediatelyWhenLimitIsDisabled() {
+        // GIVEN
+        HostRateLimiter unlimited = new HostRateLimiter(0, clock::get);
+
+        // WHEN / THEN
+        StepVerifier.create(unlimited.acquire("wiki")).verifyComplete();
+        StepVerifier.create(unlimited.acquire("wiki")).verifyComplete();
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.config.properties.GitProperties;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GitMirrorCacheTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private GitProperties properties;
+    private GitMirrorCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new GitProperties();
+        properties.setMirrorDirectory(tempDir.resolve("mirrors").toString());
+        cache = new GitMirrorCache(properties);
+    }
+
+    @Test
+    void withMirrorFetchesNewCommitsOnAccess() throws Exception {
+        // GIVEN
+        Path origin = tempDir.resolve("origin");
+        String first = commit(origin, "a.txt", "one");
+        String url = origin.toUri().toString();
+
+        // WHEN
+        String before = cache.withMirror(url, "key", ignored -> { }, this::head);
+        String second = commit(origin, "a.txt", "two");
+        String after = cache.withMirror(url, "key", ignored -> { }, this::head);
+
+        // THEN
+        assertEquals(first, before);
+        assertEquals(second, after);
+        assertEquals(1, countMirrors());
+    }
+
+    @Test
+    void withMirrorFetchesWhileLeaseIsOpen() throws Exception {
+        // GIVEN
+        Path origin = tempDir.resolve("origin");
+        String first = commit(origin, "a.txt", "one");
+        String url = origin.toUri().toString();
+
+        try (GitMirrorCache.Lease lease = cache.acquire(url, "key", ignored -> { })) {
+            String second = commit(origin, "a.txt", "two");
+
+            // WHEN
+            String fetched = cache.withMirror(url, "key", ignored -> { }, this::head);
+
+            // THEN
+            assertEquals(second, fetched);
+            assertEquals(first, lease.repository().parseCommit(ObjectId.fromString(first)).name());
+        }
+    }
+
+    @Test
+    void withMirrorEvictsLeastRecentlyUsedMirrorsAboveSizeLimit() throws Exception {
+        // GIVEN
+        properties.setMirrorMaxSize(DataSize.ofBytes(1));
+        Path first = tempDir.resolve("first");
+        Path second = tempDir.resolve("second");
+        commit(first, "a.txt", "one");
+        commit(second, "b.txt", "two");
+
+        // WHEN
+        cache.withMirror(first.toUri().toString(), "key", ignored -> { }, this::head);
+        cache.withMirror(second.toUri().toString(), "key", ignored -> { }, this::head);
+
+        // THEN
+        assertEquals(1, countMirrors());
+    }
+
+    @Test
+    void withMirrorFailsForUnknownRepository() {
+        // WHEN / THEN
+        String url = tempDir.resolve("missing").toUri().toString();
+        assertThrows(IllegalStateException.class, () -> cache.withMirror(url, "key", ignored -> { }, this::head));
+        assertEquals(0, countMirrors());
+    }
+
+    private String head(Repository repository) throws IOException {
+        ObjectId head = repository.resolve("HEAD");
+        return head == null ? null : head.name();
+    }
+
+    private String commit(Path repository, String file, String content) throws Exception {
+        Files.createDirectories(repository);
+        try (Git git = Files.exists(repository.resolve(".git")) ? Git.open(repository.toFile()) : Git.init()
+                .setDirectory(repository.toFile())
+                .setInitialBranch("main")
+                .call()) {
+            Files.writeString(repository.resolve(file), content);
+            git.add().addFilepattern(file).call();
+            return git.commit()
+                    .setMessage("update " + file)
+                    .setAuthor("test", "test@example.com")
+                    .setCommitter("test", "test@example.com")
+                    .call()
+                    .name();
+        }
+    }
+
+    private long countMirrors() {
+        Path root = tempDir.resolve("mirrors");
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        try (Stream<Path> stream = Files.list(root)) {
+            return stream.filter(Files::isDirectory).count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.config.AiHttpClientBuilderFactory;
+import io.github.admiralxy.agent.config.properties.GitProperties;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import io.github.admiralxy.agent.service.git.GitChanges;
+import io.github.admiralxy.agent.service.git.GitFile;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
+import io.github.admiralxy.agent.service.git.GitRepositoryInfo;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GitRepositoryServiceImplTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private GitProperties properties;
+    private GitRepositoryServiceImpl service;
+    private Path origin;
+    private String url;
+    private String commitId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        properties = new GitProperties();
+        properties.setMirrorDirectory(tempDir.resolve("mirrors").toString());
+        service = new GitRepositoryServiceImpl(
+                new AiHttpClientBuilderFactory(false),
+                new GitMirrorCache(properties),
+                properties
+        );
+
+        origin = tempDir.resolve("origin");
+        Files.createDirectories(origin.resolve("src/nested"));
+        Files.createDirectories(origin.resolve("docs"));
+        Files.writeString(origin.resolve("README.md"), "readme");
+        Files.writeString(origin.resolve("src/b.txt"), "bravo");
+        Files.writeString(origin.resolve("src/nested/a.txt"), "alpha");
+        Files.write(origin.resolve("src/image.bin"), new byte[]{1, 0, 2});
+        Files.writeString(origin.resolve("docs/guide.md"), "guide");
+        try (Git git = Git.init().setDirectory(origin.toFile()).setInitialBranch("main").call()) {
+            git.add().addFilepattern(".").call();
+            commitId = git.commit()
+                    .setMessage("initial")
+                    .setAuthor("test", "test@example.com")
+                    .setCommitter("test", "test@example.com")
+                    .call()
+                    .name();
+        }
+        url = origin.toUri().toString();
+    }
+
+    @Test
+    void openFilesReadsFolderFromObjectDatabase() {
+        // GIVEN
+        properties.setReadMode(GitProperties.ReadMode.OBJECT_DATABASE);
+
+        // WHEN
+        List<GitFile> files;
+        try (GitFileCursor cursor = service.openFiles(url, "main", "src", GitFileFilter.none(), null, null)) {
+            assertEquals(commitId, cursor.commitId());
+            assertEquals(3, cursor.total());
+            files = readAll(cursor);
+        }
+
+        // THEN
+        assertEquals(List.of(
+                new GitFile("src/b.txt", "bravo"),
+                new GitFile("src/nested/a.txt", "alpha")
+        ), files);
+    }
+
+    @Test
+    void openFilesReturnsSameFilesInBothReadModes() {
+        // GIVEN
+        properties.setReadMode(GitProperties.ReadMode.OBJECT_DATABASE);
+        List<GitFile> objectDatabase;
+        try (GitFileCursor cursor = service.openFiles(url, "main", null, GitFileFilter.none(), null, null)) {
+            objectDatabase = readAll(cursor);
+        }
+        properties.setReadMode(GitProperties.ReadMode.CHECKOUT);
+
+        // WHEN
+        List<GitFile> checkout;
+        try (GitFileCursor cursor = service.openFiles(url, "main", null, GitFileFilter.none(), null, null)) {
+            assertEquals(commitId, cursor.commitId());
+            checkout = readAll(cursor);
+        }
+
+        // THEN
+        assertEquals(checkout, objectDatabase);
+    }
+
+    @Test
+    void openFilesSkipsExcludedIgnoredAndOversizedFiles() throws Exception {
+        // GIVEN
+        commit(Map.of(
+                "node_modules/lib/index.js", "module",
+                "web/package-lock.json", "{}",
+                ".ragignore", "docs/\n",
+                "src/large.txt", "x".repeat(2048)
+        ));
+        GitFileFilter filter = new GitFileFilter(List.of(), List.of("*.bin"), 1024L);
+
+        // WHEN
+        List<GitFile> files;
+        try (GitFileCursor cursor = service.openFiles(url, "main", null, filter, null, null)) {
+            assertEquals(4, cursor.total());
+            files = readAll(cursor);
+        }
+
+        // THEN
+        assertEquals(List.of(
+                new GitFile(".ragignore", "docs/\n"),
+                new GitFile("README.md", "readme"),
+                new GitFile("src/b.txt", "bravo"),
+                new GitFile("src/nested/a.txt", "alpha")
+        ), files);
+    }
+
+    @Test
+    void openFilesAppliesIncludePatternsInBothReadModes() {
+        // GIVEN
+        GitFileFilter filter = new GitFileFilter(List.of("src/nested/*.txt", "*.md"), List.of(), null);
+        properties.setReadMode(GitProperties.ReadMode.OBJECT_DATABASE);
+        List<GitFile> objectDatabase;
+        try (GitFileCursor cursor = service.openFiles(url, "main", null, filter, null, null)) {
+            objectDatabase = readAll(cursor);
+        }
+        properties.setReadMode(GitProperties.ReadMode.CHECKOUT);
+
+        // WHEN
+        List<GitFile> checkout;
+        try (GitFileCursor cursor = service.openFiles(url, "main", null, filter, null, null)) {
+            checkout = readAll(cursor);
+        }
+
+        // THEN
+        assertEquals(List.of(
+                new GitFile("README.md", "readme"),
+                new GitFile("docs/guide.md", "guide"),
+                new GitFile("src/nested/a.txt", "alpha")
+        ), objectDatabase);
+        assertEquals(objectDatabase, checkout);
+    }
+
+    @Test
+    void getChangesDropsFilesThatBecameExcluded() throws Exception {
+        // GIVEN
+        String head = commit(Map.of("src/b.txt", "x".repeat(2048), "src/c.txt", "charlie"));
+        GitFileFilter filter = new GitFileFilter(List.of(), List.of(), 1024L);
+
+        // WHEN
+        Optional<GitChanges> changes = service.getChanges(url, "main", null, filter, null, null, commitId);
+
+        // THEN
+        assertTrue(changes.isPresent());
+        assertEquals(head, changes.get().commitId());
+        assertEquals(List.of("src/b.txt", "src/c.txt"), changes.get().paths());
+        try (GitFileCursor files = changes.get().files()) {
+            assertEquals(2, files.total());
+            assertEquals(List.of(new GitFile("src/c.txt", "charlie")), readAll(files));
+        }
+    }
+
+    @Test
+    void getChangesRequiresFullIndexWhenIgnoreFileChanges() throws Exception {
+        // GIVEN
+        commit(Map.of(".ragignore", "docs/\n"));
+
+        // WHEN
+        Optional<GitChanges> changes = service.getChanges(url, "main", null, GitFileFilter.none(), null, null, commitId);
+
+        // THEN
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    void openFilesRejectsUnknownFolder() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> service.openFiles(url, "main", "missing", GitFileFilter.none(), null, null));
+    }
+
+    @Test
+    void getRepositoryInfoListsTopLevelFoldersFromRootTree() {
+        // WHEN
+        GitRepositoryInfo info = service.getRepositoryInfo(url, null, null);
+
+        // THEN
+        assertEquals(List.of("main"), info.branches());
+        assertEquals(List.of("docs", "src"), info.folders());
+    }
+
+    private String commit(Map<String, String> files) throws Exception {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path path = origin.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+        try (Git git = Git.open(origin.toFile())) {
+            git.add().addFilepattern(".").call();
+            return git.commit()
+                    .setMessage("update")
+                    .setAuthor("test", "test@example.com")
+                    .setCommitter("test", "test@example.com")
+                    .call()
+                    .name();
+        }
+    }
+
+    private List<GitFile> readAll(GitFileCursor cursor) {
+        List<GitFile> files = new ArrayList<>();
+        for (GitFile file = cursor.next(); file != null; file = cursor.next()) {
+            files.add(file);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.admiralxy.agent.service.git.impl;
+
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import io.github.admiralxy.agent.entity.GitSourceEntity;
+import io.github.admiralxy.agent.repository.GitSourceRepository;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.git.GitChanges;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
+import io.github.admiralxy.agent.service.git.GitRepositoryService;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims;
+import io.github.admiralxy.agent.service.ingestion.SourceSyncClaims.SourceTable;
+import io.github.admiralxy.agent.service.ingestion.VectorDocumentWriter;
+import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import io.github.admiralxy.agent.service.provider.RagGitOptions;
+import io.github.admiralxy.agent.service.provider.impl.GitRagContentProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GitSourceServiceImplTest {
+
+    private static final UUID SOURCE_ID = UUID.randomUUID();
+    private static final UUID SPACE_ID = UUID.randomUUID();
+    private static final String DOC_ID = "doc-1";
+    private static final String URL = "https://git.example/repo.git";
+
+    @Mock
+    private GitSourceRepository gitSourceRepository;
+
+    @Mock
+    private GitRepositoryService gitRepositoryService;
+
+    @Mock
+    private GitRagContentProvider gitRagContentProvider;
+
+    @Mock
+    private IngestionPipeline ingestionPipeline;
+
+    @Mock
+    private VectorDocumentWriter vectorDocumentWriter;
+
+    @Mock
+    private SourceSyncClaims sourceSyncClaims;
+
+    private GitSourceServiceImpl gitSourceService;
+    private GitSourceEntity source;
+
+    @BeforeEach
+    void setUp() {
+        gitSourceService = new GitSourceServiceImpl(
+                gitSourceRepository,
+                gitRepositoryService,
+                gitRagContentProvider,
+                ingestionPipeline,
+                vectorDocumentWriter,
+                new IngestionMetrics(new SimpleMeterRegistry()),
+                sourceSyncClaims
+        );
+        lenient().when(sourceSyncClaims.exclusive(eq(SourceTable.GIT), eq(SOURCE_ID), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Flux<Integer>>>getArgument(2).get());
+        source = new GitSourceEntity();
+        source.setId(SOURCE_ID);
+        source.setSpaceId(SPACE_ID);
+        source.setDocId(DOC_ID);
+        source.setUrl(URL);
+        source.setBranch("main");
+        source.setLastCommit("old");
+    }
+
+    @Test
+    void syncReindexesOnlyChangedPaths() {
+        // GIVEN
+        GitFileCursor files = mock(GitFileCursor.class);
+        Flux<RagChunk> chunks = Flux.just(new RagChunk("File: src/a.txt\n\nnew", 0, 1));
+        when(gitSourceRepository.findById(SOURCE_ID)).thenReturn(Optional.of(source));
+        when(gitRepositoryService.getChanges(URL, "main", null, GitFileFilter.none(), null, null, "old"))
+                .thenReturn(Optional.of(new GitChanges("new", List.of("src/a.txt", "src/removed.txt"), files)));
+        when(gitRagContentProvider.toChunks(files)).thenReturn(chunks);
+        when(ingestionPipeline.ingest(anyMap(), eq(chunks))).thenReturn(Flux.just(100));
+
+        // WHEN
+        Flux<Integer> result = gitSourceService.sync(SOURCE_ID);
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(100)
+                .verifyComplete();
+        verify(vectorDocumentWriter).deletePaths(SPACE_ID.toString(), DOC_ID, List.of("src/a.txt", "src/removed.txt"));
+        verify(ingestionPipeline, never()).replace(anyMap(), any());
+        verify(gitSourceRepository).save(argThat(saved -> "new".equals(saved.getLastCommit())));
+        verify(files).close();
+    }
+
+    @Test
+    void syncFallsBackToFullIndexWhenLastCommitIsUnknown() {
+        // GIVEN
+        when(gitSourceRepository.findById(SOURCE_ID)).thenReturn(Optional.of(source));
+        when(gitSourceRepository.findBySpaceIdAndDocId(SPACE_ID, DOC_ID)).thenReturn(Optional.of(source));
+        when(gitRepositoryService.getChanges(URL, "main", null, GitFileFilter.none(), null, null, "old")).thenReturn(Optional.empty());
+        when(gitRagContentProvider.resolveChunks(any())).thenReturn(Flux.just(
+                new RagChunk("File: a\n\ntext", 0, 1, Map.of(RagMetadataKeys.PATH, "a", RagMetadataKeys.COMMIT, "head"))
+        ));
+        when(ingestionPipeline.replace(anyMap(), any())).thenAnswer(invocation -> invocation.<Flux<RagChunk>>getArgument(1)
+                .map(ignored -> 100));
+
+        // WHEN
+        Flux<Integer> result = gitSourceService.sync(SOURCE_ID);
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(100)
+                .verifyComplete();
+        verify(vectorDocumentWriter, never()).deletePaths(any(), any(), any());
+        verify(gitSourceRepository).save(argThat(saved -> "head".equals(saved.getLastCommit())));
+    }
+
+    @Test
+    void syncFailsWhenSourceIsSyncedElsewhere() {
+        // GIVEN
+        when(gitSourceRepository.findById(SOURCE_ID)).thenReturn(Optional.of(source));
+        when(sourceSyncClaims.exclusive(eq(SourceTable.GIT), eq(SOURCE_ID), any(), any()))
+                .thenAnswer(invocation -> Flux.error(invocation.<Supplier<RuntimeException>>getArgument(3).get()));
+
+        // WHEN
+        Flux<Integer> result = gitSourceService.sync(SOURCE_ID);
+
+        // THEN
+        StepVerifier.create(result)
+                .expectError(IllegalStateException.class)
+                .verify();
+        verify(gitRepositoryService, never()).getChanges(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void syncRejectsUnknownSource() {
+        // GIVEN
+        when(gitSourceRepository.findById(SOURCE_ID)).thenReturn(Optional.empty());
+
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> gitSourceService.sync(SOURCE_ID));
+    }
+
+    @Test
+    void indexRegistersSourceWithIndexedCommit() {
+        // GIVEN
+        when(gitSourceRepository.findBySpaceIdAndDocId(SPACE_ID, DOC_ID)).thenReturn(Optional.empty());
+        when(gitRagContentProvider.resolveChunks(any())).thenReturn(Flux.just(
+                new RagChunk("File: a\n\ntext", 0, 1, Map.of(RagMetadataKeys.PATH, "a", RagMetadataKeys.COMMIT, "head"))
+        ));
+        when(ingestionPipeline.replace(anyMap(), any())).thenAnswer(invocation -> invocation.<Flux<RagChunk>>getArgument(1)
+                .map(ignored -> 100));
+
+        // WHEN
+        RagContentRequest request = new RagContentRequest(URL, true, new RagGitOptions("main", null), null);
+        gitSourceService.index(SPACE_ID.toString(), DOC_ID, request).blockLast();
+
+        // THEN
+        verify(gitSourceRepository).save(argThat(saved -> SPACE_ID.equals(saved.getSpaceId())
+                && DOC_ID.equals(saved.getDocId())
+                && URL.equals(saved.getUrl())
+                && "main".equals(saved.getBranch())
+                && "head".equals(saved.getLastCommit())));
+    }
+}
@@ -1,17 +1,32 @@
 package io.github.admiralxy.agent.service.impl;
 
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
 import io.github.admiralxy.agent.entity.EmbeddingModelProviderType;
 import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
 import io.github.admiralxy.agent.service.AddDocumentCommand;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
 import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.confluence.ConfluenceSourceService;
+import io.github.admiralxy.agent.service.git.GitSourceService;
+import io.github.admiralxy.agent.service.ingestion.ChunkFingerprintIndex;
+import io.github.admiralxy.agent.service.ingestion.DocumentEmbedder;
+import io.github.admiralxy.agent.service.ingestion.EmbeddedDocument;
+import io.github.admiralxy.agent.service.ingestion.EmbeddingPayloadSizer;
+import io.github.admiralxy.agent.service.ingestion.IngestionBatcher;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.ingestion.VectorDocumentWriter;
 import io.github.admiralxy.agent.service.model.ModelSettingsService;
 import io.github.admiralxy.agent.service.provider.RagChunk;
 import io.github.admiralxy.agent.service.provider.RagContentProvider;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.document.Document;
@@ -22,16 +37,19 @@ import reactor.test.StepVerifier;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.OptionalInt;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.argThat;
-import static org.mockito.Mockito.doAnswer;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -48,9 +66,27 @@ class RagServiceImplTest {
     private TokenizerService tokenizerService;
     private EmbeddingsModelSettingsEntity embeddingsModel;
 
+    @Mock
+    private TokenizerRegistry tokenizerRegistry;
+
     @Mock
     private ModelSettingsService modelSettingsService;
 
+    @Mock
+    private DocumentEmbedder documentEmbedder;
+
+    @Mock
+    private VectorDocumentWriter vectorDocumentWriter;
+
+    @Mock
+    private ChunkFingerprintIndex chunkFingerprintIndex;
+
+    @Mock
+    private GitSourceService gitSourceService;
+
+    @Mock
+    private ConfluenceSourceService confluenceSourceService;
+
     @Mock
     private RagContentProvider textContentProvider;
 
@@ -66,12 +102,29 @@ class RagServiceImplTest {
         embeddingsModel.setProvider(EmbeddingModelProviderType.OPENAI);
         embeddingsModel.setMaxDocumentTokens(8000);
         lenient().when(modelSettingsService.getEmbeddingsModel()).thenReturn(embeddingsModel);
-        lenient().when(tokenizerService.splitToTokenChunks(any(), anyInt()))
-                .thenAnswer(invocation -> List.of(invocation.getArgument(0, String.class)));
+        lenient().when(documentEmbedder.embed(anyList())).thenAnswer(invocation -> invocation.<List<Document>>getArgument(0)
+                .stream()
+                .map(document -> new EmbeddedDocument(document, new float[]{1.0f}))
+                .toList());
+        IngestionProperties ingestionProperties = new IngestionProperties();
+        lenient().when(tokenizerService.getName()).thenReturn("cl100k_base");
+        lenient().when(tokenizerRegistry.getEmbeddingsTokenizer(embeddingsModel)).thenReturn(tokenizerService);
+        IngestionPipeline ingestionPipeline = new IngestionPipeline(
+                new EmbeddingPayloadSizer(),
+                tokenizerRegistry,
+                modelSettingsService,
+                new IngestionBatcher(ingestionProperties),
+                documentEmbedder,
+                vectorDocumentWriter,
+                chunkFingerprintIndex,
+                new IngestionMetrics(new SimpleMeterRegistry()),
+                ingestionProperties
+        );
         ragService = new RagServiceImpl(
                 store,
-                tokenizerService,
-                modelSettingsService,
+                ingestionPipeline,
+                gitSourceService,
+                confluenceSourceService,
                 List.of(textContentProvider, confluenceContentProvider)
         );
     }
@@ -92,7 +145,8 @@ class RagServiceImplTest {
 
         verify(textContentProvider).supports(ProviderType.TEXT);
         verify(textContentProvider).resolveChunks(any());
-        verify(store).add(argThat(docs -> docs.size() == 1 && "raw text".equals(docs.getFirst().getText())));
+        verify(vectorDocumentWriter).write(argThat(docs -> docs.size() == 1
+                && "raw text".equals(docs.getFirst().document().getText())));
     }
 
     @Test
@@ -112,7 +166,8 @@ class RagServiceImplTest {
 
         verify(confluenceContentProvider).supports(ProviderType.CONFLUENCE);
         verify(confluenceContentProvider).resolveChunks(any());
-        verify(store).add(argThat(docs -> docs.size() == 1 && "Hello world!".equals(docs.getFirst().getText())));
+        verify(vectorDocumentWriter).write(argThat(docs -> docs.size() == 1
+                && "Hello world!".equals(docs.getFirst().document().getText())));
     }
 
     @Test
@@ -133,7 +188,8 @@ class RagServiceImplTest {
                 .expectNext(100)
                 .verifyComplete();
 
-        verify(store, times(2)).add(anyList());
+        verify(vectorDocumentWriter).write(argThat(docs -> docs.size() == 2
+                && SPACE_ID.equals(docs.getFirst().document().getMetadata().get("space"))));
     }
 
     @Test
@@ -152,7 +208,69 @@ class RagServiceImplTest {
 
         verify(textContentProvider).supports(ProviderType.TEXT);
         verify(textContentProvider).resolveChunks(any());
-        verify(store).add(argThat(docs -> docs.size() == 1 && "fallback text".equals(docs.getFirst().getText())));
+        verify(vectorDocumentWriter).write(argThat(docs -> docs.size() == 1
+                && "fallback text".equals(docs.getFirst().document().getText())));
+    }
+
+    @Test
+    void addReplacesSameDocumentOnRepeatedSubmission() {
+        // GIVEN
+        when(textContentProvider.supports(ProviderType.TEXT)).thenReturn(true);
+        when(textContentProvider.resolveChunks(any())).thenAnswer(ignored -> Flux.just(new RagChunk("same", 0, 1)));
+
+        // WHEN
+        ragService.add(command(ProviderType.TEXT, "same", false)).blockLast();
+        ragService.add(command(ProviderType.TEXT, "same", false)).blockLast();
+
+        // THEN
+        ArgumentCaptor<String> docIds = ArgumentCaptor.forClass(String.class);
+        verify(vectorDocumentWriter, times(2)).deleteStale(eq(SPACE_ID), docIds.capture(), anyCollection());
+        assertEquals(docIds.getAllValues().get(0), docIds.getAllValues().get(1));
+    }
+
+    @Test
+    void addRegistersGitSourceForGitProvider() {
+        // GIVEN
+        when(gitSourceService.index(eq(SPACE_ID), any(), any())).thenReturn(Flux.just(100));
+
+        // WHEN
+        Flux<Integer> result = ragService.add(command(ProviderType.GIT, "https://git.example/repo.git", true));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(100)
+                .verifyComplete();
+        verify(gitSourceService).index(eq(SPACE_ID), any(), any());
+        verify(textContentProvider, never()).resolveChunks(any());
+    }
+
+    @Test
+    void addRegistersConfluenceSourceForConfluenceProvider() {
+        // GIVEN
+        when(confluenceSourceService.index(eq(SPACE_ID), any(), any())).thenReturn(Flux.just(100));
+
+        // WHEN
+        Flux<Integer> result = ragService.add(command(ProviderType.CONFLUENCE, "https://wiki.example/pages/1", false));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(100)
+                .verifyComplete();
+        verify(confluenceSourceService).index(eq(SPACE_ID), any(), any());
+        verify(confluenceContentProvider, never()).resolveChunks(any());
+    }
+
+    @Test
+    void deleteFromSpaceUnregistersGitSource() {
+        // GIVEN
+        when(store.similaritySearch(any(SearchRequest.class))).thenReturn(List.of());
+
+        // WHEN
+        ragService.deleteFromSpace(SPACE_ID, "doc-1");
+
+        // THEN
+        verify(gitSourceService).unregister(SPACE_ID, "doc-1");
+        verify(confluenceSourceService).unregister(SPACE_ID, "doc-1");
     }
 
     @Test
@@ -162,10 +280,11 @@ class RagServiceImplTest {
                 List.of(new Document("d1", "alpha",
                 Map.of("space", SPACE_ID, "doc", "d1", "chunk", "c1")))
         );
+        when(tokenizerService.estimateTokens(any())).thenReturn(1);
         when(tokenizerService.countTokens(any())).thenReturn(1);
 
         // WHEN
-        String result = ragService.buildContext(List.of(SPACE_ID), "q", 100.0, 100, 1);
+        String result = ragService.buildContext(List.of(SPACE_ID), "q", 100.0, 100, 1, tokenizerService);
 
         // THEN
         assertTrue(result.contains("[Source: space=space-1, doc=d1, chunk=c1]"));
@@ -183,10 +302,11 @@ class RagServiceImplTest {
                 new Document("b2", "b2", Map.of("space", SPACE_ID_2, "doc", "db2", "chunk", "cb2"))
         );
         when(store.similaritySearch(any(SearchRequest.class))).thenReturn(docs);
+        when(tokenizerService.estimateTokens(any())).thenReturn(1);
         when(tokenizerService.countTokens(any())).thenReturn(1);
 
         // WHEN
-        String result = ragService.buildContext(List.of(SPACE_ID, SPACE_ID_2), "q", 100.0, 100, 3);
+        String result = ragService.buildContext(List.of(SPACE_ID, SPACE_ID_2), "q", 100.0, 100, 3, tokenizerService);
 
         // THEN
         assertTrue(result.indexOf("a1") < result.indexOf("a2"));
@@ -195,6 +315,29 @@ class RagServiceImplTest {
         assertTrue(result.contains("[Source: space=space-2, doc=db1, chunk=cb1]"));
     }
 
+    @Test
+    void buildContextCollapsesLinkedDuplicates() {
+        // GIVEN
+        List<Document> docs = List.of(
+                new Document("a1", "A1", Map.of("space", SPACE_ID, "doc", "da1", "chunk", "ca1")),
+                new Document("a2", "A1-COPY", Map.of("space", SPACE_ID, "doc", "da2", "chunk", "ca2",
+                        RagMetadataKeys.DUPLICATE_OF, "a1")),
+                new Document("a3", "A3", Map.of("space", SPACE_ID, "doc", "da3", "chunk", "ca3"))
+        );
+        when(store.similaritySearch(any(SearchRequest.class))).thenReturn(docs);
+        when(tokenizerService.estimateTokens(any())).thenReturn(1);
+        when(tokenizerService.countTokens(any())).thenReturn(1);
+
+        // WHEN
+        String result = ragService.buildContext(List.of(SPACE_ID), "q", 100.0, 100, 2, tokenizerService);
+
+        // THEN
+        assertTrue(result.contains("A1"));
+        assertFalse(result.contains("A1-COPY"));
+        assertTrue(result.contains("A3"));
+        verify(store).similaritySearch(argThat((SearchRequest request) -> request.getTopK() == 4));
+    }
+
     @Test
     void buildContextDoesNotUseDeepRebalanceCandidates() {
         // GIVEN
@@ -208,10 +351,11 @@ class RagServiceImplTest {
                 new Document("b1", "B-CONTENT", Map.of("space", SPACE_ID_2, "doc", "db1", "chunk", "cb1"))
         );
         when(store.similaritySearch(any(SearchRequest.class))).thenReturn(docs);
+        when(tokenizerService.estimateTokens(any())).thenReturn(1);
         when(tokenizerService.countTokens(any())).thenReturn(1);
 
         // WHEN
-        String result = ragService.buildContext(List.of(SPACE_ID, SPACE_ID_2), "q", 100.0, 100, 3);
+        String result = ragService.buildContext(List.of(SPACE_ID, SPACE_ID_2), "q", 100.0, 100, 3, tokenizerService);
 
         // THEN
         assertFalse(result.contains("B-CONTENT"));
@@ -221,49 +365,46 @@ class RagServiceImplTest {
     }
 
     @Test
-    void addSplitsChunkWhenTokenLimitExceeded() {
+    void buildContextUsesTokenCountsStoredWithChunks() {
         // GIVEN
-        when(textContentProvider.supports(ProviderType.TEXT)).thenReturn(true);
-        when(textContentProvider.resolveChunks(any())).thenReturn(Flux.just(new RagChunk("big chunk", 0, 1)));
-        when(tokenizerService.splitToTokenChunks("big chunk", 2)).thenReturn(List.of("part-1", "part-2"));
-        embeddingsModel.setMaxDocumentTokens(2);
+        List<Document> docs = List.of(
+                new Document("a1", "alpha", Map.of("space", SPACE_ID, "doc", "da1", "chunk", "ca1", "tokens", 1)),
+                new Document("a2", "beta", Map.of("space", SPACE_ID, "doc", "da2", "chunk", "ca2"))
+        );
+        when(store.similaritySearch(any(SearchRequest.class))).thenReturn(docs);
+        when(tokenizerService.reuseCount("cl100k_base", 1)).thenReturn(OptionalInt.of(1));
+        when(tokenizerService.estimateTokens("beta")).thenReturn(1);
+        when(tokenizerService.countTokens("beta")).thenReturn(1);
 
         // WHEN
-        Flux<Integer> result = ragService.add(command(ProviderType.TEXT, "x", false));
+        String result = ragService.buildContext(List.of(SPACE_ID), "q", 100.0, 100, 2, tokenizerService);
 
         // THEN
-        StepVerifier.create(result)
-                .expectNext(100)
-                .verifyComplete();
-        verify(store, times(2)).add(anyList());
+        assertTrue(result.contains("alpha"));
+        assertTrue(result.contains("beta"));
+        verify(tokenizerService, never()).countTokens("alpha");
+        verify(tokenizerService, times(1)).countTokens("beta");
+        verify(tokenizerService, never()).truncateToTokens(any(), anyInt());
     }
 
     @Test
-    void addRetriesWithSmallerChunksWhenStoreReturnsTokenLimitError() {
+    void buildContextEncodesOnlyChunksWithoutStoredCountWhichAreReached() {
         // GIVEN
-        when(textContentProvider.supports(ProviderType.TEXT)).thenReturn(true);
-        when(textContentProvider.resolveChunks(any())).thenReturn(Flux.just(new RagChunk("too-big", 0, 1)));
-        when(tokenizerService.countTokens("too-big")).thenReturn(10);
-        when(tokenizerService.splitToTokenChunks("too-big", 8000)).thenReturn(List.of("too-big"));
-        when(tokenizerService.splitToTokenChunks("too-big", 5)).thenReturn(List.of("small-1", "small-2"));
-
-        AtomicInteger call = new AtomicInteger();
-        doAnswer(ignored -> {
-            int current = call.incrementAndGet();
-            if (current == 1) {
-                throw new RuntimeException("Tokens in a single document exceeds the maximum number of allowed input tokens");
-            }
-            return null;
-        }).when(store).add(anyList());
+        List<Document> docs = List.of(
+                new Document("a1", "alpha", Map.of("space", SPACE_ID, "doc", "da1", "chunk", "ca1")),
+                new Document("a2", "beta", Map.of("space", SPACE_ID, "doc", "da2", "chunk", "ca2"))
+        );
+        when(store.similaritySearch(any(SearchRequest.class))).thenReturn(docs);
+        when(tokenizerService.estimateTokens(any())).thenReturn(1);
+        when(tokenizerService.countTokens("alpha")).thenReturn(1);
 
         // WHEN
-        Flux<Integer> result = ragService.add(command(ProviderType.TEXT, "x", false));
+        String result = ragService.buildContext(List.of(SPACE_ID), "q", 50.0, 100, 2, tokenizerService);
 
         // THEN
-        StepVerifier.create(result)
-                .expectNext(100)
-                .verifyComplete();
-        verify(store, times(3)).add(anyList());
+        assertTrue(result.contains("alpha"));
+        assertFalse(result.contains("beta"));
+        verify(tokenizerService, never()).countTokens("beta");
     }
 
     private AddDocumentCommand command(ProviderType providerType, String text, boolean batch) {
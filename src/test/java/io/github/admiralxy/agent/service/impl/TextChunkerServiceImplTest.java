@@ -1,7 +1,14 @@
 package io.github.admiralxy.agent.service.impl;
 
+import io.github.admiralxy.agent.service.TextChunk;
+import io.github.admiralxy.agent.service.TextKind;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import reactor.test.StepVerifier;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -28,6 +35,24 @@ class TextChunkerServiceImplTest {
         assertTrue(countLines(chunks.get(1)) <= 100);
     }
 
+    @Test
+    void chunk_shouldSplitCodeKindByTopLevelDeclarations() {
+        String text = "import os\n\ndef first():\n    return 1\n\nclass Second:\n    pass\n";
+
+        List<String> chunks = chunker.chunk(text, TextKind.CODE, 2, 50_000, 0);
+
+        assertEquals(List.of("import os", "def first():\n    return 1", "class Second:\n    pass"), chunks);
+    }
+
+    @Test
+    void chunk_shouldKeepProseKindInParagraphsDespiteSemicolons() {
+        String text = "a; b; c;\n\nd { e } f;";
+
+        List<String> chunks = chunker.chunk(text, TextKind.PROSE, 100, 50_000, 0);
+
+        assertEquals(List.of("a; b; c;\n\nd { e } f;"), chunks);
+    }
+
     @Test
     void chunk_shouldFinishWithoutStackOverflowOnLargeInput() {
         String text = IntStream.rangeClosed(1, 350)
@@ -40,6 +65,95 @@ class TextChunkerServiceImplTest {
         });
     }
 
+    @Test
+    void stream_shouldEmitSameChunksAsListWithGrowingProgress() {
+        String text = IntStream.rangeClosed(1, 40)
+                .mapToObj(i -> "Paragraph " + i + " has a few words in it.")
+                .collect(Collectors.joining("\n\n"));
+
+        List<TextChunk> chunks = chunker.stream(text, TextKind.PROSE, 100, 200, 2).collectList().block();
+
+        assertEquals(chunker.chunk(text, TextKind.PROSE, 100, 200, 2), chunks.stream().map(TextChunk::text).toList());
+        for (int i = 1; i < chunks.size(); i++) {
+            assertTrue(chunks.get(i - 1).progress() <= chunks.get(i).progress());
+        }
+        assertTrue(chunks.getFirst().progress() < 100);
+        assertEquals(100, chunks.getLast().progress());
+    }
+
+    @Test
+    void stream_shouldReadTextOnlyAsFarAsChunksAreRequested() {
+        String text = IntStream.rangeClosed(1, 1000)
+                .mapToObj(i -> "Paragraph " + i + " has a few words in it.")
+                .collect(Collectors.joining("\n\n"));
+
+        StepVerifier.create(chunker.stream(text, TextKind.PROSE, 100, 100, 0), 1)
+                .assertNext(chunk -> assertTrue(chunk.progress() < 1))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void streamByTokens_shouldKeepChunksWithinBudgetAndEndThemAtParagraphs() {
+        TokenizerServiceImpl tokenizer = new TokenizerServiceImpl();
+        String text = IntStream.rangeClosed(1, 200)
+                .mapToObj(i -> "Paragraph " + i + " has a few words in it.")
+                .collect(Collectors.joining("\n\n"));
+
+        List<TextChunk> chunks = chunker.stream(text, TextKind.PROSE, tokenizer, 100, 0).collectList().block();
+
+        assertTrue(chunks.size() > 1);
+        for (TextChunk chunk : chunks) {
+            assertTrue(chunk.tokens().getAsInt() <= 100);
+            assertTrue(chunk.text().endsWith("in it."));
+            assertEquals(tokenizer.countTokens(chunk.text()), chunk.tokens().getAsInt(), 1);
+        }
+        assertEquals(text, chunks.stream().map(TextChunk::text).collect(Collectors.joining("\n\n")));
+        assertEquals(100, chunks.getLast().progress());
+    }
+
+    @Test
+    void streamByTokens_shouldSplitRemainderJustAboveBudgetEvenly() {
+        TokenizerServiceImpl tokenizer = new TokenizerServiceImpl();
+        String text = "word ".repeat(110).trim();
+
+        List<TextChunk> chunks = chunker.stream(text, TextKind.PROSE, tokenizer, 100, 0).collectList().block();
+
+        assertEquals(2, chunks.size());
+        assertTrue(chunks.getLast().tokens().getAsInt() >= 50);
+    }
+
+    @Test
+    void streamByTokens_shouldStartOverlapAtWord() {
+        TokenizerServiceImpl tokenizer = new TokenizerServiceImpl();
+        String text = IntStream.rangeClosed(1, 300)
+                .mapToObj(i -> "word" + i)
+                .collect(Collectors.joining(" "));
+
+        List<TextChunk> chunks = chunker.stream(text, TextKind.PROSE, tokenizer, 100, 10).collectList().block();
+
+        for (int i = 1; i < chunks.size(); i++) {
+            String first = chunks.get(i).text().substring(0, chunks.get(i).text().indexOf(' '));
+            assertTrue(chunks.get(i - 1).text().contains(" " + first + " "));
+            assertTrue(chunks.get(i).tokens().getAsInt() <= 100);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4})
+    void chunk_shouldMatchExpectedChunksOfFixtures(int fixture) throws Exception {
+        String text = readResource("/input/input_" + fixture + ".txt");
+        String expected = readResource("/expected/expected_" + fixture + ".txt");
+
+        List<String> chunks = chunker.chunk(text, 100, 1500, 50);
+
+        assertEquals(expected.stripTrailing(), String.join("\n---\n", chunks));
+    }
+
+    private String readResource(String name) throws Exception {
+        return Files.readString(Path.of(getClass().getResource(name).toURI()));
+    }
+
     private int countLines(String s) {
         if (s == null || s.isEmpty()) {
             return 0;
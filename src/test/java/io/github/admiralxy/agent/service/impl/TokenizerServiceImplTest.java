@@ -0,0 +1,124 @@
+package io.github.admiralxy.agent.service.impl;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.EncodingType;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl.TokenEstimate;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenizerServiceImplTest {
+
+    private static final String TEXT = "Tokenizers map text to tokens. Ünïcödé, 中文字符 and emoji 😀🚀 take several bytes.\n";
+
+    private final TokenizerServiceImpl tokenizer = new TokenizerServiceImpl();
+    private final TokenizerServiceImpl estimatingTokenizer = new TokenizerServiceImpl(
+            Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE), new TokenEstimate(4.0, 8.0, 0.25));
+
+    @Test
+    void truncateToTokensReturnsTextWhichFits() {
+        // WHEN
+        String result = tokenizer.truncateToTokens(TEXT, 1000);
+
+        // THEN
+        assertSame(TEXT, result);
+    }
+
+    @Test
+    void truncateToTokensReturnsPrefixWithinLimit() {
+        // GIVEN
+        String text = TEXT.repeat(20);
+
+        for (int maxTokens = 0; maxTokens < 120; maxTokens++) {
+            // WHEN
+            String result = tokenizer.truncateToTokens(text, maxTokens);
+
+            // THEN
+            assertTrue(text.startsWith(result));
+            assertTrue(tokenizer.countTokens(result) <= maxTokens);
+            assertFalse(result.contains("�"));
+        }
+    }
+
+    @Test
+    void splitToTokenChunksSlicesTextWithinLimit() {
+        // GIVEN
+        String text = TEXT.repeat(20);
+
+        for (int maxTokens = 1; maxTokens < 40; maxTokens++) {
+            // WHEN
+            List<String> chunks = tokenizer.splitToTokenChunks(text, maxTokens);
+
+            // THEN
+            assertEquals(text, String.join("", chunks));
+            assertTrue(chunks.size() > 1);
+            for (String chunk : chunks) {
+                assertFalse(chunk.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    void splitToTokenChunksKeepsTextWhichFits() {
+        // WHEN
+        List<String> chunks = tokenizer.splitToTokenChunks(TEXT, 1000);
+
+        // THEN
+        assertEquals(List.of(TEXT), chunks);
+    }
+
+    @Test
+    void splitToTokenChunksRejectsNonPositiveLimit() {
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> tokenizer.splitToTokenChunks(TEXT, 0));
+    }
+
+    @Test
+    void tokenOffsetsMapEveryTokenToItsStart() {
+        // GIVEN
+        String text = TEXT.repeat(3);
+
+        // WHEN
+        int[] offsets = tokenizer.tokenOffsets(text);
+
+        // THEN
+        assertEquals(tokenizer.countTokens(text) + 1, offsets.length);
+        assertEquals(0, offsets[0]);
+        assertEquals(text.length(), offsets[offsets.length - 1]);
+        for (int i = 1; i < offsets.length; i++) {
+            assertTrue(offsets[i - 1] <= offsets[i]);
+        }
+    }
+
+    @Test
+    void fitsWithinAgreesWithExactCountOnCorpus() throws Exception {
+        for (String name : List.of("input_1.txt", "input_2.txt", "input_3.txt", "input_4.txt")) {
+            // GIVEN
+            String text = Files.readString(Path.of(getClass().getResource("/input/" + name).toURI()));
+            int tokens = tokenizer.countTokens(text);
+
+            for (int maxTokens : List.of(1, tokens / 10, tokens / 2, tokens - 1, tokens, tokens + 1, tokens * 4)) {
+                // WHEN
+                boolean fits = estimatingTokenizer.fitsWithin(text, maxTokens);
+
+                // THEN
+                assertEquals(tokens <= maxTokens, fits, name + " within " + maxTokens);
+            }
+        }
+    }
+
+    @Test
+    void estimateTokensCountsExactlyWithoutEstimate() {
+        // WHEN / THEN
+        assertEquals(tokenizer.countTokens(TEXT), tokenizer.estimateTokens(TEXT));
+        assertTrue(estimatingTokenizer.estimateTokens(TEXT) > 0);
+    }
+}
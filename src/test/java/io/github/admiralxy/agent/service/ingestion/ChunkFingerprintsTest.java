@@ -0,0 +1,73 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkFingerprintsTest {
+
+    private static final String TEXT = IntStream.range(0, 40)
+            .mapToObj(i -> "Step " + i + " of the ingestion reads part " + i + " of the source.")
+            .collect(Collectors.joining(" "));
+
+    @Test
+    void simHashIgnoresCaseAndWhitespace() {
+        // WHEN
+        long fingerprint = ChunkFingerprints.simHash(TEXT);
+        long reformatted = ChunkFingerprints.simHash(TEXT.toUpperCase().replace(" ", "\n\t "));
+
+        // THEN
+        assertEquals(fingerprint, reformatted);
+    }
+
+    @Test
+    void simHashKeepsNearDuplicatesClose() {
+        // GIVEN
+        String edited = TEXT.replace("Step 7 of", "Stage 7 of");
+
+        // WHEN
+        int distance = ChunkFingerprints.distance(ChunkFingerprints.simHash(TEXT), ChunkFingerprints.simHash(edited));
+
+        // THEN
+        assertTrue(distance < ChunkFingerprints.BANDS);
+    }
+
+    @Test
+    void simHashKeepsUnrelatedTextsApart() {
+        // GIVEN
+        String other = IntStream.range(0, 40)
+                .mapToObj(i -> "Query " + i + " ranks stored chunk " + i + " by similarity.")
+                .collect(Collectors.joining(" "));
+
+        // WHEN
+        int distance = ChunkFingerprints.distance(ChunkFingerprints.simHash(TEXT), ChunkFingerprints.simHash(other));
+
+        // THEN
+        assertTrue(distance > 16);
+    }
+
+    @Test
+    void simHashLeavesOutChunkHeader() {
+        // GIVEN
+        String header = "File: docs/a.md\n\n";
+
+        // WHEN
+        long fingerprint = ChunkFingerprints.simHash(header + TEXT, Map.of(RagMetadataKeys.HEADER, header));
+
+        // THEN
+        assertEquals(ChunkFingerprints.simHash(TEXT), fingerprint);
+    }
+
+    @Test
+    void bandSplitsFingerprintIntoSixteenBitParts() {
+        // WHEN / THEN
+        assertEquals(0xcdef, ChunkFingerprints.band(0x0123_4567_89ab_cdefL, 0));
+        assertEquals(0x0123, ChunkFingerprints.band(0x0123_4567_89ab_cdefL, 3));
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.model.EmbeddingModelRuntime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentEmbedderTest {
+
+    private static final String SIGNATURE = "OPENAI|https://api|model|3";
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private BatchingStrategy batchingStrategy;
+
+    @Mock
+    private EmbeddingModelRuntime embeddingModelRuntime;
+
+    @Mock
+    private EmbeddingCache embeddingCache;
+
+    private IngestionProperties properties;
+    private DocumentEmbedder embedder;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IngestionProperties();
+        lenient().when(embeddingModelRuntime.getSignature()).thenReturn(SIGNATURE);
+        lenient().when(embeddingCache.key(anyString(), anyString()))
+                .thenAnswer(invocation -> "key:" + invocation.getArgument(1, String.class));
+        embedder = new DocumentEmbedder(embeddingModel, batchingStrategy, embeddingModelRuntime, embeddingCache, properties);
+    }
+
+    @Test
+    void embedReusesCachedVectorsAndEmbedsOnlyMisses() {
+        // GIVEN
+        Document cached = new Document("cached text");
+        Document fresh = new Document("fresh text");
+        when(embeddingCache.getAll(anyList())).thenReturn(Map.of(key(cached), new float[]{1.0f}));
+        when(embeddingModel.embed(argThat((List<Document> docs) -> docs.size() == 1), any(), any()))
+                .thenReturn(List.of(new float[]{2.0f}));
+
+        // WHEN
+        List<EmbeddedDocument> result = embedder.embed(List.of(cached, fresh));
+
+        // THEN
+        assertEquals(2, result.size());
+        assertArrayEquals(new float[]{1.0f}, result.get(0).embedding());
+        assertArrayEquals(new float[]{2.0f}, result.get(1).embedding());
+        verify(embeddingModel).embed(argThat((List<Document> docs) -> "fresh text".equals(docs.getFirst().getText())),
+                any(), any());
+        verify(embeddingCache).putAll(argThat(entries -> entries.size() == 1 && entries.containsKey(key(fresh))));
+    }
+
+    @Test
+    void embedSkipsModelWhenEverythingIsCached() {
+        // GIVEN
+        when(embeddingCache.getAll(anyList())).thenReturn(Map.of(key(new Document("text")), new float[]{1.0f}));
+
+        // WHEN
+        List<EmbeddedDocument> result = embedder.embed(List.of(new Document("text"), new Document("text")));
+
+        // THEN
+        assertEquals(2, result.size());
+        verify(embeddingModel, never()).embed(anyList(), any(), any());
+        verify(embeddingCache, never()).putAll(any());
+    }
+
+    @Test
+    void embedDoesNotCacheVectorsOfModelReplacedDuringBatch() {
+        // GIVEN
+        when(embeddingModelRuntime.getSignature()).thenReturn(SIGNATURE, "OPENAI|https://api|other|3");
+        when(embeddingCache.getAll(anyList())).thenReturn(Map.of());
+        when(embeddingModel.embed(anyList(), any(), any())).thenReturn(List.of(new float[]{2.0f}));
+
+        // WHEN
+        List<EmbeddedDocument> result = embedder.embed(List.of(new Document("text")));
+
+        // THEN
+        assertEquals(1, result.size());
+        verify(embeddingCache, never()).putAll(any());
+    }
+
+    @Test
+    void embedKeysCacheByEmbeddedPayload() {
+        // GIVEN
+        Map<String, Object> meta = Map.of(RagMetadataKeys.DOC, "doc-1", RagMetadataKeys.PATH, "a.md");
+        Document first = ChunkContentFormatter.newDocument("id-1", "text", withChunk(meta, "id-1", "c1"));
+        Document moved = ChunkContentFormatter.newDocument("id-2", "text", withChunk(meta, "id-2", "c2"));
+        Document otherPath = ChunkContentFormatter.newDocument("id-3", "text",
+                withChunk(Map.of(RagMetadataKeys.DOC, "doc-1", RagMetadataKeys.PATH, "b.md"), "id-3", "c1"));
+        when(embeddingModel.embed(anyList(), any(), any())).thenReturn(List.of(new float[]{1.0f}, new float[]{2.0f}));
+
+        // WHEN
+        List<EmbeddedDocument> result = embedder.embed(List.of(first, moved, otherPath));
+
+        // THEN
+        assertEquals(key(first), key(moved));
+        assertNotEquals(key(first), key(otherPath));
+        verify(embeddingCache).getAll(argThat(keys -> keys.size() == 2));
+        assertArrayEquals(result.get(0).embedding(), result.get(1).embedding());
+    }
+
+    @Test
+    void embedBypassesCacheWhenDisabled() {
+        // GIVEN
+        properties.setEmbeddingCacheEnabled(false);
+        when(embeddingModel.embed(anyList(), any(), any())).thenReturn(List.of(new float[]{3.0f}));
+
+        // WHEN
+        List<EmbeddedDocument> result = embedder.embed(List.of(new Document("text")));
+
+        // THEN
+        assertArrayEquals(new float[]{3.0f}, result.getFirst().embedding());
+        verify(embeddingCache, never()).getAll(any());
+    }
+
+    private static String key(Document document) {
+        return "key:" + document.getFormattedContent(MetadataMode.EMBED);
+    }
+
+    private static Map<String, Object> withChunk(Map<String, Object> meta, String chunkId, String commit) {
+        Map<String, Object> chunkMeta = new HashMap<>(meta);
+        chunkMeta.put(RagMetadataKeys.CHUNK, chunkId);
+        chunkMeta.put(RagMetadataKeys.COMMIT, commit);
+        chunkMeta.put(RagMetadataKeys.TOKENS, 1);
+        return chunkMeta;
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl;
+import io.github.admiralxy.agent.service.ingestion.EmbeddingPayloadSizer.PartFactory;
+import io.github.admiralxy.agent.service.ingestion.EmbeddingPayloadSizer.SizedDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddingPayloadSizerTest {
+
+    private static final Map<String, Object> META = Map.of(
+            "space", "space-1",
+            "doc", "doc-1",
+            "path", "docs/guides/ingestion/limits-and-boundaries.md"
+    );
+
+    private final TokenizerService tokenizerService = new TokenizerServiceImpl();
+    private final EmbeddingPayloadSizer sizer = new EmbeddingPayloadSizer();
+    private final PartFactory newDocument = (part, text, textTokens) -> new Document("id-" + part, text, META);
+
+    @Test
+    void fitKeepsDocumentWhichFits() {
+        // WHEN
+        List<SizedDocument> parts = sizer.fit(tokenizerService, "Short text.", newDocument, 1000);
+
+        // THEN
+        assertEquals(1, parts.size());
+        assertEquals("Short text.", parts.getFirst().document().getText());
+        assertEquals(payloadTokens(parts.getFirst().document()), parts.getFirst().tokens());
+    }
+
+    @Test
+    void fitCountsMetadataAgainstLimit() {
+        // GIVEN
+        String text = "First sentence of the text. Second sentence of the text. Third sentence of the text.";
+        int textTokens = tokenizerService.countTokens(text);
+        int metadataTokens = payloadTokens(newDocument.create(0, text, textTokens)) - textTokens;
+        int limit = metadataTokens + textTokens / 2 + 2;
+
+        // WHEN
+        List<SizedDocument> parts = sizer.fit(tokenizerService, text, newDocument, limit);
+
+        // THEN
+        assertTrue(parts.size() > 1);
+        for (SizedDocument part : parts) {
+            assertTrue(part.tokens() <= limit);
+            assertEquals(payloadTokens(part.document()), part.tokens());
+        }
+        assertEquals(text, parts.stream().map(part -> part.document().getText()).collect(Collectors.joining()));
+        assertTrue(parts.getFirst().document().getText().endsWith(". "));
+    }
+
+    @Test
+    void fitKeepsIndentationOfLinesStartingPart() {
+        // GIVEN
+        String text = IntStream.range(0, 40)
+                .mapToObj(i -> "    int value" + i + " = compute(" + i + ");\n")
+                .collect(Collectors.joining());
+        int limit = payloadTokens(newDocument.create(0, "x", 1)) + 60;
+
+        // WHEN
+        List<SizedDocument> parts = sizer.fit(tokenizerService, text, newDocument, limit);
+
+        // THEN
+        assertTrue(parts.size() > 1);
+        for (SizedDocument part : parts) {
+            assertTrue(part.document().getText().startsWith("    int value"));
+        }
+        assertEquals(text, parts.stream().map(part -> part.document().getText()).collect(Collectors.joining()));
+    }
+
+    @Test
+    void fitPassesTokenCountOfEachPartText() {
+        // GIVEN
+        String text = "One line of text.\n".repeat(30);
+        Map<String, Integer> textTokens = new HashMap<>();
+        PartFactory countingDocument = (part, partText, tokens) -> {
+            textTokens.put(partText, tokens);
+            return new Document("id-" + part, partText, META);
+        };
+
+        // WHEN
+        List<SizedDocument> parts = sizer.fit(tokenizerService, text, countingDocument, 60);
+
+        // THEN
+        assertTrue(parts.size() > 1);
+        for (SizedDocument part : parts) {
+            String partText = part.document().getText();
+            assertEquals(tokenizerService.countTokens(partText), textTokens.get(partText));
+        }
+    }
+
+    @Test
+    void fitRejectsMetadataAboveLimit() {
+        // WHEN / THEN
+        assertThrows(IllegalStateException.class, () -> sizer.fit(tokenizerService, "Some text which needs a few tokens.", newDocument, 3));
+    }
+
+    private int payloadTokens(Document document) {
+        return tokenizerService.countTokens(document.getFormattedContent(MetadataMode.EMBED));
+    }
+}
@@ -0,0 +1,506 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.config.properties.IngestionProperties.DedupMode;
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl;
+import io.github.admiralxy.agent.service.model.ModelSettingsService;
+import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionPipelineTest {
+
+    private static final Map<String, Object> META = Map.of("space", "space-1", "doc", "doc-1");
+
+    @Spy
+    private TokenizerService tokenizerService = new TokenizerServiceImpl();
+
+    @Mock
+    private TokenizerRegistry tokenizerRegistry;
+
+    @Mock
+    private ModelSettingsService modelSettingsService;
+
+    @Mock
+    private DocumentEmbedder documentEmbedder;
+
+    @Mock
+    private VectorDocumentWriter vectorDocumentWriter;
+
+    @Mock
+    private ChunkFingerprintIndex chunkFingerprintIndex;
+
+    private SimpleMeterRegistry meterRegistry;
+    private EmbeddingsModelSettingsEntity embeddingsModel;
+    private IngestionProperties properties;
+    private IngestionPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        embeddingsModel = new EmbeddingsModelSettingsEntity();
+        embeddingsModel.setMaxDocumentTokens(8000);
+        properties = new IngestionProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(modelSettingsService.getEmbeddingsModel()).thenReturn(embeddingsModel);
+        lenient().when(tokenizerRegistry.getEmbeddingsTokenizer(embeddingsModel)).thenReturn(tokenizerService);
+        lenient().when(documentEmbedder.embed(anyList())).thenAnswer(invocation -> embedAll(invocation.getArgument(0)));
+        pipeline = new IngestionPipeline(
+                new EmbeddingPayloadSizer(),
+                tokenizerRegistry,
+                modelSettingsService,
+                new IngestionBatcher(properties),
+                documentEmbedder,
+                vectorDocumentWriter,
+                chunkFingerprintIndex,
+                new IngestionMetrics(meterRegistry),
+                properties
+        );
+    }
+
+    @Test
+    void ingestEmitsCompletedProgressForEmptyInput() {
+        StepVerifier.create(pipeline.ingest(META, Flux.empty()))
+                .expectNext(100)
+                .verifyComplete();
+    }
+
+    @Test
+    void ingestSplitsBatchesByItemLimit() {
+        // GIVEN
+        properties.setBatchMaxItems(2);
+
+        // WHEN
+        Flux<Integer> result = pipeline.ingest(META, Flux.just(
+                new RagChunk("chunk 1", 0, 3),
+                new RagChunk("chunk 2", 1, 3),
+                new RagChunk("chunk 3", 2, 3)
+        ));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(33, 66, 100)
+                .verifyComplete();
+        verify(documentEmbedder).embed(argThat(docs -> docs.size() == 2));
+        verify(documentEmbedder).embed(argThat(docs -> docs.size() == 1));
+        verify(vectorDocumentWriter, times(2)).write(anyList());
+    }
+
+    @Test
+    void ingestCompletesProgressWhenFewerChunksArriveThanCounted() {
+        // WHEN
+        Flux<Integer> result = pipeline.ingest(META, Flux.just(
+                new RagChunk("chunk 1", 0, 3),
+                new RagChunk("chunk 2", 1, 3)
+        ));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(33, 66, 100)
+                .verifyComplete();
+    }
+
+    @Test
+    void ingestSplitsBatchesByTokenBudget() {
+        // GIVEN
+        properties.setBatchMaxTokens(10);
+        doReturn(6).when(tokenizerService).countTokens(any());
+
+        // WHEN
+        Flux<Integer> result = pipeline.ingest(META, Flux.just(
+                new RagChunk("chunk 1", 0, 2),
+                new RagChunk("chunk 2", 1, 2)
+        ));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(50, 100)
+                .verifyComplete();
+        verify(documentEmbedder, times(2)).embed(argThat(docs -> docs.size() == 1));
+    }
+
+    @Test
+    void ingestKeepsProgressMonotonicWithConcurrentStages() {
+        // GIVEN
+        properties.setBatchMaxItems(1);
+        properties.setEmbedConcurrency(4);
+        properties.setPersistConcurrency(4);
+        Flux<RagChunk> chunks = Flux.range(0, 50).map(i -> new RagChunk("chunk " + i, i, 50));
+
+        // WHEN
+        List<Integer> progress = pipeline.ingest(META, chunks).collectList().block();
+
+        // THEN
+        assertEquals(50, progress.size());
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i - 1) <= progress.get(i));
+        }
+        assertEquals(100, progress.getLast());
+    }
+
+    @Test
+    void ingestCutsOversizedChunkAtParagraphsBeforeEmbedding() {
+        // GIVEN
+        embeddingsModel.setMaxDocumentTokens(100);
+        String text = IntStream.range(0, 8)
+                .mapToObj(i -> "Paragraph " + i + " tells a short story about ingestion limits and boundaries.")
+                .collect(Collectors.joining("\n\n"));
+        List<Document> sent = new ArrayList<>();
+        when(documentEmbedder.embed(anyList())).thenAnswer(invocation -> {
+            sent.addAll(invocation.getArgument(0));
+            return embedAll(invocation.getArgument(0));
+        });
+
+        // WHEN
+        Flux<Integer> result = pipeline.ingest(META, Flux.just(new RagChunk(text, 0, 1)));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(100)
+                .verifyComplete();
+        verify(documentEmbedder).embed(anyList());
+        assertTrue(sent.size() > 1);
+        assertEquals(text, sent.stream().map(Document::getText).collect(Collectors.joining()));
+        for (Document document : sent) {
+            assertTrue(tokenizerService.countTokens(document.getFormattedContent(MetadataMode.EMBED)) <= 100);
+        }
+        for (Document document : sent.subList(0, sent.size() - 1)) {
+            assertTrue(document.getText().endsWith("\n\n"));
+        }
+    }
+
+    @Test
+    void ingestPropagatesEmbeddingErrorsWithoutRetries() {
+        // GIVEN
+        when(documentEmbedder.embed(anyList())).thenThrow(
+                new IllegalStateException("Tokens in a single document exceeds the maximum number of allowed input tokens"));
+
+        // WHEN
+        Flux<Integer> result = pipeline.ingest(META, Flux.just(new RagChunk("text", 0, 1)));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectError(IllegalStateException.class)
+                .verify();
+        verify(documentEmbedder).embed(anyList());
+    }
+
+    @Test
+    void ingestRecordsStageTimesAndThroughputTaggedByScope() {
+        // GIVEN
+        embeddingsModel.setMaxDocumentTokens(100);
+        String oversized = "word ".repeat(200).strip();
+
+        // WHEN
+        Flux<Integer> result = pipeline.ingest(META, Flux.just(
+                        new RagChunk("chunk 1", 0, 2),
+                        new RagChunk(oversized, 1, 2)
+                ))
+                .contextWrite(IngestionMetrics.scope(ProviderType.TEXT, "space-1"));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(50, 100)
+                .verifyComplete();
+        assertEquals(2, meterRegistry.get("rag.ingest.chunks").tags("provider", "text", "space", "space-1").counter().count());
+        assertEquals(7 + oversized.length(), meterRegistry.get("rag.ingest.bytes").counter().count());
+        assertEquals(1, meterRegistry.get("rag.ingest.splits").counter().count());
+        assertTrue(meterRegistry.get("rag.ingest.tokens").counter().count() > 200);
+        assertEquals(1, meterRegistry.get("rag.ingest.stage").tag("stage", "embed").timer().count());
+        assertEquals(1, meterRegistry.get("rag.ingest.stage").tag("stage", "persist").timer().count());
+        assertEquals(2, meterRegistry.get("rag.ingest.stage").tag("stage", "tokenize").timer().count());
+    }
+
+    @Test
+    void ingestStoresTokenCountOfChunkTextInMetadata() {
+        // GIVEN
+        List<Document> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<EmbeddedDocument>>getArgument(0).forEach(doc -> written.add(doc.document()));
+            return null;
+        }).when(vectorDocumentWriter).write(anyList());
+
+        // WHEN
+        pipeline.ingest(META, Flux.just(new RagChunk("Tokens are counted once at ingestion.", 0, 1))).blockLast();
+
+        // THEN
+        assertEquals(1, written.size());
+        assertEquals(tokenizerService.countTokens("Tokens are counted once at ingestion."),
+                written.getFirst().getMetadata().get(RagMetadataKeys.TOKENS));
+        assertEquals("cl100k_base", written.getFirst().getMetadata().get(RagMetadataKeys.TOKENIZER));
+    }
+
+    @Test
+    void ingestReusesTokenCountAttachedToChunkByItsTokenizer() {
+        // GIVEN
+        String text = "Tokens were counted while chunking.";
+        List<Document> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<EmbeddedDocument>>getArgument(0).forEach(doc -> written.add(doc.document()));
+            return null;
+        }).when(vectorDocumentWriter).write(anyList());
+        Map<String, Object> counted = Map.of(RagMetadataKeys.TOKENS, 7, RagMetadataKeys.TOKENIZER, "cl100k_base");
+
+        // WHEN
+        pipeline.ingest(META, Flux.just(new RagChunk(text, 0, 1, counted))).blockLast();
+
+        // THEN
+        verify(tokenizerService, never()).countTokens(text);
+        assertEquals(7, written.getFirst().getMetadata().get(RagMetadataKeys.TOKENS));
+    }
+
+    @Test
+    void ingestDerivesStableChunkIdsFromContent() {
+        // GIVEN
+        Flux<RagChunk> chunks = Flux.just(new RagChunk("same text", 0, 1));
+        List<String> ids = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<EmbeddedDocument>>getArgument(0).forEach(doc -> ids.add(doc.document().getId()));
+            return null;
+        }).when(vectorDocumentWriter).write(anyList());
+
+        // WHEN
+        pipeline.ingest(META, chunks).blockLast();
+        pipeline.ingest(META, chunks).blockLast();
+
+        // THEN
+        assertEquals(2, ids.size());
+        assertEquals(ids.get(0), ids.get(1));
+    }
+
+    @Test
+    void ingestPositionsChunkIdsWithinTheirSource() {
+        // GIVEN
+        properties.setDedupMode(DedupMode.OFF);
+        List<String> ids = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<EmbeddedDocument>>getArgument(0).forEach(doc -> ids.add(doc.document().getId()));
+            return null;
+        }).when(vectorDocumentWriter).write(anyList());
+
+        // WHEN
+        pipeline.ingest(META, Flux.just(
+                new RagChunk("same text", 0, 2, Map.of(RagMetadataKeys.PAGE_ID, "1", RagMetadataKeys.POSITION, 0)),
+                new RagChunk("same text", 0, 2, Map.of(RagMetadataKeys.PAGE_ID, "1", RagMetadataKeys.POSITION, 1)),
+                new RagChunk("same text", 0, 2, Map.of(RagMetadataKeys.PAGE_ID, "2", RagMetadataKeys.POSITION, 0))
+        )).blockLast();
+
+        // THEN
+        assertEquals(3, Set.copyOf(ids).size());
+    }
+
+    @Test
+    void replaceDeletesRowsNotWrittenByRun() {
+        // GIVEN
+        List<UUID> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<EmbeddedDocument>>getArgument(0)
+                    .forEach(doc -> written.add(UUID.fromString(doc.document().getId())));
+            return null;
+        }).when(vectorDocumentWriter).write(anyList());
+
+        // WHEN
+        Flux<Integer> result = pipeline.replace(META, Flux.just(
+                new RagChunk("chunk 1", 0, 2),
+                new RagChunk("chunk 2", 1, 2)
+        ));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(50, 100)
+                .verifyComplete();
+        verify(vectorDocumentWriter).deleteStale(eq("space-1"), eq("doc-1"),
+                argThat(ids -> ids.size() == 2 && ids.containsAll(written)));
+    }
+
+    @Test
+    void replaceSkipsChunksStoredByCheckpointAndKeepsThem() {
+        // GIVEN
+        List<UUID> firstRun = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<EmbeddedDocument>>getArgument(0)
+                    .forEach(doc -> firstRun.add(UUID.fromString(doc.document().getId())));
+            return null;
+        }).when(vectorDocumentWriter).write(anyList());
+        pipeline.ingest(META, Flux.just(new RagChunk("chunk 1", 0, 2))).blockLast();
+        List<UUID> stored = List.copyOf(firstRun);
+        List<UUID> recorded = new ArrayList<>();
+        IngestionCheckpoint checkpoint = new IngestionCheckpoint() {
+            @Override
+            public boolean isStored(UUID chunkId) {
+                return stored.contains(chunkId);
+            }
+
+            @Override
+            public void record(Collection<UUID> chunkIds) {
+                recorded.addAll(chunkIds);
+            }
+        };
+
+        // WHEN
+        Flux<Integer> result = pipeline.replace(META, Flux.just(
+                        new RagChunk("chunk 1", 0, 2),
+                        new RagChunk("chunk 2", 1, 2)
+                ))
+                .contextWrite(Context.of(IngestionCheckpoint.class, checkpoint));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(50, 100)
+                .verifyComplete();
+        verify(documentEmbedder, times(2)).embed(argThat(docs -> docs.size() == 1));
+        assertEquals(1, recorded.size());
+        assertFalse(stored.contains(recorded.getFirst()));
+        verify(vectorDocumentWriter).deleteStale(eq("space-1"), eq("doc-1"),
+                argThat(ids -> ids.size() == 2 && ids.containsAll(stored) && ids.containsAll(recorded)));
+    }
+
+    @Test
+    void replaceHandsBatchesToWorkQueue() {
+        // GIVEN
+        properties.setBatchMaxItems(1);
+        List<List<Document>> units = new ArrayList<>();
+        IngestionWorkQueue workQueue = documents -> Mono.fromCallable(() -> {
+            units.add(documents);
+            return pipeline.store(documents);
+        });
+
+        // WHEN
+        Flux<Integer> result = pipeline.replace(META, Flux.just(
+                        new RagChunk("chunk 1", 0, 2),
+                        new RagChunk("chunk 2", 1, 2)
+                ))
+                .contextWrite(Context.of(IngestionWorkQueue.class, workQueue));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(50, 100)
+                .verifyComplete();
+        assertEquals(2, units.size());
+        verify(vectorDocumentWriter, times(2)).write(anyList());
+        verify(vectorDocumentWriter).deleteStale(eq("space-1"), eq("doc-1"), argThat(ids -> ids.size() == 2));
+    }
+
+    @Test
+    void ingestLinksDuplicateChunkToChunkKeptBefore() {
+        // GIVEN
+        List<Document> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<EmbeddedDocument>>getArgument(0).forEach(doc -> written.add(doc.document()));
+            return null;
+        }).when(vectorDocumentWriter).write(anyList());
+
+        List<Document> linked = new ArrayList<>();
+        when(vectorDocumentWriter.writeLinks(anyList())).thenAnswer(invocation -> {
+            List<Document> documents = invocation.getArgument(0);
+            linked.addAll(documents);
+            return documents.stream().map(document -> UUID.fromString(document.getId())).toList();
+        });
+
+        // WHEN
+        Flux<Integer> result = pipeline.replace(META, Flux.just(
+                new RagChunk("Shared license header.", 0, 2),
+                new RagChunk("shared  LICENSE header", 1, 2)
+        ));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(50, 100)
+                .verifyComplete();
+        assertEquals(1, written.size());
+        assertEquals(1, linked.size());
+        assertFalse(written.getFirst().getMetadata().containsKey(RagMetadataKeys.DUPLICATE_OF));
+        assertEquals(written.getFirst().getId(), linked.getFirst().getMetadata().get(RagMetadataKeys.DUPLICATE_OF));
+        assertEquals(1, meterRegistry.get("rag.ingest.duplicates").counter().count());
+        verify(documentEmbedder).embed(argThat(docs -> docs.size() == 1));
+        verify(chunkFingerprintIndex).add(argThat(docs -> docs.size() == 1));
+        verify(vectorDocumentWriter).deleteStale(eq("space-1"), eq("doc-1"), argThat(ids -> ids.size() == 2));
+    }
+
+    @Test
+    void ingestFingerprintsChunksWithoutTheirHeader() {
+        // GIVEN
+        properties.setDedupMode(DedupMode.SKIP);
+
+        // WHEN
+        pipeline.ingest(META, Flux.just(
+                new RagChunk("File: a.txt\n\nShared license header.", 0, 2,
+                        Map.of(RagMetadataKeys.HEADER, "File: a.txt\n\n")),
+                new RagChunk("File: b.txt\n\nShared license header.", 1, 2,
+                        Map.of(RagMetadataKeys.HEADER, "File: b.txt\n\n"))
+        )).blockLast();
+
+        // THEN
+        verify(documentEmbedder).embed(argThat(docs -> docs.size() == 1));
+        assertEquals(1, meterRegistry.get("rag.ingest.duplicates").counter().count());
+    }
+
+    @Test
+    void ingestSkipsChunksSimilarToStoredOrKeptChunks() {
+        // GIVEN
+        properties.setDedupMode(DedupMode.SKIP);
+        long storedFingerprint = ChunkFingerprints.simHash("Stored in another document.");
+        when(chunkFingerprintIndex.findSimilar(eq("space-1"), eq("doc-1"), any(), anyInt()))
+                .thenReturn(Map.of(storedFingerprint, UUID.randomUUID()));
+
+        // WHEN
+        Flux<Integer> result = pipeline.ingest(META, Flux.just(
+                new RagChunk("chunk 1", 0, 3),
+                new RagChunk("Stored in another document.", 1, 3),
+                new RagChunk("Chunk 1.", 2, 3)
+        ));
+
+        // THEN
+        StepVerifier.create(result)
+                .expectNext(33, 100)
+                .verifyComplete();
+        verify(documentEmbedder).embed(argThat(docs -> docs.size() == 1 && docs.getFirst().getText().equals("chunk 1")));
+    }
+
+    private static List<EmbeddedDocument> embedAll(List<Document> documents) {
+        return documents.stream()
+                .map(document -> new EmbeddedDocument(document, new float[]{1.0f}))
+                .toList();
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.admiralxy.agent.service.ingestion;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl;
+import io.github.admiralxy.agent.service.model.ModelSettingsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenCountBackfillTest {
+
+    @Mock
+    private VectorDocumentWriter vectorDocumentWriter;
+
+    @Mock
+    private TokenizerRegistry tokenizerRegistry;
+
+    @Mock
+    private ModelSettingsService modelSettingsService;
+
+    private TokenCountBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.setTokenBackfillBatchSize(2);
+        EmbeddingsModelSettingsEntity embeddingsModel = new EmbeddingsModelSettingsEntity();
+        when(modelSettingsService.getEmbeddingsModel()).thenReturn(embeddingsModel);
+        when(tokenizerRegistry.getEmbeddingsTokenizer(embeddingsModel)).thenReturn(new TokenizerServiceImpl());
+        backfill = new TokenCountBackfill(vectorDocumentWriter, tokenizerRegistry, modelSettingsService, properties);
+    }
+
+    @Test
+    void backfillCountsTokensBatchByBatchAndThenStaysIdle() {
+        // GIVEN
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        when(vectorDocumentWriter.findWithoutTokenCounts(2)).thenReturn(
+                Map.of(first, "one", second, "one two"),
+                Map.of(third, "")
+        );
+
+        // WHEN
+        backfill.backfill();
+        backfill.backfill();
+
+        // THEN
+        verify(vectorDocumentWriter).writeTokenCounts(Map.of(first, 1, second, 2), "cl100k_base");
+        verify(vectorDocumentWriter).writeTokenCounts(Map.of(third, 0), "cl100k_base");
+        verify(vectorDocumentWriter, times(2)).findWithoutTokenCounts(anyInt());
+        verify(vectorDocumentWriter, times(2)).writeTokenCounts(anyMap(), anyString());
+    }
+}
@@ -0,0 +1,211 @@
+package io.github.admiralxy.agent.service.job.impl;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.entity.IngestionJobEntity;
+import io.github.admiralxy.agent.entity.IngestionJobStatus;
+import io.github.admiralxy.agent.repository.IngestionJobRepository;
+import io.github.admiralxy.agent.service.AddDocumentCommand;
+import io.github.admiralxy.agent.service.RagService;
+import io.github.admiralxy.agent.service.ingestion.IngestionCheckpoint;
+import io.github.admiralxy.agent.service.ingestion.IngestionWorkQueue;
+import io.github.admiralxy.agent.service.job.impl.IngestionWorkStore.WorkUnitResult;
+import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionJobServiceImplTest {
+
+    private static final UUID JOB_ID = UUID.randomUUID();
+    private static final UUID SPACE_ID = UUID.randomUUID();
+    private static final UUID STORED_CHUNK_ID = UUID.randomUUID();
+
+    @Mock
+    private IngestionJobRepository ingestionJobRepository;
+
+    @Mock
+    private IngestionJobStore ingestionJobStore;
+
+    @Mock
+    private IngestionWorkStore ingestionWorkStore;
+
+    @Mock
+    private RagService ragService;
+
+    private IngestionProperties properties;
+    private IngestionJobServiceImpl ingestionJobService;
+    private IngestionJobEntity job;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IngestionProperties();
+        properties.setJobPollInterval(Duration.ofMillis(10));
+        ingestionJobService = new IngestionJobServiceImpl(
+                ingestionJobRepository,
+                ingestionJobStore,
+                ingestionWorkStore,
+                ragService,
+                properties
+        );
+        job = new IngestionJobEntity();
+        job.setId(JOB_ID);
+        job.setSpaceId(SPACE_ID);
+        job.setProviderType(ProviderType.TEXT);
+        job.setRequest("{\"text\": \"hello\", \"batch\": false}");
+        job.setStatus(IngestionJobStatus.QUEUED);
+    }
+
+    @Test
+    void submitRunsJobAndStoresProgress() {
+        // GIVEN
+        when(ingestionJobRepository.save(any())).thenReturn(job);
+        when(ingestionJobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+        when(ingestionJobStore.claim(eq(JOB_ID), anyString(), any())).thenReturn(true);
+        when(ingestionJobStore.findChunks(JOB_ID)).thenReturn(Set.of());
+        when(ingestionJobStore.updateProgress(eq(JOB_ID), anyString(), anyInt())).thenReturn(true);
+        when(ragService.add(any())).thenReturn(Flux.just(50, 100));
+
+        // WHEN
+        ingestionJobService.submit(new AddDocumentCommand(
+                SPACE_ID.toString(), ProviderType.TEXT, new RagContentRequest("hello", false, null, null)));
+
+        // THEN
+        verify(ingestionJobStore, timeout(1000)).finish(eq(JOB_ID), anyString(), isNull());
+        verify(ingestionJobStore).updateProgress(eq(JOB_ID), anyString(), eq(50));
+        verify(ingestionJobStore).updateProgress(eq(JOB_ID), anyString(), eq(100));
+        verify(ragService).add(new AddDocumentCommand(
+                SPACE_ID.toString(), ProviderType.TEXT, new RagContentRequest("hello", false, null, null)));
+    }
+
+    @Test
+    void resumedJobSeesChunksStoredByEarlierAttempt() {
+        // GIVEN
+        when(ingestionJobStore.findResumable(any())).thenReturn(List.of(JOB_ID));
+        when(ingestionJobStore.claim(eq(JOB_ID), anyString(), any())).thenReturn(true);
+        when(ingestionJobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+        when(ingestionJobStore.findChunks(JOB_ID)).thenReturn(Set.of(STORED_CHUNK_ID));
+        when(ingestionJobStore.updateProgress(eq(JOB_ID), anyString(), anyInt())).thenReturn(true);
+        when(ragService.add(any())).thenReturn(Flux.deferContextual(context -> Flux.just(
+                context.get(IngestionCheckpoint.class).isStored(STORED_CHUNK_ID) ? 100 : 0)));
+
+        // WHEN
+        int resumed = ingestionJobService.resumeAbandoned();
+
+        // THEN
+        assertEquals(1, resumed);
+        verify(ingestionJobStore, timeout(1000)).finish(eq(JOB_ID), anyString(), isNull());
+        verify(ingestionJobStore).updateProgress(eq(JOB_ID), anyString(), eq(100));
+    }
+
+    @Test
+    void distributedJobQueuesBatchesAsWorkUnits() {
+        // GIVEN
+        properties.setDistributed(true);
+        UUID unitId = UUID.randomUUID();
+        Document document = new Document(STORED_CHUNK_ID.toString(), "hello", Map.of());
+        when(ingestionJobStore.findResumable(any())).thenReturn(List.of(JOB_ID));
+        when(ingestionJobStore.claim(eq(JOB_ID), anyString(), any())).thenReturn(true);
+        when(ingestionJobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+        when(ingestionJobStore.findChunks(JOB_ID)).thenReturn(Set.of());
+        when(ingestionJobStore.updateProgress(eq(JOB_ID), anyString(), anyInt())).thenReturn(true);
+        when(ingestionWorkStore.enqueue(JOB_ID, List.of(document))).thenReturn(unitId);
+        when(ingestionWorkStore.takeResult(unitId)).thenReturn(
+                Optional.empty(),
+                Optional.of(new WorkUnitResult(List.of(STORED_CHUNK_ID), null))
+        );
+        when(ragService.add(any())).thenReturn(Flux.deferContextual(context -> context.get(IngestionWorkQueue.class)
+                .submit(List.of(document))
+                .map(written -> written.contains(STORED_CHUNK_ID) ? 100 : 0)
+                .flux()));
+
+        // WHEN
+        ingestionJobService.resumeAbandoned();
+
+        // THEN
+        verify(ingestionJobStore, timeout(1000)).finish(eq(JOB_ID), anyString(), isNull());
+        verify(ingestionJobStore).updateProgress(eq(JOB_ID), anyString(), eq(100));
+        verify(ingestionWorkStore, times(2)).deleteJobUnits(JOB_ID);
+    }
+
+    @Test
+    void failedJobStoresError() {
+        // GIVEN
+        when(ingestionJobStore.findResumable(any())).thenReturn(List.of(JOB_ID));
+        when(ingestionJobStore.claim(eq(JOB_ID), anyString(), any())).thenReturn(true);
+        when(ingestionJobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+        when(ingestionJobStore.findChunks(JOB_ID)).thenReturn(Set.of());
+        when(ragService.add(any())).thenReturn(Flux.error(new IllegalStateException("boom")));
+
+        // WHEN
+        ingestionJobService.resumeAbandoned();
+
+        // THEN
+        verify(ingestionJobStore, timeout(1000)).finish(eq(JOB_ID), anyString(), eq("boom"));
+    }
+
+    @Test
+    void resumeAbandonedSkipsJobsClaimedByAnotherInstance() {
+        // GIVEN
+        when(ingestionJobStore.findResumable(any())).thenReturn(List.of(JOB_ID));
+        when(ingestionJobStore.claim(eq(JOB_ID), anyString(), any())).thenReturn(false);
+
+        // WHEN
+        int resumed = ingestionJobService.resumeAbandoned();
+
+        // THEN
+        assertEquals(0, resumed);
+        verify(ragService, never()).add(any());
+    }
+
+    @Test
+    void progressFollowsStoredStateOfJobNotRunningHere() {
+        // GIVEN
+        job.setStatus(IngestionJobStatus.COMPLETED);
+        job.setProgress(100);
+        when(ingestionJobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+
+        // WHEN / THEN
+        StepVerifier.create(ingestionJobService.progress(JOB_ID))
+                .expectNext(100)
+                .verifyComplete();
+    }
+
+    @Test
+    void progressFailsForFailedJob() {
+        // GIVEN
+        job.setStatus(IngestionJobStatus.FAILED);
+        job.setError("boom");
+        when(ingestionJobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+
+        // WHEN / THEN
+        StepVerifier.create(ingestionJobService.progress(JOB_ID))
+                .expectErrorMessage("boom")
+                .verify();
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.admiralxy.agent.service.job.impl;
+
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
+import io.github.admiralxy.agent.service.ingestion.IngestionPipeline;
+import io.github.admiralxy.agent.service.job.impl.IngestionWorkStore.WorkUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionWorkerTest {
+
+    private static final UUID UNIT_ID = UUID.randomUUID();
+    private static final UUID CHUNK_ID = UUID.randomUUID();
+
+    @Mock
+    private IngestionWorkStore ingestionWorkStore;
+
+    @Mock
+    private IngestionPipeline ingestionPipeline;
+
+    private IngestionProperties properties;
+    private IngestionWorker ingestionWorker;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IngestionProperties();
+        properties.setDistributed(true);
+        properties.setWorkerConcurrency(2);
+        ingestionWorker = new IngestionWorker(ingestionWorkStore, ingestionPipeline, properties);
+    }
+
+    @Test
+    void pollStoresClaimedUnits() {
+        // GIVEN
+        List<Document> documents = List.of(new Document(CHUNK_ID.toString(), "hello", Map.of()));
+        when(ingestionWorkStore.claim(anyString(), eq(2), any())).thenReturn(List.of(new WorkUnit(UNIT_ID, documents)));
+        when(ingestionPipeline.store(documents)).thenReturn(List.of(CHUNK_ID));
+
+        // WHEN
+        ingestionWorker.poll();
+
+        // THEN
+        verify(ingestionWorkStore, timeout(1000)).complete(eq(UNIT_ID), anyString(), eq(List.of(CHUNK_ID)));
+    }
+
+    @Test
+    void pollFailsUnitWhenEmbeddingFails() {
+        // GIVEN
+        List<Document> documents = List.of(new Document(CHUNK_ID.toString(), "hello", Map.of()));
+        when(ingestionWorkStore.claim(anyString(), eq(2), any())).thenReturn(List.of(new WorkUnit(UNIT_ID, documents)));
+        when(ingestionPipeline.store(documents)).thenThrow(new IllegalStateException("boom"));
+
+        // WHEN
+        ingestionWorker.poll();
+
+        // THEN
+        verify(ingestionWorkStore, timeout(1000)).fail(eq(UNIT_ID), anyString(), eq("boom"));
+    }
+
+    @Test
+    void pollRenewsLeaseWhileUnitIsStored() {
+        // GIVEN
+        properties.setWorkLease(Duration.ofMillis(300));
+        List<Document> documents = List.of(new Document(CHUNK_ID.toString(), "hello", Map.of()));
+        when(ingestionWorkStore.claim(anyString(), eq(2), any())).thenReturn(List.of(new WorkUnit(UNIT_ID, documents)));
+        when(ingestionPipeline.store(documents)).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return List.of(CHUNK_ID);
+        });
+
+        // WHEN
+        ingestionWorker.poll();
+
+        // THEN
+        verify(ingestionWorkStore, timeout(2000).atLeastOnce()).renew(eq(UNIT_ID), anyString(), eq(Duration.ofMillis(300)));
+        verify(ingestionWorkStore, timeout(2000)).complete(eq(UNIT_ID), anyString(), eq(List.of(CHUNK_ID)));
+    }
+
+    @Test
+    void pollDoesNothingWhenDistributionIsDisabled() {
+        // GIVEN
+        properties.setDistributed(false);
+
+        // WHEN
+        ingestionWorker.poll();
+
+        // THEN
+        verifyNoInteractions(ingestionWorkStore, ingestionPipeline);
+    }
+}
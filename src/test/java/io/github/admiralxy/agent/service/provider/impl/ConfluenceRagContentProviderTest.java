@@ -3,20 +3,33 @@ package io.github.admiralxy.agent.service.provider.impl;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import io.github.admiralxy.agent.config.AiHttpClientBuilderFactory;
+import io.github.admiralxy.agent.config.properties.ConfluenceProperties;
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
-import io.github.admiralxy.agent.service.TextChunkerService;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.TextKind;
+import io.github.admiralxy.agent.service.confluence.ConfluencePage;
+import io.github.admiralxy.agent.service.confluence.impl.ConfluenceClientImpl;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.provider.ProviderTextChunker;
 import io.github.admiralxy.agent.service.provider.RagChunk;
+import io.github.admiralxy.agent.service.provider.RagConfluenceOptions;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
 import io.github.admiralxy.agent.service.provider.RagProviderAuth;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -33,30 +46,38 @@ class ConfluenceRagContentProviderTest {
 
     @Test
     void supportsConfluenceOnly() {
-        ConfluenceRagContentProvider provider = new ConfluenceRagContentProvider(noOpChunker(), clientFactory());
+        ConfluenceRagContentProvider provider = provider();
         assertTrue(provider.supports(ProviderType.CONFLUENCE));
         assertFalse(provider.supports(ProviderType.TEXT));
     }
 
     @Test
     void resolveContentReturnsTitleAndStorageValue() throws IOException {
-        ConfluenceRagContentProvider provider = new ConfluenceRagContentProvider(noOpChunker(), clientFactory());
+        ConfluenceRagContentProvider provider = provider();
         AtomicReference<String> authorizationRef = new AtomicReference<>();
         HttpServer server = createServer(200, """
                 {
+                  "id": "%s",
                   "title": "Стенды",
+                  "version": {
+                    "number": 7
+                  },
                   "body": {
                     "storage": {
                       "value": "<p>Контент</p>"
                     }
                   }
                 }
-                """, authorizationRef);
+                """.formatted(PAGE_ID), authorizationRef);
         server.start();
 
         try {
             StepVerifier.create(provider.resolveChunks(request(buildUrl(server), USERNAME, PASSWORD)))
-                    .expectNext(new RagChunk("Стенды\n\nКонтент", 0, 1))
+                    .expectNext(new RagChunk("Стенды\n\nКонтент", 0, 1, Map.of(
+                            RagMetadataKeys.PAGE_ID, PAGE_ID,
+                            RagMetadataKeys.POSITION, 0,
+                            RagMetadataKeys.PAGE_VERSION, 7
+                    )))
                     .verifyComplete();
             assertEquals(expectedBasicAuth(), authorizationRef.get());
         } finally {
@@ -66,7 +87,7 @@ class ConfluenceRagContentProviderTest {
 
     @Test
     void resolveContentThrowsOnNonSuccessfulStatus() throws IOException {
-        ConfluenceRagContentProvider provider = new ConfluenceRagContentProvider(noOpChunker(), clientFactory());
+        ConfluenceRagContentProvider provider = provider();
         HttpServer server = createServer(500, "{}", null);
         server.start();
 
@@ -81,7 +102,7 @@ class ConfluenceRagContentProviderTest {
 
     @Test
     void resolveContentThrowsOnInvalidJson() throws IOException {
-        ConfluenceRagContentProvider provider = new ConfluenceRagContentProvider(noOpChunker(), clientFactory());
+        ConfluenceRagContentProvider provider = provider();
         HttpServer server = createServer(200, "not-json", null);
         server.start();
 
@@ -96,13 +117,126 @@ class ConfluenceRagContentProviderTest {
 
     @Test
     void resolveContentThrowsWhenCredentialsAreMissing() {
-        ConfluenceRagContentProvider provider = new ConfluenceRagContentProvider(noOpChunker(), clientFactory());
+        ConfluenceRagContentProvider provider = provider();
 
         StepVerifier.create(provider.resolveChunks(request("http://localhost:8080/pages/viewpage.action?pageId=1", "", "")))
                 .expectError(IllegalStateException.class)
                 .verify();
     }
 
+    @Test
+    void resolveChunksCrawlsSpacePageByPage() throws IOException {
+        ConfluenceRagContentProvider provider = provider();
+        HttpServer server = createCrawlServer(Map.of(
+                "/rest/api/content?start=0", """
+                        {"results": [{"id": "1", "title": "One", "version": {"number": 3}}], "_links": {"next": "/next"}}
+                        """,
+                "/rest/api/content?start=1", """
+                        {"results": [{"id": "2", "title": "Two", "version": {"number": 1}}], "_links": {}}
+                        """,
+                "/rest/api/content/1", page("1", "One", 3, "<p>First</p>"),
+                "/rest/api/content/2", page("2", "Two", 1, "<p>Second</p>")
+        ));
+        server.start();
+
+        try {
+            RagContentRequest request = new RagContentRequest(
+                    "http://localhost:" + server.getAddress().getPort() + "/display/DOCS",
+                    false,
+                    null,
+                    new RagProviderAuth(USERNAME, PASSWORD),
+                    new RagConfluenceOptions("DOCS", false)
+            );
+
+            StepVerifier.create(provider.resolveChunks(request))
+                    .expectNext(new RagChunk("One\n\nFirst", 0, 2, Map.of(
+                            RagMetadataKeys.PAGE_ID, "1",
+                            RagMetadataKeys.POSITION, 0,
+                            RagMetadataKeys.PAGE_VERSION, 3
+                    )))
+                    .expectNext(new RagChunk("Two\n\nSecond", 1, 2, Map.of(
+                            RagMetadataKeys.PAGE_ID, "2",
+                            RagMetadataKeys.POSITION, 0,
+                            RagMetadataKeys.PAGE_VERSION, 1
+                    )))
+                    .verifyComplete();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void resolveChunksCrawlsPageWithDescendants() throws IOException {
+        ConfluenceRagContentProvider provider = provider();
+        HttpServer server = createCrawlServer(Map.of(
+                "/rest/api/content/10/descendant/page?start=0", """
+                        {"results": [{"id": "11", "title": "Child", "version": {"number": 2}}], "_links": {}}
+                        """,
+                "/rest/api/content/10", page("10", "Root", 1, "<p>Root body</p>"),
+                "/rest/api/content/11", page("11", "Child", 2, "<p>Child body</p>")
+        ));
+        server.start();
+
+        try {
+            RagContentRequest request = new RagContentRequest(
+                    "http://localhost:" + server.getAddress().getPort() + REQUEST_PATH + "?pageId=10",
+                    false,
+                    null,
+                    new RagProviderAuth(USERNAME, PASSWORD),
+                    new RagConfluenceOptions(null, true)
+            );
+
+            StepVerifier.create(provider.resolveChunks(request).map(RagChunk::text))
+                    .expectNext("Root\n\nRoot body", "Child\n\nChild body")
+                    .verifyComplete();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void toChunksStreamsBatchPagesThroughProviderChunker() {
+        // GIVEN
+        ProviderTextChunker providerTextChunker = Mockito.mock(ProviderTextChunker.class);
+        Map<String, Object> metadata = Map.of(RagMetadataKeys.PAGE_ID, "1", RagMetadataKeys.PAGE_VERSION, 3);
+        Mockito.when(providerTextChunker.stream("One\n\nFirst", TextKind.AUTO, metadata)).thenReturn(Flux.just(
+                new RagChunk("One", 0, 0, Map.of(RagMetadataKeys.PAGE_ID, "1", RagMetadataKeys.PAGE_VERSION, 3,
+                        RagMetadataKeys.TOKENS, 1)),
+                new RagChunk("First", 1, 0, Map.of(RagMetadataKeys.PAGE_ID, "1", RagMetadataKeys.PAGE_VERSION, 3,
+                        RagMetadataKeys.TOKENS, 1))
+        ));
+        RagContentRequest request = new RagContentRequest("http://localhost/display/DOCS", true, null,
+                new RagProviderAuth(USERNAME, PASSWORD));
+
+        // WHEN / THEN
+        StepVerifier.create(provider(providerTextChunker).toChunks(request, List.of(
+                        new ConfluencePage("1", "One", 3, "<p>First</p>"))))
+                .expectNext(new RagChunk("One", 0, 1, Map.of(RagMetadataKeys.PAGE_ID, "1", RagMetadataKeys.PAGE_VERSION, 3,
+                        RagMetadataKeys.TOKENS, 1, RagMetadataKeys.POSITION, 0)))
+                .expectNext(new RagChunk("First", 0, 1, Map.of(RagMetadataKeys.PAGE_ID, "1", RagMetadataKeys.PAGE_VERSION, 3,
+                        RagMetadataKeys.TOKENS, 1, RagMetadataKeys.POSITION, 1)))
+                .verifyComplete();
+    }
+
+    private HttpServer createCrawlServer(Map<String, String> responses) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/rest/api/content", exchange -> {
+            // Listing calls are told apart by their start offset, page calls by path only.
+            String query = exchange.getRequestURI().getRawQuery();
+            Matcher start = Pattern.compile("start=(\\d+)").matcher(query == null ? "" : query);
+            String key = exchange.getRequestURI().getPath() + (start.find() ? "?start=" + start.group(1) : "");
+            String body = responses.get(key);
+            writeResponse(exchange, body == null ? 404 : 200, body == null ? "{}" : body, null);
+        });
+        return server;
+    }
+
+    private String page(String id, String title, int version, String body) {
+        return """
+                {"id": "%s", "title": "%s", "version": {"number": %d}, "body": {"storage": {"value": "%s"}}}
+                """.formatted(id, title, version, body);
+    }
+
     private HttpServer createServer(int status, String responseBody, AtomicReference<String> authorizationRef) throws IOException {
         HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
         server.createContext(API_PATH, exchange -> writeResponse(exchange, status, responseBody, authorizationRef));
@@ -129,11 +263,20 @@ class ConfluenceRagContentProviderTest {
         return new RagContentRequest(url, false, null, new RagProviderAuth(login, password));
     }
 
-    private TextChunkerService noOpChunker() {
-        TextChunkerService chunker = Mockito.mock(TextChunkerService.class);
-        Mockito.when(chunker.chunk(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
-                .thenReturn(java.util.List.of());
-        return chunker;
+    private ConfluenceRagContentProvider provider() {
+        return provider(Mockito.mock(ProviderTextChunker.class));
+    }
+
+    private ConfluenceRagContentProvider provider(ProviderTextChunker providerTextChunker) {
+        ConfluenceProperties properties = new ConfluenceProperties();
+        properties.setPageSize(1);
+        properties.setRequestsPerSecond(0);
+        return new ConfluenceRagContentProvider(
+                providerTextChunker,
+                new ConfluenceClientImpl(clientFactory(), properties),
+                properties,
+                new IngestionMetrics(new SimpleMeterRegistry())
+        );
     }
 
     private String expectedBasicAuth() {
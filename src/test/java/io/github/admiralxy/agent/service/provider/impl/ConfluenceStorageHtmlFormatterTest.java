@@ -44,4 +44,28 @@ class ConfluenceStorageHtmlFormatterTest {
     void format_shouldReturnEmptyForBlankInput() {
         assertEquals("", formatter.format(" "));
     }
+
+    @Test
+    void format_shouldNumberOrderedListsAndKeepLinks() {
+        String html = """
+                <ol><li>One</li><li>Two <a href="https://wiki.example/x">link</a></li></ol>
+                <p><code>id</code>&nbsp;field</p>
+                """;
+
+        String expected = """
+                1. One
+                2. Two link (https://wiki.example/x)
+
+                `id` field
+                """.trim();
+
+        assertEquals(expected, formatter.format(html));
+    }
+
+    @Test
+    void format_shouldCollapseBlankLinesAndStripTrailingSpaces() {
+        String html = "<div>  </div><p>First   </p><div></div><div></div><p>Second<br> <br>\r\n</p><p>   </p>";
+
+        assertEquals("First\n\nSecond", formatter.format(html));
+    }
 }
@@ -1,24 +1,39 @@
 package io.github.admiralxy.agent.service.provider.impl;
 
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.domain.GitFileFilter;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
+import io.github.admiralxy.agent.service.git.GitFile;
+import io.github.admiralxy.agent.service.git.GitFileCursor;
 import io.github.admiralxy.agent.service.git.GitRepositoryService;
+import io.github.admiralxy.agent.service.impl.TextChunkerServiceImpl;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
 import io.github.admiralxy.agent.service.provider.RagChunk;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
 import io.github.admiralxy.agent.service.provider.RagGitOptions;
 import io.github.admiralxy.agent.service.provider.RagProviderAuth;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GitRagContentProviderTest {
 
     private final GitRepositoryService gitRepositoryService = Mockito.mock(GitRepositoryService.class);
-    private final GitRagContentProvider provider = new GitRagContentProvider(gitRepositoryService);
+    private final GitRagContentProvider provider = new GitRagContentProvider(
+            gitRepositoryService,
+            new TextChunkerServiceImpl(),
+            new IngestionProperties(),
+            new IngestionMetrics(new SimpleMeterRegistry())
+    );
 
     @Test
     void supportsGitOnly() {
@@ -34,18 +49,92 @@ class GitRagContentProviderTest {
                 new RagGitOptions("main", "src"),
                 new RagProviderAuth("login", "password")
         );
-        Mockito.when(gitRepositoryService.getFileChunks(
+        GitFileCursor cursor = Mockito.mock(GitFileCursor.class);
+        Mockito.when(cursor.commitId()).thenReturn("abc123");
+        Mockito.when(cursor.total()).thenReturn(2);
+        Mockito.when(cursor.next()).thenReturn(
+                new GitFile("src/a.txt", "chunk-1"),
+                new GitFile("src/b.txt", "chunk-2"),
+                null
+        );
+        Mockito.when(gitRepositoryService.openFiles(
                         request.text(),
                         request.git().branch(),
                         request.git().folder(),
+                        request.git().filter(),
                         request.auth().login(),
                         request.auth().password()
                 ))
-                .thenReturn(List.of("chunk-1", "chunk-2"));
+                .thenReturn(cursor);
 
         StepVerifier.create(provider.resolveChunks(request))
-                .expectNext(new RagChunk("chunk-1", 0, 2))
-                .expectNext(new RagChunk("chunk-2", 1, 2))
+                .expectNext(new RagChunk("File: src/a.txt\n\nchunk-1", 0, 2, Map.of(
+                        RagMetadataKeys.PATH, "src/a.txt",
+                        RagMetadataKeys.POSITION, 0,
+                        RagMetadataKeys.COMMIT, "abc123",
+                        RagMetadataKeys.HEADER, "File: src/a.txt\n\n"
+                )))
+                .expectNext(new RagChunk("File: src/b.txt\n\nchunk-2", 1, 2, Map.of(
+                        RagMetadataKeys.PATH, "src/b.txt",
+                        RagMetadataKeys.POSITION, 0,
+                        RagMetadataKeys.COMMIT, "abc123",
+                        RagMetadataKeys.HEADER, "File: src/b.txt\n\n"
+                )))
                 .verifyComplete();
+        Mockito.verify(cursor).close();
+    }
+
+    @Test
+    void resolveChunksClosesCursorWhenCancelled() {
+        RagContentRequest request = new RagContentRequest(
+                "https://git.example/repo.git",
+                true,
+                new RagGitOptions("main", null),
+                null
+        );
+        GitFileCursor cursor = Mockito.mock(GitFileCursor.class);
+        Mockito.when(cursor.commitId()).thenReturn("abc123");
+        Mockito.when(cursor.total()).thenReturn(3);
+        Mockito.when(cursor.next()).thenReturn(new GitFile("a.txt", "chunk-1"));
+        Mockito.when(gitRepositoryService.openFiles(request.text(), "main", null, GitFileFilter.none(), null, null)).thenReturn(cursor);
+
+        StepVerifier.create(provider.resolveChunks(request), 1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        Mockito.verify(cursor, Mockito.timeout(1000)).close();
+    }
+
+    @Test
+    void toChunksSplitsLargeFilesAndKeepsFileOrder() {
+        // GIVEN
+        String paragraph = "word ".repeat(200).strip();
+        GitFileCursor files = Mockito.mock(GitFileCursor.class);
+        Mockito.when(files.commitId()).thenReturn("abc123");
+        Mockito.when(files.total()).thenReturn(3);
+        Mockito.when(files.next()).thenReturn(
+                new GitFile("docs/a.md", paragraph + "\n\n" + paragraph),
+                new GitFile("docs/empty.md", " "),
+                new GitFile("src/B.java", "class B {\n}"),
+                null
+        );
+
+        // WHEN
+        List<RagChunk> chunks = provider.toChunks(files).collectList().block();
+
+        // THEN
+        assertEquals(3, chunks.size());
+        assertTrue(chunks.get(0).text().startsWith("File: docs/a.md\n\n"));
+        assertTrue(chunks.get(1).text().startsWith("File: docs/a.md\n\n"));
+        assertEquals(List.of(0, 0, 2), chunks.stream().map(RagChunk::number).toList());
+        assertEquals(1, chunks.get(1).metadata().get(RagMetadataKeys.POSITION));
+        assertEquals(new RagChunk("File: src/B.java\n\nclass B {\n}", 2, 3, Map.of(
+                RagMetadataKeys.PATH, "src/B.java",
+                RagMetadataKeys.POSITION, 0,
+                RagMetadataKeys.COMMIT, "abc123",
+                RagMetadataKeys.HEADER, "File: src/B.java\n\n"
+        )), chunks.get(2));
+        Mockito.verify(files, Mockito.never()).close();
     }
 }
@@ -1,19 +1,37 @@
 package io.github.admiralxy.agent.service.provider.impl;
 
+import io.github.admiralxy.agent.config.properties.IngestionProperties;
 import io.github.admiralxy.agent.controller.response.documents.ProviderType;
+import io.github.admiralxy.agent.entity.EmbeddingsModelSettingsEntity;
+import io.github.admiralxy.agent.registry.TokenizerRegistry;
+import io.github.admiralxy.agent.service.RagMetadataKeys;
 import io.github.admiralxy.agent.service.TextChunkerService;
+import io.github.admiralxy.agent.service.TokenizerService;
+import io.github.admiralxy.agent.service.impl.TextChunkerServiceImpl;
+import io.github.admiralxy.agent.service.impl.TokenizerServiceImpl;
+import io.github.admiralxy.agent.service.ingestion.IngestionMetrics;
+import io.github.admiralxy.agent.service.model.ModelSettingsService;
+import io.github.admiralxy.agent.service.provider.ProviderTextChunker;
 import io.github.admiralxy.agent.service.provider.RagChunk;
 import io.github.admiralxy.agent.service.provider.RagContentRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import reactor.test.StepVerifier;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TextRagContentProviderTest {
 
-    private final TextRagContentProvider provider = new TextRagContentProvider(noOpChunker());
+    private final TokenizerService tokenizer = new TokenizerServiceImpl();
+    private final IngestionProperties properties = new IngestionProperties();
+    private final TextRagContentProvider provider = newProvider(noOpChunker());
 
     @Test
     void supportsTextOnly() {
@@ -28,6 +46,70 @@ class TextRagContentProviderTest {
                 .verifyComplete();
     }
 
+    @Test
+    void resolveChunksStreamsChunksOfBatchText() {
+        // GIVEN
+        properties.setChunkMaxTokens(0);
+        TextRagContentProvider chunkingProvider = newProvider(new TextChunkerServiceImpl());
+
+        // WHEN
+        List<RagChunk> chunks = chunkingProvider.resolveChunks(new RagContentRequest(longText(), true, null, null))
+                .collectList()
+                .block();
+
+        // THEN
+        assertTrue(chunks.size() > 1);
+        for (int i = 0; i < chunks.size(); i++) {
+            assertEquals(i, chunks.get(i).number());
+            assertFalse(chunks.get(i).metadata().containsKey(RagMetadataKeys.TOKENS));
+        }
+        assertTrue(chunks.getFirst().progress() < 100);
+        assertEquals(100, chunks.getLast().progress());
+    }
+
+    @Test
+    void resolveChunksCutsBatchTextByTokenBudgetOfEmbeddingModel() {
+        // GIVEN
+        properties.setChunkMaxTokens(512);
+        TextRagContentProvider chunkingProvider = newProvider(new TextChunkerServiceImpl());
+
+        // WHEN
+        List<RagChunk> chunks = chunkingProvider.resolveChunks(new RagContentRequest(longText(), true, null, null))
+                .collectList()
+                .block();
+
+        // THEN
+        assertTrue(chunks.size() > 1);
+        for (RagChunk chunk : chunks) {
+            int tokens = (Integer) chunk.metadata().get(RagMetadataKeys.TOKENS);
+            // The model limit is below the configured budget and caps it.
+            assertTrue(tokens <= 200);
+            assertEquals(tokenizer.countTokens(chunk.text()), tokens, 1);
+            assertEquals(tokenizer.getName(), chunk.metadata().get(RagMetadataKeys.TOKENIZER));
+        }
+        assertEquals(100, chunks.getLast().progress());
+    }
+
+    private TextRagContentProvider newProvider(TextChunkerService chunker) {
+        EmbeddingsModelSettingsEntity model = new EmbeddingsModelSettingsEntity();
+        model.setMaxDocumentTokens(200);
+        ModelSettingsService modelSettingsService = Mockito.mock(ModelSettingsService.class);
+        Mockito.when(modelSettingsService.getEmbeddingsModel()).thenReturn(model);
+        TokenizerRegistry tokenizerRegistry = Mockito.mock(TokenizerRegistry.class);
+        Mockito.when(tokenizerRegistry.getEmbeddingsTokenizer(model)).thenReturn(tokenizer);
+        IngestionMetrics ingestionMetrics = new IngestionMetrics(new SimpleMeterRegistry());
+        return new TextRagContentProvider(
+                new ProviderTextChunker(chunker, ingestionMetrics, tokenizerRegistry, modelSettingsService, properties),
+                ingestionMetrics
+        );
+    }
+
+    private static String longText() {
+        return IntStream.rangeClosed(1, 100)
+                .mapToObj(i -> "Paragraph " + i + " of a long text.")
+                .collect(Collectors.joining("\n\n"));
+    }
+
     private static TextChunkerService noOpChunker() {
         TextChunkerService chunker = Mockito.mock(TextChunkerService.class);
         Mockito.when(chunker.chunk(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))